@@ -0,0 +1,34 @@
+-- CONNECT 4.0
+--
+-- Rollback of V001__index_dao_queries.sql
+--
+-- Created on: 2026-10-19
+-- Author: dharley
+-- ------------------------------------------------------
+
+DROP INDEX CreationTime_IDX ON asyncmsgs.asyncmsgrepo;
+DROP INDEX Status_IDX ON asyncmsgs.asyncmsgrepo;
+DROP INDEX MessageId_IDX ON asyncmsgs.asyncmsgrepo;
+
+DROP INDEX Producer_IDX ON subscriptionrepository.subscription;
+
+DROP INDEX MessageId_IDX ON patientcorrelationdb.pddeferredcorrelation;
+DROP INDEX CorrelatedPatientId_IDX ON patientcorrelationdb.correlatedidentifiers;
+DROP INDEX PatientId_IDX ON patientcorrelationdb.correlatedidentifiers;
+
+DROP INDEX EventCode_IDX ON docrepository.eventcode;
+DROP INDEX documentid_IDX ON docrepository.eventcode;
+DROP INDEX DocumentUniqueId_IDX ON docrepository.document;
+DROP INDEX CreationTime_IDX ON docrepository.document;
+DROP INDEX ClassCode_IDX ON docrepository.document;
+DROP INDEX PatientId_IDX ON docrepository.document;
+
+DROP INDEX audit_timestamp_IDX ON auditrepo.auditrepository;
+DROP INDEX userId_IDX ON auditrepo.auditrepository;
+DROP INDEX receiverPatientId_IDX ON auditrepo.auditrepository;
+
+DROP INDEX homecommunityid_IDX ON assigningauthoritydb.aa_to_home_community_mapping;
+DROP INDEX assigningauthorityid_IDX ON assigningauthoritydb.aa_to_home_community_mapping;
+
+DROP INDEX TransactionId_IDX ON aggregator.agg_message_results;
+DROP INDEX TransactionStartTime_IDX ON aggregator.agg_transaction;
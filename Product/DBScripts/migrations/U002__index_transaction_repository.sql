@@ -0,0 +1,10 @@
+-- CONNECT 4.0
+--
+-- Rollback of V002__index_transaction_repository.sql
+--
+-- Created on: 2026-10-19
+-- Author: dharley
+-- ------------------------------------------------------
+
+DROP INDEX time_IDX ON transrepo.transactionrepository;
+DROP INDEX messageId_IDX ON transrepo.transactionrepository;
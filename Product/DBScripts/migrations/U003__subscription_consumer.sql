@@ -0,0 +1,13 @@
+-- CONNECT 4.0
+--
+-- Rollback of V003__subscription_consumer.sql
+--
+-- Created on: 2026-10-19
+-- Author: dharley
+-- ------------------------------------------------------
+
+DROP INDEX ParentSubscriptionId_IDX ON subscriptionrepository.subscription;
+DROP INDEX Subscriptionid_IDX ON subscriptionrepository.subscription;
+
+ALTER TABLE subscriptionrepository.subscription DROP COLUMN ConsumerReferenceParametersXML;
+ALTER TABLE subscriptionrepository.subscription DROP COLUMN ConsumerEndpoint;
@@ -0,0 +1,45 @@
+-- CONNECT 4.0
+--
+-- Index the columns the DAOs look records up by, so none of their queries
+-- scans a whole table
+--
+-- Created on: 2026-10-19
+-- Author: dharley
+-- ------------------------------------------------------
+
+-- AggTransactionDao: expired transactions by start time
+CREATE INDEX TransactionStartTime_IDX ON aggregator.agg_transaction (TransactionStartTime);
+-- AggMessageResultDao: results by transaction and message key
+CREATE INDEX TransactionId_IDX ON aggregator.agg_message_results (TransactionId);
+
+-- AssigningAuthorityHomeCommunityMappingDAO: mappings by assigning authority and by home community
+CREATE INDEX assigningauthorityid_IDX ON assigningauthoritydb.aa_to_home_community_mapping (assigningauthorityid, homecommunityid);
+CREATE INDEX homecommunityid_IDX ON assigningauthoritydb.aa_to_home_community_mapping (homecommunityid);
+
+-- AuditRepositoryDAO: events by patient, by user and by time
+CREATE INDEX receiverPatientId_IDX ON auditrepo.auditrepository (receiverPatientId, audit_timestamp);
+CREATE INDEX userId_IDX ON auditrepo.auditrepository (userId, audit_timestamp);
+CREATE INDEX audit_timestamp_IDX ON auditrepo.auditrepository (audit_timestamp);
+
+-- DocumentDao: documents by patient, class code, creation time and unique id
+CREATE INDEX PatientId_IDX ON docrepository.document (PatientId, CreationTime);
+CREATE INDEX ClassCode_IDX ON docrepository.document (ClassCode, ClassCodeScheme);
+CREATE INDEX CreationTime_IDX ON docrepository.document (CreationTime);
+CREATE INDEX DocumentUniqueId_IDX ON docrepository.document (DocumentUniqueId);
+-- EventCodeDao: event codes by document and by code
+CREATE INDEX documentid_IDX ON docrepository.eventcode (documentid);
+CREATE INDEX EventCode_IDX ON docrepository.eventcode (EventCode, EventCodeScheme);
+
+-- Retriever and Storer: correlations by either patient
+CREATE INDEX PatientId_IDX ON patientcorrelationdb.correlatedidentifiers (PatientId, PatientAssigningAuthorityId);
+CREATE INDEX CorrelatedPatientId_IDX ON patientcorrelationdb.correlatedidentifiers (CorrelatedPatientId, CorrelatedPatientAssignAuthId);
+-- PDDeferredCorrelationDao: correlations by message id
+CREATE INDEX MessageId_IDX ON patientcorrelationdb.pddeferredcorrelation (MessageId);
+
+-- SubscriptionStorageItemDao: subscriptions by producer and root topic
+CREATE INDEX Producer_IDX ON subscriptionrepository.subscription (Producer);
+
+-- AsyncMsgRecordDao: records by message id, by queue status and by creation time
+CREATE INDEX MessageId_IDX ON asyncmsgs.asyncmsgrepo (MessageId);
+CREATE INDEX Status_IDX ON asyncmsgs.asyncmsgrepo (Status, Direction, ResponseType);
+CREATE INDEX CreationTime_IDX ON asyncmsgs.asyncmsgrepo (CreationTime);
@@ -0,0 +1,13 @@
+-- CONNECT 4.0
+--
+-- Index the transaction repository by messageId, which is how the TransactionHandler looks
+-- records up, and by time for the retention purge
+--
+-- Created on: 2026-10-19
+-- Author: dharley
+-- ------------------------------------------------------
+
+-- TransactionDAO: transaction id by message id
+CREATE INDEX messageId_IDX ON transrepo.transactionrepository (messageId);
+-- TransactionDAO: records older than the retention period
+CREATE INDEX time_IDX ON transrepo.transactionrepository (time);
@@ -0,0 +1,17 @@
+-- CONNECT 4.0
+--
+-- Add the notification consumer columns to the subscription repository, so notifies can be sent
+-- without parsing the stored subscribe message, and index its subscription id columns
+--
+-- Created on: 2026-10-19
+-- Author: dharley
+-- ------------------------------------------------------
+
+-- Address of the notification consumer, extracted from the subscribe message
+ALTER TABLE subscriptionrepository.subscription ADD COLUMN ConsumerEndpoint VARCHAR(1024);
+-- Reference parameters of the notification consumer as an XML string
+ALTER TABLE subscriptionrepository.subscription ADD COLUMN ConsumerReferenceParametersXML LONGTEXT;
+
+-- SubscriptionStorageItemDao: subscriptions by id and by parent subscription
+CREATE INDEX Subscriptionid_IDX ON subscriptionrepository.subscription (Subscriptionid);
+CREATE INDEX ParentSubscriptionId_IDX ON subscriptionrepository.subscription (ParentSubscriptionId);
@@ -0,0 +1,292 @@
+-- H2 version of nhincdb.sql, used by the load test harness and the migration tests.
+-- Each MySQL database is created as a schema of the same name, so the gateway data sources
+-- only need ;SCHEMA=<database> added to the embedded database url.
+-- Apply the migrations afterwards, as for nhincdb.sql.
+
+-- begin aggregator creation
+CREATE SCHEMA aggregator;
+
+CREATE TABLE aggregator.agg_transaction (
+    TransactionId VARCHAR(32) NOT NULL,
+    ServiceType VARCHAR(64) NOT NULL,
+    TransactionStartTime DATETIME,
+  PRIMARY KEY(TransactionId)
+);
+
+CREATE TABLE aggregator.agg_message_results (
+    MessageId VARCHAR(32) NOT NULL,
+    TransactionId VARCHAR(32) NOT NULL,
+    MessageKey VARCHAR(1000) NOT NULL,
+    MessageOutTime DATETIME,
+    ResponseReceivedTime DATETIME,
+    ResponseMessageType VARCHAR(100),
+    ResponseMessage LONGTEXT,
+  PRIMARY KEY (MessageId)
+);
+-- end aggregator creation
+
+-- begin assigning authority
+CREATE SCHEMA assigningauthoritydb;
+
+CREATE TABLE assigningauthoritydb.aa_to_home_community_mapping (
+  id INT NOT NULL AUTO_INCREMENT,
+  assigningauthorityid VARCHAR(64) NOT NULL,
+  homecommunityid VARCHAR(64) NOT NULL,
+  PRIMARY KEY (id, assigningauthorityid)
+);
+-- end assigning authority
+
+-- begin auditrepo
+CREATE SCHEMA auditrepo;
+
+CREATE TABLE auditrepo.auditrepository (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    audit_timestamp DATETIME,
+    eventId BIGINT NOT NULL,
+    userId VARCHAR(100),
+    participationTypeCode SMALLINT,
+    participationTypeCodeRole SMALLINT,
+    participationIDTypeCode VARCHAR(100),
+    receiverPatientId VARCHAR(128),
+    senderPatientId VARCHAR(128),
+    communityId VARCHAR(255),
+    messageType VARCHAR(100) NOT NULL,
+    message LONGBLOB,
+    PRIMARY KEY (id)
+);
+-- end auditrepo
+
+-- begin docrepository
+CREATE SCHEMA docrepository;
+
+CREATE TABLE docrepository.document (
+  documentid INT NOT NULL,
+  DocumentUniqueId VARCHAR(64) NOT NULL,
+  DocumentTitle VARCHAR(128) DEFAULT NULL,
+  authorPerson VARCHAR(64) DEFAULT NULL,
+  authorInstitution VARCHAR(64) DEFAULT NULL,
+  authorRole VARCHAR(64) DEFAULT NULL,
+  authorSpecialty VARCHAR(64) DEFAULT NULL,
+  AvailabilityStatus VARCHAR(64) DEFAULT NULL,
+  ClassCode VARCHAR(64) DEFAULT NULL,
+  ClassCodeScheme VARCHAR(64) DEFAULT NULL,
+  ClassCodeDisplayName VARCHAR(64) DEFAULT NULL,
+  ConfidentialityCode VARCHAR(64) DEFAULT NULL,
+  ConfidentialityCodeScheme VARCHAR(64) DEFAULT NULL,
+  ConfidentialityCodeDisplayName VARCHAR(64) DEFAULT NULL,
+  CreationTime DATETIME DEFAULT NULL,
+  FormatCode VARCHAR(64) DEFAULT NULL,
+  FormatCodeScheme VARCHAR(64) DEFAULT NULL,
+  FormatCodeDisplayName VARCHAR(64) DEFAULT NULL,
+  PatientId VARCHAR(128) DEFAULT NULL,
+  ServiceStartTime DATETIME DEFAULT NULL,
+  ServiceStopTime DATETIME DEFAULT NULL,
+  Status VARCHAR(64) DEFAULT NULL,
+  Comments VARCHAR(256) DEFAULT NULL,
+  Hash VARCHAR(1028) DEFAULT NULL,
+  FacilityCode VARCHAR(64) DEFAULT NULL,
+  FacilityCodeScheme VARCHAR(64) DEFAULT NULL,
+  FacilityCodeDisplayName VARCHAR(64) DEFAULT NULL,
+  IntendedRecipientPerson VARCHAR(128) DEFAULT NULL,
+  IntendedRecipientOrganization VARCHAR(128) DEFAULT NULL,
+  LanguageCode VARCHAR(64) DEFAULT NULL,
+  LegalAuthenticator VARCHAR(128) DEFAULT NULL,
+  MimeType VARCHAR(32) DEFAULT NULL,
+  ParentDocumentId VARCHAR(64) DEFAULT NULL,
+  ParentDocumentRelationship VARCHAR(64) DEFAULT NULL,
+  PracticeSetting VARCHAR(64) DEFAULT NULL,
+  PracticeSettingScheme VARCHAR(64) DEFAULT NULL,
+  PracticeSettingDisplayName VARCHAR(64) DEFAULT NULL,
+  DocumentSize INT DEFAULT NULL,
+  SourcePatientId VARCHAR(128) DEFAULT NULL,
+  Pid3 VARCHAR(128) DEFAULT NULL,
+  Pid5 VARCHAR(128) DEFAULT NULL,
+  Pid7 VARCHAR(128) DEFAULT NULL,
+  Pid8 VARCHAR(128) DEFAULT NULL,
+  Pid11 VARCHAR(128) DEFAULT NULL,
+  TypeCode VARCHAR(64) DEFAULT NULL,
+  TypeCodeScheme VARCHAR(64) DEFAULT NULL,
+  TypeCodeDisplayName VARCHAR(64) DEFAULT NULL,
+  DocumentUri VARCHAR(128) DEFAULT NULL,
+  RawData LONGBLOB,
+  Persistent INT NOT NULL,
+  OnDemand TINYINT NOT NULL DEFAULT 0,
+  NewDocumentUniqueId VARCHAR(128) DEFAULT NULL,
+  NewRepositoryUniqueId VARCHAR(128) DEFAULT NULL,
+  PRIMARY KEY (documentid)
+);
+
+CREATE TABLE docrepository.eventcode (
+  eventcodeid INT NOT NULL,
+  documentid INT NOT NULL,
+  EventCode VARCHAR(64) DEFAULT NULL,
+  EventCodeScheme VARCHAR(64) DEFAULT NULL,
+  EventCodeDisplayName VARCHAR(64) DEFAULT NULL,
+  PRIMARY KEY (eventcodeid)
+);
+-- end docrepository
+
+-- begin patientcorrelationdb
+CREATE SCHEMA patientcorrelationdb;
+
+CREATE TABLE patientcorrelationdb.correlatedidentifiers (
+  correlationId INT NOT NULL AUTO_INCREMENT,
+  PatientAssigningAuthorityId VARCHAR(64) NOT NULL,
+  PatientId VARCHAR(128) NOT NULL,
+  CorrelatedPatientAssignAuthId VARCHAR(64) NOT NULL,
+  CorrelatedPatientId VARCHAR(128) NOT NULL,
+  CorrelationExpirationDate DATETIME,
+  PRIMARY KEY (correlationId)
+);
+
+CREATE TABLE patientcorrelationdb.pddeferredcorrelation (
+  Id INT NOT NULL AUTO_INCREMENT,
+  MessageId VARCHAR(100) NOT NULL,
+  AssigningAuthorityId VARCHAR(64) NOT NULL,
+  PatientId VARCHAR(128) NOT NULL,
+  CreationTime DATETIME NOT NULL,
+  PRIMARY KEY (Id)
+);
+-- end patientcorrelationdb
+
+-- begin subscription repository creation
+CREATE SCHEMA subscriptionrepository;
+
+CREATE TABLE subscriptionrepository.subscription (
+    id VARCHAR(128) NOT NULL,
+    Subscriptionid VARCHAR(128),
+    SubscribeXML LONGTEXT,
+    SubscriptionReferenceXML LONGTEXT,
+    RootTopic LONGTEXT,
+    ParentSubscriptionId VARCHAR(128),
+    ParentSubscriptionReferenceXML LONGTEXT,
+    Consumer VARCHAR(128),
+    Producer VARCHAR(128),
+    PatientId VARCHAR(128),
+    PatientAssigningAuthority VARCHAR(128),
+    Targets LONGTEXT,
+    CreationDate DATETIME,
+  PRIMARY KEY(id)
+);
+-- end subscription repository creation
+
+-- begin asyncmsgs
+CREATE SCHEMA asyncmsgs;
+
+CREATE TABLE asyncmsgs.asyncmsgrepo (
+    Id INT NOT NULL AUTO_INCREMENT,
+    MessageId VARCHAR(100) NOT NULL,
+    CreationTime DATETIME NOT NULL,
+    ResponseTime DATETIME NULL DEFAULT NULL,
+    Duration BIGINT NULL DEFAULT 0,
+    ServiceName VARCHAR(45) NULL DEFAULT NULL,
+    Direction VARCHAR(10) NULL DEFAULT NULL,
+    CommunityId VARCHAR(100) NULL DEFAULT NULL,
+    Status VARCHAR(45) NULL DEFAULT NULL,
+    ResponseType VARCHAR(10) NULL DEFAULT NULL,
+    Reserved VARCHAR(100) NULL DEFAULT NULL,
+    MsgData LONGBLOB NULL DEFAULT NULL,
+    RspData LONGBLOB NULL DEFAULT NULL,
+    AckData LONGBLOB NULL DEFAULT NULL,
+    PRIMARY KEY (Id)
+);
+-- end asyncmsgs
+
+-- begin logging
+CREATE SCHEMA logging;
+
+CREATE TABLE logging.log (
+    dt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    context VARCHAR(100) DEFAULT NULL,
+    logLevel VARCHAR(10) DEFAULT NULL,
+    class VARCHAR(500) DEFAULT NULL,
+    message LONGTEXT
+);
+-- end logging
+
+-- begin patientdb
+CREATE SCHEMA patientdb;
+
+CREATE TABLE patientdb.patient (
+  patientId BIGINT NOT NULL AUTO_INCREMENT,
+  dateOfBirth DATE NULL,
+  gender CHAR(2) NULL,
+  ssn CHAR(9) NULL,
+  PRIMARY KEY (patientId)
+);
+
+CREATE TABLE patientdb.identifier (
+  identifierId BIGINT NOT NULL AUTO_INCREMENT,
+  patientId BIGINT NOT NULL,
+  id VARCHAR(64) NULL,
+  organizationId VARCHAR(64) NULL,
+  PRIMARY KEY (identifierId),
+  CONSTRAINT fk_identifier_patient FOREIGN KEY (patientId) REFERENCES patientdb.patient (patientId)
+);
+
+CREATE TABLE patientdb.personname (
+  personnameId BIGINT NOT NULL AUTO_INCREMENT,
+  patientId BIGINT NOT NULL,
+  prefix VARCHAR(64) NULL,
+  firstName VARCHAR(64) NULL,
+  middleName VARCHAR(64) NULL,
+  lastName VARCHAR(64) NULL,
+  suffix VARCHAR(64) NULL,
+  PRIMARY KEY (personnameId),
+  CONSTRAINT fk_personname_patient FOREIGN KEY (patientId) REFERENCES patientdb.patient (patientId)
+);
+
+CREATE TABLE patientdb.address (
+  addressId BIGINT NOT NULL AUTO_INCREMENT,
+  patientId BIGINT NOT NULL,
+  street1 VARCHAR(128) NULL,
+  street2 VARCHAR(128) NULL,
+  city VARCHAR(128) NULL,
+  state VARCHAR(128) NULL,
+  postal VARCHAR(45) NULL,
+  PRIMARY KEY (addressId),
+  CONSTRAINT fk_address_patient FOREIGN KEY (patientId) REFERENCES patientdb.patient (patientId)
+);
+
+CREATE TABLE patientdb.phonenumber (
+  phonenumberId BIGINT NOT NULL AUTO_INCREMENT,
+  patientId BIGINT NOT NULL,
+  value VARCHAR(64) NULL,
+  PRIMARY KEY (phonenumberId),
+  CONSTRAINT fk_phonenumber_patient FOREIGN KEY (patientId) REFERENCES patientdb.patient (patientId)
+);
+-- end patientdb
+
+-- begin perfrepo
+CREATE SCHEMA perfrepo;
+
+CREATE TABLE perfrepo.perfrepository (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  time TIMESTAMP NULL,
+  servicetype VARCHAR(255) NULL,
+  messagetype VARCHAR(10) NULL,
+  direction VARCHAR(10) NULL,
+  communityid VARCHAR(255) NULL,
+  status INT NULL DEFAULT 0,
+  version VARCHAR(10),
+  size VARCHAR(10),
+  payloadtype VARCHAR(10),
+  correlationid VARCHAR(255),
+  othercommunityid VARCHAR(255),
+  errorcode VARCHAR(10),
+  PRIMARY KEY (id)
+);
+-- end perfrepo
+
+-- begin transrepo
+CREATE SCHEMA transrepo;
+
+CREATE TABLE transrepo.transactionrepository (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    transactionId VARCHAR(100) NOT NULL,
+    messageId VARCHAR(100) NOT NULL,
+    time TIMESTAMP NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT transID_UNIQUE UNIQUE (transactionId, messageId)
+);
+-- end transrepo
@@ -141,6 +141,8 @@ CREATE TABLE nhincuser.subscription (
     ParentSubscriptionId varchar2(128),
     ParentSubscriptionReferenceXML BLOB,
     Consumer varchar2(128),
+    ConsumerEndpoint varchar2(1024),
+    ConsumerReferenceParametersXML BLOB,
     Producer varchar2(128),
     PatientId varchar2(128),
     PatientAssigningAuthority varchar2(128),
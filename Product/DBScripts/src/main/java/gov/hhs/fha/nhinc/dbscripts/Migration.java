@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.dbscripts;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A versioned change to the CONNECT databases. The change is held in a script named
+ * V&lt;version&gt;__&lt;description&gt;.sql and is undone by the script
+ * U&lt;version&gt;__&lt;description&gt;.sql in the same directory, if there is one.
+ *
+ * @author dharley
+ */
+public class Migration {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final int version;
+    private final String description;
+    private final String script;
+    private final long checksum;
+    private final List<String> statements;
+    private final List<String> rollbackStatements;
+
+    /**
+     * @param version the version the migration brings the databases to
+     * @param description the description of the migration
+     * @param script the name of the migration script
+     * @param text the text of the migration script
+     * @param rollbackText the text of the rollback script, or null if the migration cannot be undone
+     */
+    public Migration(int version, String description, String script, String text, String rollbackText) {
+        this.version = version;
+        this.description = description;
+        this.script = script;
+        this.statements = split(text);
+        this.rollbackStatements = rollbackText == null ? null : split(rollbackText);
+
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(UTF8));
+        this.checksum = crc.getValue();
+    }
+
+    /**
+     * @return the version the migration brings the databases to
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the description of the migration, taken from the script name
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the name of the migration script
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * @return the checksum of the migration script, used to tell if it was changed after it was applied
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return the statements of the migration script, in order
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return the statements of the rollback script, in order, or null if the migration cannot be undone
+     */
+    public List<String> getRollbackStatements() {
+        return rollbackStatements;
+    }
+
+    /**
+     * Loads the migrations held in a classpath directory, either on disk or in a jar.
+     *
+     * @param location the classpath directory holding the scripts
+     * @return the migrations, ordered by version
+     * @throws IOException if the scripts cannot be read
+     */
+    public static List<Migration> load(String location) throws IOException {
+        URL url = Migration.class.getClassLoader().getResource(location);
+        if (url == null) {
+            throw new IOException("Migration directory " + location + " was not found on the classpath");
+        }
+
+        URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException ex) {
+            throw new IOException("Migration directory " + url + " is not a valid uri", ex);
+        }
+
+        if ("jar".equals(uri.getScheme())) {
+            FileSystem jar = FileSystems.newFileSystem(uri, Collections.<String, Object> emptyMap());
+            try {
+                return load(jar.getPath(location));
+            } finally {
+                jar.close();
+            }
+        }
+        return load(Paths.get(uri));
+    }
+
+    /**
+     * Loads the migrations held in a directory.
+     *
+     * @param dir the directory holding the scripts
+     * @return the migrations, ordered by version
+     * @throws IOException if the scripts cannot be read
+     */
+    public static List<Migration> load(Path dir) throws IOException {
+        List<Migration> migrations = new ArrayList<Migration>();
+        DirectoryStream<Path> scripts = Files.newDirectoryStream(dir, "V*.sql");
+        try {
+            for (Path path : scripts) {
+                String script = path.getFileName().toString();
+                Matcher matcher = SCRIPT_NAME.matcher(script);
+                if (!matcher.matches()) {
+                    throw new IOException("Migration script " + script
+                            + " is not named V<version>__<description>.sql");
+                }
+
+                Path rollback = path.resolveSibling("U" + script.substring(1));
+                String rollbackText = Files.exists(rollback) ? read(rollback) : null;
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                        script, read(path), rollbackText));
+            }
+        } finally {
+            scripts.close();
+        }
+
+        Collections.sort(migrations, new Comparator<Migration>() {
+            @Override
+            public int compare(Migration m1, Migration m2) {
+                return m1.getVersion() < m2.getVersion() ? -1 : (m1.getVersion() == m2.getVersion() ? 0 : 1);
+            }
+        });
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).getVersion() == migrations.get(i - 1).getVersion()) {
+                throw new IOException("Migration scripts " + migrations.get(i - 1).getScript() + " and "
+                        + migrations.get(i).getScript() + " have the same version");
+            }
+        }
+        return migrations;
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), UTF8);
+    }
+
+    /**
+     * Splits a script into statements. Each statement ends with a semicolon at the end of a line, and lines starting
+     * with -- are comments.
+     *
+     * @param text the text of the script
+     * @return the statements, without their semicolons
+     */
+    static List<String> split(String text) {
+        List<String> statements = new ArrayList<String>();
+        StringBuilder statement = new StringBuilder();
+        for (String line : text.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (statement.length() > 0) {
+                statement.append('\n');
+            }
+            if (trimmed.endsWith(";")) {
+                statement.append(trimmed.substring(0, trimmed.length() - 1).trim());
+                statements.add(statement.toString());
+                statement.setLength(0);
+            } else {
+                statement.append(trimmed);
+            }
+        }
+        if (statement.length() > 0) {
+            statements.add(statement.toString());
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.dbscripts;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Brings the CONNECT databases up to the latest migration, or back down to an earlier one. The applied versions are
+ * recorded in nhincdb.schema_version, so running the migrations again only applies the new ones.
+ *
+ * Index statements are written as CREATE INDEX &lt;index&gt; ON &lt;database&gt;.&lt;table&gt; (...) and
+ * DROP INDEX &lt;index&gt; ON &lt;database&gt;.&lt;table&gt;. They are skipped when the index is already there, or
+ * already gone, so a migration that stopped part way through can simply be run again. They are also skipped when the
+ * table is not installed, which lets the migrations run against a gateway that only installed some of the databases.
+ *
+ * Column statements are written as ALTER TABLE &lt;database&gt;.&lt;table&gt; ADD COLUMN &lt;column&gt; ... and
+ * ALTER TABLE &lt;database&gt;.&lt;table&gt; DROP COLUMN &lt;column&gt;, and are skipped in the same way.
+ *
+ * @author dharley
+ */
+public class MigrationRunner {
+
+    private static Log log = LogFactory.getLog(MigrationRunner.class);
+
+    /**
+     * The classpath directory the migration scripts are packaged in.
+     */
+    public static final String DEFAULT_LOCATION = "migrations";
+
+    static final String VERSION_TABLE = "nhincdb.schema_version";
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+(UNIQUE\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)\\.(\\w+)\\s*(\\(.*\\))",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DROP_INDEX = Pattern.compile("DROP\\s+INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)\\.(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ADD_COLUMN = Pattern.compile(
+            "ALTER\\s+TABLE\\s+(\\w+)\\.(\\w+)\\s+ADD\\s+COLUMN\\s+(\\w+)\\s+.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DROP_COLUMN = Pattern.compile(
+            "ALTER\\s+TABLE\\s+(\\w+)\\.(\\w+)\\s+DROP\\s+COLUMN\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private final Connection connection;
+    private final List<Migration> migrations;
+
+    /**
+     * @param connection the connection to migrate the databases with
+     * @param migrations the migrations, ordered by version
+     */
+    public MigrationRunner(Connection connection, List<Migration> migrations) {
+        this.connection = connection;
+        this.migrations = migrations;
+    }
+
+    /**
+     * Applies the migrations that have not been applied yet, in order.
+     *
+     * @return the number of migrations applied
+     * @throws SQLException if a migration fails; the migrations before it stay applied
+     */
+    public int migrate() throws SQLException {
+        createVersionTable();
+        Map<Integer, Long> applied = getAppliedVersions();
+
+        int count = 0;
+        for (Migration migration : migrations) {
+            Long checksum = applied.get(migration.getVersion());
+            if (checksum != null) {
+                if (checksum.longValue() != migration.getChecksum()) {
+                    log.warn("Migration script " + migration.getScript() + " was changed after it was applied");
+                }
+                continue;
+            }
+
+            log.info("Applying migration " + migration.getScript());
+            for (String statement : migration.getStatements()) {
+                execute(statement);
+            }
+            recordVersion(migration);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Undoes the applied migrations above a version, newest first.
+     *
+     * @param version the version to go back to, 0 to undo every migration
+     * @return the number of migrations undone
+     * @throws SQLException if a rollback fails; the migrations undone before it stay undone
+     * @throws IllegalStateException if one of the migrations has no rollback script; nothing is undone
+     */
+    public int rollback(int version) throws SQLException {
+        createVersionTable();
+        Map<Integer, Long> applied = getAppliedVersions();
+
+        List<Migration> undo = new ArrayList<Migration>();
+        for (Migration migration : migrations) {
+            if (migration.getVersion() > version && applied.containsKey(migration.getVersion())) {
+                if (migration.getRollbackStatements() == null) {
+                    throw new IllegalStateException("Migration " + migration.getScript() + " has no rollback script");
+                }
+                undo.add(migration);
+            }
+        }
+        Collections.reverse(undo);
+
+        for (Migration migration : undo) {
+            log.info("Rolling back migration " + migration.getScript());
+            for (String statement : migration.getRollbackStatements()) {
+                execute(statement);
+            }
+            removeVersion(migration);
+        }
+        return undo.size();
+    }
+
+    /**
+     * @return the checksums of the applied migrations by version
+     * @throws SQLException if the version table cannot be read
+     */
+    public Map<Integer, Long> getAppliedVersions() throws SQLException {
+        Map<Integer, Long> versions = new TreeMap<Integer, Long>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT version, checksum FROM " + VERSION_TABLE);
+            while (result.next()) {
+                versions.put(result.getInt(1), result.getLong(2));
+            }
+        } finally {
+            statement.close();
+        }
+        return versions;
+    }
+
+    private void createVersionTable() throws SQLException {
+        execute("CREATE SCHEMA IF NOT EXISTS nhincdb");
+        execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " (\n"
+                + "  version INT NOT NULL,\n"
+                + "  description VARCHAR(200) NOT NULL,\n"
+                + "  script VARCHAR(200) NOT NULL,\n"
+                + "  checksum BIGINT NOT NULL,\n"
+                + "  installed_on DATETIME NOT NULL,\n"
+                + "  PRIMARY KEY (version))");
+    }
+
+    private void recordVersion(Migration migration) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("INSERT INTO " + VERSION_TABLE
+                + " (version, description, script, checksum, installed_on) VALUES (?, ?, ?, ?, ?)");
+        try {
+            statement.setInt(1, migration.getVersion());
+            statement.setString(2, migration.getDescription());
+            statement.setString(3, migration.getScript());
+            statement.setLong(4, migration.getChecksum());
+            statement.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+            statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private void removeVersion(Migration migration) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("DELETE FROM " + VERSION_TABLE
+                + " WHERE version = ?");
+        try {
+            statement.setInt(1, migration.getVersion());
+            statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        String statement = sql;
+
+        Matcher create = CREATE_INDEX.matcher(sql);
+        Matcher drop = DROP_INDEX.matcher(sql);
+        Matcher addColumn = ADD_COLUMN.matcher(sql);
+        Matcher dropColumn = DROP_COLUMN.matcher(sql);
+        if (create.matches()) {
+            String index = create.group(2);
+            String schema = create.group(3);
+            String table = create.group(4);
+            if (!tableExists(schema, table)) {
+                log.warn("Skipping index " + index + " as " + schema + "." + table + " is not installed");
+                return;
+            }
+            if (indexExists(schema, table, index)) {
+                log.debug("Index " + index + " on " + schema + "." + table + " already exists");
+                return;
+            }
+            if (isIndexNamedBySchema()) {
+                statement = "CREATE " + (create.group(1) == null ? "" : create.group(1)) + "INDEX " + schema + "."
+                        + index + " ON " + schema + "." + table + " " + create.group(5);
+            }
+        } else if (drop.matches()) {
+            String index = drop.group(1);
+            String schema = drop.group(2);
+            String table = drop.group(3);
+            if (!tableExists(schema, table) || !indexExists(schema, table, index)) {
+                log.debug("Index " + index + " on " + schema + "." + table + " does not exist");
+                return;
+            }
+            if (isIndexNamedBySchema()) {
+                statement = "DROP INDEX " + schema + "." + index;
+            }
+        } else if (addColumn.matches()) {
+            String schema = addColumn.group(1);
+            String table = addColumn.group(2);
+            String column = addColumn.group(3);
+            if (!tableExists(schema, table)) {
+                log.warn("Skipping column " + column + " as " + schema + "." + table + " is not installed");
+                return;
+            }
+            if (columnExists(schema, table, column)) {
+                log.debug("Column " + column + " on " + schema + "." + table + " already exists");
+                return;
+            }
+        } else if (dropColumn.matches()) {
+            String schema = dropColumn.group(1);
+            String table = dropColumn.group(2);
+            String column = dropColumn.group(3);
+            if (!tableExists(schema, table) || !columnExists(schema, table, column)) {
+                log.debug("Column " + column + " on " + schema + "." + table + " does not exist");
+                return;
+            }
+        }
+
+        Statement jdbcStatement = connection.createStatement();
+        try {
+            jdbcStatement.execute(statement);
+        } finally {
+            jdbcStatement.close();
+        }
+    }
+
+    /**
+     * MySQL names an index within its table, and its databases are JDBC catalogs. Databases that support schemas, such
+     * as H2 and Oracle, name an index within its schema, so the index name is qualified with the schema of the table.
+     */
+    private boolean isIndexNamedBySchema() throws SQLException {
+        return connection.getMetaData().supportsSchemasInTableDefinitions();
+    }
+
+    private boolean tableExists(String schema, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        ResultSet tables;
+        if (isIndexNamedBySchema()) {
+            tables = metaData.getTables(null, toStoredCase(schema), toStoredCase(table), null);
+        } else {
+            tables = metaData.getTables(toStoredCase(schema), null, toStoredCase(table), null);
+        }
+        try {
+            return tables.next();
+        } finally {
+            tables.close();
+        }
+    }
+
+    private boolean indexExists(String schema, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        ResultSet indexes;
+        if (isIndexNamedBySchema()) {
+            indexes = metaData.getIndexInfo(null, toStoredCase(schema), toStoredCase(table), false, true);
+        } else {
+            indexes = metaData.getIndexInfo(toStoredCase(schema), null, toStoredCase(table), false, true);
+        }
+        try {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            indexes.close();
+        }
+    }
+
+    private boolean columnExists(String schema, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        ResultSet columns;
+        if (isIndexNamedBySchema()) {
+            columns = metaData.getColumns(null, toStoredCase(schema), toStoredCase(table), null);
+        } else {
+            columns = metaData.getColumns(toStoredCase(schema), null, toStoredCase(table), null);
+        }
+        try {
+            while (columns.next()) {
+                if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            columns.close();
+        }
+    }
+
+    private String toStoredCase(String identifier) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase();
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            return identifier.toLowerCase();
+        }
+        return identifier;
+    }
+
+    /**
+     * Runs the migrations packaged with the DBScripts against a database server.
+     *
+     * @param args the jdbc url, user and password, followed by migrate, rollback &lt;version&gt; or info
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || !isCommand(args)) {
+            System.err.println("Usage: MigrationRunner <jdbc url> <user> <password> "
+                    + "[migrate | rollback <version> | info]");
+            System.exit(1);
+        }
+
+        try {
+            Connection connection = DriverManager.getConnection(args[0], args[1], args[2]);
+            try {
+                MigrationRunner runner = new MigrationRunner(connection, Migration.load(DEFAULT_LOCATION));
+                String command = args.length > 3 ? args[3] : "migrate";
+                if ("rollback".equals(command)) {
+                    System.out.println("Rolled back " + runner.rollback(Integer.parseInt(args[4]))
+                            + " migration(s)");
+                } else if ("migrate".equals(command)) {
+                    System.out.println("Applied " + runner.migrate() + " migration(s)");
+                }
+                runner.createVersionTable();
+                System.out.println("Applied versions: " + runner.getAppliedVersions().keySet());
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            log.error("Migration failed", ex);
+            System.exit(1);
+        } catch (IOException ex) {
+            log.error("Unable to load the migration scripts", ex);
+            System.exit(1);
+        }
+    }
+
+    private static boolean isCommand(String[] args) {
+        if (args.length == 3) {
+            return true;
+        }
+        if ("rollback".equals(args[3])) {
+            return args.length == 5 && args[4].matches("\\d+");
+        }
+        return args.length == 4 && ("migrate".equals(args[3]) || "info".equals(args[3]));
+    }
+}
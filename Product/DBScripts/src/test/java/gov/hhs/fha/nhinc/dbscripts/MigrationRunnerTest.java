@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.dbscripts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.tools.RunScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Applies the migrations to the nhincdb schemas in an embedded database. The plans of the queries the DAOs generate
+ * are checked by DaoQueryPlanTest in the LoadTest module, which has the DAOs on its classpath.
+ *
+ * @author dharley
+ */
+public class MigrationRunnerTest {
+
+    private static final String SCHEMA_SCRIPT = "/nhincdb/nhincdb_h2.sql";
+
+    private Connection connection;
+    private List<Migration> migrations;
+    private MigrationRunner runner;
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migrations;MODE=MySQL", "sa", "");
+        InputStream in = MigrationRunnerTest.class.getResourceAsStream(SCHEMA_SCRIPT);
+        try {
+            RunScript.execute(connection, new InputStreamReader(in, "UTF-8"));
+        } finally {
+            in.close();
+        }
+        migrations = Migration.load(MigrationRunner.DEFAULT_LOCATION);
+        runner = new MigrationRunner(connection, migrations);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        // closing the only connection drops the in-memory database
+        connection.close();
+    }
+
+    @Test
+    public void testMigrateAppliesEachMigrationOnce() throws SQLException {
+        assertEquals(migrations.size(), runner.migrate());
+        assertEquals(getVersions(), new ArrayList<Integer>(runner.getAppliedVersions().keySet()));
+
+        assertEquals(0, runner.migrate());
+        assertEquals(getVersions(), new ArrayList<Integer>(runner.getAppliedVersions().keySet()));
+    }
+
+    @Test
+    public void testMigrateCompletesPartlyAppliedMigration() throws SQLException {
+        execute("CREATE INDEX asyncmsgs.MessageId_IDX ON asyncmsgs.asyncmsgrepo (MessageId)");
+
+        assertEquals(migrations.size(), runner.migrate());
+        assertFalse(isTableScan("SELECT * FROM asyncmsgs.asyncmsgrepo WHERE CreationTime < '2012-06-01 00:00:00'"));
+    }
+
+    @Test
+    public void testMigrateSkipsTablesThatAreNotInstalled() throws SQLException {
+        execute("DROP TABLE aggregator.agg_message_results");
+
+        assertEquals(migrations.size(), runner.migrate());
+        assertFalse(isTableScan("SELECT * FROM aggregator.agg_transaction"
+                + " WHERE TransactionStartTime <= '2012-06-01 00:00:00'"));
+    }
+
+    @Test
+    public void testRollbackUndoesMigrations() throws SQLException {
+        String query = "SELECT * FROM auditrepo.auditrepository WHERE receiverPatientId = 'p1'";
+        runner.migrate();
+        assertFalse(isTableScan(query));
+
+        assertEquals(migrations.size(), runner.rollback(0));
+        assertTrue(runner.getAppliedVersions().isEmpty());
+        assertTrue(isTableScan(query));
+
+        assertEquals(0, runner.rollback(0));
+        assertEquals(migrations.size(), runner.migrate());
+        assertFalse(isTableScan(query));
+    }
+
+    @Test
+    public void testMigrateAddsColumns() throws SQLException {
+        assertFalse(columnExists("subscriptionrepository", "subscription", "ConsumerEndpoint"));
+
+        runner.migrate();
+        assertTrue(columnExists("subscriptionrepository", "subscription", "ConsumerEndpoint"));
+        assertTrue(columnExists("subscriptionrepository", "subscription", "ConsumerReferenceParametersXML"));
+        assertFalse(isTableScan("SELECT * FROM subscriptionrepository.subscription WHERE Subscriptionid = 's1'"));
+        assertFalse(isTableScan("SELECT * FROM transrepo.transactionrepository WHERE messageId = 'm1'"));
+    }
+
+    @Test
+    public void testMigrateKeepsColumnsThatExist() throws SQLException {
+        execute("ALTER TABLE subscriptionrepository.subscription ADD COLUMN ConsumerEndpoint VARCHAR(1024)");
+
+        assertEquals(migrations.size(), runner.migrate());
+        assertTrue(columnExists("subscriptionrepository", "subscription", "ConsumerReferenceParametersXML"));
+    }
+
+    @Test
+    public void testRollbackDropsColumns() throws SQLException {
+        runner.migrate();
+
+        runner.rollback(0);
+        assertFalse(columnExists("subscriptionrepository", "subscription", "ConsumerEndpoint"));
+        assertFalse(columnExists("subscriptionrepository", "subscription", "ConsumerReferenceParametersXML"));
+
+        execute("DROP TABLE subscriptionrepository.subscription");
+        assertEquals(migrations.size(), runner.migrate());
+        assertEquals(migrations.size(), runner.rollback(0));
+    }
+
+    private boolean columnExists(String schema, String table, String column) throws SQLException {
+        ResultSet columns = connection.getMetaData().getColumns(null, schema.toUpperCase(), table.toUpperCase(),
+                column.toUpperCase());
+        try {
+            return columns.next();
+        } finally {
+            columns.close();
+        }
+    }
+
+    private boolean isTableScan(String query) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet plan = statement.executeQuery("EXPLAIN " + query);
+            StringBuilder text = new StringBuilder();
+            while (plan.next()) {
+                text.append(plan.getString(1));
+            }
+            return text.indexOf(".tableScan") >= 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private List<Integer> getVersions() {
+        List<Integer> versions = new ArrayList<Integer>();
+        for (Migration migration : migrations) {
+            versions.add(migration.getVersion());
+        }
+        return versions;
+    }
+}
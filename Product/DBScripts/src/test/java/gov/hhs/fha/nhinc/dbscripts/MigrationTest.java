@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.dbscripts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class MigrationTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("migrations");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    @Test
+    public void testSplit() {
+        List<String> statements = Migration.split("-- header\r\n\r\n"
+                + "CREATE INDEX a_IDX ON db.a (a);\r\n"
+                + "-- comment\r\n"
+                + "CREATE INDEX b_IDX\r\n    ON db.b (b) ;\r\n"
+                + "DROP INDEX c_IDX ON db.c");
+
+        assertEquals(Arrays.asList("CREATE INDEX a_IDX ON db.a (a)", "CREATE INDEX b_IDX\nON db.b (b)",
+                "DROP INDEX c_IDX ON db.c"), statements);
+    }
+
+    @Test
+    public void testLoadOrdersByVersion() throws IOException {
+        write("V010__later_change.sql", "CREATE INDEX b_IDX ON db.b (b);\n");
+        write("V002__first_change.sql", "CREATE INDEX a_IDX ON db.a (a);\n");
+        write("U002__first_change.sql", "DROP INDEX a_IDX ON db.a;\n");
+        write("ReadMe.txt", "not a migration");
+
+        List<Migration> migrations = Migration.load(dir);
+
+        assertEquals(2, migrations.size());
+        Migration first = migrations.get(0);
+        assertEquals(2, first.getVersion());
+        assertEquals("first change", first.getDescription());
+        assertEquals("V002__first_change.sql", first.getScript());
+        assertEquals(Arrays.asList("CREATE INDEX a_IDX ON db.a (a)"), first.getStatements());
+        assertEquals(Arrays.asList("DROP INDEX a_IDX ON db.a"), first.getRollbackStatements());
+        assertEquals(10, migrations.get(1).getVersion());
+        assertNull(migrations.get(1).getRollbackStatements());
+    }
+
+    @Test
+    public void testLoadRejectsDuplicateVersions() throws IOException {
+        write("V001__one.sql", "SELECT 1;\n");
+        write("V1__other.sql", "SELECT 1;\n");
+
+        try {
+            Migration.load(dir);
+            fail("Expected the duplicate version to be rejected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("same version"));
+        }
+    }
+
+    @Test
+    public void testLoadRejectsBadlyNamedScripts() throws IOException {
+        write("V001-missing-separator.sql", "SELECT 1;\n");
+
+        try {
+            Migration.load(dir);
+            fail("Expected the script name to be rejected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("V001-missing-separator.sql"));
+        }
+    }
+
+    @Test
+    public void testChecksumTracksScriptText() {
+        Migration migration = new Migration(1, "one", "V001__one.sql", "SELECT 1;\n", null);
+
+        assertEquals(migration.getChecksum(),
+                new Migration(1, "one", "V001__one.sql", "SELECT 1;\n", null).getChecksum());
+        assertFalse(migration.getChecksum() == new Migration(1, "one", "V001__one.sql", "SELECT 2;\n", null)
+                .getChecksum());
+    }
+
+    @Test
+    public void testPackagedMigrationsCanBeUndone() throws IOException {
+        List<Migration> migrations = Migration.load(MigrationRunner.DEFAULT_LOCATION);
+
+        assertFalse(migrations.isEmpty());
+        for (Migration migration : migrations) {
+            assertTrue(migration.getScript() + " has no rollback script", migration.getRollbackStatements() != null);
+        }
+    }
+
+    private void write(String name, String text) throws IOException {
+        Files.write(dir.resolve(name), text.getBytes(UTF8));
+    }
+}
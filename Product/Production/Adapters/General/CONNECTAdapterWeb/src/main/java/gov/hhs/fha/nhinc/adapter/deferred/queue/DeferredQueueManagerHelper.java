@@ -27,6 +27,7 @@
 package gov.hhs.fha.nhinc.adapter.deferred.queue;
 
 import gov.hhs.fha.nhinc.asyncmsgs.dao.AsyncMsgRecordDao;
+import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgDataCodec;
 import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgRecord;
 import gov.hhs.fha.nhinc.common.deferredqueuemanager.DeferredQueueManagerForceProcessRequestType;
 import gov.hhs.fha.nhinc.common.deferredqueuemanager.DeferredQueueManagerForceProcessResponseType;
@@ -430,18 +431,15 @@ public class DeferredQueueManagerHelper {
                 response.setResponseType(asyncResponse.get(0).getResponseType());
 
                 if (asyncResponse.get(0).getMsgData() != null && asyncResponse.get(0).getMsgData().length() > 0) {
-                    Long msgLength = asyncResponse.get(0).getMsgData().length();
-                    response.setMsgData(asyncResponse.get(0).getMsgData().getBytes(1, msgLength.intValue()));
+                    response.setMsgData(AsyncMsgDataCodec.decode(asyncResponse.get(0).getMsgData()));
                 }
 
                 if (asyncResponse.get(0).getRspData() != null && asyncResponse.get(0).getRspData().length() > 0) {
-                    Long rspLength = asyncResponse.get(0).getRspData().length();
-                    response.setRspData(asyncResponse.get(0).getRspData().getBytes(1, rspLength.intValue()));
+                    response.setRspData(AsyncMsgDataCodec.decode(asyncResponse.get(0).getRspData()));
                 }
 
                 if (asyncResponse.get(0).getAckData() != null && asyncResponse.get(0).getAckData().length() > 0) {
-                    Long ackLength = asyncResponse.get(0).getAckData().length();
-                    response.setAckData(asyncResponse.get(0).getAckData().getBytes(1, ackLength.intValue()));
+                    response.setAckData(AsyncMsgDataCodec.decode(asyncResponse.get(0).getAckData()));
                 }
             }
         } catch (Exception e) {
@@ -45,6 +45,7 @@ import gov.hhs.fha.nhinc.adapter.cppgui.servicefacade.AdapterPIPFacade;
 import gov.hhs.fha.nhinc.adapter.cppgui.ConsumerPreferencesSearchCriteria;
 import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.PatientPreferencesVO;
 import gov.hhs.fha.nhinc.adapter.cppgui.PatientSearchCriteria;
+import gov.hhs.fha.nhinc.adapter.cppgui.PatientSearchResults;
 import gov.hhs.fha.nhinc.adapter.cppgui.servicefacade.PatientSearchFacade;
 import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.PatientVO;
 import gov.hhs.fha.nhinc.adapter.cppgui.UserSession;
@@ -375,6 +376,42 @@ public class SearchPatient extends AbstractPageBean {
         this.savePreferences = b;
     }
 
+    private DropDown sortBy = new DropDown();
+
+    public DropDown getSortBy() {
+        return sortBy;
+    }
+
+    public void setSortBy(DropDown dd) {
+        this.sortBy = dd;
+    }
+
+    private StaticText pageInfo = new StaticText();
+
+    public StaticText getPageInfo() {
+        return pageInfo;
+    }
+
+    public void setPageInfo(StaticText st) {
+        this.pageInfo = st;
+    }
+
+    private SingleSelectOptionsList sortByDefaultOptions = new SingleSelectOptionsList();
+
+    public SingleSelectOptionsList getSortByDefaultOptions() {
+        Option[] options = new Option[] { new Option(CPPConstants.SORT_BY_LAST_NAME, "Last Name"),
+                new Option(CPPConstants.SORT_BY_FIRST_NAME, "First Name"),
+                new Option(CPPConstants.SORT_BY_PATIENT_ID, "Patient Id"),
+                new Option(CPPConstants.SORT_BY_CONSENT, "Consent"),
+                new Option(CPPConstants.SORT_BY_LAST_MODIFIED, "Last Modified") };
+        sortByDefaultOptions.setOptions(options);
+        return sortByDefaultOptions;
+    }
+
+    public void setSortByDefaultOptions(SingleSelectOptionsList ssol) {
+        this.sortByDefaultOptions = ssol;
+    }
+
     // </editor-fold>
     /**
      * <p>
@@ -486,11 +523,63 @@ public class SearchPatient extends AbstractPageBean {
             log.info("CPP - searchResults: null");
         }
         UserSession userSession = (UserSession) getBean("UserSession");
-        userSession.setSearchResults(searchResults);
+        userSession.setPatientSearchResults(new PatientSearchResults(searchResults));
+        displaySearchResultsPage(0);
+
+        return null;
+    }
 
+    public String previousPage_action() {
+        this.errorMessages.setText("");
+        displaySearchResultsPage(getSearchResultsPageNumber() - 1);
         return null;
     }
 
+    public String nextPage_action() {
+        this.errorMessages.setText("");
+        displaySearchResultsPage(getSearchResultsPageNumber() + 1);
+        return null;
+    }
+
+    public void sortBy_processValueChange(ValueChangeEvent vce) {
+        this.errorMessages.setText("");
+        displaySearchResultsPage(0);
+    }
+
+    private int getSearchResultsPageNumber() {
+        UserSession userSession = (UserSession) getBean("UserSession");
+        PatientSearchResults results = userSession.getPatientSearchResults();
+        return results != null ? results.getPageNumber() : 0;
+    }
+
+    /**
+     * Displays a page of the search results in the order selected. The most recently modified consents are listed
+     * first; the other columns are sorted in ascending order.
+     * 
+     * @param pageNumber the number of the page, starting at 0
+     */
+    private void displaySearchResultsPage(int pageNumber) {
+        UserSession userSession = (UserSession) getBean("UserSession");
+        PatientSearchResults results = userSession.getPatientSearchResults();
+        if (results == null) {
+            return;
+        }
+
+        String sortColumn = CPPConstants.SORT_BY_LAST_NAME;
+        if (sortBy.getSelected() != null) {
+            sortColumn = sortBy.getSelected().toString();
+        }
+        boolean ascending = !CPPConstants.SORT_BY_LAST_MODIFIED.equals(sortColumn);
+
+        PatientSearchFacade patientSearchFacade = new PatientSearchFacade();
+        List<PatientVO> page = patientSearchFacade.getPatientPage(results, pageNumber,
+                CPPConstants.SEARCH_RESULTS_PAGE_SIZE, sortColumn, ascending);
+        userSession.setSearchResults(page);
+
+        this.pageInfo.setText("Page " + (results.getPageNumber() + 1) + " of "
+                + results.getPageCount(CPPConstants.SEARCH_RESULTS_PAGE_SIZE) + " (" + results.size() + " patients)");
+    }
+
     private PatientSearchCriteria createPatientSearchCriteria() {
         PatientSearchCriteria criteria = new PatientSearchCriteria();
 
@@ -40,5 +40,13 @@ public class CPPConstants {
     public static final String USER_ROLE_PROPERTIES = "UserRoleOptions";
     public static final String PURPOSE_OF_USE_PROPERTIES = "PurposeOfUseOptions";
     public static final String CONFIDENTIALITY_CODE_PROPERTIES = "ConfidentialityCodeOptions";
+    public static final int SEARCH_RESULTS_PAGE_SIZE = 25;
+    public static final String SORT_BY_LAST_NAME = "lastName";
+    public static final String SORT_BY_FIRST_NAME = "firstName";
+    public static final String SORT_BY_PATIENT_ID = "patientID";
+    public static final String SORT_BY_CONSENT = "consent";
+    public static final String SORT_BY_LAST_MODIFIED = "lastModified";
+    public static final String OPT_IN = "Opt-In";
+    public static final String OPT_OUT = "Opt-Out";
 
 }
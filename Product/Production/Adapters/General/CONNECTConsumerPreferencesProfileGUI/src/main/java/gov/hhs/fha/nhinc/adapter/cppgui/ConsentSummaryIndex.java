@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.adapter.cppgui;
+
+import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.ConsentSummaryVO;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the opt-in setting of the patient consents stored or read through the GUI, so that the search results can show
+ * them without retrieving the consent documents from the PIP. The full consent is only retrieved when a patient is
+ * opened.
+ * <p>
+ * Every change is appended to ConsentSummaryIndex.journal in the configuration directory, which is read back when the
+ * GUI starts, so the summaries survive a restart. The PIP cannot list the consents it holds, so a consent that was
+ * never stored or read through the GUI has no summary until it is opened.
+ *
+ * @author dharley
+ */
+public class ConsentSummaryIndex {
+
+    private static Log log = LogFactory.getLog(ConsentSummaryIndex.class);
+
+    static final String JOURNAL_FILE = "ConsentSummaryIndex.journal";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = "\t";
+
+    private static ConsentSummaryIndex instance;
+
+    private final Map<String, ConsentSummaryVO> summaries = new ConcurrentHashMap<String, ConsentSummaryVO>();
+    private final File journal;
+
+    /**
+     * Creates an index that is only kept in memory.
+     */
+    public ConsentSummaryIndex() {
+        this.journal = null;
+    }
+
+    /**
+     * Creates an index backed by a journal, loading the summaries recorded in it.
+     *
+     * @param journal the journal file
+     */
+    ConsentSummaryIndex(File journal) {
+        this.journal = journal;
+        load();
+    }
+
+    public static synchronized ConsentSummaryIndex getInstance() {
+        if (instance == null) {
+            String propertyDir = PropertyAccessor.getInstance().getPropertyFileLocation();
+            if (propertyDir == null || propertyDir.trim().length() == 0) {
+                log.warn("The configuration directory is not set, consent summaries are only kept in memory");
+                instance = new ConsentSummaryIndex();
+            } else {
+                instance = new ConsentSummaryIndex(new File(propertyDir, JOURNAL_FILE));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Records the opt-in setting of a consent that was stored.
+     *
+     * @param patientID the patient id
+     * @param assigningAuthorityID the assigning authority of the patient id
+     * @param optIn the opt-in setting stored
+     * @param lastModified the time the consent was stored
+     */
+    public synchronized void consentStored(String patientID, String assigningAuthorityID, Boolean optIn,
+            Date lastModified) {
+        if (patientID != null && assigningAuthorityID != null) {
+            ConsentSummaryVO summary = new ConsentSummaryVO(patientID, assigningAuthorityID, optIn, lastModified);
+            summaries.put(createKey(patientID, assigningAuthorityID), summary);
+            append(summary);
+        }
+    }
+
+    /**
+     * Records the opt-in setting of a consent that was retrieved, keeping the time it was last stored if known.
+     *
+     * @param patientID the patient id
+     * @param assigningAuthorityID the assigning authority of the patient id
+     * @param optIn the opt-in setting retrieved
+     */
+    public synchronized void consentRetrieved(String patientID, String assigningAuthorityID, Boolean optIn) {
+        ConsentSummaryVO summary = getSummary(patientID, assigningAuthorityID);
+        if (summary != null && (optIn == null ? summary.getOptIn() == null : optIn.equals(summary.getOptIn()))) {
+            return;
+        }
+        consentStored(patientID, assigningAuthorityID, optIn, summary != null ? summary.getLastModified() : null);
+    }
+
+    /**
+     * @param patientID the patient id
+     * @param assigningAuthorityID the assigning authority of the patient id
+     * @return the summary of the patient's consent, or null if it is not known
+     */
+    public ConsentSummaryVO getSummary(String patientID, String assigningAuthorityID) {
+        if (patientID == null || assigningAuthorityID == null) {
+            return null;
+        }
+        return summaries.get(createKey(patientID, assigningAuthorityID));
+    }
+
+    public int size() {
+        return summaries.size();
+    }
+
+    /**
+     * Drops every summary, from memory and from the journal.
+     */
+    public synchronized void clear() {
+        summaries.clear();
+        if (journal != null && journal.exists() && !journal.delete()) {
+            log.warn("Failed to delete " + journal.getAbsolutePath());
+        }
+    }
+
+    private synchronized void load() {
+        if (!journal.exists()) {
+            return;
+        }
+        int records = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    ConsentSummaryVO summary = parse(line);
+                    if (summary != null) {
+                        summaries.put(createKey(summary.getPatientID(), summary.getAssigningAuthorityID()), summary);
+                        records++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to read consent summaries from " + journal.getAbsolutePath() + ": " + ex.getMessage(),
+                    ex);
+            return;
+        }
+        log.info("Loaded " + summaries.size() + " consent summaries from " + journal.getAbsolutePath());
+        if (records > 2 * summaries.size()) {
+            compact();
+        }
+    }
+
+    private synchronized void append(ConsentSummaryVO summary) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            FileOutputStream out = new FileOutputStream(journal, true);
+            try {
+                out.write((format(summary) + "\n").getBytes(UTF8));
+            } finally {
+                out.close();
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to record the consent summary of patient " + summary.getPatientID() + " in "
+                    + journal.getAbsolutePath() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Rewrites the journal with one record per summary.
+     */
+    private void compact() {
+        File temp = new File(journal.getParentFile(), journal.getName() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                for (ConsentSummaryVO summary : summaries.values()) {
+                    out.write((format(summary) + "\n").getBytes(UTF8));
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Failed to compact " + journal.getAbsolutePath() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static String format(ConsentSummaryVO summary) {
+        return summary.getPatientID() + SEPARATOR + summary.getAssigningAuthorityID() + SEPARATOR
+                + (summary.getOptIn() == null ? "" : summary.getOptIn().toString()) + SEPARATOR
+                + (summary.getLastModified() == null ? "" : String.valueOf(summary.getLastModified().getTime()));
+    }
+
+    private ConsentSummaryVO parse(String line) {
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != 4 || fields[0].length() == 0 || fields[1].length() == 0) {
+            return null;
+        }
+        try {
+            Boolean optIn = fields[2].length() == 0 ? null : Boolean.valueOf(fields[2]);
+            Date lastModified = fields[3].length() == 0 ? null : new Date(Long.parseLong(fields[3]));
+            return new ConsentSummaryVO(fields[0], fields[1], optIn, lastModified);
+        } catch (NumberFormatException ex) {
+            log.debug("Skipping a bad consent summary record in " + journal.getAbsolutePath());
+            return null;
+        }
+    }
+
+    private static String createKey(String patientID, String assigningAuthorityID) {
+        return patientID + "^^^&" + assigningAuthorityID;
+    }
+}
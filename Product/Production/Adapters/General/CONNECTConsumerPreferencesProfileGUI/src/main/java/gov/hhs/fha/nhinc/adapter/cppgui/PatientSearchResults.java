@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.adapter.cppgui;
+
+import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.PatientVO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The patients found by a search, in the order they were last sorted in, with the page being displayed. Only the page
+ * is displayed, and the consent summaries are only looked up for the patients of the page.
+ *
+ * @author dharley
+ */
+public class PatientSearchResults {
+    private final List<PatientVO> patients;
+    private String sortColumn;
+    private boolean ascending = true;
+    private int pageNumber;
+
+    public PatientSearchResults(List<PatientVO> patients) {
+        this.patients = patients != null ? new ArrayList<PatientVO>(patients) : new ArrayList<PatientVO>();
+    }
+
+    /**
+     * @return the patients found, in the order of the last sort
+     */
+    public List<PatientVO> getPatients() {
+        return patients;
+    }
+
+    public int size() {
+        return patients.size();
+    }
+
+    /**
+     * @param pageSize the number of patients in a page
+     * @return the number of pages, at least one
+     */
+    public int getPageCount(int pageSize) {
+        return Math.max(1, (patients.size() + pageSize - 1) / pageSize);
+    }
+
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public void setSortOrder(String sortColumn, boolean ascending) {
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public void setPageNumber(int pageNumber) {
+        this.pageNumber = pageNumber;
+    }
+}
@@ -176,6 +176,19 @@ public class UserSession extends AbstractSessionBean {
         this.searchResults = searchResults;
     }
 
+    private PatientSearchResults patientSearchResults;
+
+    /**
+     * @return all of the patients found by the last search; the search results are the page displayed
+     */
+    public PatientSearchResults getPatientSearchResults() {
+        return patientSearchResults;
+    }
+
+    public void setPatientSearchResults(PatientSearchResults patientSearchResults) {
+        this.patientSearchResults = patientSearchResults;
+    }
+
     private PatientVO patient;
 
     public PatientVO getPatient() {
@@ -42,6 +42,7 @@ import gov.hhs.fha.nhinc.common.nhinccommonadapter.StorePtConsentResponseType;
 import gov.hhs.fha.nhinc.policyengine.adapter.pip.proxy.AdapterPIPProxy;
 import gov.hhs.fha.nhinc.policyengine.adapter.pip.proxy.AdapterPIPProxyObjectFactory;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -65,6 +66,12 @@ public class AdapterPIPFacade {
 
         if (consentResponse != null) {
             log.debug("Save Consumer PReference Status: " + consentResponse.getStatus());
+            if (CPPConstants.SUCCESS.equalsIgnoreCase(consentResponse.getStatus())
+                    && consentRequest.getPatientPreferences() != null) {
+                PatientPreferencesType preferences = consentRequest.getPatientPreferences();
+                ConsentSummaryIndex.getInstance().consentStored(preferences.getPatientId(),
+                        preferences.getAssigningAuthority(), preferences.isOptIn(), new Date());
+            }
             return consentResponse.getStatus();
         }
 
@@ -102,7 +109,12 @@ public class AdapterPIPFacade {
         RetrievePtConsentByPtIdResponseType consentResp = adapterPIPProxy
                 .retrievePtConsentByPtId(consentReq, assertion);
 
-        return convertConsentResponseToPatientPreferences(consentResp);
+        PatientPreferencesVO patientPreferences = convertConsentResponseToPatientPreferences(consentResp);
+        if (consentResp != null && consentResp.getPatientPreferences() != null) {
+            ConsentSummaryIndex.getInstance().consentRetrieved(criteria.getPatientID(),
+                    criteria.getAssigningAuthorityID(), patientPreferences.getOptIn());
+        }
+        return patientPreferences;
     }
 
     private PatientPreferencesVO convertConsentResponseToPatientPreferences(
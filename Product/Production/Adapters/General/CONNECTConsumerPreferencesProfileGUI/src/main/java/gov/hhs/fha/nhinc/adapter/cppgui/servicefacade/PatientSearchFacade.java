@@ -27,7 +27,10 @@
 package gov.hhs.fha.nhinc.adapter.cppgui.servicefacade;
 
 import gov.hhs.fha.nhinc.adapter.cppgui.AssertionCreator;
+import gov.hhs.fha.nhinc.adapter.cppgui.CPPConstants;
+import gov.hhs.fha.nhinc.adapter.cppgui.ConsentSummaryIndex;
 import gov.hhs.fha.nhinc.adapter.cppgui.PatientSearchCriteria;
+import gov.hhs.fha.nhinc.adapter.cppgui.PatientSearchResults;
 import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.PatientVO;
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
 import gov.hhs.fha.nhinc.common.nhinccommon.PersonNameType;
@@ -43,6 +46,8 @@ import gov.hhs.fha.nhinc.transform.subdisc.HL7Extractors;
 import gov.hhs.fha.nhinc.transform.subdisc.HL7PRPA201305Transforms;
 import gov.hhs.fha.nhinc.transform.subdisc.HL7PatientTransforms;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -86,6 +91,52 @@ public class PatientSearchFacade {
         return patientVOs;
     }
 
+    /**
+     * Returns a page of the search results, in the given order. The results are only sorted again when the order
+     * changes, and the consent summaries are looked up for the patients of the page, or for all of the patients when
+     * they are sorted by their consent.
+     * 
+     * @param results the search results
+     * @param pageNumber the number of the page, starting at 0; it is limited to the last page
+     * @param pageSize the number of patients in a page
+     * @param sortColumn the CPPConstants.SORT_BY column to sort on, or null to keep the order of the search
+     * @param ascending true to sort in ascending order
+     * @return the patients of the page
+     */
+    public List<PatientVO> getPatientPage(PatientSearchResults results, int pageNumber, int pageSize,
+            String sortColumn, boolean ascending) {
+        List<PatientVO> patients = results.getPatients();
+        ConsentSummaryIndex index = getConsentSummaryIndex();
+
+        if (sortColumn != null
+                && (!sortColumn.equals(results.getSortColumn()) || ascending != results.isAscending())) {
+            if (CPPConstants.SORT_BY_CONSENT.equals(sortColumn)
+                    || CPPConstants.SORT_BY_LAST_MODIFIED.equals(sortColumn)) {
+                for (PatientVO patient : patients) {
+                    patient.setConsentSummary(index.getSummary(patient.getPatientID(),
+                            patient.getAssigningAuthorityID()));
+                }
+            }
+            Collections.sort(patients, new PatientComparator(sortColumn, ascending));
+            results.setSortOrder(sortColumn, ascending);
+        }
+
+        int page = Math.max(0, Math.min(pageNumber, results.getPageCount(pageSize) - 1));
+        results.setPageNumber(page);
+        int fromIndex = page * pageSize;
+        int toIndex = Math.min(fromIndex + pageSize, patients.size());
+
+        List<PatientVO> pagePatients = new ArrayList<PatientVO>(patients.subList(fromIndex, toIndex));
+        for (PatientVO patient : pagePatients) {
+            patient.setConsentSummary(index.getSummary(patient.getPatientID(), patient.getAssigningAuthorityID()));
+        }
+        return pagePatients;
+    }
+
+    protected ConsentSummaryIndex getConsentSummaryIndex() {
+        return ConsentSummaryIndex.getInstance();
+    }
+
     /**
      * 
      * @param patientSearchCriteria
@@ -209,4 +260,44 @@ public class PatientSearchFacade {
 
         return patientVOs;
     }
+
+    /**
+     * Orders the patients on a column, with the patients missing the column last.
+     */
+    private static class PatientComparator implements Comparator<PatientVO> {
+        private final String sortColumn;
+        private final int order;
+
+        PatientComparator(String sortColumn, boolean ascending) {
+            this.sortColumn = sortColumn;
+            this.order = ascending ? 1 : -1;
+        }
+
+        @Override
+        public int compare(PatientVO patient1, PatientVO patient2) {
+            if (CPPConstants.SORT_BY_FIRST_NAME.equals(sortColumn)) {
+                return compareValues(patient1.getFirstName(), patient2.getFirstName());
+            } else if (CPPConstants.SORT_BY_PATIENT_ID.equals(sortColumn)) {
+                return compareValues(patient1.getPatientID(), patient2.getPatientID());
+            } else if (CPPConstants.SORT_BY_CONSENT.equals(sortColumn)) {
+                return compareValues(patient1.getConsentStatus(), patient2.getConsentStatus());
+            } else if (CPPConstants.SORT_BY_LAST_MODIFIED.equals(sortColumn)) {
+                return compareValues(patient1.getConsentLastModified(), patient2.getConsentLastModified());
+            }
+            int result = compareValues(patient1.getLastName(), patient2.getLastName());
+            return result != 0 ? result : compareValues(patient1.getFirstName(), patient2.getFirstName());
+        }
+
+        private <T extends Comparable<T>> int compareValues(T value1, T value2) {
+            boolean missing1 = value1 == null || "".equals(value1);
+            boolean missing2 = value2 == null || "".equals(value2);
+            if (missing1 || missing2) {
+                return missing1 == missing2 ? 0 : (missing1 ? 1 : -1);
+            }
+            if (value1 instanceof String) {
+                return order * ((String) value1).compareToIgnoreCase((String) value2);
+            }
+            return order * value1.compareTo(value2);
+        }
+    }
 }
@@ -26,7 +26,9 @@
  */
 package gov.hhs.fha.nhinc.adapter.cppgui.valueobject;
 
+import gov.hhs.fha.nhinc.adapter.cppgui.CPPConstants;
 import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.PatientPreferencesVO;
+import java.util.Date;
 
 /**
  * 
@@ -40,6 +42,7 @@ public class PatientVO {
     private String organizationID;
     private String assigningAuthorityID;
     private PatientPreferencesVO patientPreferences;
+    private ConsentSummaryVO consentSummary;
 
     public PatientPreferencesVO getPatientPreferences() {
         return patientPreferences;
@@ -97,4 +100,25 @@ public class PatientVO {
         this.patientID = patientID;
     }
 
+    public ConsentSummaryVO getConsentSummary() {
+        return consentSummary;
+    }
+
+    public void setConsentSummary(ConsentSummaryVO consentSummary) {
+        this.consentSummary = consentSummary;
+    }
+
+    /**
+     * @return Opt-In or Opt-Out from the consent summary, or an empty string if the consent is not known
+     */
+    public String getConsentStatus() {
+        if (consentSummary == null || consentSummary.getOptIn() == null) {
+            return "";
+        }
+        return consentSummary.getOptIn().booleanValue() ? CPPConstants.OPT_IN : CPPConstants.OPT_OUT;
+    }
+
+    public Date getConsentLastModified() {
+        return consentSummary != null ? consentSummary.getLastModified() : null;
+    }
 }
@@ -40,8 +40,18 @@
                                         style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 95px; top: 204px; position: absolute; width: 72px" text="Reset"/>
                                     <webuijsf:button actionExpression="#{SearchPatient.searchPatientButton_action}" id="searchPatientButton"
                                         style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 191px; top: 204px; position: absolute; width: 72px" text="Search"/>
+                                    <webuijsf:label id="sortByLabel"
+                                        style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 312px; top: 208px; position: absolute" text="Sort by:"/>
+                                    <webuijsf:dropDown binding="#{SearchPatient.sortBy}" id="sortBy" items="#{SearchPatient.sortByDefaultOptions.options}" submitForm="true"
+                                        style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 360px; top: 204px; position: absolute" valueChangeListenerExpression="#{SearchPatient.sortBy_processValueChange}"/>
+                                    <webuijsf:button actionExpression="#{SearchPatient.previousPage_action}" id="previousPageButton"
+                                        style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 48px; top: 240px; position: absolute; width: 72px" text="Previous"/>
+                                    <webuijsf:button actionExpression="#{SearchPatient.nextPage_action}" id="nextPageButton"
+                                        style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 128px; top: 240px; position: absolute; width: 72px" text="Next"/>
+                                    <webuijsf:staticText binding="#{SearchPatient.pageInfo}" id="pageInfo"
+                                        style="font-family: 'Times New Roman','Times',serif; font-size: 12px; left: 216px; top: 244px; position: absolute"/>
                                     <webuijsf:table augmentTitle="false" id="searchPatientResults"
-                                        style="left: 48px; top: 240px; position: absolute; width: 600px" title="Patient Search Results" width="600">
+                                        style="left: 48px; top: 272px; position: absolute; width: 600px" title="Patient Search Results" width="600">
                                         <webuijsf:tableRowGroup id="patientSearchResults" sourceData="#{UserSession.searchResults}" sourceVar="patient">
                                             <webuijsf:tableColumn headerText="Patient Id" id="patientID">
                                                 <webuijsf:hyperlink actionExpression="#{SearchPatient.displayConsumerPreferences}"
@@ -57,6 +67,14 @@
                                             <webuijsf:tableColumn headerText="Organization ID" id="organizationID">
                                                 <webuijsf:staticText id="staticText2" text="#{patient.value['organizationID']}"/>
                                             </webuijsf:tableColumn>
+                                            <webuijsf:tableColumn headerText="Consent" id="consentStatus">
+                                                <webuijsf:staticText id="consentStatusText" text="#{patient.value['consentStatus']}"/>
+                                            </webuijsf:tableColumn>
+                                            <webuijsf:tableColumn headerText="Last Modified" id="consentLastModified">
+                                                <webuijsf:staticText id="consentLastModifiedText" text="#{patient.value['consentLastModified']}">
+                                                    <f:convertDateTime pattern="MM/dd/yyyy HH:mm"/>
+                                                </webuijsf:staticText>
+                                            </webuijsf:tableColumn>
                                         </webuijsf:tableRowGroup>
                                     </webuijsf:table>
                                 </webuijsf:panelLayout>
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.adapter.cppgui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.ConsentSummaryVO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class ConsentSummaryIndexTest {
+
+    private static final String AA_ID = "1.1";
+
+    private File journal;
+
+    @Before
+    public void setUp() throws IOException {
+        journal = File.createTempFile("ConsentSummaryIndex", ".journal");
+        journal.delete();
+    }
+
+    @After
+    public void tearDown() {
+        journal.delete();
+    }
+
+    @Test
+    public void testSummariesSurviveRestart() {
+        ConsentSummaryIndex index = new ConsentSummaryIndex(journal);
+        Date lastModified = new Date(1000);
+        index.consentStored("1", AA_ID, Boolean.TRUE, lastModified);
+        index.consentStored("2", AA_ID, Boolean.FALSE, lastModified);
+        index.consentRetrieved("3", AA_ID, null);
+        index.consentStored("1", AA_ID, Boolean.FALSE, new Date(2000));
+
+        ConsentSummaryIndex restarted = new ConsentSummaryIndex(journal);
+
+        assertEquals(3, restarted.size());
+        ConsentSummaryVO summary = restarted.getSummary("1", AA_ID);
+        assertEquals(Boolean.FALSE, summary.getOptIn());
+        assertEquals(new Date(2000), summary.getLastModified());
+        assertEquals(lastModified, restarted.getSummary("2", AA_ID).getLastModified());
+        assertNull(restarted.getSummary("3", AA_ID).getOptIn());
+        assertNull(restarted.getSummary("3", AA_ID).getLastModified());
+    }
+
+    @Test
+    public void testUnchangedRetrievalIsNotJournaled() throws IOException {
+        ConsentSummaryIndex index = new ConsentSummaryIndex(journal);
+        index.consentStored("1", AA_ID, Boolean.TRUE, new Date(1000));
+
+        index.consentRetrieved("1", AA_ID, Boolean.TRUE);
+        assertEquals(1, countLines());
+
+        index.consentRetrieved("1", AA_ID, Boolean.FALSE);
+        assertEquals(2, countLines());
+        assertEquals(new Date(1000), new ConsentSummaryIndex(journal).getSummary("1", AA_ID).getLastModified());
+    }
+
+    @Test
+    public void testJournalIsCompactedOnLoad() throws IOException {
+        ConsentSummaryIndex index = new ConsentSummaryIndex(journal);
+        for (int i = 0; i < 10; i++) {
+            index.consentStored("1", AA_ID, Boolean.valueOf(i % 2 == 0), new Date(i));
+        }
+        assertEquals(10, countLines());
+
+        ConsentSummaryIndex restarted = new ConsentSummaryIndex(journal);
+
+        assertEquals(1, countLines());
+        assertEquals(new Date(9), restarted.getSummary("1", AA_ID).getLastModified());
+        assertEquals(new Date(9), new ConsentSummaryIndex(journal).getSummary("1", AA_ID).getLastModified());
+    }
+
+    @Test
+    public void testBadRecordsAreSkipped() throws IOException {
+        FileWriter writer = new FileWriter(journal);
+        try {
+            writer.write("1\t" + AA_ID + "\ttrue\t1000\n");
+            writer.write("truncated\n");
+            writer.write("2\t" + AA_ID + "\tfalse\tnot a time\n");
+            writer.write("3\t" + AA_ID + "\tfalse\t");
+        } finally {
+            writer.close();
+        }
+
+        ConsentSummaryIndex index = new ConsentSummaryIndex(journal);
+
+        assertEquals(2, index.size());
+        assertEquals(Boolean.TRUE, index.getSummary("1", AA_ID).getOptIn());
+        assertNull(index.getSummary("2", AA_ID));
+        assertEquals(Boolean.FALSE, index.getSummary("3", AA_ID).getOptIn());
+    }
+
+    @Test
+    public void testClearDeletesTheJournal() {
+        ConsentSummaryIndex index = new ConsentSummaryIndex(journal);
+        index.consentStored("1", AA_ID, Boolean.TRUE, new Date());
+        assertTrue(journal.exists());
+
+        index.clear();
+
+        assertFalse(journal.exists());
+        assertEquals(0, new ConsentSummaryIndex(journal).size());
+    }
+
+    private int countLines() throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(journal));
+        try {
+            int lines = 0;
+            while (reader.readLine() != null) {
+                lines++;
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+}
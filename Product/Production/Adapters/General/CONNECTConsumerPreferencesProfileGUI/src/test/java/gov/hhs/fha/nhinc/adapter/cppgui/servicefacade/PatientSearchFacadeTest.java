@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.adapter.cppgui.servicefacade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.adapter.cppgui.CPPConstants;
+import gov.hhs.fha.nhinc.adapter.cppgui.ConsentSummaryIndex;
+import gov.hhs.fha.nhinc.adapter.cppgui.PatientSearchResults;
+import gov.hhs.fha.nhinc.adapter.cppgui.valueobject.PatientVO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class PatientSearchFacadeTest {
+
+    private static final String AA_ID = "1.1";
+    private static final int PATIENT_COUNT = 100000;
+    private static final int PAGE_SIZE = CPPConstants.SEARCH_RESULTS_PAGE_SIZE;
+    private static final long MAX_SORT_MILLIS = 2000;
+    private static final long MAX_PAGE_MILLIS = 100;
+    private static final long MAX_THOUSAND_PAGES_MILLIS = 1000;
+
+    private final ConsentSummaryIndex index = new ConsentSummaryIndex();
+
+    @Test
+    public void testPagesAreSortedByLastName() {
+        PatientSearchResults results = createResults(PATIENT_COUNT);
+        PatientSearchFacade facade = createFacade();
+
+        List<PatientVO> page = facade.getPatientPage(results, 0, PAGE_SIZE, CPPConstants.SORT_BY_LAST_NAME, true);
+
+        assertEquals(PAGE_SIZE, page.size());
+        assertEquals("Last000000", page.get(0).getLastName());
+        assertEquals("Last000024", page.get(PAGE_SIZE - 1).getLastName());
+        assertEquals(PATIENT_COUNT / PAGE_SIZE, results.getPageCount(PAGE_SIZE));
+
+        page = facade.getPatientPage(results, 1, PAGE_SIZE, CPPConstants.SORT_BY_LAST_NAME, true);
+        assertEquals("Last000025", page.get(0).getLastName());
+
+        page = facade.getPatientPage(results, 0, PAGE_SIZE, CPPConstants.SORT_BY_LAST_NAME, false);
+        assertEquals("Last099999", page.get(0).getLastName());
+    }
+
+    @Test
+    public void testPageNumberIsLimitedToLastPage() {
+        PatientSearchResults results = createResults(30);
+        PatientSearchFacade facade = createFacade();
+
+        List<PatientVO> page = facade.getPatientPage(results, 5, PAGE_SIZE, CPPConstants.SORT_BY_LAST_NAME, true);
+
+        assertEquals(1, results.getPageNumber());
+        assertEquals(5, page.size());
+        assertEquals("Last000029", page.get(4).getLastName());
+
+        page = facade.getPatientPage(results, -1, PAGE_SIZE, CPPConstants.SORT_BY_LAST_NAME, true);
+        assertEquals(0, results.getPageNumber());
+        assertEquals(PAGE_SIZE, page.size());
+    }
+
+    @Test
+    public void testEmptyResultsHaveOneEmptyPage() {
+        PatientSearchResults results = new PatientSearchResults(null);
+
+        List<PatientVO> page = createFacade().getPatientPage(results, 0, PAGE_SIZE,
+                CPPConstants.SORT_BY_LAST_NAME, true);
+
+        assertTrue(page.isEmpty());
+        assertEquals(1, results.getPageCount(PAGE_SIZE));
+    }
+
+    @Test
+    public void testPagesShowConsentSummaries() {
+        PatientSearchResults results = createResults(PATIENT_COUNT);
+        Date lastModified = new Date();
+        index.consentStored("000000", AA_ID, Boolean.TRUE, lastModified);
+        index.consentStored("000001", AA_ID, Boolean.FALSE, lastModified);
+
+        List<PatientVO> page = createFacade().getPatientPage(results, 0, PAGE_SIZE,
+                CPPConstants.SORT_BY_LAST_NAME, true);
+
+        assertEquals(CPPConstants.OPT_IN, page.get(0).getConsentStatus());
+        assertEquals(lastModified, page.get(0).getConsentLastModified());
+        assertEquals(CPPConstants.OPT_OUT, page.get(1).getConsentStatus());
+        assertEquals("", page.get(2).getConsentStatus());
+        assertNull(page.get(2).getConsentLastModified());
+    }
+
+    @Test
+    public void testPagesAreSortedByConsentWithUnknownConsentsLast() {
+        PatientSearchResults results = createResults(PATIENT_COUNT);
+        for (int i = 0; i < PATIENT_COUNT - 10; i++) {
+            index.consentStored(createPatientID(i), AA_ID, Boolean.valueOf(i % 2 == 0), new Date(i));
+        }
+        index.consentRetrieved(createPatientID(1), AA_ID, Boolean.TRUE);
+        PatientSearchFacade facade = createFacade();
+
+        List<PatientVO> page = facade.getPatientPage(results, 0, PAGE_SIZE, CPPConstants.SORT_BY_CONSENT, true);
+        for (PatientVO patient : page) {
+            assertEquals(CPPConstants.OPT_IN, patient.getConsentStatus());
+        }
+
+        page = facade.getPatientPage(results, results.getPageCount(PAGE_SIZE) - 1, PAGE_SIZE,
+                CPPConstants.SORT_BY_CONSENT, true);
+        assertEquals(CPPConstants.OPT_OUT, page.get(PAGE_SIZE - 11).getConsentStatus());
+        assertEquals("", page.get(PAGE_SIZE - 10).getConsentStatus());
+        assertEquals("", page.get(PAGE_SIZE - 1).getConsentStatus());
+
+        page = facade.getPatientPage(results, 0, PAGE_SIZE, CPPConstants.SORT_BY_LAST_MODIFIED, false);
+        assertEquals(new Date(PATIENT_COUNT - 11), page.get(0).getConsentLastModified());
+    }
+
+    @Test
+    public void testSortingLargeResultsByConsentIsFast() {
+        PatientSearchResults results = createResults(PATIENT_COUNT);
+        storeConsents(PATIENT_COUNT);
+        PatientSearchFacade facade = createFacade();
+
+        long start = System.nanoTime();
+        facade.getPatientPage(results, 0, PAGE_SIZE, CPPConstants.SORT_BY_CONSENT, true);
+        long sortMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Sorting " + PATIENT_COUNT + " patients took " + sortMillis + "ms", sortMillis < MAX_SORT_MILLIS);
+    }
+
+    /**
+     * Once the results are sorted, fetching a page must only look up the consents of its own patients, so each page
+     * is served in a few milliseconds wherever it is in the results.
+     */
+    @Test
+    public void testPageFetchLatencyForLargeResults() {
+        PatientSearchResults results = createResults(PATIENT_COUNT);
+        storeConsents(PATIENT_COUNT);
+        PatientSearchFacade facade = createFacade();
+        facade.getPatientPage(results, 0, PAGE_SIZE, CPPConstants.SORT_BY_CONSENT, true);
+        int pageCount = results.getPageCount(PAGE_SIZE);
+
+        long slowestNanos = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < 1000; i++) {
+            int pageNumber = (i * 997) % pageCount;
+            long start = System.nanoTime();
+            List<PatientVO> page = facade.getPatientPage(results, pageNumber, PAGE_SIZE,
+                    CPPConstants.SORT_BY_CONSENT, true);
+            long elapsed = System.nanoTime() - start;
+            slowestNanos = Math.max(slowestNanos, elapsed);
+            totalNanos += elapsed;
+
+            assertEquals(PAGE_SIZE, page.size());
+            assertEquals(pageNumber, results.getPageNumber());
+        }
+
+        long slowestMillis = TimeUnit.NANOSECONDS.toMillis(slowestNanos);
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(totalNanos);
+        assertTrue("The slowest page fetch took " + slowestMillis + "ms", slowestMillis < MAX_PAGE_MILLIS);
+        assertTrue("Fetching 1000 pages took " + totalMillis + "ms", totalMillis < MAX_THOUSAND_PAGES_MILLIS);
+    }
+
+    private PatientSearchFacade createFacade() {
+        return new PatientSearchFacade() {
+            @Override
+            protected ConsentSummaryIndex getConsentSummaryIndex() {
+                return index;
+            }
+        };
+    }
+
+    private void storeConsents(int count) {
+        for (int i = 0; i < count; i++) {
+            index.consentStored(createPatientID(i), AA_ID, Boolean.valueOf(i % 3 == 0), new Date(i));
+        }
+    }
+
+    private PatientSearchResults createResults(int count) {
+        List<PatientVO> patients = new ArrayList<PatientVO>(count);
+        // Added in reverse order so that the search results have to be sorted
+        for (int i = count - 1; i >= 0; i--) {
+            PatientVO patient = new PatientVO();
+            patient.setPatientID(createPatientID(i));
+            patient.setAssigningAuthorityID(AA_ID);
+            patient.setFirstName("First");
+            patient.setLastName("Last" + createPatientID(i));
+            patients.add(patient);
+        }
+        return new PatientSearchResults(patients);
+    }
+
+    private String createPatientID(int i) {
+        return String.format("%06d", i);
+    }
+}
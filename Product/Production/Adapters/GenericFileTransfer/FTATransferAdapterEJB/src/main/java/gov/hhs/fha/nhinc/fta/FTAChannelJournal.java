@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.fta;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Records the claimed files of a channel that have been delivered. A file is recorded before it is deleted, so if the
+ * adapter stops between sending a file and deleting it the file is deleted on restart instead of being sent again.
+ *
+ * @author dharley
+ */
+public class FTAChannelJournal {
+
+    private static Log log = LogFactory.getLog(FTAChannelJournal.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final Set<String> completed = new HashSet<String>();
+
+    /**
+     * Loads the journal, creating it if it does not exist.
+     *
+     * @param file the journal file
+     * @throws IOException if the journal cannot be read
+     */
+    public FTAChannelJournal(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > 0) {
+                        completed.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @return the journal file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param name the name of a claimed file
+     * @return true if the file has been delivered
+     */
+    public synchronized boolean isCompleted(String name) {
+        return completed.contains(name);
+    }
+
+    /**
+     * Records that a claimed file has been delivered. The record is written to disk before this method returns.
+     *
+     * @param name the name of the claimed file
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void markCompleted(String name) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write((name + "\n").getBytes(UTF8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        completed.add(name);
+    }
+
+    /**
+     * @return the number of records in the journal
+     */
+    public synchronized int size() {
+        return completed.size();
+    }
+
+    /**
+     * Removes the records of files that no longer exist in the directory.
+     *
+     * @param dir the directory holding the claimed files
+     * @throws IOException if the journal cannot be rewritten
+     */
+    public synchronized void compact(File dir) throws IOException {
+        boolean changed = false;
+        for (Iterator<String> it = completed.iterator(); it.hasNext();) {
+            if (!new File(dir, it.next()).exists()) {
+                it.remove();
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            for (String name : completed) {
+                out.write((name + "\n").getBytes(UTF8));
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Compacted FTA journal " + file.getAbsolutePath() + " to " + completed.size() + " record(s)");
+    }
+}
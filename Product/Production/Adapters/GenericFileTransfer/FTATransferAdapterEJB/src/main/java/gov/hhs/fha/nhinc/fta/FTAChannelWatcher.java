@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.fta;
+
+import gov.hhs.fha.nhinc.common.ftaconfigmanager.FTAChannel;
+import gov.hhs.fha.nhinc.util.DirectoryWatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Picks up the files dropped into the inbound channel directories and hands them to a sender. Files are picked up as
+ * soon as the directory reports them rather than on the next timer tick.
+ *
+ * A file is claimed by renaming it into the channel's in progress directory, so it is only picked up once even when the
+ * directory is scanned while events are being processed. Once the sender has delivered a claimed file it is recorded
+ * in the channel journal and deleted. Files left in the in progress directory when the adapter stopped are sent again
+ * on the next scan unless the journal shows they were delivered.
+ *
+ * Files should be moved into the channel directory once they have been written, not written in place.
+ *
+ * @author dharley
+ */
+public class FTAChannelWatcher implements DirectoryWatcher.Listener {
+
+    private static Log log = LogFactory.getLog(FTAChannelWatcher.class);
+
+    static final String IN_PROGRESS_DIR = ".inprogress";
+    static final String JOURNAL_FILE = ".completed";
+
+    private final List<ChannelState> channels = new ArrayList<ChannelState>();
+    private final FTAFileSender sender;
+    private final ExecutorService workers;
+    private final Set<File> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    private DirectoryWatcher directoryWatcher = null;
+
+    /**
+     * @param channels the inbound channels to watch
+     * @param sender sends the files
+     * @param workers runs the sender; if null files are sent on the thread that picks them up
+     * @throws IOException if the in progress directory or journal of a channel cannot be created
+     */
+    public FTAChannelWatcher(List<FTAChannel> channels, FTAFileSender sender, ExecutorService workers)
+            throws IOException {
+        this.sender = sender;
+        this.workers = workers;
+        for (FTAChannel channel : channels) {
+            if (new File(channel.getLocation()).isDirectory()) {
+                this.channels.add(new ChannelState(channel));
+            } else {
+                log.warn("FTA inbound channel " + channel.getLocation() + " is not a directory");
+            }
+        }
+    }
+
+    /**
+     * Creates a worker pool with a bounded queue. When the queue is full the thread picking up files sends the file
+     * itself, which slows down pick up until the workers catch up.
+     *
+     * @param threads the number of worker threads
+     * @param queueSize the number of claimed files that may wait for a worker
+     * @return the worker pool
+     */
+    public static ExecutorService createWorkerPool(int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+                queueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Sends the files already in the channel directories and starts watching the directories for new files.
+     *
+     * @throws IOException if a directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (directoryWatcher != null) {
+            return;
+        }
+
+        DirectoryWatcher watcher = new DirectoryWatcher("FTAChannelWatcher", this,
+                StandardWatchEventKinds.ENTRY_CREATE);
+        try {
+            for (ChannelState state : channels) {
+                watcher.watch(state.dir.toPath());
+            }
+        } catch (IOException ioe) {
+            watcher.stop();
+            throw ioe;
+        }
+        directoryWatcher = watcher;
+
+        scan();
+
+        log.info("Watching " + channels.size() + " FTA inbound channel(s)");
+    }
+
+    /**
+     * Stops watching the channel directories. Files already claimed are still sent by the workers.
+     */
+    public synchronized void stop() {
+        if (directoryWatcher != null) {
+            directoryWatcher.stop();
+            directoryWatcher = null;
+        }
+    }
+
+    /**
+     * Picks up every file in the channel directories, including claimed files that were not delivered. This is run
+     * when the watcher starts, when events were lost and periodically as a safety net.
+     */
+    public void scan() {
+        for (ChannelState state : channels) {
+            File[] claimed = state.inProgressDir.listFiles();
+            if (claimed != null) {
+                for (File file : claimed) {
+                    if (file.isFile() && !isJournalFile(file)) {
+                        dispatch(state, file);
+                    }
+                }
+            }
+
+            try {
+                state.journal.compact(state.inProgressDir);
+            } catch (IOException ioe) {
+                log.warn("Failed to compact FTA journal " + state.journal.getFile().getAbsolutePath() + ": "
+                        + ioe.getMessage(), ioe);
+            }
+
+            File[] children = state.dir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    claim(state, child);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of claimed files being sent
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void fileChanged(Path directory, String fileName) {
+        if (fileName == null) {
+            log.debug("FTA watch events were lost, scanning the inbound channels");
+            scan();
+            return;
+        }
+        ChannelState state = getChannel(directory);
+        if (state != null) {
+            claim(state, new File(state.dir, fileName));
+        }
+    }
+
+    private ChannelState getChannel(Path directory) {
+        for (ChannelState state : channels) {
+            if (state.dir.toPath().equals(directory)) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    private void claim(ChannelState state, File file) {
+        if (!file.isFile()) {
+            return;
+        }
+
+        File claimed = new File(state.inProgressDir, UUID.randomUUID().toString() + "_" + file.getName());
+        try {
+            Files.move(file.toPath(), claimed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException nsfe) {
+            // Claimed by a scan running at the same time.
+            return;
+        } catch (IOException ioe) {
+            log.error("Failed to claim FTA file " + file.getAbsolutePath() + ": " + ioe.getMessage(), ioe);
+            return;
+        }
+
+        log.info("FTAChannelWatcher claimed file: " + file.getName());
+        dispatch(state, claimed);
+    }
+
+    private void dispatch(final ChannelState state, final File file) {
+        if (!inFlight.add(file)) {
+            return;
+        }
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    deliver(state, file);
+                } finally {
+                    inFlight.remove(file);
+                }
+            }
+        };
+
+        if (workers == null) {
+            task.run();
+            return;
+        }
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException ree) {
+            inFlight.remove(file);
+            log.warn("FTA workers are shut down, " + file.getName() + " will be sent on the next scan");
+        }
+    }
+
+    private void deliver(ChannelState state, File file) {
+        String name = file.getName();
+        if (!file.exists()) {
+            // Delivered and deleted by a worker after the file was listed.
+            return;
+        }
+        try {
+            if (!state.journal.isCompleted(name)) {
+                if (!sender.send(file, state.channel.getTopic())) {
+                    log.warn("Failed to send FTA file " + name + ", it will be sent on the next scan");
+                    return;
+                }
+                state.journal.markCompleted(name);
+            }
+        } catch (IOException ioe) {
+            log.error("Failed to record delivery of FTA file " + name + ": " + ioe.getMessage(), ioe);
+            return;
+        } catch (RuntimeException re) {
+            log.error("Failed to send FTA file " + name + ": " + re.getMessage(), re);
+            return;
+        }
+
+        if (!file.delete() && file.exists()) {
+            log.warn("Failed to delete delivered FTA file " + file.getAbsolutePath());
+        }
+    }
+
+    private boolean isJournalFile(File file) {
+        return file.getName().startsWith(JOURNAL_FILE);
+    }
+
+    private static class ChannelState {
+        private final FTAChannel channel;
+        private final File dir;
+        private final File inProgressDir;
+        private final FTAChannelJournal journal;
+
+        ChannelState(FTAChannel channel) throws IOException {
+            this.channel = channel;
+            this.dir = new File(channel.getLocation()).getAbsoluteFile();
+            this.inProgressDir = new File(dir, IN_PROGRESS_DIR);
+            if (!inProgressDir.isDirectory() && !inProgressDir.mkdirs()) {
+                throw new IOException("Failed to create directory " + inProgressDir.getAbsolutePath());
+            }
+            this.journal = new FTAChannelJournal(new File(inProgressDir, JOURNAL_FILE));
+        }
+    }
+}
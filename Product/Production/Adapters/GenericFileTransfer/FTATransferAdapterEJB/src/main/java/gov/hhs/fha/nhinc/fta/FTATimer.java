@@ -28,6 +28,10 @@ package gov.hhs.fha.nhinc.fta;
 
 import gov.hhs.fha.nhinc.common.ftaconfigmanager.FTAConfiguration;
 import gov.hhs.fha.nhinc.common.ftaconfigmanager.FTAConfigurationHelper;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -44,7 +48,13 @@ public class FTATimer extends Thread {
     // private static final String FTA_REFRESH_DURATION_PROPERTY = "FTARefreshDuration";
     private int m_iDurationSeconds = FTA_REFRESH_DURATION_DEFAULT;
 
+    private static final int FTA_WORKER_THREADS = 4;
+    private static final int FTA_WORKER_QUEUE_SIZE = 100;
+    private static final long FTA_WORKER_SHUTDOWN_SECONDS = 30;
+
     private static FTAConfiguration config = null;
+    private static FTAChannelWatcher watcher = null;
+    private static ExecutorService workers = null;
 
     public static void startTimer() throws FTATimerException {
 
@@ -75,10 +85,47 @@ public class FTATimer extends Thread {
         log.info("FTATimer has just been started.");
     }
 
-    public static void stopTimer() {
+    public static synchronized void stopTimer() {
         log.info("FTATimer has just been shut down.");
         m_bRunnable = false;
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+        if (workers != null) {
+            shutdownWorkers(workers, FTA_WORKER_SHUTDOWN_SECONDS);
+            workers = null;
+        }
+    }
+
+    /**
+     * @return the watcher of the inbound channels, or null if the timer is not running
+     */
+    static synchronized FTAChannelWatcher getWatcher() {
+        return watcher;
+    }
 
+    /**
+     * Stops the workers, letting them finish sending the files they have claimed. Files that are not sent in time are
+     * sent again on the next scan after a restart.
+     *
+     * @param pool the worker pool
+     * @param timeoutSeconds how long to wait for the claimed files to be sent
+     * @return true if the workers finished in time
+     */
+    static boolean shutdownWorkers(ExecutorService pool, long timeoutSeconds) {
+        pool.shutdown();
+        try {
+            if (pool.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                return true;
+            }
+            log.warn("FTA workers did not finish within " + timeoutSeconds + " seconds, interrupting them");
+            pool.shutdownNow();
+        } catch (InterruptedException ie) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return false;
     }
 
     private void pause() {
@@ -102,6 +149,18 @@ public class FTATimer extends Thread {
         } else if (config.getInboundChannels() == null) {
             throw new FTATimerException("Unable to load FTA Inbound Channels.");
         }
+
+        try {
+            synchronized (FTATimer.class) {
+                if (watcher == null) {
+                    workers = FTAChannelWatcher.createWorkerPool(FTA_WORKER_THREADS, FTA_WORKER_QUEUE_SIZE);
+                    watcher = new FTAChannelWatcher(config.getInboundChannels(), new FTATimerTask(), workers);
+                }
+                watcher.start();
+            }
+        } catch (IOException e) {
+            throw new FTATimerException("Unable to watch FTA Inbound Channels.", e);
+        }
         m_iDurationSeconds = 30;
 
         log.info("end initialize");
@@ -111,16 +170,18 @@ public class FTATimer extends Thread {
     public void run() {
 
         while (m_bRunnable) {
-            FTATimerTask task = new FTATimerTask();
-            task.setConfiguration(config);
-
-            task.run();
+            // New files are picked up by the watcher as they arrive. The periodic scan retries files that failed
+            // to send and picks up any the watcher missed.
             pause();
 
             if (m_bRunnable == false) {
                 log.debug("breaking loop");
                 break;
             }
+            FTAChannelWatcher current = getWatcher();
+            if (current != null) {
+                current.scan();
+            }
         }
     }
 }
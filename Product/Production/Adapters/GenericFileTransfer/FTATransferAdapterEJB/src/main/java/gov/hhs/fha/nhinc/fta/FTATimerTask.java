@@ -27,7 +27,6 @@
 package gov.hhs.fha.nhinc.fta;
 
 import gov.hhs.fha.nhinc.common.ftaconfigmanager.FTAConfiguration;
-import gov.hhs.fha.nhinc.common.ftaconfigmanager.FTAChannel;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import javax.xml.ws.BindingProvider;
@@ -36,6 +35,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.PrintWriter;
 
@@ -60,7 +60,7 @@ import javax.xml.ws.Service;
  * 
  * @author dunnek
  */
-public class FTATimerTask {
+public class FTATimerTask implements FTAFileSender {
 
     private static Log log = LogFactory.getLog(FTATimerTask.class);
     private FTAConfiguration ftaConfig = null;
@@ -83,13 +83,12 @@ public class FTATimerTask {
 
     public void run() {
         try {
-            if (ftaConfig == null) {
-                log.error("FTA Configuration not loaded.");
-                ;
+            // Scans with the watcher the timer owns, so the channel journals and the files being sent are shared
+            FTAChannelWatcher watcher = FTATimer.getWatcher();
+            if (watcher == null) {
+                log.error("FTA Timer is not running, the inbound channels were not scanned.");
             } else {
-                for (FTAChannel channel : ftaConfig.getInboundChannels()) {
-                    processDir(channel.getLocation(), channel.getTopic());
-                }
+                watcher.scan();
             }
         } catch (Throwable t) {
             log.error("****** FTATimerTask THROWABLE: " + t.getMessage(), t);
@@ -104,34 +103,25 @@ public class FTATimerTask {
         }
     }
 
-    private static void processDir(String dirName, String topic) {
-        File dir = new File(dirName);
-
-        String[] children = dir.list();
-
-        if (children == null) {
-            // Either dir does not exist or is not a directory
-        } else {
-            for (int i = 0; i < children.length; i++) {
-
-                File child = new File(dir.getAbsolutePath() + "/" + children[i]);
-
-                if (!child.isDirectory()) {
-                    log.info("FTATimerTask Processing File: " + child.getName());
-                    String contents = Util.getFileContents(child);
-                    log.debug("FTATimerTask File Contents: " + contents);
-                    sendNotification(contents, topic);
-
-                    child.delete();
-
-                }
-
-            }
+    /**
+     * Sends the contents of a file picked up from an inbound channel as a notify.
+     *
+     * @param file the file
+     * @param topic the topic of the channel
+     * @return true if the notify was sent
+     */
+    @Override
+    public boolean send(File file, String topic) {
+        log.info("FTATimerTask Processing File: " + file.getName());
+        try {
+            return sendNotification(Util.getFileBytes(file), topic);
+        } catch (IOException ex) {
+            log.error("Failed to read " + file.getAbsolutePath() + ": " + ex.getMessage(), ex);
+            return false;
         }
-
     }
 
-    private static void sendNotification(String contents, String topic) {
+    private static boolean sendNotification(byte[] contents, String topic) {
         try { // Call Web Service Operation
             String endpointURL = PropertyAccessor.getInstance().getProperty("adapter", "EntityNotificationConsumerURL");
             // String endpointURL = "http://localhost:8088/mockEntityNotificationConsumerBindingSoap11";
@@ -178,9 +168,11 @@ public class FTATimerTask {
             AcknowledgementType result = port.notify(notifyRequest);
 
             log.info("Result = " + result);
+            return true;
         } catch (Exception ex) {
             log.error(ex.getMessage(), ex);
         }
+        return false;
     }
 
     private static void sendNotificationSecured(String contents, String topic) {
@@ -43,6 +43,7 @@ import java.io.File;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Calendar;
 import java.util.List;
 import org.xml.sax.InputSource;
@@ -84,6 +85,10 @@ public class Util {
     }
 
     public static org.w3c.dom.Element marshalPayload(String contents) {
+        return marshalPayload(Util.convertToByte(contents));
+    }
+
+    public static org.w3c.dom.Element marshalPayload(byte[] contents) {
         org.w3c.dom.Document doc = null;
 
         try {
@@ -97,7 +102,7 @@ public class Util {
             dbf.setNamespaceAware(true);
             doc = dbf.newDocumentBuilder().newDocument();
 
-            payload.payload = (Util.convertToByte(contents));
+            payload.payload = contents;
 
             marshaller.marshal(payload, doc);
             log.info(doc.getNodeValue());
@@ -394,6 +399,10 @@ public class Util {
         return contents.toString();
     }
 
+    public static byte[] getFileBytes(File aFile) throws IOException {
+        return Files.readAllBytes(aFile.toPath());
+    }
+
     public static FTAChannel getChannelByTopic(List<FTAChannel> channels, String topic) {
         FTAChannel result = null;
         TopicMarshaller marshaller = new TopicMarshaller();
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.fta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.common.ftaconfigmanager.FTAChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class FTAChannelWatcherTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String TOPIC = "nhinc:testTopic";
+
+    private File root;
+    private File channelDir;
+    private File stagingDir;
+    private ExecutorService workers;
+    private FTAChannelWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("fta").toFile();
+        channelDir = new File(root, "inbound");
+        stagingDir = new File(root, "staging");
+        channelDir.mkdirs();
+        stagingDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        delete(root);
+    }
+
+    @Test
+    public void testThousandsOfFilesAreDeliveredExactlyOnce() throws Exception {
+        final int count = 3000;
+        StubSender sender = new StubSender();
+        workers = FTAChannelWatcher.createWorkerPool(4, 100);
+        watcher = new FTAChannelWatcher(createChannels(), sender, workers);
+        watcher.start();
+
+        for (int i = 0; i < count; i++) {
+            drop("file" + i + ".txt", "contents of file " + i);
+        }
+
+        waitForDeliveries(sender, count);
+        watcher.scan();
+        waitForIdle();
+
+        assertEquals(count, sender.deliveries.get());
+        assertEquals(count, sender.received.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, sender.received.get("contents of file " + i).get());
+        }
+        assertEquals(0, listFiles(channelDir).size());
+        assertEquals(0, listClaimedFiles().size());
+    }
+
+    @Test
+    public void testConcurrentScansClaimEachFileOnce() throws Exception {
+        final int count = 1000;
+        for (int i = 0; i < count; i++) {
+            drop("file" + i + ".txt", "contents of file " + i);
+        }
+
+        StubSender sender = new StubSender();
+        final FTAChannelWatcher scanner = new FTAChannelWatcher(createChannels(), sender, null);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    scanner.scan();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(count, sender.deliveries.get());
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, sender.received.get("contents of file " + i).get());
+        }
+    }
+
+    @Test
+    public void testRestartDoesNotResendDeliveredFiles() throws Exception {
+        File inProgressDir = new File(channelDir, FTAChannelWatcher.IN_PROGRESS_DIR);
+        inProgressDir.mkdirs();
+        write(new File(inProgressDir, "delivered.txt"), "delivered before the restart");
+        write(new File(inProgressDir, "claimed.txt"), "claimed before the restart");
+        new FTAChannelJournal(new File(inProgressDir, FTAChannelWatcher.JOURNAL_FILE)).markCompleted("delivered.txt");
+
+        StubSender sender = new StubSender();
+        new FTAChannelWatcher(createChannels(), sender, null).scan();
+
+        assertEquals(1, sender.deliveries.get());
+        assertEquals(1, sender.received.get("claimed before the restart").get());
+        assertEquals(0, listClaimedFiles().size());
+
+        FTAChannelJournal journal = new FTAChannelJournal(new File(inProgressDir, FTAChannelWatcher.JOURNAL_FILE));
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    public void testFailedFileIsSentOnNextScan() throws Exception {
+        drop("file.txt", "contents");
+
+        StubSender sender = new StubSender();
+        sender.failures.set(1);
+        FTAChannelWatcher scanner = new FTAChannelWatcher(createChannels(), sender, null);
+
+        scanner.scan();
+        assertEquals(0, sender.deliveries.get());
+        assertEquals(1, listClaimedFiles().size());
+
+        scanner.scan();
+        assertEquals(1, sender.deliveries.get());
+        assertEquals(0, listClaimedFiles().size());
+    }
+
+    private List<FTAChannel> createChannels() {
+        FTAChannel channel = new FTAChannel();
+        channel.setLocation(channelDir.getAbsolutePath());
+        channel.setTopic(TOPIC);
+        return Collections.singletonList(channel);
+    }
+
+    private void drop(String name, String contents) throws IOException {
+        File staged = new File(stagingDir, name);
+        write(staged, contents);
+        Files.move(staged.toPath(), new File(channelDir, name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(UTF8));
+    }
+
+    private void waitForDeliveries(StubSender sender, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while ((sender.deliveries.get() < count) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, sender.deliveries.get());
+    }
+
+    private void waitForIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((watcher.getInFlightCount() > 0) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, watcher.getInFlightCount());
+    }
+
+    private List<File> listClaimedFiles() {
+        List<File> claimed = new ArrayList<File>();
+        for (File file : listFiles(new File(channelDir, FTAChannelWatcher.IN_PROGRESS_DIR))) {
+            if (!file.getName().startsWith(FTAChannelWatcher.JOURNAL_FILE)) {
+                claimed.add(file);
+            }
+        }
+        return claimed;
+    }
+
+    private List<File> listFiles(File dir) {
+        List<File> files = new ArrayList<File>();
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isFile()) {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class StubSender implements FTAFileSender {
+        private final ConcurrentHashMap<String, AtomicInteger> received = new ConcurrentHashMap<String, AtomicInteger>();
+        private final AtomicInteger deliveries = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public boolean send(File file, String topic) {
+            assertEquals(TOPIC, topic);
+            if (failures.getAndDecrement() > 0) {
+                return false;
+            }
+            try {
+                String contents = new String(Files.readAllBytes(file.toPath()), UTF8);
+                AtomicInteger count = new AtomicInteger();
+                AtomicInteger existing = received.putIfAbsent(contents, count);
+                ((existing == null) ? count : existing).incrementAndGet();
+                deliveries.incrementAndGet();
+                assertTrue(contents.length() > 0);
+                return true;
+            } catch (IOException ioe) {
+                return false;
+            }
+        }
+    }
+}
@@ -5,6 +5,11 @@
 
 package gov.hhs.fha.nhinc.fta;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -44,4 +49,58 @@ public class FTATimerTest {
         }
 
     }
+
+    @Test
+    public void testStopTimerReleasesWatcher() {
+        FTATimer.stopTimer();
+
+        assertNull(FTATimer.getWatcher());
+        // the task has no watcher to scan with and must not build one of its own
+        new FTATimerTask().run();
+    }
+
+    @Test
+    public void testShutdownWorkersWaitsForClaimedFiles() throws Exception {
+        ExecutorService pool = FTAChannelWatcher.createWorkerPool(2, 10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                finished.set(true);
+            }
+        });
+        started.await();
+
+        assertTrue(FTATimer.shutdownWorkers(pool, 10));
+        assertTrue(pool.isTerminated());
+        assertTrue(finished.get());
+    }
+
+    @Test
+    public void testShutdownWorkersInterruptsStuckWorkers() throws Exception {
+        ExecutorService pool = FTAChannelWatcher.createWorkerPool(1, 10);
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException ie) {
+                    // expected
+                }
+            }
+        });
+        started.await();
+
+        assertFalse(FTATimer.shutdownWorkers(pool, 0));
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
 }
\ No newline at end of file
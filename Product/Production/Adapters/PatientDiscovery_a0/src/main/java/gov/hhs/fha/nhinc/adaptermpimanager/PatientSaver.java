@@ -32,6 +32,7 @@ import org.hl7.v3.*;
 import gov.hhs.fha.nhinc.mpilib.*;
 import gov.hhs.fha.nhinc.adaptermpimanager.HL7Parsers.*;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
+import gov.hhs.fha.nhinc.patientdiscovery.entity.PatientDiscoveryResultCache;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 import gov.hhs.fha.nhinc.transform.subdisc.HL7AckTransforms;
 import gov.hhs.fha.nhinc.transform.subdisc.HL7Constants;
@@ -109,6 +110,7 @@ public class PatientSaver {
                 if (CreatePatientIfDoesNotExist) {
                     log.info("creating patient");
                     MpiDataAccess.SavePatient(sourcePatient);
+                    PatientDiscoveryResultCache.getInstance().removePatients(patient.getId());
                     msgText = "Patient Successfully added to the MPI";
                 } else {
                     log.info("patient not found in MPI - ignore");
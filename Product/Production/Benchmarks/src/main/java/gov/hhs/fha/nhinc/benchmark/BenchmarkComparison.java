@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compares two JMH JSON result files and reports the benchmarks that regressed by more than a threshold. Used by the
+ * benchmark-compare profile to fail a build that is slower than a previous one.
+ *
+ * @author dharley
+ */
+public class BenchmarkComparison {
+
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    /**
+     * @param args the baseline result file, the current result file and the allowed regression in percent
+     * @throws Exception if a result file cannot be read
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> <threshold percent>");
+            System.exit(2);
+        }
+
+        Map<String, Result> baseline = readResults(new File(args[0]));
+        Map<String, Result> current = readResults(new File(args[1]));
+        List<String> regressions = findRegressions(baseline, current, Double.parseDouble(args[2]));
+
+        for (String regression : regressions) {
+            System.out.println("REGRESSION: " + regression);
+        }
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+        System.out.println("No benchmark regressed by more than " + args[2] + "%");
+    }
+
+    /**
+     * @param file a JMH result file written with -rf json
+     * @return the results keyed by benchmark name and parameters
+     * @throws IOException if the file cannot be read
+     * @throws JSONException if the file is not a JMH result file
+     */
+    public static Map<String, Result> readResults(File file) throws IOException, JSONException {
+        return readResults(new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")));
+    }
+
+    /**
+     * @param json the contents of a JMH result file
+     * @return the results keyed by benchmark name and parameters
+     * @throws JSONException if the contents are not JMH results
+     */
+    public static Map<String, Result> readResults(String json) throws JSONException {
+        Map<String, Result> results = new LinkedHashMap<String, Result>();
+        JSONArray benchmarks = new JSONArray(json);
+        for (int i = 0; i < benchmarks.length(); i++) {
+            JSONObject benchmark = benchmarks.getJSONObject(i);
+            JSONObject metric = benchmark.getJSONObject("primaryMetric");
+            Result result = new Result(benchmark.getString("mode"), metric.getDouble("score"),
+                    metric.optString("scoreUnit"));
+            results.put(getKey(benchmark), result);
+        }
+        return results;
+    }
+
+    /**
+     * A benchmark regresses when its score is worse than the baseline by more than the threshold. Lower scores are
+     * better for every mode except throughput. Benchmarks that are missing from either run are ignored.
+     *
+     * @param baseline the baseline results
+     * @param current the current results
+     * @param thresholdPercent the allowed regression in percent
+     * @return a description of each regression
+     */
+    public static List<String> findRegressions(Map<String, Result> baseline, Map<String, Result> current,
+            double thresholdPercent) {
+        List<String> regressions = new ArrayList<String>();
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null || !before.getMode().equals(after.getMode()) || before.getScore() == 0) {
+                continue;
+            }
+
+            double change = (after.getScore() - before.getScore()) * 100 / before.getScore();
+            if (THROUGHPUT_MODE.equals(after.getMode())) {
+                change = -change;
+            }
+            if (change > thresholdPercent) {
+                regressions.add(String.format("%s %.3f -> %.3f %s (%.1f%% worse)", entry.getKey(),
+                        before.getScore(), after.getScore(), after.getUnit(), change));
+            }
+        }
+        return regressions;
+    }
+
+    private static String getKey(JSONObject benchmark) throws JSONException {
+        String key = benchmark.getString("benchmark");
+        JSONObject params = benchmark.optJSONObject("params");
+        if (params != null && params.length() > 0) {
+            Map<String, String> sorted = new TreeMap<String, String>();
+            Iterator<?> names = params.keys();
+            while (names.hasNext()) {
+                String name = (String) names.next();
+                sorted.put(name, params.getString(name));
+            }
+            key += sorted;
+        }
+        return key;
+    }
+
+    /**
+     * The primary metric of one benchmark run.
+     */
+    public static class Result {
+
+        private final String mode;
+        private final double score;
+        private final String unit;
+
+        public Result(String mode, double score, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.benchmark;
+
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Loads the sample payloads checked into the benchmark module. Every benchmark works from the same fixed payloads so
+ * the results of two builds can be compared.
+ *
+ * @author dharley
+ */
+public final class BenchmarkPayloads {
+
+    /**
+     * JVM argument that keeps the gateway logging at the level used by the benchmarks.
+     */
+    public static final String LOG4J_CONFIGURATION = "-Dlog4j.configuration=benchmark-log4j.properties";
+
+    public static final String PATIENT_DISCOVERY_REQUEST = "PRPA_IN201305UV02Request.xml";
+    public static final String ADHOC_QUERY_REQUEST = "AdhocQueryRequest.xml";
+    public static final String ADHOC_QUERY_RESPONSE = "AdhocQueryResponse.xml";
+    public static final String UDDI_CONNECTION_INFO = "uddiConnectionInfo.xml";
+    public static final String INTERNAL_CONNECTION_INFO = "internalConnectionInfo.xml";
+    public static final String GATEWAY_PROPERTIES = "gateway.properties";
+    public static final String SAML_CALLBACK_PROPERTIES = "saml-callback.properties";
+    public static final String KEYSTORE = "benchmark-keystore.jks";
+    public static final String KEYSTORE_PASSWORD = "changeit";
+    public static final String KEYSTORE_ALIAS = "gateway";
+
+    private static final String PAYLOAD_DIR = "/payloads/";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * @param name the name of the payload
+     * @return the contents of the payload
+     * @throws IOException if the payload cannot be read
+     */
+    public static byte[] readBytes(String name) throws IOException {
+        InputStream in = openStream(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param name the name of the payload
+     * @return the contents of the payload as a UTF-8 string
+     * @throws IOException if the payload cannot be read
+     */
+    public static String readString(String name) throws IOException {
+        return new String(readBytes(name), UTF8);
+    }
+
+    /**
+     * @param name the name of a properties payload
+     * @return the properties
+     * @throws IOException if the payload cannot be read
+     */
+    public static Properties readProperties(String name) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = openStream(name);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * Unmarshals a payload using the JAXB context the gateway uses for it.
+     *
+     * @param contextName the JAXB context name, e.g. "org.hl7.v3"
+     * @param name the name of the payload
+     * @param type the type of the root element
+     * @return the unmarshalled payload
+     * @throws IOException if the payload cannot be read
+     * @throws JAXBException if the payload cannot be unmarshalled
+     */
+    public static <T> T unmarshal(String contextName, String name, Class<T> type) throws IOException, JAXBException {
+        Unmarshaller unmarshaller = new JAXBContextHandler().getJAXBContext(contextName).createUnmarshaller();
+        Object result = unmarshaller.unmarshal(new ByteArrayInputStream(readBytes(name)));
+        if (result instanceof JAXBElement<?>) {
+            result = ((JAXBElement<?>) result).getValue();
+        }
+        return type.cast(result);
+    }
+
+    /**
+     * Copies a payload into a directory so it can be loaded by code that reads from the file system.
+     *
+     * @param name the name of the payload
+     * @param dir the directory to copy to
+     * @return the copied file
+     * @throws IOException if the payload cannot be copied
+     */
+    public static File copyToDirectory(String name, File dir) throws IOException {
+        File file = new File(dir, name);
+        InputStream in = openStream(name);
+        try {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            in.close();
+        }
+        return file;
+    }
+
+    /**
+     * Creates a configuration directory holding the sample gateway.properties and points the PropertyAccessor at it.
+     *
+     * @return the configuration directory
+     * @throws IOException if the directory cannot be created
+     */
+    public static File createPropertiesDirectory() throws IOException {
+        File dir = Files.createTempDirectory("connect-benchmark").toFile();
+        copyToDirectory(GATEWAY_PROPERTIES, dir);
+        System.setProperty("nhinc.properties.dir", dir.getAbsolutePath());
+        PropertyAccessor.getInstance().setPropertyFileLocation(dir.getAbsolutePath());
+        return dir;
+    }
+
+    /**
+     * Deletes a directory created by the benchmarks.
+     *
+     * @param dir the directory
+     */
+    public static void delete(File dir) {
+        if (dir == null) {
+            return;
+        }
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        dir.delete();
+    }
+
+    private static InputStream openStream(String name) throws IOException {
+        InputStream in = BenchmarkPayloads.class.getResourceAsStream(PAYLOAD_DIR + name);
+        if (in == null) {
+            throw new IOException("Benchmark payload " + name + " was not found");
+        }
+        return in;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.callback.openSAML;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * Measures building and signing a Holder-of-Key assertion with the key pair in the benchmark keystore.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class HOKSAMLAssertionBuilderBenchmark {
+
+    private HOKSAMLAssertionBuilder builder;
+    private CallbackProperties properties;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(new ByteArrayInputStream(BenchmarkPayloads.readBytes(BenchmarkPayloads.KEYSTORE)),
+                BenchmarkPayloads.KEYSTORE_PASSWORD.toCharArray());
+        builder = new HOKSAMLAssertionBuilder(new KeyStoreCertificateManager(keyStore));
+
+        Map<Object, Object> map = new HashMap<Object, Object>(
+                BenchmarkPayloads.readProperties(BenchmarkPayloads.SAML_CALLBACK_PROPERTIES));
+        map.put(NhincConstants.TARGET_API_LEVEL, NhincConstants.GATEWAY_API_LEVEL.LEVEL_g1);
+        properties = new CallbackMapProperties(map);
+
+        // bootstrap OpenSAML before measuring
+        builder.build(properties);
+    }
+
+    @Benchmark
+    public Element build() throws Exception {
+        return builder.build(properties);
+    }
+
+    /**
+     * Serves the benchmark key pair instead of the keystore configured for the gateway.
+     */
+    private static class KeyStoreCertificateManager implements CertificateManager {
+
+        private final KeyStore keyStore;
+        private final X509Certificate certificate;
+        private final PrivateKey privateKey;
+
+        KeyStoreCertificateManager(KeyStore keyStore) throws Exception {
+            this.keyStore = keyStore;
+            certificate = (X509Certificate) keyStore.getCertificate(BenchmarkPayloads.KEYSTORE_ALIAS);
+            privateKey = (PrivateKey) keyStore.getKey(BenchmarkPayloads.KEYSTORE_ALIAS,
+                    BenchmarkPayloads.KEYSTORE_PASSWORD.toCharArray());
+        }
+
+        @Override
+        public X509Certificate getDefaultCertificate() {
+            return certificate;
+        }
+
+        @Override
+        public PrivateKey getDefaultPrivateKey() {
+            return privateKey;
+        }
+
+        @Override
+        public RSAPublicKey getDefaultPublicKey() {
+            return (RSAPublicKey) certificate.getPublicKey();
+        }
+
+        @Override
+        public KeyStore getKeyStore() {
+            return keyStore;
+        }
+
+        @Override
+        public KeyStore getTrustStore() {
+            return keyStore;
+        }
+    }
+}
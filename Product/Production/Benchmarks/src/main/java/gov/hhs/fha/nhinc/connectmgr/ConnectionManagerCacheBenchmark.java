@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.connectmgr;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.InternalConnectionInfoDAOFileImpl;
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.UddiConnectionInfoDAOFileImpl;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uddi.api_v3.BusinessEntity;
+
+/**
+ * Measures endpoint lookups against the sample UDDI and internal connection info files.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class ConnectionManagerCacheBenchmark {
+
+    private static final String HOME_COMMUNITY_ID = "2.2";
+    private static final String SERVICE_NAME = "QueryForDocuments";
+
+    private File propertiesDir;
+    private ConnectionManagerCache cache;
+
+    @Setup
+    public void setUp() throws Exception {
+        propertiesDir = BenchmarkPayloads.createPropertiesDirectory();
+        File uddiFile = BenchmarkPayloads.copyToDirectory(BenchmarkPayloads.UDDI_CONNECTION_INFO, propertiesDir);
+        File internalFile = BenchmarkPayloads.copyToDirectory(BenchmarkPayloads.INTERNAL_CONNECTION_INFO,
+                propertiesDir);
+        UddiConnectionInfoDAOFileImpl.getInstance().setFileName(uddiFile.getAbsolutePath());
+        InternalConnectionInfoDAOFileImpl.getInstance().setFileName(internalFile.getAbsolutePath());
+
+        cache = new ConnectionManagerCache();
+
+        // load the connection info before measuring
+        cache.getBusinessEntity(HOME_COMMUNITY_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkPayloads.delete(propertiesDir);
+    }
+
+    @Benchmark
+    public BusinessEntity businessEntity() throws ConnectionManagerException {
+        return cache.getBusinessEntity(HOME_COMMUNITY_ID);
+    }
+
+    @Benchmark
+    public String endpointUrl() throws ConnectionManagerException {
+        return cache.getDefaultEndpointURLByServiceName(HOME_COMMUNITY_ID, SERVICE_NAME);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String endpointUrlContended() throws ConnectionManagerException {
+        return cache.getDefaultEndpointURLByServiceName(HOME_COMMUNITY_ID, SERVICE_NAME);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.mpilib;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures demographic matching against a MiniMpi holding 100,000 patients. The patients are generated from a fixed
+ * seed so every run searches the same records.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class PatientMatcherBenchmark {
+
+    private static final int PATIENT_COUNT = 100000;
+    private static final long SEED = 20130401L;
+    private static final String ORGANIZATION_ID = "1.1";
+
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Jones", "Brown", "Davis", "Miller",
+            "Wilson", "Moore", "Taylor", "Anderson", "Thomas", "Jackson", "White", "Harris", "Martin" };
+    private static final String[] FIRST_NAMES = { "James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+            "Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica" };
+    private static final String[] CITIES = { "Springfield", "Franklin", "Greenville", "Bristol", "Clinton" };
+    private static final String[] STATES = { "VA", "MD", "NC", "PA", "OH" };
+
+    private File propertiesDir;
+    private MiniMpi mpi;
+    private PatientMatcher matcher;
+    private Patient searchParams;
+
+    @Setup
+    public void setUp() throws Exception {
+        propertiesDir = BenchmarkPayloads.createPropertiesDirectory();
+        mpi = MiniMpi.getInstance(new File(propertiesDir, "mpi.xml").getAbsolutePath());
+        matcher = PatientMatcher.getInstance();
+
+        Patients patients = mpi.getPatients();
+        patients.clear();
+        Random random = new Random(SEED);
+        for (int i = 0; i < PATIENT_COUNT; i++) {
+            patients.add(createPatient(i, random));
+        }
+
+        // search for a patient in the middle of the list, so that it shares its name with many others
+        Patient patient = patients.get(PATIENT_COUNT / 2);
+        searchParams = new Patient();
+        searchParams.getNames().add(patient.getNames().get(0));
+        searchParams.setDateOfBirth(patient.getDateOfBirth());
+        searchParams.setGender(patient.getGender());
+        searchParams.getAddresses().add(patient.getAddresses().get(0));
+        searchParams.getPhoneNumbers().add(patient.getPhoneNumbers().get(0));
+    }
+
+    @TearDown
+    public void tearDown() {
+        mpi.reset();
+        BenchmarkPayloads.delete(propertiesDir);
+    }
+
+    @Benchmark
+    public int matchByDemographics() {
+        int matches = 0;
+        for (Patient patient : mpi.getPatients()) {
+            if (matcher.isPatientOptedInCriteriaMet(patient) && matcher.hasMatchByDemographics(patient, searchParams)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public Patients search() {
+        return mpi.search(searchParams);
+    }
+
+    private static Patient createPatient(int index, Random random) {
+        Patient patient = new Patient();
+        patient.getNames().add(
+                new PersonName(LAST_NAMES[random.nextInt(LAST_NAMES.length)], FIRST_NAMES[random
+                        .nextInt(FIRST_NAMES.length)]));
+        patient.setDateOfBirth(String.format("19%02d%02d%02d", random.nextInt(100), random.nextInt(12) + 1,
+                random.nextInt(28) + 1));
+        patient.setGender(random.nextBoolean() ? "M" : "F");
+        patient.getIdentifiers().add(String.valueOf(100000 + index), ORGANIZATION_ID);
+
+        Address address = new Address();
+        address.setStreet1((random.nextInt(9000) + 100) + " Main Street");
+        address.setCity(CITIES[random.nextInt(CITIES.length)]);
+        address.setState(STATES[random.nextInt(STATES.length)]);
+        address.setZip(String.format("%05d", random.nextInt(100000)));
+        patient.getAddresses().add(address);
+
+        patient.getPhoneNumbers().add(new PhoneNumber(String.format("tel:+1-703-555-%04d", random.nextInt(10000))));
+        patient.setOptedIn(random.nextInt(20) != 0);
+        return patient;
+    }
+}
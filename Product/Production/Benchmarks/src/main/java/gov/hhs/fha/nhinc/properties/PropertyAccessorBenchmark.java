@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.properties;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading a gateway property, alone and with several threads reading at once. The sample gateway.properties
+ * is run both cached for good (-1) and reloaded on every read (0).
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class PropertyAccessorBenchmark {
+
+    @Param({ "-1", "0" })
+    public String cacheRefreshDuration;
+
+    private File propertiesDir;
+    private PropertyAccessor accessor;
+
+    @Setup
+    public void setUp() throws Exception {
+        propertiesDir = BenchmarkPayloads.createPropertiesDirectory();
+        String properties = BenchmarkPayloads.readString(BenchmarkPayloads.GATEWAY_PROPERTIES).replaceFirst(
+                "(?m)^CacheRefreshDuration=.*$", "CacheRefreshDuration=" + cacheRefreshDuration);
+        Files.write(new File(propertiesDir, BenchmarkPayloads.GATEWAY_PROPERTIES).toPath(),
+                properties.getBytes(Charset.forName("UTF-8")));
+
+        accessor = PropertyAccessor.getInstance();
+        accessor.forceRefresh(NhincConstants.GATEWAY_PROPERTY_FILE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkPayloads.delete(propertiesDir);
+    }
+
+    @Benchmark
+    public String getProperty() throws PropertyAccessException {
+        return accessor.getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.HOME_COMMUNITY_ID_PROPERTY);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String getPropertyContended() throws PropertyAccessException {
+        return accessor.getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.HOME_COMMUNITY_ID_PROPERTY);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.proxy;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+import gov.hhs.fha.nhinc.common.auditlog.LogEventRequestType;
+import gov.hhs.fha.nhinc.common.nhinccommon.AcknowledgementType;
+import gov.hhs.fha.nhinc.common.nhinccommonadapter.FindCommunitiesAndAuditEventsRequestType;
+import gov.hhs.fha.nhinc.common.nhinccommonadapter.FindCommunitiesAndAuditEventsResponseType;
+import gov.hhs.fha.nhinc.nhinccomponentauditrepository.AuditRepositoryManagerPortType;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.transform.audit.PatientDiscoveryTransforms;
+
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cxf.endpoint.Server;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.apache.cxf.jaxws.JaxWsServerFactoryBean;
+import org.hl7.v3.RespondingGatewayPRPAIN201305UV02RequestType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of handing a Patient Discovery audit message to an audit repository in the same server: called in
+ * process, as the proxies do when the service is bound in process, over the CXF local transport, and over HTTP to
+ * localhost, as the web service proxies do otherwise. The repository itself does nothing, so the results are the
+ * per-message overhead of each binding.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class InProcessBindingBenchmark {
+
+    private AuditRepositoryManagerPortType inProcessPort;
+    private AuditRepositoryManagerPortType localPort;
+    private AuditRepositoryManagerPortType httpPort;
+    private Server localServer;
+    private Server httpServer;
+    private LogEventRequestType logEventRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        RespondingGatewayPRPAIN201305UV02RequestType request = BenchmarkPayloads.unmarshal("org.hl7.v3",
+                BenchmarkPayloads.PATIENT_DISCOVERY_REQUEST, RespondingGatewayPRPAIN201305UV02RequestType.class);
+        logEventRequest = new PatientDiscoveryTransforms().transformNhinPRPAIN201305RequestToAuditMsg(
+                request.getPRPAIN201305UV02(), request.getAssertion(), NhincConstants.AUDIT_LOG_INBOUND_DIRECTION,
+                NhincConstants.AUDIT_LOG_NHIN_INTERFACE, NhincConstants.AUDIT_LOG_SYNC_TYPE,
+                NhincConstants.AUDIT_LOG_REQUEST_PROCESS);
+
+        inProcessPort = new NoOpAuditRepository();
+
+        String localAddress = "local://AuditRepositoryManagerService";
+        localServer = createServer(localAddress);
+        localPort = createPort(localAddress);
+
+        String httpAddress = "http://localhost:" + getFreePort() + "/CONNECTGateway/GatewayService/"
+                + "AuditRepositoryManagerService";
+        httpServer = createServer(httpAddress);
+        httpPort = createPort(httpAddress);
+    }
+
+    @TearDown
+    public void tearDown() {
+        localServer.destroy();
+        httpServer.destroy();
+    }
+
+    @Benchmark
+    public AcknowledgementType inProcess() {
+        return inProcessPort.logEvent(logEventRequest);
+    }
+
+    @Benchmark
+    public AcknowledgementType localTransport() {
+        return localPort.logEvent(logEventRequest);
+    }
+
+    @Benchmark
+    public AcknowledgementType loopbackHttp() {
+        return httpPort.logEvent(logEventRequest);
+    }
+
+    private Server createServer(String address) {
+        JaxWsServerFactoryBean serverFactory = new JaxWsServerFactoryBean();
+        serverFactory.setServiceClass(AuditRepositoryManagerPortType.class);
+        serverFactory.setServiceBean(new NoOpAuditRepository());
+        serverFactory.setAddress(address);
+        return serverFactory.create();
+    }
+
+    private AuditRepositoryManagerPortType createPort(String address) {
+        JaxWsProxyFactoryBean proxyFactory = new JaxWsProxyFactoryBean();
+        proxyFactory.setServiceClass(AuditRepositoryManagerPortType.class);
+        proxyFactory.setAddress(address);
+        return (AuditRepositoryManagerPortType) proxyFactory.create();
+    }
+
+    private int getFreePort() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * An audit repository that acknowledges every message without storing it.
+     */
+    public static class NoOpAuditRepository implements AuditRepositoryManagerPortType {
+
+        @Override
+        public AcknowledgementType logEvent(LogEventRequestType logEventRequest) {
+            AcknowledgementType ack = new AcknowledgementType();
+            ack.setMessage("Logged");
+            return ack;
+        }
+
+        @Override
+        public FindCommunitiesAndAuditEventsResponseType queryAuditEvents(
+                FindCommunitiesAndAuditEventsRequestType queryAuditEventsRequest) {
+            return new FindCommunitiesAndAuditEventsResponseType();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.transform.audit;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+import gov.hhs.fha.nhinc.common.auditlog.AdhocQueryMessageType;
+import gov.hhs.fha.nhinc.common.auditlog.AdhocQueryResponseMessageType;
+import gov.hhs.fha.nhinc.common.auditlog.LogAdhocQueryRequestType;
+import gov.hhs.fha.nhinc.common.auditlog.LogAdhocQueryResultRequestType;
+import gov.hhs.fha.nhinc.common.auditlog.LogEventRequestType;
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+import java.util.concurrent.TimeUnit;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryRequest;
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+
+import org.hl7.v3.RespondingGatewayPRPAIN201305UV02RequestType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of the audit log messages for a Document Query request and response.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class DocumentQueryTransformsBenchmark {
+
+    private static final String QUERY_CONTEXT = "oasis.names.tc.ebxml_regrep.xsd.query._3";
+
+    private DocumentQueryTransforms transforms;
+    private LogAdhocQueryRequestType requestMessage;
+    private LogAdhocQueryResultRequestType responseMessage;
+
+    @Setup
+    public void setUp() throws Exception {
+        transforms = new DocumentQueryTransforms();
+
+        AssertionType assertion = BenchmarkPayloads.unmarshal("org.hl7.v3",
+                BenchmarkPayloads.PATIENT_DISCOVERY_REQUEST, RespondingGatewayPRPAIN201305UV02RequestType.class)
+                .getAssertion();
+
+        AdhocQueryMessageType request = new AdhocQueryMessageType();
+        request.setAdhocQueryRequest(BenchmarkPayloads.unmarshal(QUERY_CONTEXT,
+                BenchmarkPayloads.ADHOC_QUERY_REQUEST, AdhocQueryRequest.class));
+        request.setAssertion(assertion);
+        requestMessage = new LogAdhocQueryRequestType();
+        requestMessage.setMessage(request);
+        requestMessage.setDirection(NhincConstants.AUDIT_LOG_INBOUND_DIRECTION);
+        requestMessage.setInterface(NhincConstants.AUDIT_LOG_NHIN_INTERFACE);
+
+        AdhocQueryResponseMessageType response = new AdhocQueryResponseMessageType();
+        response.setAdhocQueryResponse(BenchmarkPayloads.unmarshal(QUERY_CONTEXT,
+                BenchmarkPayloads.ADHOC_QUERY_RESPONSE, AdhocQueryResponse.class));
+        response.setAssertion(assertion);
+        responseMessage = new LogAdhocQueryResultRequestType();
+        responseMessage.setMessage(response);
+        responseMessage.setDirection(NhincConstants.AUDIT_LOG_OUTBOUND_DIRECTION);
+        responseMessage.setInterface(NhincConstants.AUDIT_LOG_NHIN_INTERFACE);
+    }
+
+    @Benchmark
+    public LogEventRequestType request() {
+        return transforms.transformDocQueryReq2AuditMsg(requestMessage, "1.1");
+    }
+
+    @Benchmark
+    public LogEventRequestType response() {
+        return transforms.transformDocQueryResp2AuditMsg(responseMessage, "2.2");
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.transform.audit;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+import gov.hhs.fha.nhinc.common.auditlog.LogEventRequestType;
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.v3.II;
+import org.hl7.v3.PRPAIN201305UV02;
+import org.hl7.v3.PRPAIN201306UV02;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01ControlActProcess;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01RegistrationEvent;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01Subject1;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01Subject2;
+import org.hl7.v3.PRPAMT201310UV02Patient;
+import org.hl7.v3.RespondingGatewayPRPAIN201305UV02RequestType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of the audit log messages for a Patient Discovery request, and for a response matching
+ * RESPONSE_PATIENT_COUNT patients. Run with -prof gc to see the memory allocated for each audit log message.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class PatientDiscoveryTransformsBenchmark {
+
+    private static final int RESPONSE_PATIENT_COUNT = 10;
+
+    private File propertiesDir;
+    private PatientDiscoveryTransforms transforms;
+    private RespondingGatewayPRPAIN201305UV02RequestType entityRequest;
+    private PRPAIN201305UV02 request;
+    private PRPAIN201306UV02 response;
+    private AssertionType assertion;
+
+    @Setup
+    public void setUp() throws Exception {
+        propertiesDir = BenchmarkPayloads.createPropertiesDirectory();
+        transforms = new PatientDiscoveryTransforms();
+        entityRequest = BenchmarkPayloads.unmarshal("org.hl7.v3", BenchmarkPayloads.PATIENT_DISCOVERY_REQUEST,
+                RespondingGatewayPRPAIN201305UV02RequestType.class);
+        request = entityRequest.getPRPAIN201305UV02();
+        assertion = entityRequest.getAssertion();
+        response = createResponse(request);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkPayloads.delete(propertiesDir);
+    }
+
+    @Benchmark
+    public LogEventRequestType entityInboundRequest() {
+        return transforms.transformEntityPRPAIN201305RequestToAuditMsg(entityRequest, assertion,
+                NhincConstants.AUDIT_LOG_INBOUND_DIRECTION, NhincConstants.AUDIT_LOG_ENTITY_INTERFACE,
+                NhincConstants.AUDIT_LOG_SYNC_TYPE, NhincConstants.AUDIT_LOG_REQUEST_PROCESS);
+    }
+
+    @Benchmark
+    public LogEventRequestType nhinInboundRequest() {
+        return transforms.transformNhinPRPAIN201305RequestToAuditMsg(request, assertion,
+                NhincConstants.AUDIT_LOG_INBOUND_DIRECTION, NhincConstants.AUDIT_LOG_NHIN_INTERFACE,
+                NhincConstants.AUDIT_LOG_SYNC_TYPE, NhincConstants.AUDIT_LOG_REQUEST_PROCESS);
+    }
+
+    @Benchmark
+    public LogEventRequestType adapterOutboundRequest() {
+        return transforms.transformAdapterPRPAIN201305RequestToAuditMsg(request, assertion,
+                NhincConstants.AUDIT_LOG_OUTBOUND_DIRECTION, NhincConstants.AUDIT_LOG_ADAPTER_INTERFACE,
+                NhincConstants.AUDIT_LOG_SYNC_TYPE, NhincConstants.AUDIT_LOG_REQUEST_PROCESS);
+    }
+
+    @Benchmark
+    public LogEventRequestType nhinOutboundResponse() {
+        return transforms.transformNhinPRPAIN201306ResponseToAuditMsg(response, assertion,
+                NhincConstants.AUDIT_LOG_OUTBOUND_DIRECTION, NhincConstants.AUDIT_LOG_NHIN_INTERFACE,
+                NhincConstants.AUDIT_LOG_SYNC_TYPE);
+    }
+
+    private static PRPAIN201306UV02 createResponse(PRPAIN201305UV02 request) {
+        PRPAIN201306UV02MFMIMT700711UV01ControlActProcess controlActProcess =
+                new PRPAIN201306UV02MFMIMT700711UV01ControlActProcess();
+        controlActProcess.setQueryByParameter(request.getControlActProcess().getQueryByParameter());
+        for (int i = 0; i < RESPONSE_PATIENT_COUNT; i++) {
+            II patientId = new II();
+            patientId.setRoot("2.16.840.1.113883.3.200");
+            patientId.setExtension("D12340" + i);
+            PRPAMT201310UV02Patient patient = new PRPAMT201310UV02Patient();
+            patient.getId().add(patientId);
+
+            PRPAIN201306UV02MFMIMT700711UV01Subject2 subject2 = new PRPAIN201306UV02MFMIMT700711UV01Subject2();
+            subject2.setPatient(patient);
+            PRPAIN201306UV02MFMIMT700711UV01RegistrationEvent registrationEvent =
+                    new PRPAIN201306UV02MFMIMT700711UV01RegistrationEvent();
+            registrationEvent.setSubject1(subject2);
+            PRPAIN201306UV02MFMIMT700711UV01Subject1 subject1 = new PRPAIN201306UV02MFMIMT700711UV01Subject1();
+            subject1.setRegistrationEvent(registrationEvent);
+            controlActProcess.getSubject().add(subject1);
+        }
+
+        PRPAIN201306UV02 response = new PRPAIN201306UV02();
+        response.setId(request.getId());
+        response.setControlActProcess(controlActProcess);
+        return response;
+    }
+}
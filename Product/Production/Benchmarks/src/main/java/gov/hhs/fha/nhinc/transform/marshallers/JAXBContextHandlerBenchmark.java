@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.transform.marshallers;
+
+import gov.hhs.fha.nhinc.benchmark.BenchmarkPayloads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+
+import org.hl7.v3.ObjectFactory;
+import org.hl7.v3.RespondingGatewayPRPAIN201305UV02RequestType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures JAXB round trips of the sample payloads through the contexts held by the JAXBContextHandler. Marshallers
+ * and unmarshallers are created for each call, as they are in the gateway.
+ *
+ * @author dharley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchmarkPayloads.LOG4J_CONFIGURATION)
+public class JAXBContextHandlerBenchmark {
+
+    private static final String HL7_CONTEXT = "org.hl7.v3";
+    private static final String QUERY_CONTEXT = "oasis.names.tc.ebxml_regrep.xsd.query._3";
+
+    private JAXBContextHandler handler;
+    private byte[] patientDiscoveryRequest;
+    private byte[] adhocQueryResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = new JAXBContextHandler();
+        patientDiscoveryRequest = BenchmarkPayloads.readBytes(BenchmarkPayloads.PATIENT_DISCOVERY_REQUEST);
+        adhocQueryResponse = BenchmarkPayloads.readBytes(BenchmarkPayloads.ADHOC_QUERY_RESPONSE);
+
+        // load the contexts before measuring
+        handler.getJAXBContext(HL7_CONTEXT);
+        handler.getJAXBContext(QUERY_CONTEXT);
+    }
+
+    @Benchmark
+    public JAXBContext contextLookup() throws JAXBException {
+        return handler.getJAXBContext(HL7_CONTEXT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public JAXBContext contextLookupContended() throws JAXBException {
+        return handler.getJAXBContext(HL7_CONTEXT);
+    }
+
+    @Benchmark
+    public byte[] patientDiscoveryRequestRoundTrip() throws JAXBException {
+        JAXBContext context = handler.getJAXBContext(HL7_CONTEXT);
+        JAXBElement<?> element = (JAXBElement<?>) context.createUnmarshaller().unmarshal(
+                new ByteArrayInputStream(patientDiscoveryRequest));
+        RespondingGatewayPRPAIN201305UV02RequestType request = (RespondingGatewayPRPAIN201305UV02RequestType) element
+                .getValue();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(patientDiscoveryRequest.length);
+        context.createMarshaller().marshal(new ObjectFactory().createRespondingGatewayPRPAIN201305UV02Request(request),
+                out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] adhocQueryResponseRoundTrip() throws JAXBException {
+        JAXBContext context = handler.getJAXBContext(QUERY_CONTEXT);
+        AdhocQueryResponse response = (AdhocQueryResponse) context.createUnmarshaller().unmarshal(
+                new ByteArrayInputStream(adhocQueryResponse));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(adhocQueryResponse.length);
+        context.createMarshaller().marshal(response, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class BenchmarkComparisonTest {
+
+    private static final String BASELINE = "["
+            + "{\"benchmark\":\"a.Bench.avg\",\"mode\":\"avgt\","
+            + "\"primaryMetric\":{\"score\":100.0,\"scoreUnit\":\"us/op\"}},"
+            + "{\"benchmark\":\"a.Bench.thrpt\",\"mode\":\"thrpt\","
+            + "\"primaryMetric\":{\"score\":100.0,\"scoreUnit\":\"ops/s\"}},"
+            + "{\"benchmark\":\"a.Bench.param\",\"mode\":\"avgt\",\"params\":{\"size\":\"1\"},"
+            + "\"primaryMetric\":{\"score\":10.0,\"scoreUnit\":\"us/op\"}},"
+            + "{\"benchmark\":\"a.Bench.param\",\"mode\":\"avgt\",\"params\":{\"size\":\"2\"},"
+            + "\"primaryMetric\":{\"score\":20.0,\"scoreUnit\":\"us/op\"}}]";
+
+    @Test
+    public void testReadResults() throws Exception {
+        Map<String, BenchmarkComparison.Result> results = BenchmarkComparison.readResults(BASELINE);
+
+        assertEquals(4, results.size());
+        assertEquals("avgt", results.get("a.Bench.avg").getMode());
+        assertEquals(100.0, results.get("a.Bench.avg").getScore(), 0);
+        assertEquals("us/op", results.get("a.Bench.avg").getUnit());
+        assertEquals(20.0, results.get("a.Bench.param{size=2}").getScore(), 0);
+    }
+
+    @Test
+    public void testNoRegressions() throws Exception {
+        Map<String, BenchmarkComparison.Result> baseline = BenchmarkComparison.readResults(BASELINE);
+
+        assertTrue(BenchmarkComparison.findRegressions(baseline, baseline, 10).isEmpty());
+    }
+
+    @Test
+    public void testSlowerAverageTimeRegresses() throws Exception {
+        Map<String, BenchmarkComparison.Result> baseline = BenchmarkComparison.readResults(BASELINE);
+        Map<String, BenchmarkComparison.Result> current = BenchmarkComparison.readResults(BASELINE.replace(
+                "\"score\":100.0,\"scoreUnit\":\"us/op\"", "\"score\":120.0,\"scoreUnit\":\"us/op\""));
+
+        List<String> regressions = BenchmarkComparison.findRegressions(baseline, current, 10);
+
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0).startsWith("a.Bench.avg "));
+    }
+
+    @Test
+    public void testLowerThroughputRegresses() throws Exception {
+        Map<String, BenchmarkComparison.Result> baseline = BenchmarkComparison.readResults(BASELINE);
+        Map<String, BenchmarkComparison.Result> faster = BenchmarkComparison.readResults(BASELINE.replace(
+                "\"score\":100.0,\"scoreUnit\":\"ops/s\"", "\"score\":150.0,\"scoreUnit\":\"ops/s\""));
+        Map<String, BenchmarkComparison.Result> slower = BenchmarkComparison.readResults(BASELINE.replace(
+                "\"score\":100.0,\"scoreUnit\":\"ops/s\"", "\"score\":80.0,\"scoreUnit\":\"ops/s\""));
+
+        assertTrue(BenchmarkComparison.findRegressions(baseline, faster, 10).isEmpty());
+        assertEquals(1, BenchmarkComparison.findRegressions(baseline, slower, 10).size());
+    }
+
+    @Test
+    public void testParamsAreComparedSeparately() throws Exception {
+        Map<String, BenchmarkComparison.Result> baseline = BenchmarkComparison.readResults(BASELINE);
+        Map<String, BenchmarkComparison.Result> current = BenchmarkComparison.readResults(BASELINE.replace(
+                "\"score\":20.0", "\"score\":30.0"));
+
+        List<String> regressions = BenchmarkComparison.findRegressions(baseline, current, 10);
+
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0).startsWith("a.Bench.param{size=2} "));
+    }
+
+    @Test
+    public void testMissingBenchmarksAreIgnored() throws Exception {
+        Map<String, BenchmarkComparison.Result> baseline = BenchmarkComparison.readResults("[]");
+        Map<String, BenchmarkComparison.Result> current = BenchmarkComparison.readResults(BASELINE);
+
+        assertTrue(BenchmarkComparison.findRegressions(baseline, current, 10).isEmpty());
+    }
+}
@@ -33,6 +33,7 @@ import gov.hhs.fha.nhinc.common.connectionmanagerinfo.UDDIUpdateManagerForceRefr
 import gov.hhs.fha.nhinc.connectmgr.persistance.dao.UddiConnectionInfoDAOFileImpl;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 import java.io.File;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -67,7 +68,8 @@ public class UDDIUpdateManagerHelper {
 
     /**
      * This method is called to force a refresh of the uddiConnectionInfo.xml file. It will retrieve the data from the
-     * UDDI server and update the local XML file.
+     * UDDI server and, if anything changed, update the local XML file and apply the changes to the connection manager
+     * cache.
      * 
      * @throws UDDIAccessorException
      */
@@ -79,8 +81,7 @@ public class UDDIUpdateManagerHelper {
         try {
             BusinessDetail businessDetail = retrieveDataFromUDDI();
             if (businessDetail != null) {
-                createUddiFileBackupByRenaming();
-                saveUddiResultsToFile(businessDetail);
+                synchronizeUddiResults(businessDetail);
             }
 
         } catch (Exception e) {
@@ -95,10 +96,10 @@ public class UDDIUpdateManagerHelper {
     }
 
     /**
-     * This method creates the uddi backup file if enabled by the configuration. The backup is created by renaming the
-     * current Uddi file to a newly generated filename.
+     * This method creates the uddi backup file if enabled by the configuration. The backup is created by copying the
+     * current Uddi file to a newly generated filename, since the current file is replaced atomically when saved.
      */
-    private void createUddiFileBackupByRenaming() {
+    private void createUddiFileBackupByCopying() {
         boolean createBackups = true;
         try {
             createBackups = PropertyAccessor.getInstance().getPropertyBoolean(GATEWAY_PROPERTY_FILE,
@@ -118,12 +119,12 @@ public class UDDIUpdateManagerHelper {
                 File newBackupFile = new File(backupUddiFileLocation);
 
                 if (currentFile.exists()) {
-                    currentFile.renameTo(newBackupFile);
+                    Files.copy(currentFile.toPath(), newBackupFile.toPath());
 
                     addToBackupList(backupUddiFileLocation);
                 }
             } catch (Exception e) {
-                String errorMessage = "Failed to rename the current file: " + uddiFileLocation + " to: "
+                String errorMessage = "Failed to copy the current file: " + uddiFileLocation + " to: "
                         + backupUddiFileLocation;
                 log.error(errorMessage, e);
             }
@@ -136,9 +137,15 @@ public class UDDIUpdateManagerHelper {
         return fileLocation + "." + dateFormat.format(currentTime.getTime());
     }
 
-    private void saveUddiResultsToFile(BusinessDetail businessDetail) {
-        UddiConnectionInfoDAOFileImpl uddiDao = UddiConnectionInfoDAOFileImpl.getInstance();
-        uddiDao.saveBusinessDetail(businessDetail);
+    private void synchronizeUddiResults(BusinessDetail businessDetail) {
+        UDDIConnectionInfoSynchronizer synchronizer = UDDIConnectionInfoSynchronizer.getInstance();
+        synchronized (synchronizer) {
+            UDDIBusinessDetailDiff diff = synchronizer.computeDiff(businessDetail);
+            if (!diff.isEmpty()) {
+                createUddiFileBackupByCopying();
+            }
+            synchronizer.apply(businessDetail, diff);
+        }
     }
 
     private void addToBackupList(String latestFilename) {
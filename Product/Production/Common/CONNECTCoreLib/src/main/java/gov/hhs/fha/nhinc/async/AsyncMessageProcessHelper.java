@@ -49,6 +49,7 @@ import org.hl7.v3.RespondingGatewayPRPAIN201305UV02RequestType;
 import org.hl7.v3.RespondingGatewayPRPAIN201306UV02RequestType;
 
 import gov.hhs.fha.nhinc.asyncmsgs.dao.AsyncMsgRecordDao;
+import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgDataCodec;
 import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgRecord;
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
@@ -383,7 +384,7 @@ public class AsyncMessageProcessHelper {
             baOutStrm.close();
             marshaller.marshal(oJaxbElement, baOutStrm);
             byte[] buffer = baOutStrm.toByteArray();
-            asyncMessage = Hibernate.createBlob(buffer);
+            asyncMessage = Hibernate.createBlob(AsyncMsgDataCodec.encode(buffer));
         } catch (Exception e) {
             log.error("Exception during Blob conversion :" + e.getMessage(), e);
         }
@@ -406,7 +407,7 @@ public class AsyncMessageProcessHelper {
             baOutStrm.close();
             marshaller.marshal(oJaxbElement, baOutStrm);
             byte[] buffer = baOutStrm.toByteArray();
-            asyncMessage = Hibernate.createBlob(buffer);
+            asyncMessage = Hibernate.createBlob(AsyncMsgDataCodec.encode(buffer));
         } catch (Exception e) {
             log.error("Exception during Blob conversion :" + e.getMessage(), e);
         }
@@ -429,7 +430,7 @@ public class AsyncMessageProcessHelper {
             baOutStrm.close();
             marshaller.marshal(oJaxbElement, baOutStrm);
             byte[] buffer = baOutStrm.toByteArray();
-            asyncMessage = Hibernate.createBlob(buffer);
+            asyncMessage = Hibernate.createBlob(AsyncMsgDataCodec.encode(buffer));
         } catch (Exception e) {
             log.error("Exception during Blob conversion :" + e.getMessage(), e);
         }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.asyncmsgs.dao;
+
+import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgDataCodec;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Compresses the messages of the async message repository that were stored before the messages were compressed. The
+ * records are read in ranges of ids, and each range is locked, compressed and committed on its own, so the gateway can
+ * keep running while the records are compressed, and the tool can be stopped and run again at any time.
+ *
+ * @author dharley
+ */
+public class AsyncMsgDataCompressor {
+
+    private static Log log = LogFactory.getLog(AsyncMsgDataCompressor.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final String TABLE = "asyncmsgs.asyncmsgrepo";
+    private static final String[] COLUMNS = { "MsgData", "RspData", "AckData" };
+
+    private final Connection connection;
+    private final int batchSize;
+
+    /**
+     * @param connection the connection to the database of the async message repository
+     * @param batchSize the number of record ids to compress in each transaction
+     */
+    public AsyncMsgDataCompressor(Connection connection, int batchSize) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Compresses every uncompressed message in the repository. Records added while the tool runs are stored compressed
+     * by the gateway, so only the records up to the highest id at the start are read.
+     *
+     * @return the number of messages compressed
+     * @throws SQLException if a batch fails; the batches before it stay compressed
+     */
+    public int compressAll() throws SQLException {
+        long maxId = getMaxId();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int total = 0;
+            for (long fromId = 0; fromId < maxId; fromId += batchSize) {
+                long toId = Math.min(fromId + batchSize, maxId);
+                total += compressBatch(fromId, toId);
+                log.info("Compressed " + total + " async messages up to record " + toId);
+            }
+            return total;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Compresses the messages of a range of records, locking the records until the batch is committed.
+     *
+     * @param afterId the id after which the range starts
+     * @param toId the last id of the range
+     * @return the number of messages compressed
+     * @throws SQLException if the batch cannot be read or updated; it is rolled back
+     */
+    int compressBatch(long afterId, long toId) throws SQLException {
+        PreparedStatement select = connection.prepareStatement("SELECT Id, MsgData, RspData, AckData FROM " + TABLE
+                + " WHERE Id > ? AND Id <= ? FOR UPDATE");
+        PreparedStatement[] updates = new PreparedStatement[COLUMNS.length];
+        try {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                updates[i] = connection.prepareStatement("UPDATE " + TABLE + " SET " + COLUMNS[i]
+                        + " = ? WHERE Id = ?");
+            }
+            select.setLong(1, afterId);
+            select.setLong(2, toId);
+            ResultSet records = select.executeQuery();
+            int compressed = 0;
+            while (records.next()) {
+                long id = records.getLong(1);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    byte[] data = records.getBytes(i + 2);
+                    if (data != null && data.length > 0 && !AsyncMsgDataCodec.isEncoded(data)) {
+                        updates[i].setBytes(1, AsyncMsgDataCodec.encode(data));
+                        updates[i].setLong(2, id);
+                        updates[i].addBatch();
+                        compressed++;
+                    }
+                }
+            }
+            records.close();
+            for (PreparedStatement update : updates) {
+                update.executeBatch();
+            }
+            connection.commit();
+            return compressed;
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            select.close();
+            for (PreparedStatement update : updates) {
+                if (update != null) {
+                    update.close();
+                }
+            }
+        }
+    }
+
+    private long getMaxId() throws SQLException {
+        PreparedStatement select = connection.prepareStatement("SELECT MAX(Id) FROM " + TABLE);
+        try {
+            ResultSet result = select.executeQuery();
+            return result.next() ? result.getLong(1) : 0;
+        } finally {
+            select.close();
+        }
+    }
+
+    /**
+     * Compresses the messages of the async message repository on a database server.
+     *
+     * @param args the jdbc url, user and password, optionally followed by the batch size
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 4 || (args.length == 4 && !args[3].matches("[1-9]\\d*"))) {
+            System.err.println("Usage: AsyncMsgDataCompressor <jdbc url> <user> <password> [batch size]");
+            System.exit(1);
+        }
+
+        try {
+            Connection connection = DriverManager.getConnection(args[0], args[1], args[2]);
+            try {
+                int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BATCH_SIZE;
+                int count = new AsyncMsgDataCompressor(connection, batchSize).compressAll();
+                System.out.println("Compressed " + count + " async message(s)");
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            log.error("Compressing the async messages failed", ex);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.asyncmsgs.model;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Converts the messages stored in the MsgData, RspData and AckData columns of the async message repository to and
+ * from their stored form.
+ * <p>
+ * A message is stored compressed, behind a two byte header: a zero byte, which can never start the XML the messages
+ * used to be stored as, followed by the format of the rest of the data. Data without the header is an uncompressed
+ * message written before the messages were compressed, and is read as it is.
+ *
+ * @author dharley
+ */
+public class AsyncMsgDataCodec {
+
+    static final byte HEADER = 0;
+
+    /**
+     * The message compressed with DEFLATE.
+     */
+    static final byte FORMAT_DEFLATE = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private AsyncMsgDataCodec() {
+    }
+
+    /**
+     * @param message the message as XML
+     * @return the message as stored, or null if the message is null
+     */
+    public static byte[] encode(byte[] message) {
+        if (message == null) {
+            return null;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(message);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(message.length / 4 + 16);
+            out.write(HEADER);
+            out.write(FORMAT_DEFLATE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param data the message as stored, compressed or not
+     * @return the message as XML, or null if the data is null
+     * @throws IllegalArgumentException if the data is in an unknown format or is corrupt
+     */
+    public static byte[] decode(byte[] data) {
+        if (!isEncoded(data)) {
+            return data;
+        }
+        if (data[1] != FORMAT_DEFLATE) {
+            throw new IllegalArgumentException("Unknown async message data format " + data[1]);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 2, data.length - 2);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Async message data is truncated");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Async message data is corrupt: " + ex.getMessage(), ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @param blob the message as stored, compressed or not
+     * @return the message as XML, or null if the blob is null
+     * @throws SQLException if the blob cannot be read
+     */
+    public static byte[] decode(Blob blob) throws SQLException {
+        if (blob == null) {
+            return null;
+        }
+        return decode(blob.getBytes(1, (int) blob.length()));
+    }
+
+    /**
+     * @param data the message as stored
+     * @return true if the data has the header of a compressed message, false if it is an uncompressed message
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == HEADER;
+    }
+}
@@ -26,15 +26,12 @@
  */
 package gov.hhs.fha.nhinc.asyncmsgs.persistence;
 
-import java.io.File;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 
 /**
  *
@@ -45,8 +42,9 @@ public class HibernateUtil {
     private static Log log = LogFactory.getLog(HibernateUtil.class);
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    NhincConstants.HIBERNATE_ASYNCMSGS_REPOSITORY);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             log.error("Initial SessionFactory creation failed." + ex);
@@ -63,16 +61,4 @@ public class HibernateUtil {
         return sessionFactory;
     }
 
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_ASYNCMSGS_REPOSITORY);
-        } catch (Exception ex) {
-            log.error("Unable to load " + NhincConstants.HIBERNATE_ASYNCMSGS_REPOSITORY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-    }
-
 }
@@ -3,9 +3,12 @@ package gov.hhs.fha.nhinc.callback.cxf;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 
+import java.security.cert.X509Certificate;
+
 import javax.xml.namespace.QName;
 
 import org.apache.ws.security.WSSecurityException;
+import org.apache.ws.security.components.crypto.Crypto;
 import org.apache.ws.security.saml.ext.AssertionWrapper;
 import org.apache.ws.security.validate.SamlAssertionValidator;
 import org.opensaml.xml.validation.ValidationException;
@@ -56,6 +59,33 @@ public class CONNECTSamlAssertionValidator extends SamlAssertionValidator {
         }
     }
 
+    /**
+     * Validate the certificates of the assertion signature, remembering the trusted chains in the CertificateTrustCache
+     */
+    @Override
+    protected boolean verifyTrustInCert(final X509Certificate cert, final Crypto crypto,
+            final boolean enableRevocation) throws WSSecurityException {
+        return CertificateTrustCache.getInstance().verifyTrust(crypto, new X509Certificate[] { cert },
+                enableRevocation, new CertificateTrustCache.TrustVerifier() {
+                    @Override
+                    public boolean verifyTrust(X509Certificate[] chain) throws WSSecurityException {
+                        return CONNECTSamlAssertionValidator.super.verifyTrustInCert(cert, crypto, enableRevocation);
+                    }
+                });
+    }
+
+    @Override
+    protected boolean verifyTrustInCerts(X509Certificate[] certificates, final Crypto crypto,
+            final boolean enableRevocation) throws WSSecurityException {
+        return CertificateTrustCache.getInstance().verifyTrust(crypto, certificates, enableRevocation,
+                new CertificateTrustCache.TrustVerifier() {
+                    @Override
+                    public boolean verifyTrust(X509Certificate[] chain) throws WSSecurityException {
+                        return CONNECTSamlAssertionValidator.super.verifyTrustInCerts(chain, crypto, enableRevocation);
+                    }
+                });
+    }
+
     protected ValidatorSuite getSaml2SpecValidator() {
         try {
             Boolean allowNoSubjectAssertion = PropertyAccessor.getInstance().getPropertyBoolean(
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.callback.cxf;
+
+import java.security.cert.X509Certificate;
+
+import org.apache.ws.security.WSSecurityException;
+import org.apache.ws.security.components.crypto.Crypto;
+import org.apache.ws.security.validate.SignatureTrustValidator;
+
+/**
+ * Validates the certificates of message signatures like SignatureTrustValidator, remembering the chains found to be
+ * trusted in the CertificateTrustCache so that they are not validated against the trust store for every message.
+ *
+ * @author dharley
+ */
+public class CachingSignatureTrustValidator extends SignatureTrustValidator {
+
+    @Override
+    protected boolean verifyTrustInCert(final X509Certificate cert, final Crypto crypto,
+            final boolean enableRevocation) throws WSSecurityException {
+        return CertificateTrustCache.getInstance().verifyTrust(crypto, new X509Certificate[] { cert },
+                enableRevocation, new CertificateTrustCache.TrustVerifier() {
+                    @Override
+                    public boolean verifyTrust(X509Certificate[] chain) throws WSSecurityException {
+                        return CachingSignatureTrustValidator.super.verifyTrustInCert(cert, crypto, enableRevocation);
+                    }
+                });
+    }
+
+    @Override
+    protected boolean verifyTrustInCerts(X509Certificate[] certificates, final Crypto crypto,
+            final boolean enableRevocation) throws WSSecurityException {
+        return CertificateTrustCache.getInstance().verifyTrust(crypto, certificates, enableRevocation,
+                new CertificateTrustCache.TrustVerifier() {
+                    @Override
+                    public boolean verifyTrust(X509Certificate[] chain) throws WSSecurityException {
+                        return CachingSignatureTrustValidator.super.verifyTrustInCerts(chain, crypto, enableRevocation);
+                    }
+                });
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.callback.cxf;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.util.DirectoryWatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ws.security.WSSecurityException;
+import org.apache.ws.security.components.crypto.Crypto;
+import org.apache.ws.security.components.crypto.CryptoFactory;
+
+/**
+ * Keeps the crypto objects built from the ws-security property files, and the certificate chains each of them has
+ * found to be trusted, so that the key and trust stores are loaded once rather than for every message, and the path of
+ * a partner's certificate is validated once in a while rather than for every signature.
+ * <p>
+ * A chain stays trusted for CertificateTrustCacheTTL milliseconds, and never past the end of the validity of any of
+ * its certificates. The stores named in the property files are watched; when one of them changes, the crypto objects
+ * are rebuilt and every chain is validated again. Chains that are checked for revocation are never cached.
+ *
+ * @author dharley
+ */
+public class CertificateTrustCache {
+
+    private static Log log = LogFactory.getLog(CertificateTrustCache.class);
+
+    static final String[] STORE_FILE_PROPERTIES = { "org.apache.ws.security.crypto.merlin.file",
+            "org.apache.ws.security.crypto.merlin.keystore.file",
+            "org.apache.ws.security.crypto.merlin.truststore.file" };
+
+    private static final long DEFAULT_TIME_TO_LIVE = 3600000;
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static CertificateTrustCache instance = null;
+
+    private final ConcurrentMap<String, Crypto> cryptos = new ConcurrentHashMap<String, Crypto>();
+    private final Map<Crypto, Map<String, Long>> trustedChains = Collections
+            .synchronizedMap(new WeakHashMap<Crypto, Map<String, Long>>());
+    private final Set<File> watchedFiles = new HashSet<File>();
+    private final DirectoryWatcher watcher = new DirectoryWatcher("CertificateTrustCache-watcher",
+            new DirectoryWatcher.Listener() {
+                @Override
+                public void fileChanged(Path directory, String fileName) {
+                    if (fileName == null || isWatched(directory, fileName)) {
+                        log.info("Key or trust store changed in " + directory
+                                + ", reloading the stores and validating certificates again");
+                        clear();
+                    }
+                }
+            }, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+    protected CertificateTrustCache() {
+    }
+
+    public static synchronized CertificateTrustCache getInstance() {
+        if (instance == null) {
+            instance = new CertificateTrustCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Stops watching the key and trust stores, if the cache has been created.
+     */
+    public static synchronized void stopWatching() {
+        if (instance != null) {
+            instance.watcher.stop();
+        }
+    }
+
+    /**
+     * Returns the crypto object built from a ws-security property file, building it the first time.
+     *
+     * @param key the key of the property file
+     * @param properties the properties of the file
+     * @param loader the class loader the stores are loaded with
+     * @return the crypto object
+     * @throws WSSecurityException if the crypto object cannot be built
+     */
+    public Crypto getCrypto(String key, Properties properties, ClassLoader loader) throws WSSecurityException {
+        Crypto crypto = cryptos.get(key);
+        if (crypto == null) {
+            crypto = CryptoFactory.getInstance(properties, loader);
+            Crypto existing = cryptos.putIfAbsent(key, crypto);
+            if (existing != null) {
+                return existing;
+            }
+            for (String property : STORE_FILE_PROPERTIES) {
+                watch(resolve(properties.getProperty(property), loader));
+            }
+        }
+        return crypto;
+    }
+
+    /**
+     * Validates a certificate chain the way a ws-security validator does.
+     */
+    public interface TrustVerifier {
+
+        /**
+         * @param chain the certificate chain
+         * @return true if the chain is trusted
+         * @throws WSSecurityException if the chain cannot be validated
+         */
+        boolean verifyTrust(X509Certificate[] chain) throws WSSecurityException;
+    }
+
+    /**
+     * Validates a certificate chain, unless the crypto object has found it to be trusted before, and records the chain
+     * if it is trusted. Chains that are checked for revocation are always validated and never recorded.
+     *
+     * @param crypto the crypto object that validates the chain
+     * @param chain the certificate chain
+     * @param enableRevocation true if the chain is checked for revocation
+     * @param verifier validates the chain
+     * @return true if the chain is trusted
+     * @throws WSSecurityException if the chain cannot be validated
+     */
+    public boolean verifyTrust(Crypto crypto, X509Certificate[] chain, boolean enableRevocation,
+            TrustVerifier verifier) throws WSSecurityException {
+        if (enableRevocation) {
+            return verifier.verifyTrust(chain);
+        }
+        if (isTrusted(crypto, chain)) {
+            return true;
+        }
+        boolean trusted = verifier.verifyTrust(chain);
+        if (trusted) {
+            setTrusted(crypto, chain);
+        }
+        return trusted;
+    }
+
+    /**
+     * @param crypto the crypto object that validated the chain
+     * @param chain the certificate chain
+     * @return true if the crypto object has found the chain to be trusted and that result has not expired
+     */
+    public boolean isTrusted(Crypto crypto, X509Certificate[] chain) {
+        return isTrusted(crypto, chain, System.currentTimeMillis());
+    }
+
+    boolean isTrusted(Crypto crypto, X509Certificate[] chain, long now) {
+        Map<String, Long> chains = trustedChains.get(crypto);
+        String fingerprint = fingerprint(chain);
+        if (chains == null || fingerprint == null) {
+            return false;
+        }
+        Long expires = chains.get(fingerprint);
+        return expires != null && expires > now;
+    }
+
+    /**
+     * Records that a crypto object has found a chain to be trusted.
+     *
+     * @param crypto the crypto object that validated the chain
+     * @param chain the certificate chain
+     */
+    public void setTrusted(Crypto crypto, X509Certificate[] chain) {
+        setTrusted(crypto, chain, System.currentTimeMillis());
+    }
+
+    void setTrusted(Crypto crypto, X509Certificate[] chain, long now) {
+        long timeToLive = getTimeToLive();
+        String fingerprint = fingerprint(chain);
+        if (timeToLive <= 0 || fingerprint == null) {
+            return;
+        }
+        long expires = now + timeToLive;
+        for (X509Certificate certificate : chain) {
+            expires = Math.min(expires, certificate.getNotAfter().getTime());
+        }
+        if (expires <= now) {
+            return;
+        }
+
+        Map<String, Long> chains;
+        synchronized (trustedChains) {
+            chains = trustedChains.get(crypto);
+            if (chains == null) {
+                chains = new ConcurrentHashMap<String, Long>();
+                trustedChains.put(crypto, chains);
+            }
+        }
+        if (chains.size() >= getMaxEntries()) {
+            Iterator<Long> iterator = chains.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() <= now) {
+                    iterator.remove();
+                }
+            }
+            if (chains.size() >= getMaxEntries()) {
+                return;
+            }
+        }
+        chains.put(fingerprint, expires);
+    }
+
+    /**
+     * Drops the crypto objects and the trusted chains, so that the stores are loaded and the chains validated again.
+     */
+    public void clear() {
+        cryptos.clear();
+        trustedChains.clear();
+    }
+
+    /**
+     * @return CertificateTrustCacheTTL from gateway.properties, in milliseconds
+     */
+    protected long getTimeToLive() {
+        return parse(NhincConstants.CERTIFICATE_TRUST_CACHE_TTL,
+                getProperty(NhincConstants.CERTIFICATE_TRUST_CACHE_TTL), DEFAULT_TIME_TO_LIVE);
+    }
+
+    protected int getMaxEntries() {
+        return (int) parse(NhincConstants.CERTIFICATE_TRUST_CACHE_MAX_ENTRIES,
+                getProperty(NhincConstants.CERTIFICATE_TRUST_CACHE_MAX_ENTRIES), DEFAULT_MAX_ENTRIES);
+    }
+
+    protected String getProperty(String propertyName) {
+        try {
+            return PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, propertyName);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param chain the certificate chain
+     * @return the SHA-1 fingerprint of the certificates of the chain, or null if they cannot be encoded
+     */
+    static String fingerprint(X509Certificate[] chain) {
+        if (chain == null || chain.length == 0) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (X509Certificate certificate : chain) {
+                digest.update(certificate.getEncoded());
+            }
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fingerprint.append(String.format("%02x", b));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            log.warn("Unable to fingerprint certificates: " + ex.getMessage());
+            return null;
+        } catch (CertificateEncodingException ex) {
+            log.warn("Unable to fingerprint certificates: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private long parse(String propertyName, String value, long defaultValue) {
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                log.warn(propertyName + " in gateway.properties is not a number: " + ex.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Finds the file a store is loaded from, the way the crypto object looks for it: on the class path first, then on
+     * the file system.
+     */
+    private File resolve(String location, ClassLoader loader) {
+        if (location == null || location.trim().length() == 0) {
+            return null;
+        }
+        URL url = loader == null ? null : loader.getResource(location.trim());
+        if (url == null) {
+            File file = new File(location.trim());
+            return file.isFile() ? file.getAbsoluteFile() : null;
+        }
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    synchronized void watch(File file) {
+        if (file == null || !watchedFiles.add(file)) {
+            return;
+        }
+        Path directory = file.getParentFile().toPath();
+        try {
+            watcher.watch(directory);
+            log.debug("Watching " + file + " for changes to the trusted certificates");
+        } catch (IOException ex) {
+            log.warn("Unable to watch " + file + " for changes, its certificates are trusted until the cached "
+                    + "validations expire: " + ex.getMessage(), ex);
+        }
+    }
+
+    private synchronized boolean isWatched(Path directory, String name) {
+        return watchedFiles.contains(new File(directory.toFile(), name));
+    }
+}
@@ -19,16 +19,21 @@
 
 package gov.hhs.fha.nhinc.callback.cxf;
 
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
@@ -36,6 +41,7 @@ import javax.xml.soap.SOAPException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -94,7 +100,10 @@ import org.apache.ws.security.components.crypto.Crypto;
 import org.apache.ws.security.handler.RequestData;
 import org.apache.ws.security.handler.WSHandlerConstants;
 import org.apache.ws.security.message.token.Timestamp;
+import org.apache.ws.security.saml.ext.AssertionWrapper;
+import org.apache.ws.security.util.Base64;
 import org.apache.ws.security.util.WSSecurityUtil;
+import org.opensaml.saml2.core.Conditions;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -107,6 +116,27 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
     public static final EndorsingSupportingTokensInterceptor INSTANCE = new EndorsingSupportingTokensInterceptor();
     private static final Logger LOG = LogUtils.getL7dLogger(EndorsingSupportingTokensInterceptor.class);
 
+    private static final long DEFAULT_REPLAY_CACHE_TTL = 300000;
+    private static final int DEFAULT_REPLAY_CACHE_MAX_ENTRIES = 10000;
+    private static ReplayCache replayCache = null;
+
+    // XPath factories and compiled expressions are not thread safe, so each thread compiles its own
+    private static final ThreadLocal<XPathFactory> XPATH_FACTORY = new ThreadLocal<XPathFactory>() {
+        @Override
+        protected XPathFactory initialValue() {
+            return XPathFactory.newInstance();
+        }
+    };
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATHS =
+            new ThreadLocal<Map<String, XPathExpression>>() {
+        @Override
+        protected Map<String, XPathExpression> initialValue() {
+            return new HashMap<String, XPathExpression>();
+        }
+    };
+
+    private final CachingSignatureTrustValidator signatureValidator = new CachingSignatureTrustValidator();
+
     /**
      *
      */
@@ -116,6 +146,9 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
 
     @Override
     public void handleMessage(SoapMessage msg) throws Fault {
+        if (msg.getContextualProperty(SecurityConstants.SIGNATURE_TOKEN_VALIDATOR) == null) {
+            msg.put(SecurityConstants.SIGNATURE_TOKEN_VALIDATOR, signatureValidator);
+        }
         super.handleMessage(msg);
     }
 
@@ -155,6 +188,27 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
         return properties;
     }
 
+    /**
+     * Returns the crypto object configured by o, building it from its property file only the first time, so that the
+     * key and trust stores are not loaded again for every message. If it cannot be built, the properties are returned
+     * and WSS4J reports the error.
+     */
+    private Object getCrypto(Object o, String propsKey, URL propsURL, SoapMessage message) {
+        if (o instanceof Crypto) {
+            return o;
+        }
+        Properties properties = getProps(o, propsKey, propsURL, message);
+        if (properties == null) {
+            return null;
+        }
+        try {
+            return CertificateTrustCache.getInstance().getCrypto(propsKey, properties, getClassLoader(message));
+        } catch (WSSecurityException e) {
+            LOG.log(Level.WARNING, "Unable to load the crypto configured by " + propsKey, e);
+            return properties;
+        }
+    }
+
     private URL getPropertiesFileURL(Object o, SoapMessage message) {
         if (o instanceof String) {
             URL url = null;
@@ -238,11 +292,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                 propsKey = propsURL.getPath();
             }
             message.put(WSHandlerConstants.DEC_PROP_REF_ID, "RefId-" + propsKey);
-            if (s instanceof Crypto) {
-                message.put("RefId-" + propsKey, (Crypto) s);
-            } else {
-                message.put("RefId-" + propsKey, getProps(s, propsKey, propsURL, message));
-            }
+            message.put("RefId-" + propsKey, getCrypto(s, propsKey, propsURL, message));
             if (e == null) {
                 e = s;
             }
@@ -254,11 +304,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                 propsKey = propsURL.getPath();
             }
             message.put(WSHandlerConstants.SIG_PROP_REF_ID, "RefId-" + propsKey);
-            if (e instanceof Crypto) {
-                message.put("RefId-" + propsKey, (Crypto) e);
-            } else {
-                message.put("RefId-" + propsKey, getProps(e, propsKey, propsURL, message));
-            }
+            message.put("RefId-" + propsKey, getCrypto(e, propsKey, propsURL, message));
         }
 
         return action;
@@ -288,11 +334,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                 propsKey = propsURL.getPath();
             }
             message.put(WSHandlerConstants.DEC_PROP_REF_ID, "RefId-" + propsKey);
-            if (s instanceof Crypto) {
-                message.put("RefId-" + propsKey, (Crypto) s);
-            } else {
-                message.put("RefId-" + propsKey, getProps(s, propsKey, propsURL, message));
-            }
+            message.put("RefId-" + propsKey, getCrypto(s, propsKey, propsURL, message));
             if (e == null) {
                 e = s;
             }
@@ -304,11 +346,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                 propsKey = propsURL.getPath();
             }
             message.put(WSHandlerConstants.SIG_PROP_REF_ID, "RefId-" + propsKey);
-            if (e instanceof Crypto) {
-                message.put("RefId-" + propsKey, (Crypto) e);
-            } else {
-                message.put("RefId-" + propsKey, getProps(e, propsKey, propsURL, message));
-            }
+            message.put("RefId-" + propsKey, getCrypto(e, propsKey, propsURL, message));
         }
 
         return action;
@@ -345,11 +383,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                     propsKey = propsURL.getPath();
                 }
                 message.put(WSHandlerConstants.SIG_PROP_REF_ID, "RefId-" + propsKey);
-                if (e instanceof Crypto) {
-                    message.put("RefId-" + propsKey, (Crypto) e);
-                } else {
-                    message.put("RefId-" + propsKey, getProps(e, propsKey, propsURL, message));
-                }
+                message.put("RefId-" + propsKey, getCrypto(e, propsKey, propsURL, message));
             }
             if (s != null) {
                 URL propsURL = getPropertiesFileURL(s, message);
@@ -358,11 +392,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                     propsKey = propsURL.getPath();
                 }
                 message.put(WSHandlerConstants.DEC_PROP_REF_ID, "RefId-" + propsKey);
-                if (s instanceof Crypto) {
-                    message.put("RefId-" + propsKey, (Crypto) s);
-                } else {
-                    message.put("RefId-" + propsKey, getProps(s, propsKey, propsURL, message));
-                }
+                message.put("RefId-" + propsKey, getCrypto(s, propsKey, propsURL, message));
             }
         } else {
             if (s != null) {
@@ -372,11 +402,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                     propsKey = propsURL.getPath();
                 }
                 message.put(WSHandlerConstants.SIG_PROP_REF_ID, "RefId-" + propsKey);
-                if (s instanceof Crypto) {
-                    message.put("RefId-" + propsKey, (Crypto) s);
-                } else {
-                    message.put("RefId-" + propsKey, getProps(s, propsKey, propsURL, message));
-                }
+                message.put("RefId-" + propsKey, getCrypto(s, propsKey, propsURL, message));
             }
             if (e != null) {
                 URL propsURL = getPropertiesFileURL(e, message);
@@ -385,11 +411,7 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                     propsKey = propsURL.getPath();
                 }
                 message.put(WSHandlerConstants.DEC_PROP_REF_ID, "RefId-" + propsKey);
-                if (e instanceof Crypto) {
-                    message.put("RefId-" + propsKey, (Crypto) e);
-                } else {
-                    message.put("RefId-" + propsKey, getProps(e, propsKey, propsURL, message));
-                }
+                message.put("RefId-" + propsKey, getCrypto(e, propsKey, propsURL, message));
             }
         }
 
@@ -518,6 +540,8 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
             }
         }
 
+        checkReplay(results, signedResults);
+
         //
         // Check policies
         //
@@ -719,15 +743,10 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
                 RequiredElements rp = (RequiredElements) ai.getAssertion();
                 ai.setAsserted(true);
                 Map<String, String> namespaces = rp.getDeclaredNamespaces();
-                XPathFactory factory = XPathFactory.newInstance();
                 for (String expression : rp.getXPathExpressions()) {
-                    XPath xpath = factory.newXPath();
-                    if (namespaces != null) {
-                        xpath.setNamespaceContext(new MapNamespaceContext(namespaces));
-                    }
                     NodeList list;
                     try {
-                        list = (NodeList) xpath.evaluate(expression, header, XPathConstants.NODESET);
+                        list = evaluateXPath(expression, namespaces, header);
                         if (list.getLength() == 0) {
                             ai.setNotAsserted("No header element matching XPath " + expression + " found.");
                             return false;
@@ -743,6 +762,84 @@ public class EndorsingSupportingTokensInterceptor extends WSS4JInInterceptor {
         return true;
     }
 
+    /**
+     * Reject a message received again while it is still valid: one whose timestamp and signature were already seen, or
+     * that carries a one-time-use SAML assertion already seen.
+     */
+    private void checkReplay(List<WSSecurityEngineResult> results, List<WSSecurityEngineResult> signedResults)
+            throws WSSecurityException {
+        ReplayCache cache = getReplayCache();
+        if (cache == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long window = PropertyAccessor.getInstance().getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                NhincConstants.REPLAY_CACHE_TTL, DEFAULT_REPLAY_CACHE_TTL);
+
+        WSSecurityEngineResult tsResult = WSSecurityUtil.fetchActionResult(results, WSConstants.TS);
+        Timestamp ts = tsResult == null ? null : (Timestamp) tsResult.get(WSSecurityEngineResult.TAG_TIMESTAMP);
+        if (ts != null && ts.getCreated() != null) {
+            long expires = ts.getExpires() != null ? ts.getExpires().getTime() : ts.getCreated().getTime() + window;
+            for (WSSecurityEngineResult result : signedResults) {
+                byte[] signatureValue = (byte[]) result.get(WSSecurityEngineResult.TAG_SIGNATURE_VALUE);
+                if (signatureValue != null
+                        && !cache.add(ts.getCreated().getTime() + " " + Base64.encode(signatureValue), expires, now)) {
+                    throw new WSSecurityException(
+                            "Replayed message: the timestamp and signature were already received");
+                }
+            }
+        }
+
+        List<WSSecurityEngineResult> samlResults = new ArrayList<WSSecurityEngineResult>();
+        WSSecurityUtil.fetchAllActionResults(results, WSConstants.ST_SIGNED, samlResults);
+        WSSecurityUtil.fetchAllActionResults(results, WSConstants.ST_UNSIGNED, samlResults);
+        for (WSSecurityEngineResult result : samlResults) {
+            AssertionWrapper assertion = (AssertionWrapper) result.get(WSSecurityEngineResult.TAG_SAML_ASSERTION);
+            Conditions conditions = assertion == null || assertion.getSaml2() == null ? null : assertion.getSaml2()
+                    .getConditions();
+            if (conditions != null && conditions.getOneTimeUse() != null) {
+                long expires = conditions.getNotOnOrAfter() != null ? conditions.getNotOnOrAfter().getMillis() : now
+                        + window;
+                if (!cache.add("saml " + assertion.getId(), expires, now)) {
+                    throw new WSSecurityException("Replayed message: the one-time-use assertion " + assertion.getId()
+                            + " was already received");
+                }
+            }
+        }
+    }
+
+    private static synchronized ReplayCache getReplayCache() {
+        if (replayCache == null) {
+            int maxEntries = (int) PropertyAccessor.getInstance().getPropertyLong(
+                    NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.REPLAY_CACHE_MAX_ENTRIES,
+                    DEFAULT_REPLAY_CACHE_MAX_ENTRIES);
+            if (maxEntries <= 0) {
+                return null;
+            }
+            replayCache = new ReplayCache(maxEntries);
+        }
+        return replayCache;
+    }
+
+    /**
+     * Evaluate an XPath expression of a policy, compiling it only the first time the thread sees it
+     */
+    private static NodeList evaluateXPath(String expression, Map<String, String> namespaces, Node node)
+            throws XPathExpressionException {
+        Map<String, XPathExpression> compiledXPaths = XPATHS.get();
+        String key = namespaces + " " + expression;
+        XPathExpression compiled = compiledXPaths.get(key);
+        if (compiled == null) {
+            XPath xpath = XPATH_FACTORY.get().newXPath();
+            if (namespaces != null) {
+                xpath.setNamespaceContext(new MapNamespaceContext(namespaces));
+            }
+            compiled = xpath.compile(expression);
+            compiledXPaths.put(key, compiled);
+        }
+        return (NodeList) compiled.evaluate(node, XPathConstants.NODESET);
+    }
+
     private boolean isTransportBinding(AssertionInfoMap aim) {
         Collection<AssertionInfo> ais = aim.get(SP12Constants.TRANSPORT_BINDING);
         if (ais != null && ais.size() > 0) {
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.callback.cxf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the identifiers of the secured messages received, each until the end of the time window in which the
+ * message is valid, so that a message received a second time inside its window can be rejected as a replay. At most
+ * maxEntries identifiers are remembered: when the cache is full, the identifiers whose window has closed are dropped,
+ * and then the oldest ones.
+ *
+ * @author dharley
+ */
+public class ReplayCache {
+
+    private final Map<String, Long> expiries = new LinkedHashMap<String, Long>();
+    private final int maxEntries;
+
+    /**
+     * @param maxEntries the number of identifiers remembered at most
+     */
+    public ReplayCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Remembers an identifier until its window closes, unless it is already remembered.
+     *
+     * @param identifier the identifier of the message
+     * @param expires the time, in milliseconds, at which the window of the message closes
+     * @param now the current time, in milliseconds
+     * @return true if the identifier was added, false if it was already seen inside its window
+     */
+    public synchronized boolean add(String identifier, long expires, long now) {
+        Long seen = expiries.get(identifier);
+        if (seen != null && seen > now) {
+            return false;
+        }
+        if (seen != null) {
+            expiries.remove(identifier);
+        } else if (expiries.size() >= maxEntries) {
+            purge(now);
+        }
+        expiries.put(identifier, expires);
+        return true;
+    }
+
+    /**
+     * @return the number of identifiers remembered
+     */
+    public synchronized int size() {
+        return expiries.size();
+    }
+
+    private void purge(long now) {
+        Iterator<Long> iterator = expiries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+        iterator = expiries.values().iterator();
+        while (expiries.size() >= maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -30,6 +30,10 @@ public class CertificateManagerImpl implements CertificateManager {
 
     private KeyStore trustStore = null;
 
+    private static CertificateManager instance = null;
+
+    private boolean loaded = false;
+
     private CertificateManagerImpl() {
         try {
             if (keyStore == null) {
@@ -38,14 +42,28 @@ public class CertificateManagerImpl implements CertificateManager {
             if (trustStore == null) {
                 initTrustStore();
             }
+            loaded = keyStore != null && trustStore != null;
         } catch (Exception e) {
             log.error("unable to initialize keystores", e);
             e.printStackTrace();
         }
     }
 
-    public static CertificateManager getInstance() {
-        return new CertificateManagerImpl();
+    /**
+     * The keystores are loaded the first time this is called and shared until the gateway is restarted. When they
+     * could not be loaded, the certificate manager returned is not kept, and the next call tries to load them again.
+     * 
+     * @return the certificate manager
+     */
+    public static synchronized CertificateManager getInstance() {
+        if (instance == null) {
+            CertificateManagerImpl manager = new CertificateManagerImpl();
+            if (!manager.loaded) {
+                return manager;
+            }
+            instance = manager;
+        }
+        return instance;
     }
     
     /**
@@ -35,6 +35,8 @@ import org.w3c.dom.Element;
 
 import gov.hhs.fha.nhinc.callback.SamlConstants;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
+import gov.hhs.fha.nhinc.tracing.Span;
+import gov.hhs.fha.nhinc.tracing.Tracer;
 
 /**
  * @author bhumphrey
@@ -68,6 +70,7 @@ public class HOKSAMLAssertionBuilder extends SAMLAssertionBuilder {
     public Element build(CallbackProperties properties) throws Exception {
 		log.debug("SamlCallbackHandler.createHOKSAMLAssertion20() -- Begin");
 		Element signedAssertion = null;
+		Span span = Tracer.startSpan("saml");
 		try {
 			Assertion assertion = null;
 			assertion = OpenSAML2ComponentBuilder.getInstance()
@@ -112,6 +115,8 @@ public class HOKSAMLAssertionBuilder extends SAMLAssertionBuilder {
 		} catch (Exception ex) {
 			log.error("Unable to create HOK Assertion: " + ex.getMessage());
 			throw ex;
+		} finally {
+			Tracer.endSpan(span);
 		}
 		log.debug("SamlCallbackHandler.createHOKSAMLAssertion20() -- End");
 		return signedAssertion;
@@ -140,7 +140,7 @@ public class OpenSAML2ComponentBuilder implements SAMLCompontentBuilder {
 
     private static OpenSAML2ComponentBuilder INSTANCE;
 
-    public static OpenSAML2ComponentBuilder getInstance() {
+    public static synchronized OpenSAML2ComponentBuilder getInstance() {
         if (INSTANCE == null) {
             try {
                 INSTANCE = new OpenSAML2ComponentBuilder();
@@ -64,6 +64,7 @@ public class AssigningAuthorityHomeCommunityMappingDAO {
                 sess = fact.openSession();
                 if (sess != null) {
                     Criteria criteria = sess.createCriteria(AssigningAuthorityToHomeCommunityMapping.class);
+                    criteria.setCacheable(true);
                     criteria.add(Expression.eq("homeCommunityId", homeCommunityId));
                     List<AssigningAuthorityToHomeCommunityMapping> l = criteria.list();
                     if (l != null && l.size() > 0) {
@@ -107,6 +108,7 @@ public class AssigningAuthorityHomeCommunityMappingDAO {
                 sess = fact.openSession();
                 if (sess != null) {
                     Criteria criteria = sess.createCriteria(AssigningAuthorityToHomeCommunityMapping.class);
+                    criteria.setCacheable(true);
                     criteria.add(Expression.eq("homeCommunityId", homeCommunityId));
                     List<AssigningAuthorityToHomeCommunityMapping> l = criteria.list();
                     if (l != null && l.size() > 0) {
@@ -158,6 +160,7 @@ public class AssigningAuthorityHomeCommunityMappingDAO {
                 sess = fact.openSession();
                 if (sess != null) {
                     Criteria criteria = sess.createCriteria(AssigningAuthorityToHomeCommunityMapping.class);
+                    criteria.setCacheable(true);
                     criteria.add(Expression.eq("assigningAuthorityId", assigningAuthority));
                     List<AssigningAuthorityToHomeCommunityMapping> l = criteria.list();
                     if (l != null && l.size() > 0) {
@@ -26,12 +26,10 @@
  */
 package gov.hhs.fha.nhinc.common.connectionmanager.persistence;
 
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import java.io.File;
 
 /**
  * This class will be used as a Utility Class to access the Data Object using Hibernate SessionFactory
@@ -45,8 +43,9 @@ public class HibernateUtil {
     private static final String HIBERNATE_ASSIGNING_AUTHORITY = "assignauthority.hibernate.cfg.xml";
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    HIBERNATE_ASSIGNING_AUTHORITY);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             System.err.println("Initial SessionFactory creation failed." + ex);
@@ -62,17 +61,4 @@ public class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return sessionFactory;
     }
-
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(HIBERNATE_ASSIGNING_AUTHORITY);
-        } catch (Exception ex) {
-            log.error("Unable to load " + HIBERNATE_ASSIGNING_AUTHORITY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-
-    }
 }
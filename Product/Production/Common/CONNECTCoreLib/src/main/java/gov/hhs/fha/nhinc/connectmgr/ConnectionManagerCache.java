@@ -31,6 +31,7 @@ import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetCommunityType;
 import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetSystemType;
 import gov.hhs.fha.nhinc.connectmgr.persistance.dao.InternalConnectionInfoDAOFileImpl;
 import gov.hhs.fha.nhinc.connectmgr.persistance.dao.UddiConnectionInfoDAOFileImpl;
+import gov.hhs.fha.nhinc.connectmgr.uddi.UDDIBusinessDetailDiff;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants.ADAPTER_API_LEVEL;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants.UDDI_SPEC_VERSION;
@@ -42,6 +43,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -216,6 +218,50 @@ public class ConnectionManagerCache {
         loadUDDIConnectionInfo();
     }
 
+    /**
+     * This method applies the changes found by a UDDI synchronization to the cached UDDI connection data. Only the
+     * business entities that were added, removed or changed are touched, and the cache is marked as current with the
+     * uddiConnectionInfo.xml file that was written by the synchronization so that the file is not parsed again. If the
+     * cache has not been loaded yet, nothing is done and the file is loaded on first use.
+     * 
+     * @param diff The differences between the previous and the new UDDI data.
+     */
+    public void applyUDDIChanges(UDDIBusinessDetailDiff diff) {
+        ConnectionManagerCacheHelper helper = new ConnectionManagerCacheHelper();
+        synchronized (m_hUDDIConnectInfo) {
+            if (!m_bUDDILoaded) {
+                return;
+            }
+
+            for (BusinessEntity oEntity : diff.getRemovedEntities()) {
+                removeUDDIEntity(helper.getCommunityId(oEntity));
+            }
+            for (Map.Entry<BusinessEntity, BusinessEntity> entry : diff.getChangedEntities().entrySet()) {
+                removeUDDIEntity(helper.getCommunityId(entry.getKey()));
+            }
+            for (Map.Entry<BusinessEntity, BusinessEntity> entry : diff.getChangedEntities().entrySet()) {
+                putUDDIEntity(helper.getCommunityId(entry.getValue()), entry.getValue());
+            }
+            for (BusinessEntity oEntity : diff.getAddedEntities()) {
+                putUDDIEntity(helper.getCommunityId(oEntity), oEntity);
+            }
+
+            m_lUDDIFileLastModified = getUddiConnectionManagerDAO().getLastModified();
+        }
+    }
+
+    private void removeUDDIEntity(String sHomeCommunityId) {
+        if ((sHomeCommunityId != null) && (sHomeCommunityId.length() > 0)) {
+            m_hUDDIConnectInfo.remove(sHomeCommunityId);
+        }
+    }
+
+    private void putUDDIEntity(String sHomeCommunityId, BusinessEntity oEntity) {
+        if ((sHomeCommunityId != null) && (sHomeCommunityId.length() > 0)) {
+            m_hUDDIConnectInfo.put(sHomeCommunityId, oEntity);
+        }
+    }
+
     /**
      * This method will cause the ConnectionManagerCache to refresh the internal connection data by replacing the cached
      * internal connection information with the information in the internalConnectionInfo.xml file.
@@ -27,6 +27,11 @@
 package gov.hhs.fha.nhinc.connectmgr.persistance.dao;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
@@ -46,33 +51,72 @@ import org.uddi.api_v3.ObjectFactory;
 public class ConnectionManagerDAOBase {
 
     private Log log = null;
+    private static JAXBContext context = null;
+
+    /**
+     * The JAXBContext is thread safe and expensive to create, so a single instance is shared by all of the connection
+     * manager files.
+     * 
+     * @return the JAXBContext for BusinessDetail
+     * @throws JAXBException
+     */
+    public static synchronized JAXBContext getJAXBContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(BusinessDetail.class);
+        }
+        return context;
+    }
 
     protected BusinessDetail loadBusinessDetail(File file) throws JAXBException {
         BusinessDetail resp = null;
         synchronized (file) {
-            JAXBContext context = JAXBContext.newInstance(BusinessDetail.class);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
+            Unmarshaller unmarshaller = getJAXBContext().createUnmarshaller();
             JAXBElement<BusinessDetail> jaxbElement = unmarshaller.unmarshal(new StreamSource(file), BusinessDetail.class);
             resp =  jaxbElement.getValue();
         }
         return resp;
     }
 
+    /**
+     * Saves the business detail by writing a temporary file next to the target and renaming it into place, so that
+     * readers never see a partially written file.
+     * 
+     * @param BusinessDetail the business detail to save
+     * @param file the connection information file
+     */
     protected void saveBusinessDetail(BusinessDetail BusinessDetail, File file) {
+        File tempFile = null;
         try {
             synchronized (file) {
-                JAXBContext context = JAXBContext.newInstance(BusinessDetail.class);
                 ObjectFactory factory = new ObjectFactory();
-                Marshaller marshaller = context.createMarshaller();
+                Marshaller marshaller = getJAXBContext().createMarshaller();
                 marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-                marshaller.marshal(factory.createBusinessDetail(BusinessDetail), file);
+                tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+                marshaller.marshal(factory.createBusinessDetail(BusinessDetail), tempFile);
+                moveIntoPlace(tempFile, file);
             }
         } catch (JAXBException ex) {
             throw new RuntimeException("Unable to save to Connection Information File " + file.getName(), ex);
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to save to Connection Information File " + file.getName(), ex);
+        } finally {
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
         }
         getLogger().info("Connection info saved to " + file.getName());
     }
 
+    private void moveIntoPlace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            getLogger().warn("Atomic rename is not supported for " + target.getName() + ", replacing in place.");
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     protected Log getLogger() {
         if (log == null) {
             setLogger(LogFactory.getLog(this.getClass()));
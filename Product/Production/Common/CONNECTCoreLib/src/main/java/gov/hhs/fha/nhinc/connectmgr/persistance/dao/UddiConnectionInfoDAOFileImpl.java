@@ -57,7 +57,7 @@ public class UddiConnectionInfoDAOFileImpl extends ConnectionManagerDAOBase impl
         return instance;
     }
 
-    UddiConnectionInfoDAOFileImpl() {
+    protected UddiConnectionInfoDAOFileImpl() {
         log = getLogger();
 
         String fileName = getUddiConnectionFileLocation();
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.connectmgr.uddi;
+
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerCacheHelper;
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.ConnectionManagerDAOBase;
+import gov.hhs.fha.nhinc.connectmgr.uddi.UDDIChangeReport.ChangeType;
+import gov.hhs.fha.nhinc.connectmgr.uddi.UDDIChangeReport.EndpointChange;
+import gov.hhs.fha.nhinc.nhinclib.NullChecker;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.uddi.api_v3.BindingTemplate;
+import org.uddi.api_v3.BusinessDetail;
+import org.uddi.api_v3.BusinessEntity;
+import org.uddi.api_v3.BusinessService;
+import org.uddi.api_v3.ObjectFactory;
+
+/**
+ * Computes a keyed diff between two UDDI BusinessDetail snapshots. Business entities are matched by business key,
+ * services by service key and binding templates by binding key, so that only the entries that actually changed need
+ * to be applied to the connection directory.
+ *
+ * @author dharley
+ */
+public class UDDIBusinessDetailDiff {
+
+    private static Log log = LogFactory.getLog(UDDIBusinessDetailDiff.class);
+
+    private final List<BusinessEntity> addedEntities = new ArrayList<BusinessEntity>();
+    private final List<BusinessEntity> removedEntities = new ArrayList<BusinessEntity>();
+    private final Map<BusinessEntity, BusinessEntity> changedEntities = new LinkedHashMap<BusinessEntity, BusinessEntity>();
+    private final UDDIChangeReport report = new UDDIChangeReport();
+    private final ConnectionManagerCacheHelper helper = new ConnectionManagerCacheHelper();
+
+    /**
+     * @param previous the business detail currently in use, may be null
+     * @param current the business detail retrieved from the UDDI server
+     */
+    public UDDIBusinessDetailDiff(BusinessDetail previous, BusinessDetail current) {
+        Map<String, BusinessEntity> previousEntities = indexEntities(previous);
+        Map<String, BusinessEntity> currentEntities = indexEntities(current);
+
+        for (Map.Entry<String, BusinessEntity> entry : currentEntities.entrySet()) {
+            BusinessEntity oldEntity = previousEntities.get(entry.getKey());
+            BusinessEntity newEntity = entry.getValue();
+            if (oldEntity == null) {
+                addedEntities.add(newEntity);
+                reportEntity(ChangeType.ADDED, newEntity);
+            } else if (!fingerprint(oldEntity).equals(fingerprint(newEntity))) {
+                changedEntities.put(oldEntity, newEntity);
+                reportServices(oldEntity, newEntity);
+            }
+        }
+
+        for (Map.Entry<String, BusinessEntity> entry : previousEntities.entrySet()) {
+            if (!currentEntities.containsKey(entry.getKey())) {
+                removedEntities.add(entry.getValue());
+                reportEntity(ChangeType.REMOVED, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the business entities that are new in the current snapshot
+     */
+    public List<BusinessEntity> getAddedEntities() {
+        return Collections.unmodifiableList(addedEntities);
+    }
+
+    /**
+     * @return the business entities that are no longer in the current snapshot
+     */
+    public List<BusinessEntity> getRemovedEntities() {
+        return Collections.unmodifiableList(removedEntities);
+    }
+
+    /**
+     * @return the changed business entities, mapping the previous version to the current version
+     */
+    public Map<BusinessEntity, BusinessEntity> getChangedEntities() {
+        return Collections.unmodifiableMap(changedEntities);
+    }
+
+    /**
+     * @return true if no business entity was added, removed or changed
+     */
+    public boolean isEmpty() {
+        return addedEntities.isEmpty() && removedEntities.isEmpty() && changedEntities.isEmpty();
+    }
+
+    /**
+     * @return the endpoint level report of this diff
+     */
+    public UDDIChangeReport getChangeReport() {
+        return report;
+    }
+
+    private Map<String, BusinessEntity> indexEntities(BusinessDetail businessDetail) {
+        Map<String, BusinessEntity> entities = new LinkedHashMap<String, BusinessEntity>();
+        if (businessDetail != null) {
+            for (BusinessEntity entity : businessDetail.getBusinessEntity()) {
+                entities.put(getEntityKey(entity), entity);
+            }
+        }
+        return entities;
+    }
+
+    private String getEntityKey(BusinessEntity entity) {
+        if (NullChecker.isNotNullish(entity.getBusinessKey())) {
+            return entity.getBusinessKey();
+        }
+        return "hcid:" + helper.getCommunityId(entity);
+    }
+
+    private void reportEntity(ChangeType changeType, BusinessEntity entity) {
+        String homeCommunityId = helper.getCommunityId(entity);
+        for (BusinessService service : getServices(entity)) {
+            for (BindingTemplate binding : getBindings(service)) {
+                String url = getUrl(binding);
+                report.addChange(new EndpointChange(changeType, homeCommunityId, getServiceName(service),
+                        binding.getBindingKey(), changeType == ChangeType.REMOVED ? url : null,
+                        changeType == ChangeType.ADDED ? url : null));
+            }
+        }
+    }
+
+    private void reportServices(BusinessEntity oldEntity, BusinessEntity newEntity) {
+        String homeCommunityId = helper.getCommunityId(newEntity);
+        Map<String, BindingTemplate> oldBindings = indexBindings(oldEntity);
+        Map<String, BindingTemplate> newBindings = indexBindings(newEntity);
+        Map<String, BusinessService> oldServices = indexServicesByBinding(oldEntity);
+        Map<String, BusinessService> newServices = indexServicesByBinding(newEntity);
+
+        for (Map.Entry<String, BindingTemplate> entry : newBindings.entrySet()) {
+            BindingTemplate oldBinding = oldBindings.get(entry.getKey());
+            String newUrl = getUrl(entry.getValue());
+            String serviceName = getServiceName(newServices.get(entry.getKey()));
+            if (oldBinding == null) {
+                report.addChange(new EndpointChange(ChangeType.ADDED, homeCommunityId, serviceName,
+                        entry.getValue().getBindingKey(), null, newUrl));
+            } else if (!fingerprint(oldBinding).equals(fingerprint(entry.getValue()))) {
+                report.addChange(new EndpointChange(ChangeType.CHANGED, homeCommunityId, serviceName,
+                        entry.getValue().getBindingKey(), getUrl(oldBinding), newUrl));
+            }
+        }
+        for (Map.Entry<String, BindingTemplate> entry : oldBindings.entrySet()) {
+            if (!newBindings.containsKey(entry.getKey())) {
+                report.addChange(new EndpointChange(ChangeType.REMOVED, homeCommunityId,
+                        getServiceName(oldServices.get(entry.getKey())), entry.getValue().getBindingKey(),
+                        getUrl(entry.getValue()), null));
+            }
+        }
+    }
+
+    private Map<String, BindingTemplate> indexBindings(BusinessEntity entity) {
+        Map<String, BindingTemplate> bindings = new LinkedHashMap<String, BindingTemplate>();
+        for (BusinessService service : getServices(entity)) {
+            List<BindingTemplate> templates = getBindings(service);
+            for (int i = 0; i < templates.size(); i++) {
+                bindings.put(getBindingKey(service, templates.get(i), i), templates.get(i));
+            }
+        }
+        return bindings;
+    }
+
+    private Map<String, BusinessService> indexServicesByBinding(BusinessEntity entity) {
+        Map<String, BusinessService> services = new LinkedHashMap<String, BusinessService>();
+        for (BusinessService service : getServices(entity)) {
+            List<BindingTemplate> templates = getBindings(service);
+            for (int i = 0; i < templates.size(); i++) {
+                services.put(getBindingKey(service, templates.get(i), i), service);
+            }
+        }
+        return services;
+    }
+
+    private String getBindingKey(BusinessService service, BindingTemplate binding, int position) {
+        if (NullChecker.isNotNullish(binding.getBindingKey())) {
+            return binding.getBindingKey();
+        }
+        return service.getServiceKey() + "#" + position;
+    }
+
+    private List<BusinessService> getServices(BusinessEntity entity) {
+        if (entity.getBusinessServices() == null) {
+            return Collections.emptyList();
+        }
+        return entity.getBusinessServices().getBusinessService();
+    }
+
+    private List<BindingTemplate> getBindings(BusinessService service) {
+        if (service.getBindingTemplates() == null) {
+            return Collections.emptyList();
+        }
+        return service.getBindingTemplates().getBindingTemplate();
+    }
+
+    private String getServiceName(BusinessService service) {
+        if (service == null) {
+            return null;
+        }
+        List<String> names = helper.getServiceNames(service);
+        return names.isEmpty() ? service.getServiceKey() : names.get(0);
+    }
+
+    private String getUrl(BindingTemplate binding) {
+        return binding.getAccessPoint() == null ? null : binding.getAccessPoint().getValue();
+    }
+
+    private String fingerprint(BusinessEntity entity) {
+        return marshal(new ObjectFactory().createBusinessEntity(entity));
+    }
+
+    private String fingerprint(BindingTemplate binding) {
+        return marshal(new ObjectFactory().createBindingTemplate(binding));
+    }
+
+    private String marshal(Object element) {
+        try {
+            Marshaller marshaller = ConnectionManagerDAOBase.getJAXBContext().createMarshaller();
+            StringWriter writer = new StringWriter();
+            marshaller.marshal(element, writer);
+            return writer.toString();
+        } catch (JAXBException ex) {
+            // An entry that cannot be compared is treated as changed.
+            log.warn("Unable to marshal UDDI entry for comparison: " + ex.getMessage(), ex);
+            return String.valueOf(System.identityHashCode(element));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.connectmgr.uddi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes the endpoints that were added, removed or changed by a UDDI synchronization. Each endpoint is a binding
+ * template of a business service, identified by the home community and the binding key.
+ *
+ * @author dharley
+ */
+public class UDDIChangeReport {
+
+    /**
+     * The kind of change that was made to an endpoint.
+     */
+    public enum ChangeType {
+        ADDED, REMOVED, CHANGED
+    }
+
+    /**
+     * A single endpoint change.
+     */
+    public static class EndpointChange {
+        private final ChangeType changeType;
+        private final String homeCommunityId;
+        private final String serviceName;
+        private final String bindingKey;
+        private final String oldUrl;
+        private final String newUrl;
+
+        public EndpointChange(ChangeType changeType, String homeCommunityId, String serviceName, String bindingKey,
+                String oldUrl, String newUrl) {
+            this.changeType = changeType;
+            this.homeCommunityId = homeCommunityId;
+            this.serviceName = serviceName;
+            this.bindingKey = bindingKey;
+            this.oldUrl = oldUrl;
+            this.newUrl = newUrl;
+        }
+
+        public ChangeType getChangeType() {
+            return changeType;
+        }
+
+        public String getHomeCommunityId() {
+            return homeCommunityId;
+        }
+
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        public String getBindingKey() {
+            return bindingKey;
+        }
+
+        public String getOldUrl() {
+            return oldUrl;
+        }
+
+        public String getNewUrl() {
+            return newUrl;
+        }
+
+        @Override
+        public String toString() {
+            return changeType + " hcid=" + homeCommunityId + " service=" + serviceName + " bindingKey=" + bindingKey
+                    + " oldUrl=" + oldUrl + " newUrl=" + newUrl;
+        }
+    }
+
+    private final List<EndpointChange> changes = new ArrayList<EndpointChange>();
+
+    void addChange(EndpointChange change) {
+        changes.add(change);
+    }
+
+    /**
+     * @return all of the endpoint changes
+     */
+    public List<EndpointChange> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @param changeType the kind of change
+     * @return the endpoint changes of the given kind
+     */
+    public List<EndpointChange> getChanges(ChangeType changeType) {
+        List<EndpointChange> result = new ArrayList<EndpointChange>();
+        for (EndpointChange change : changes) {
+            if (change.getChangeType() == changeType) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if no endpoints were added, removed or changed
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("UDDI change report: added=").append(getChanges(ChangeType.ADDED).size());
+        sb.append(" removed=").append(getChanges(ChangeType.REMOVED).size());
+        sb.append(" changed=").append(getChanges(ChangeType.CHANGED).size());
+        for (EndpointChange change : changes) {
+            sb.append(System.getProperty("line.separator")).append("  ").append(change);
+        }
+        return sb.toString();
+    }
+}
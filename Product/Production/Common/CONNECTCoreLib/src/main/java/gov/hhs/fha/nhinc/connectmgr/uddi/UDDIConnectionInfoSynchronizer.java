@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.connectmgr.uddi;
+
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerCache;
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.UddiConnectionInfoDAOFileImpl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.uddi.api_v3.BusinessDetail;
+
+/**
+ * Applies data retrieved from the UDDI server to the uddiConnectionInfo.xml file and the connection manager cache. The
+ * new data is compared with the data currently in use, and when nothing changed the file is left alone so that no
+ * node has to reload it. When something did change, the file is replaced atomically and only the changed business
+ * entities are applied to this node's cache.
+ *
+ * @author dharley
+ */
+public class UDDIConnectionInfoSynchronizer {
+
+    private static Log log = LogFactory.getLog(UDDIConnectionInfoSynchronizer.class);
+    private static UDDIConnectionInfoSynchronizer instance = null;
+
+    private BusinessDetail currentBusinessDetail = null;
+    private long currentLastModified = 0;
+
+    public static synchronized UDDIConnectionInfoSynchronizer getInstance() {
+        if (instance == null) {
+            instance = new UDDIConnectionInfoSynchronizer();
+        }
+        return instance;
+    }
+
+    protected UDDIConnectionInfoSynchronizer() {
+    }
+
+    protected UddiConnectionInfoDAOFileImpl getUddiConnectionManagerDAO() {
+        return UddiConnectionInfoDAOFileImpl.getInstance();
+    }
+
+    protected ConnectionManagerCache getConnectionManagerCache() {
+        return ConnectionManagerCache.getInstance();
+    }
+
+    /**
+     * Compares the given business detail with the one currently in use.
+     *
+     * @param businessDetail The business detail retrieved from the UDDI server.
+     * @return The differences between the current and the given business detail.
+     */
+    public synchronized UDDIBusinessDetailDiff computeDiff(BusinessDetail businessDetail) {
+        return new UDDIBusinessDetailDiff(getCurrentBusinessDetail(), businessDetail);
+    }
+
+    /**
+     * Saves the given business detail and applies the differences to the connection manager cache. Nothing is written
+     * if the diff is empty.
+     *
+     * @param businessDetail The business detail retrieved from the UDDI server.
+     * @param diff The differences computed by computeDiff for the same business detail.
+     */
+    public synchronized void apply(BusinessDetail businessDetail, UDDIBusinessDetailDiff diff) {
+        if (diff.isEmpty()) {
+            log.info("UDDI data is unchanged, uddiConnectionInfo.xml was not rewritten.");
+            return;
+        }
+
+        UddiConnectionInfoDAOFileImpl uddiDao = getUddiConnectionManagerDAO();
+        uddiDao.saveBusinessDetail(businessDetail);
+        currentBusinessDetail = businessDetail;
+        currentLastModified = uddiDao.getLastModified();
+
+        getConnectionManagerCache().applyUDDIChanges(diff);
+
+        log.info("UDDI synchronization applied: businesses added=" + diff.getAddedEntities().size() + " removed="
+                + diff.getRemovedEntities().size() + " changed=" + diff.getChangedEntities().size() + ". "
+                + diff.getChangeReport());
+    }
+
+    /**
+     * Compares the given business detail with the one currently in use and applies the differences.
+     *
+     * @param businessDetail The business detail retrieved from the UDDI server.
+     * @return The differences that were applied.
+     */
+    public synchronized UDDIBusinessDetailDiff synchronize(BusinessDetail businessDetail) {
+        UDDIBusinessDetailDiff diff = computeDiff(businessDetail);
+        apply(businessDetail, diff);
+        return diff;
+    }
+
+    /**
+     * Returns the business detail currently in use. The file is only read on the first call, or when it has been
+     * changed by something other than this class.
+     */
+    private BusinessDetail getCurrentBusinessDetail() {
+        UddiConnectionInfoDAOFileImpl uddiDao = getUddiConnectionManagerDAO();
+        long lastModified = uddiDao.getLastModified();
+        if (currentBusinessDetail == null || lastModified != currentLastModified) {
+            try {
+                currentBusinessDetail = uddiDao.loadBusinessDetail();
+            } catch (Exception e) {
+                log.warn("Unable to load the current UDDI connection information, treating all entries as new: "
+                        + e.getMessage());
+                currentBusinessDetail = null;
+            }
+            currentLastModified = lastModified;
+        }
+        return currentBusinessDetail;
+    }
+}
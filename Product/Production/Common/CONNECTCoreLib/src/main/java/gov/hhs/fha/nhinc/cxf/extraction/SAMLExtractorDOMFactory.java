@@ -3,6 +3,7 @@
  */
 package gov.hhs.fha.nhinc.cxf.extraction;
 
+import gov.hhs.fha.nhinc.openSAML.extraction.CachingSAMLAssertionExtractor;
 import gov.hhs.fha.nhinc.openSAML.extraction.OpenSAMLAssertionExtractorImpl;
 
 /**
@@ -11,12 +12,24 @@ import gov.hhs.fha.nhinc.openSAML.extraction.OpenSAMLAssertionExtractorImpl;
  */
 public class SAMLExtractorDOMFactory {
     
+    private static SAMLExtractorDOM extractor = null;
+
     public SAMLExtractorDOMFactory() {
         
     }
     
+    /**
+     * @return the shared extractor, which caches extractions of signed assertions across requests
+     */
     public SAMLExtractorDOM getExtractor() {
-        return new OpenSAMLAssertionExtractorImpl();
+        return getSharedExtractor();
+    }
+
+    private static synchronized SAMLExtractorDOM getSharedExtractor() {
+        if (extractor == null) {
+            extractor = new CachingSAMLAssertionExtractor(new OpenSAMLAssertionExtractorImpl());
+        }
+        return extractor;
     }
 
 }
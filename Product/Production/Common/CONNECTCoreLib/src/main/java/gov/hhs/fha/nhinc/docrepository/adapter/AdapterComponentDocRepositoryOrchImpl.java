@@ -44,6 +44,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -128,6 +129,7 @@ public class AdapterComponentDocRepositoryOrchImpl {
     private UTCDateUtil utcDateUtil = null;
     private static final String REPOSITORY_UNIQUE_ID = "1";
     private static final String XDS_DOCUMENT_UNIQUE_ID_ERROR = "XDSDocumentUniqueIdError";
+    private static final String XDS_HASH_ALGORITHM = "SHA-1";
 
     // private final static int FILECHUNK = 65536;
 
@@ -136,6 +138,31 @@ public class AdapterComponentDocRepositoryOrchImpl {
         utcDateUtil = createDateUtil();
     }
 
+    /**
+     * Checks that the size of a document fits the repository's size column.
+     * 
+     * @param documentUniqueId the document unique id
+     * @param size the size of the document in bytes
+     * @return the error to return for the document, or null if its size can be stored
+     */
+    protected RegistryError checkDocumentSize(String documentUniqueId, long size) {
+        if (size <= Integer.MAX_VALUE) {
+            return null;
+        }
+        RegistryError error = new oasis.names.tc.ebxml_regrep.xsd.rs._3.ObjectFactory().createRegistryError();
+        error.setCodeContext("ProvideAndRegisterDocumentSetRequest message handler did not store a document.");
+        error.setLocation("DocumentRepositoryService.documentRepositoryProvideAndRegisterDocumentSetB -> "
+                + "DocumentRepositoryHelper.documentRepositoryProvideAndRegisterDocumentSet checkDocumentSize");
+        error.setErrorCode(XDS_ERROR_CODE_REPOSITORY_ERROR);
+        error.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        error.setValue(XDS_REPOSITORY_ERROR + "\n" + "Document size " + size + " exceeds the maximum of "
+                + Integer.MAX_VALUE + " bytes. DocumentUniqueId: " + documentUniqueId);
+        log.error("Error Location: " + error.getLocation() + "; \n" + "Error Severity: " + error.getSeverity()
+                + "; \n" + "Error ErrorCode: " + error.getErrorCode() + "; \n" + "Error CodeContext: "
+                + error.getCodeContext());
+        return error;
+    }
+
     protected Log createLogger() {
         return ((log != null) ? log : LogFactory.getLog(getClass()));
     }
@@ -351,8 +378,13 @@ public class AdapterComponentDocRepositoryOrchImpl {
             String url = new String(doc.getRawData());
             log.info("Raw Data: " + url);
 
+            URI uri = null;
             try {
-                URI uri = new URI(url);
+                uri = new URI(url);
+            } catch (URISyntaxException e) {
+                uri = null;
+            }
+            if ((uri != null) && "file".equalsIgnoreCase(uri.getScheme()) && !uri.isOpaque()) {
                 File sourceFile = new File(uri);
                 try {                    
                     DataHandler dh = LargeFileUtils.getInstance().convertToDataHandler(sourceFile);       
@@ -362,7 +394,8 @@ public class AdapterComponentDocRepositoryOrchImpl {
                     log.error("Failed to read contents of the file : " + sourceFile.getName() + ". " + ex.getMessage());
                     bHasData = false;
                 }
-            } catch (URISyntaxException e) {
+            } else {
+                // documents stored before the payload directory was used hold their content inline
                 DataHandler dh = LargeFileUtils.getInstance().convertToDataHandler(doc.getRawData());
                                 
                 oDocResponse.setDocument(dh);
@@ -732,15 +765,31 @@ public class AdapterComponentDocRepositoryOrchImpl {
                         // extract eventCodes
                         extractEventCodes(classifications, doc);
 
-                        // get the document byte array from the hashmap populated earlier
+                        // stream the attachment to the payload directory, the document is stored by URI and
+                        // setDocumentResponse reads it back from the file on retrieve
                         byte[] rawData = new byte[0];
+                        long size = 0;
                         try {
                             DataHandler dh = (DataHandler) docMap.get(extrinsicObject.getId());
-                            rawData = LargeFileUtils.getInstance().convertToBytes(dh);
-                            
+                            LargeFileUtils fileUtils = LargeFileUtils.getInstance();
+                            File documentFile = fileUtils.saveDataToFile(dh);
+                            size = fileUtils.getSize(documentFile);
+                            RegistryError sizeError = checkDocumentSize(documentUniqueId, size);
+                            if (sizeError != null) {
+                                // The size column holds an int, larger documents are rejected rather than
+                                // stored with a truncated size.
+                                documentFile.delete();
+                                errorList.getRegistryError().add(sizeError);
+                                continue;
+                            }
+                            rawData = documentFile.toURI().toString().getBytes();
+
                             doc.setRawData(rawData);
+                            doc.setHash(fileUtils.computeDigest(documentFile, XDS_HASH_ALGORITHM));
                         } catch (IOException ioe) {
                             log.error("Failed to retrieve document from the message.  Will not be able to save to repository.", ioe);
+                        } catch (NoSuchAlgorithmException nsae) {
+                            log.error("Failed to compute the document hash.", nsae);
                         }
 
                         String availabilityStatus = extrinsicObject.getStatus();
@@ -760,7 +809,7 @@ public class AdapterComponentDocRepositoryOrchImpl {
                         // doc.setParentDocumentRelationship(getChildElementStringValue(documentElement,
                         // "parentDocumentRelationship"));
 
-                        doc.setSize(rawData.length);
+                        doc.setSize((int) size);
 
                         // TODO concatenate the adapter server's uri to the document unique id
                         doc.setDocumentUri(documentUniqueId);
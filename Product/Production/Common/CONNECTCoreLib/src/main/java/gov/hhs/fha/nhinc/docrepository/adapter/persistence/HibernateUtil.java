@@ -26,13 +26,11 @@
  */
 package gov.hhs.fha.nhinc.docrepository.adapter.persistence;
 
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import java.io.File;
 
 /**
  * Utility to obtain hibernate connections.
@@ -46,8 +44,9 @@ public class HibernateUtil {
 
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    NhincConstants.HIBERNATE_DOCUMENT_REPOSITORY);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             log.error("Initial SessionFactory creation failed." + ex);
@@ -58,17 +57,4 @@ public class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return sessionFactory;
     }
-
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_DOCUMENT_REPOSITORY);
-        } catch (Exception ex) {
-            log.error("Unable to load " + NhincConstants.HIBERNATE_DOCUMENT_REPOSITORY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-
-    }
 }
@@ -98,6 +98,7 @@ public class DocumentConstants {
     public static final String XDS_RETRIEVE_RESPONSE_STATUS_PARTIALSUCCESS ="urn:oasis:names:tc:ebxml-regrep:ResponseStatusType:PartialSuccess";
     public static final String XDS_SUBMISSION_RESPONSE_STATUS_SUCCESS = "urn:oasis:names:tc:ebxml-regrep:ResponseStatusType:Success";
     public static final String XDS_SUBMISSION_RESPONSE_STATUS_FAILURE = "urn:oasis:names:tc:ebxml-regrep:ResponseStatusType:Failure"; 
+    public static final String XDS_SUBMISSION_RESPONSE_STATUS_PARTIALSUCCESS = "urn:oasis:names:tc:ebxml-regrep:ResponseStatusType:PartialSuccess";
     public static final String XDS_QUERY_RESPONSE_STATUS_PARTIALSUCCESS = "urn:oasis:names:tc:ebxml-regrep:ResponseStatusType:Partial Success";
 
     public static final String XDS_QUERY_ERRORCODE_HOMECOMMUNITY_ERROR = "XDSUnknownCommunity";
@@ -26,15 +26,13 @@
  */
 package gov.hhs.fha.nhinc.gateway.aggregator.persistence;
 
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
-import java.io.File;
 import java.io.Serializable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 
@@ -49,8 +47,9 @@ public class HibernateUtil {
 
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             System.err.println("Initial SessionFactory creation failed." + ex);
@@ -221,16 +220,4 @@ public class HibernateUtil {
         return oObject;
     }
 
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY);
-        } catch (Exception ex) {
-            log.error("Unable to load " + NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-    }
-
 }
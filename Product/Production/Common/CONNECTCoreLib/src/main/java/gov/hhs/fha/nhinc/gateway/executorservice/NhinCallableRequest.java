@@ -42,6 +42,11 @@ import gov.hhs.fha.nhinc.orchestration.OutboundResponseProcessor;
  * Constructs with a OutboundOrchestratableMessage to be used, which contains the OutboundDelegate to execute request
  * and NhinProcessor to processErrorResponse (in the case of error/exception)
  * 
+ * When constructed with the home community id of the target, the call goes through the PartnerGuard of the target, so
+ * a partner that keeps failing, or is already at its concurrency limit, gets an error response at once instead of a
+ * call that waits for a timeout. A call counts as failed for the PartnerGuard when it throws, or when the response
+ * processor finds that its response is an error response
+ * 
  * @author paul.eftis
  */
 public class NhinCallableRequest<Response extends OutboundOrchestratableMessage> implements Callable<Response> {
@@ -49,17 +54,30 @@ public class NhinCallableRequest<Response extends OutboundOrchestratableMessage>
     private OutboundDelegate client = null;
     private OutboundResponseProcessor processor = null;
     private OutboundOrchestratableMessage entityRequest = null;
+    private String targetHomeCommunityId = null;
     
     public NhinCallableRequest(OutboundOrchestratableMessage orch) {
         this.client = orch.getDelegate();
         this.processor = orch.getResponseProcessor();
         this.entityRequest = orch;
     }
+
+    public NhinCallableRequest(OutboundOrchestratableMessage orch, String targetHomeCommunityId) {
+        this(orch);
+        this.targetHomeCommunityId = targetHomeCommunityId;
+    }
     
     protected Log getLogger() {
         return LogFactory.getLog(getClass());
     }
 
+    protected PartnerGuard getPartnerGuard() {
+        if (targetHomeCommunityId == null) {
+            return null;
+        }
+        return PartnerGuards.getInstance().getGuard(targetHomeCommunityId);
+    }
+
     /**
      * Initiates web service client call to target with request
      * 
@@ -71,13 +89,13 @@ public class NhinCallableRequest<Response extends OutboundOrchestratableMessage>
         try {
             if (client != null) {
                 // make web service call using nhindelegate::process
-                response = (Response) client.process(entityRequest);
-                if (response == null) {
-                    throw new Exception("Response received is null!!!");
-                }
+                response = processGuarded();
             } else {
                 throw new Exception("NhinDelegate is null!!!");
             }
+        } catch (PartnerUnavailableException e) {
+            getLogger().warn("Did not process callable request: " + e.getMessage());
+            response = (Response) processor.processErrorResponse(entityRequest, e.getMessage());
         } catch (Exception e) {
             getLogger().error("Failed to process callable request.", e);
             response = (Response) processor.processErrorResponse(entityRequest, e.getMessage());
@@ -85,4 +103,29 @@ public class NhinCallableRequest<Response extends OutboundOrchestratableMessage>
         return response;
     }
 
+    private Response processGuarded() throws Exception {
+        PartnerGuard guard = getPartnerGuard();
+        if (guard == null) {
+            return process();
+        }
+        boolean probe = guard.acquire(System.currentTimeMillis());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Response response = process();
+            success = processor == null || !processor.isErrorResponse(response);
+            return response;
+        } finally {
+            guard.release(probe, System.currentTimeMillis(), System.nanoTime() - start, success);
+        }
+    }
+
+    private Response process() throws Exception {
+        Response response = (Response) client.process(entityRequest);
+        if (response == null) {
+            throw new Exception("Response received is null!!!");
+        }
+        return response;
+    }
+
 }
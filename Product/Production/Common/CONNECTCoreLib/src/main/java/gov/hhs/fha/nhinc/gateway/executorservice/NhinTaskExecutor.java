@@ -36,6 +36,8 @@ import java.util.concurrent.Future;
 
 import gov.hhs.fha.nhinc.orchestration.OutboundResponseProcessor;
 import gov.hhs.fha.nhinc.orchestration.OutboundOrchestratableMessage;
+import gov.hhs.fha.nhinc.tracing.Span;
+import gov.hhs.fha.nhinc.tracing.Tracer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -93,9 +95,10 @@ public class NhinTaskExecutor<CumulativeResponse extends OutboundOrchestratableM
         try {
             CompletionService<IndividualResponse> executorCompletionService = new ExecutorCompletionService<IndividualResponse>(
                     executor);
-            // loop through the callableList and submit the callable requests for execution
+            // loop through the callableList and submit the callable requests for execution, carrying the trace of
+            // the request, if any, to the worker threads
             for (NhinCallableRequest<IndividualResponse> c : callableList) {
-                executorCompletionService.submit(c);
+                executorCompletionService.submit(Tracer.wrap(c));
             }
 
             // the executor completion service puts the callable responses on a
@@ -114,8 +117,13 @@ public class NhinTaskExecutor<CumulativeResponse extends OutboundOrchestratableM
                         if (r != null) {
                             // process response
                             OutboundResponseProcessor processor = r.getResponseProcessor();
-                            cumulativeResponse = (CumulativeResponse) processor.processNhinResponse(r,
-                                    cumulativeResponse);
+                            Span span = Tracer.startSpan("aggregate");
+                            try {
+                                cumulativeResponse = (CumulativeResponse) processor.processNhinResponse(r,
+                                        cumulativeResponse);
+                            } finally {
+                                Tracer.endSpan(span);
+                            }
                         } else {
                             // shouldn't ever get here, but if we do all we can do is log and skip it
                             log.error("NhinTaskExecutor::executeTask (count=" + count + ") received null response!!!!!");
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.executorservice;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The concurrency limit and circuit breaker of the calls to one partner gateway.
+ * <p>
+ * The limit is adapted to the partner: it grows by one for every limit's worth of calls answered in time, and is cut
+ * back when a call fails or takes longer than the latency tolerance times the partner's usual latency. Calls beyond
+ * the limit are refused.
+ * <p>
+ * After a run of failed calls the circuit opens and every call is refused, without a connection being made, for the
+ * retry interval. A single probe call is then let through: if it succeeds the circuit closes, otherwise it stays open
+ * for another interval.
+ *
+ * @author dharley
+ */
+public class PartnerGuard {
+
+    /**
+     * The state of the circuit breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final double FAILURE_BACKOFF = 0.5;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double LATENCY_WEIGHT = 0.1;
+
+    private static Log log = LogFactory.getLog(PartnerGuard.class);
+
+    private final String homeCommunityId;
+    private final double initialLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final int failureThreshold;
+    private final long retryIntervalMillis;
+
+    private double limit;
+    private int inFlight = 0;
+    private double usualLatencyNanos = 0;
+    private int consecutiveFailures = 0;
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private boolean probing = false;
+    private long calls = 0;
+    private long failures = 0;
+    private long refused = 0;
+
+    /**
+     * @param homeCommunityId the home community id of the partner
+     * @param initialLimit the number of calls allowed in progress at first
+     * @param maxLimit the most calls ever allowed in progress
+     * @param latencyTolerance how many times its usual latency a call may take before the limit is cut back
+     * @param failureThreshold the number of failed calls in a row that opens the circuit, or 0 to never open it
+     * @param retryIntervalMillis how long the circuit stays open before a probe call is let through
+     */
+    public PartnerGuard(String homeCommunityId, int initialLimit, int maxLimit, double latencyTolerance,
+            int failureThreshold, long retryIntervalMillis) {
+        this.homeCommunityId = homeCommunityId;
+        this.maxLimit = Math.max(maxLimit, 1);
+        this.initialLimit = Math.min(Math.max(initialLimit, 1), this.maxLimit);
+        this.limit = this.initialLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.failureThreshold = failureThreshold;
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    /**
+     * Takes a place for a call to the partner. Every call that gets a place must give it back with
+     * {@link #release(boolean, long, long, boolean)}.
+     *
+     * @param now the current time in milliseconds
+     * @return true if the call is the probe of a half-open circuit
+     * @throws PartnerUnavailableException if the circuit is open or the partner is at its limit
+     */
+    public synchronized boolean acquire(long now) throws PartnerUnavailableException {
+        if (state == State.OPEN && now - openedAt >= retryIntervalMillis) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && probing)) {
+            refused++;
+            throw new PartnerUnavailableException("Calls to " + homeCommunityId + " are suspended after "
+                    + consecutiveFailures + " failures in a row");
+        }
+        if (state == State.CLOSED && inFlight >= (int) limit) {
+            refused++;
+            throw new PartnerUnavailableException(homeCommunityId + " already has " + inFlight
+                    + " requests in progress");
+        }
+        inFlight++;
+        calls++;
+        if (state == State.HALF_OPEN) {
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives back the place of a call and adapts the limit and circuit to its outcome.
+     *
+     * @param probe whether the call was the probe of a half-open circuit
+     * @param now the current time in milliseconds
+     * @param latencyNanos how long the call took
+     * @param success whether the partner answered with a response that is not an error
+     */
+    public synchronized void release(boolean probe, long now, long latencyNanos, boolean success) {
+        inFlight--;
+        if (probe) {
+            probing = false;
+        }
+        if (success) {
+            consecutiveFailures = 0;
+            if (probe) {
+                state = State.CLOSED;
+                log.info("Circuit to " + homeCommunityId + " closed, the partner answered again");
+            }
+            if (usualLatencyNanos > 0 && latencyNanos > usualLatencyNanos * latencyTolerance) {
+                limit = Math.max(1, limit * LATENCY_BACKOFF);
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            usualLatencyNanos = usualLatencyNanos == 0 ? latencyNanos : usualLatencyNanos * (1 - LATENCY_WEIGHT)
+                    + latencyNanos * LATENCY_WEIGHT;
+        } else {
+            failures++;
+            consecutiveFailures++;
+            limit = Math.max(1, limit * FAILURE_BACKOFF);
+            if (probe || (state == State.CLOSED && failureThreshold > 0 && consecutiveFailures >= failureThreshold)) {
+                state = State.OPEN;
+                openedAt = now;
+                log.warn("Circuit to " + homeCommunityId + " opened after " + consecutiveFailures
+                        + " failures in a row, retrying in " + retryIntervalMillis + " ms");
+            }
+        }
+    }
+
+    /**
+     * Closes the circuit and restores the initial limit, so the partner is called again at once and as freely as at
+     * first.
+     */
+    public synchronized void reset() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probing = false;
+        limit = initialLimit;
+    }
+
+    public String getHomeCommunityId() {
+        return homeCommunityId;
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @return the state of the circuit; an open circuit whose retry interval has passed is reported half-open
+     */
+    public synchronized State getState(long now) {
+        if (state == State.OPEN && now - openedAt >= retryIntervalMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return homeCommunityId + " state=" + getState(System.currentTimeMillis()) + " limit=" + (int) limit
+                + " inFlight=" + inFlight + " usualLatencyMillis=" + Math.round(usualLatencyNanos / 1000000)
+                + " calls=" + calls + " failures=" + failures + " refused=" + refused;
+    }
+}
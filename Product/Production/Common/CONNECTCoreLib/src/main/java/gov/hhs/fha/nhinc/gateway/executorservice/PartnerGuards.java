@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.executorservice;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds a {@link PartnerGuard} for each partner gateway the fan-out orchestrators call, configured in
+ * gateway.properties and published over JMX.
+ *
+ * @author dharley
+ */
+public class PartnerGuards implements PartnerGuardsMBean {
+
+    public static final String OBJECT_NAME = "gov.hhs.fha.nhinc:type=PartnerGuards";
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int DEFAULT_MAX_LIMIT = 100;
+    private static final double DEFAULT_LATENCY_TOLERANCE = 2;
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_RETRY_INTERVAL = 30000;
+
+    private static Log log = LogFactory.getLog(PartnerGuards.class);
+
+    private static PartnerGuards instance = null;
+
+    private final ConcurrentMap<String, PartnerGuard> guards = new ConcurrentHashMap<String, PartnerGuard>();
+    private final boolean enabled;
+    private final int limit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final int failureThreshold;
+    private final long retryInterval;
+
+    /**
+     * Reads the settings from gateway.properties.
+     */
+    protected PartnerGuards() {
+        enabled = "true".equalsIgnoreCase(readProperty(NhincConstants.PARTNER_GUARD_ENABLED));
+        limit = (int) readNumber(NhincConstants.PARTNER_CONCURRENCY_LIMIT, DEFAULT_LIMIT);
+        maxLimit = (int) readNumber(NhincConstants.PARTNER_CONCURRENCY_LIMIT_MAX, DEFAULT_MAX_LIMIT);
+        latencyTolerance = readNumber(NhincConstants.PARTNER_LATENCY_TOLERANCE, DEFAULT_LATENCY_TOLERANCE);
+        failureThreshold = (int) readNumber(NhincConstants.PARTNER_FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD);
+        retryInterval = (long) readNumber(NhincConstants.PARTNER_RETRY_INTERVAL, DEFAULT_RETRY_INTERVAL);
+    }
+
+    public static synchronized PartnerGuards getInstance() {
+        if (instance == null) {
+            instance = new PartnerGuards();
+            instance.register();
+        }
+        return instance;
+    }
+
+    /**
+     * @param homeCommunityId the home community id of the partner
+     * @return the guard of the partner, or null if the guards are disabled or the partner is not known
+     */
+    public PartnerGuard getGuard(String homeCommunityId) {
+        if (!enabled || homeCommunityId == null) {
+            return null;
+        }
+        PartnerGuard guard = guards.get(homeCommunityId);
+        if (guard == null) {
+            guard = new PartnerGuard(homeCommunityId, limit, maxLimit, latencyTolerance, failureThreshold,
+                    retryInterval);
+            PartnerGuard existing = guards.putIfAbsent(homeCommunityId, guard);
+            if (existing != null) {
+                guard = existing;
+            }
+        }
+        return guard;
+    }
+
+    @Override
+    public String[] getPartners() {
+        List<String> partners = new ArrayList<String>();
+        for (PartnerGuard guard : guards.values()) {
+            partners.add(guard.toString());
+        }
+        return partners.toArray(new String[partners.size()]);
+    }
+
+    @Override
+    public String[] getOpenCircuits() {
+        long now = System.currentTimeMillis();
+        List<String> open = new ArrayList<String>();
+        for (PartnerGuard guard : guards.values()) {
+            if (guard.getState(now) != PartnerGuard.State.CLOSED) {
+                open.add(guard.getHomeCommunityId());
+            }
+        }
+        return open.toArray(new String[open.size()]);
+    }
+
+    @Override
+    public boolean closeCircuit(String homeCommunityId) {
+        PartnerGuard guard = guards.get(homeCommunityId);
+        if (guard == null) {
+            return false;
+        }
+        guard.reset();
+        log.info("Circuit to " + homeCommunityId + " closed over JMX");
+        return true;
+    }
+
+    protected String readProperty(String propertyName) {
+        try {
+            return PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, propertyName);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private double readNumber(String propertyName, double defaultValue) {
+        String value = readProperty(propertyName);
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException ex) {
+                log.warn(propertyName + " in gateway.properties is not a number: " + ex.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+
+    private void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException ex) {
+            log.warn("Unable to publish the partner circuit breakers: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.warmup;
+
+import gov.hhs.fha.nhinc.callback.openSAML.CertificateManager;
+import gov.hhs.fha.nhinc.callback.openSAML.CertificateManagerImpl;
+import gov.hhs.fha.nhinc.callback.openSAML.OpenSAML2ComponentBuilder;
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerCache;
+import gov.hhs.fha.nhinc.messaging.service.decorator.cxf.TLSClientParametersFactory;
+import gov.hhs.fha.nhinc.messaging.service.port.CXFServicePortBuilderWithAddressing;
+import gov.hhs.fha.nhinc.messaging.service.port.ServicePortDescriptor;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.proxy.InProcessBinding;
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+import org.opensaml.saml2.core.Assertion;
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.security.x509.BasicX509Credential;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureValidator;
+import org.opensaml.xml.signature.Signer;
+
+/**
+ * Does the work the first requests after a deployment would otherwise pay for: building the JAXB contexts of the large
+ * message packages, creating the CXF ports of the NHIN services, loading the connection manager cache, proxy
+ * configuration files and keystores, and signing and verifying a SAML assertion. The warm-up runs once per gateway,
+ * started by the InitServlet of each web application, and is configured in gateway.properties.
+ *
+ * @author dharley
+ */
+public class GatewayWarmUp {
+
+    private static Log log = LogFactory.getLog(GatewayWarmUp.class);
+
+    private static GatewayWarmUp instance = null;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    protected GatewayWarmUp() {
+    }
+
+    public static synchronized GatewayWarmUp getInstance() {
+        if (instance == null) {
+            instance = new GatewayWarmUp();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the warm-up on the executor, unless it has already been started. When warm-up is disabled the gateway is
+     * ready straight away.
+     *
+     * @param executor the executor to run the warm-up on
+     */
+    public void start(Executor executor) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        if (!isEnabled()) {
+            log.debug("Warm-up is disabled");
+            finished.countDown();
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    warmUp();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true once the warm-up has finished, or was found to be disabled
+     */
+    public boolean isReady() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Waits for the warm-up to finish.
+     *
+     * @param timeout the longest time to wait
+     * @param unit the unit of the timeout
+     * @return true if the warm-up finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Runs each step of the warm-up. A step that fails is logged and skipped; it only leaves its work to the first
+     * request, as before.
+     */
+    protected void warmUp() {
+        long start = System.currentTimeMillis();
+        log.info("Warm-up started");
+
+        for (String contextName : getJAXBContextNames()) {
+            try {
+                new JAXBContextHandler().getJAXBContext(contextName);
+            } catch (Exception ex) {
+                log.warn("Unable to warm up the JAXB context " + contextName + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        try {
+            loadConnections();
+        } catch (Exception ex) {
+            log.warn("Unable to warm up the connection manager cache: " + ex.getMessage(), ex);
+        }
+
+        for (String portDescriptorName : getServicePortDescriptorNames()) {
+            try {
+                createPort(portDescriptorName);
+            } catch (Exception ex) {
+                log.warn("Unable to warm up the service port of " + portDescriptorName + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        List<String> proxyConfigFileNames = getProxyConfigFileNames();
+        if (!proxyConfigFileNames.isEmpty()) {
+            try {
+                loadProxyConfigs(proxyConfigFileNames);
+            } catch (Exception ex) {
+                log.warn("Unable to warm up the proxy configuration files: " + ex.getMessage(), ex);
+            }
+        }
+
+        if (isSelfSignEnabled()) {
+            try {
+                selfSign();
+            } catch (Exception ex) {
+                log.warn("Unable to warm up signing: " + ex.getMessage(), ex);
+            }
+        }
+
+        log.info("Warm-up finished in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Loads the connection manager cache with the endpoints of the partners.
+     */
+    protected void loadConnections() throws Exception {
+        int partners = ConnectionManagerCache.getInstance().getAllBusinessEntities().size();
+        log.debug("Warm-up loaded the connections of " + partners + " partners");
+    }
+
+    /**
+     * Creates the port of a service port descriptor. The ports are cached by CXFServicePortBuilderWithAddressing, so
+     * the clients of every partner reuse it.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected void createPort(String portDescriptorName) throws Exception {
+        Class<?> portDescriptorClass = Class.forName(portDescriptorName, true, Thread.currentThread()
+                .getContextClassLoader());
+        ServicePortDescriptor portDescriptor = (ServicePortDescriptor) portDescriptorClass.newInstance();
+        new CXFServicePortBuilderWithAddressing(portDescriptor).createPort();
+    }
+
+    /**
+     * Loads the proxy configuration files into the shared application contexts and reports which internal services
+     * their proxies call in process.
+     */
+    protected void loadProxyConfigs(List<String> configFileNames) throws Exception {
+        InProcessBinding.getInstance().report(configFileNames);
+    }
+
+    /**
+     * Signs an assertion with the gateway's key and verifies the signature with its certificate. This loads the
+     * keystores, bootstraps OpenSAML and initializes the XML signature provider.
+     */
+    protected void selfSign() throws Exception {
+        CertificateManager certificateManager = CertificateManagerImpl.getInstance();
+        X509Certificate certificate = certificateManager.getDefaultCertificate();
+        TLSClientParametersFactory.getInstance();
+
+        OpenSAML2ComponentBuilder componentBuilder = OpenSAML2ComponentBuilder.getInstance();
+        Assertion assertion = componentBuilder.createAssertion();
+        assertion.setID("_" + UUID.randomUUID().toString().replaceAll("-", ""));
+        assertion.setIssueInstant(new DateTime());
+        Signature signature = componentBuilder.createSignature(certificate,
+                certificateManager.getDefaultPrivateKey(), certificateManager.getDefaultPublicKey());
+        assertion.setSignature(signature);
+        Configuration.getMarshallerFactory().getMarshaller(assertion).marshall(assertion);
+        Signer.signObject(signature);
+
+        BasicX509Credential credential = new BasicX509Credential();
+        credential.setEntityCertificate(certificate);
+        new SignatureValidator(credential).validate(signature);
+    }
+
+    protected boolean isEnabled() {
+        return getBooleanProperty(NhincConstants.WARM_UP_ENABLED);
+    }
+
+    protected boolean isSelfSignEnabled() {
+        return getBooleanProperty(NhincConstants.WARM_UP_SELF_SIGN);
+    }
+
+    protected List<String> getJAXBContextNames() {
+        return getListProperty(NhincConstants.WARM_UP_JAXB_CONTEXTS);
+    }
+
+    protected List<String> getServicePortDescriptorNames() {
+        return getListProperty(NhincConstants.WARM_UP_SERVICE_PORTS);
+    }
+
+    protected List<String> getProxyConfigFileNames() {
+        return getListProperty(NhincConstants.WARM_UP_PROXY_CONFIG_FILES);
+    }
+
+    private boolean getBooleanProperty(String propertyName) {
+        try {
+            return PropertyAccessor.getInstance().getPropertyBoolean(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    propertyName);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private List<String> getListProperty(String propertyName) {
+        List<String> values = new ArrayList<String>();
+        try {
+            String property = PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    propertyName);
+            if (property != null) {
+                for (String value : property.split(",")) {
+                    if (value.trim().length() > 0) {
+                        values.add(value.trim());
+                    }
+                }
+            }
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+        }
+        return values;
+    }
+}
@@ -32,6 +32,7 @@ import gov.hhs.fha.nhinc.properties.PropertyAccessException;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -40,8 +41,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import javax.activation.FileDataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -55,6 +66,11 @@ public class LargeFileUtils {
     private static String ATTACHMENT_FILE_PREFIX = "nhin";
     private static String ATTACHMENT_FILE_SUFFIX = ".clf";
 
+    // Upper bound on a single channel transfer, some platforms fail on very large transferTo counts.
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
     LargeFileUtils() {
         log = createLogger();
     };
@@ -143,21 +159,30 @@ public class LargeFileUtils {
     }
 
     /**
-     * Save the data handler to the given file. The data handler will be empty at the end of this call.
+     * Save the data handler to the given file. The data handler will be empty at the end of this call. If the data
+     * handler is backed by a file, the file is copied channel to channel without passing through the heap.
      * 
      * @param dh - the data handler to convert to a file
      * @param file - the file containing the data from the data handler
      * @throws IOException
      */
     public void saveDataToFile(DataHandler dh, File file) throws IOException {
+        File sourceFile = getFile(dh);
+        if (sourceFile != null) {
+            copyFile(sourceFile, file);
+            return;
+        }
+
         FileOutputStream fos = new FileOutputStream(file);
         InputStream is = null;
         try {
             is = dh.getInputStream();
-            int numRead = 1024;
-            byte[] buf = new byte[numRead];
-            while ((numRead = is.read(buf)) >= 0) {
-                fos.write(buf, 0, numRead);
+            ReadableByteChannel source = Channels.newChannel(is);
+            FileChannel target = fos.getChannel();
+            long position = 0;
+            long count;
+            while ((count = target.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+                position += count;
             }
         } finally {
             closeStreamWithoutException(is);
@@ -165,6 +190,134 @@ public class LargeFileUtils {
         }
     }
 
+    /**
+     * Copies the source file to the destination file using FileChannel.transferTo.
+     * 
+     * @param source - the file to copy
+     * @param destination - the file to copy to, it is overwritten if it exists
+     * @throws IOException
+     */
+    public void copyFile(File source, File destination) throws IOException {
+        FileInputStream fis = new FileInputStream(source);
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(destination);
+            transfer(fis.getChannel(), fos.getChannel());
+        } finally {
+            closeStreamWithoutException(fis);
+            closeStreamWithoutException(fos);
+        }
+    }
+
+    /**
+     * Writes the contents of the file to the channel using FileChannel.transferTo. For a blocking socket channel the
+     * data is sent without being copied into the heap.
+     * 
+     * @param file - the file to write
+     * @param target - the channel to write to, it is not closed by this call
+     * @return the number of bytes written
+     * @throws IOException
+     */
+    public long transferFile(File file, WritableByteChannel target) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            return transfer(fis.getChannel(), target);
+        } finally {
+            closeStreamWithoutException(fis);
+        }
+    }
+
+    /**
+     * Writes the data in the data handler to the output stream. This is the streaming equivalent of convertToBytes.
+     * The data handler will be empty at the end of this call.
+     * 
+     * @param dh - the data handler to write
+     * @param os - the output stream to write to, it is not closed by this call
+     * @return the number of bytes written
+     * @throws IOException
+     */
+    public long writeDataToStream(DataHandler dh, OutputStream os) throws IOException {
+        File sourceFile = getFile(dh);
+        if (sourceFile != null) {
+            return transferFile(sourceFile, Channels.newChannel(os));
+        }
+
+        InputStream is = null;
+        long total = 0;
+        try {
+            is = dh.getInputStream();
+            byte[] buf = new byte[STREAM_BUFFER_SIZE];
+            int numRead;
+            while ((numRead = is.read(buf)) != -1) {
+                os.write(buf, 0, numRead);
+                total += numRead;
+            }
+        } finally {
+            closeStreamWithoutException(is);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the file behind the data handler if its data source is a FileDataSource.
+     * 
+     * @param dh - the data handler
+     * @return the backing file, or null if the data handler is not backed by a file
+     */
+    public File getFile(DataHandler dh) {
+        DataSource ds = dh.getDataSource();
+        if (ds instanceof FileDataSource) {
+            return ((FileDataSource) ds).getFile();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the size of the file as reported by its channel.
+     * 
+     * @param file - the file
+     * @return the size of the file in bytes
+     * @throws IOException
+     */
+    public long getSize(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            return fis.getChannel().size();
+        } finally {
+            closeStreamWithoutException(fis);
+        }
+    }
+
+    /**
+     * Computes the digest of the file by memory mapping it one region at a time, so the contents are never copied
+     * into the heap.
+     * 
+     * @param file - the file to digest
+     * @param algorithm - the digest algorithm, for example SHA-1
+     * @return the digest as a lower case hex string
+     * @throws IOException
+     * @throws NoSuchAlgorithmException
+     */
+    public String computeDigest(File file, String algorithm) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long regionSize = Math.min(MAPPED_REGION_SIZE, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+                digest.update(region);
+                position += regionSize;
+            }
+        } finally {
+            closeStreamWithoutException(fis);
+        }
+
+        return toHexString(digest.digest());
+    }
+
     /**
      * Closes the input stream and silently catches the exception.
      * 
@@ -196,7 +349,8 @@ public class LargeFileUtils {
     }
 
     /**
-     * Converts the given file into a data handler with a StreamDataSource.
+     * Converts the given file into a data handler with a FileDataSource. The file is opened each time the data is
+     * read and its contents are never held in memory.
      * 
      * @param file - the file to convert
      * @return the data handler representing the file
@@ -209,9 +363,18 @@ public class LargeFileUtils {
                             + file.getAbsolutePath());
         }
 
-        FileInputStream fis = new FileInputStream(file);
-        StreamDataSource sds = new StreamDataSource("application/octect-stream", fis);
+        return new DataHandler(new FileDataSource(file));
+    }
 
+    /**
+     * Converts the given input stream into a data handler with a StreamDataSource. This is the streaming equivalent
+     * of convertToDataHandler(byte[]); the stream can only be read once.
+     * 
+     * @param is - the input stream to convert
+     * @return the data handler representing the stream
+     */
+    public DataHandler convertToDataHandler(InputStream is) {
+        StreamDataSource sds = new StreamDataSource("application/octet-stream", is);
         return new DataHandler(sds);
     }
 
@@ -246,15 +409,14 @@ public class LargeFileUtils {
      * @throws IOException
      */
     public byte[] convertToBytes(DataHandler dh) throws IOException {
-        InputStream is = dh.getInputStream();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        int read = 0;
-        byte[] bytes = new byte[1024];
-        while ((read = is.read(bytes)) != -1) {
-            baos.write(bytes, 0, read);
+        File sourceFile = getFile(dh);
+        if (sourceFile != null) {
+            return readBytesFromFile(sourceFile);
         }
 
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeDataToStream(dh, baos);
+
         return baos.toByteArray();
     }
 
@@ -291,6 +453,50 @@ public class LargeFileUtils {
         return File.createTempFile(ATTACHMENT_FILE_PREFIX, ATTACHMENT_FILE_SUFFIX, parentDir);
     }
 
+    private byte[] readBytesFromFile(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be read into memory: " + file.getAbsolutePath());
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new EOFException("File " + file.getAbsolutePath() + " ended after " + buffer.position()
+                            + " of " + size + " bytes");
+                }
+            }
+            return buffer.array();
+        } finally {
+            closeStreamWithoutException(fis);
+        }
+    }
+
+    private long transfer(FileChannel source, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        long position = 0;
+        while (position < size) {
+            long count = source.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), target);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+        }
+        return position;
+    }
+
+    private String toHexString(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
     protected String getPayloadSaveDirectory() {
         try {
             return PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE,
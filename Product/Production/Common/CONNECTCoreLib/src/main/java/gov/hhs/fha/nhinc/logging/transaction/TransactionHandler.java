@@ -26,7 +26,6 @@
  */
 package gov.hhs.fha.nhinc.logging.transaction;
 
-import gov.hhs.fha.nhinc.logging.transaction.dao.TransactionDAO;
 import gov.hhs.fha.nhinc.logging.transaction.model.TransactionRepo;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
 
@@ -140,7 +139,7 @@ public class TransactionHandler implements SOAPHandler<SOAPMessageContext> {
     }
 
     /**
-     * Creates a new transaction record and inserts it into the table.
+     * Creates a new transaction record and queues it to be inserted into the table.
      * 
      * @param messageId The messageId from the SOAPHeader
      * @param transactionId The transactionId fromthe SOAPHeader
@@ -148,37 +147,41 @@ public class TransactionHandler implements SOAPHandler<SOAPMessageContext> {
     protected void createTransactionRecord(String messageId, String transactionId) {
         if (NullChecker.isNotNullish(messageId) && NullChecker.isNotNullish(transactionId)) {
             TransactionRepo transRepo = new TransactionRepo();
-            Long newId = null;
 
             transRepo.setMessageId(messageId);
             transRepo.setTransactionId(transactionId);
             transRepo.setTime(this.createTimestamp());
 
-            if (TransactionDAO.getTransactionDAOInstance().insertIntoTransactionRepo(transRepo)) {
-                newId = transRepo.getId();
-                getLogger().info("TransactionHandler.createTransactionId() - New Transaction Log Id = " + newId);
-            } else {
-                getLogger().warn("TransactionHandler.createTransactionId() - ERROR Inserting New Record.");
-            }
+            getTransactionStore().addTransactionRecord(transRepo);
+            getLogger().debug("TransactionHandler.createTransactionId() - Queued Transaction Record for " + messageId);
         }
     }
 
     /**
-     * Looks up transaction ID using the TransactionDAO.
+     * Looks up transaction ID using the TransactionStore, which only queries the database when the message id is not
+     * cached.
      * 
      * @param id The message Id from the SOAPHeader
-     * @return transactionId The transactionId from the DAO lookup
+     * @return transactionId The transactionId from the lookup
      */
     protected String getTransactionId(String id) {
         String transactionId = null;
         
         if(NullChecker.isNotNullish(id)) {
-            transactionId = TransactionDAO.getTransactionDAOInstance().getTransactionId(id);
+            transactionId = getTransactionStore().getTransactionId(id);
         }
             
         return transactionId;
     }
 
+    /**
+     * Get the transaction store.
+     * @return the TransactionStore
+     */
+    protected TransactionStore getTransactionStore() {
+        return TransactionStore.getInstance();
+    }
+
     /**
      * Enables MDC logging if the transaction ID is found.
      * 
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.logging.transaction;
+
+import gov.hhs.fha.nhinc.logging.transaction.dao.TransactionDAO;
+import gov.hhs.fha.nhinc.logging.transaction.model.TransactionRepo;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.nhinclib.NullChecker;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the messageId to transactionId mappings used by the TransactionHandler. Recently seen mappings are held in a
+ * bounded cache whose entries expire, so the transrepo database is only queried for message ids this gateway has not
+ * seen lately. New records are cached immediately and written to the database in batches by a background thread, so
+ * inbound messages do not wait on an insert.
+ *
+ * The background thread also deletes records older than the configured retention period once a day. A batch that
+ * cannot be written at all, because the database is unreachable, is queued again for the next write. The background
+ * thread is stopped by {@link #shutdownInstance()} when the gateway web application is undeployed.
+ *
+ * @author dharley
+ */
+public class TransactionStore {
+
+    private static final Log LOG = LogFactory.getLog(TransactionStore.class);
+
+    static final int DEFAULT_CACHE_SIZE = 10000;
+    static final long DEFAULT_CACHE_EXPIRATION = 3600;
+    static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    static final long DEFAULT_RETENTION_DAYS = 30;
+    static final int MAX_QUEUED_RECORDS = 10000;
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    private static final long PURGE_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    private static TransactionStore instance = null;
+
+    private final Map<String, CachedTransaction> cache;
+    private final BlockingQueue<TransactionRepo> queue = new LinkedBlockingQueue<TransactionRepo>(MAX_QUEUED_RECORDS);
+    private final long expiration;
+    private ScheduledExecutorService scheduler = null;
+    private Thread shutdownHook = null;
+    private volatile boolean shutDown = false;
+
+    /**
+     * @param maxEntries the maximum number of mappings to cache; 0 disables caching
+     * @param expiration the number of milliseconds a cached mapping is used before the database is queried again
+     */
+    TransactionStore(final int maxEntries, long expiration) {
+        this.expiration = expiration;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, CachedTransaction>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTransaction> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Returns the store configured from gateway.properties, starting its background writer the first time it is called.
+     *
+     * @return TransactionStore
+     */
+    public static synchronized TransactionStore getInstance() {
+        if (instance == null) {
+            PropertyAccessor props = PropertyAccessor.getInstance();
+            instance = new TransactionStore((int) props.getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.TRANSACTION_CACHE_SIZE, DEFAULT_CACHE_SIZE), TimeUnit.SECONDS.toMillis(props
+                    .getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.TRANSACTION_CACHE_EXPIRATION,
+                            DEFAULT_CACHE_EXPIRATION)));
+            instance.start(props.getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.TRANSACTION_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL), props.getPropertyLong(
+                    NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.TRANSACTION_RETENTION_DAYS,
+                    DEFAULT_RETENTION_DAYS));
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the background writer of the store, if it has been created, and writes the records still queued. The next
+     * {@link #getInstance()} creates a new store.
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Looks up the transaction id of a message, querying the database only when the mapping is not cached.
+     *
+     * @param messageId the message id
+     * @return the transaction id, or null if the message is not part of a known transaction
+     */
+    public String getTransactionId(String messageId) {
+        if (NullChecker.isNullish(messageId)) {
+            return null;
+        }
+
+        CachedTransaction cached = cache.get(messageId);
+        if (cached != null) {
+            if (cached.expiresAt > currentTimeMillis()) {
+                return cached.transactionId;
+            }
+            cache.remove(messageId);
+        }
+
+        String transactionId = lookupTransactionId(messageId);
+        if (transactionId != null) {
+            cache(messageId, transactionId);
+        }
+        return transactionId;
+    }
+
+    /**
+     * Caches a new transaction record and queues it to be written to the database. If the queue is full, or the store
+     * has been shut down, the record is written before this method returns.
+     *
+     * @param record the record to add
+     */
+    public void addTransactionRecord(TransactionRepo record) {
+        cache(record.getMessageId(), record.getTransactionId());
+        if (shutDown) {
+            insertTransactionRecords(Collections.singletonList(record));
+        } else if (!queue.offer(record)) {
+            LOG.debug("Transaction record queue is full, inserting record for message " + record.getMessageId());
+            insertTransactionRecords(Collections.singletonList(record));
+        }
+    }
+
+    /**
+     * Writes all queued records to the database. If none of the records of a batch can be written, the database is
+     * taken to be unreachable: the batch is queued again and the flush ends.
+     *
+     * @return the number of records written
+     */
+    public int flush() {
+        int written = 0;
+        List<TransactionRepo> batch = new ArrayList<TransactionRepo>(FLUSH_BATCH_SIZE);
+        while (queue.drainTo(batch, FLUSH_BATCH_SIZE) > 0) {
+            int inserted = insertTransactionRecords(batch);
+            if (inserted == 0) {
+                LOG.warn("Failed to write " + batch.size() + " transaction record(s), they will be written later");
+                requeue(batch);
+                break;
+            }
+            if (inserted < batch.size()) {
+                LOG.warn((batch.size() - inserted) + " of " + batch.size() + " transaction record(s) were not written");
+            }
+            written += inserted;
+            batch.clear();
+        }
+        return written;
+    }
+
+    /**
+     * Deletes the records that were created before the retention period.
+     *
+     * @param retentionDays the number of days records are kept
+     * @return the number of records deleted
+     */
+    public int purge(long retentionDays) {
+        Timestamp cutoff = new Timestamp(currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        int deleted = deleteTransactionRecordsBefore(cutoff);
+        LOG.info("Deleted " + deleted + " transaction record(s) created before " + cutoff);
+        return deleted;
+    }
+
+    /**
+     * Stops the background writer and writes the records still queued. Records that cannot be written are logged and
+     * dropped; records added afterwards are written as they are added.
+     */
+    public synchronized void shutdown() {
+        shutDown = true;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        if (shutdownHook != null && shutdownHook != Thread.currentThread()) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down, the hook is running or has run
+            }
+        }
+        shutdownHook = null;
+        flush();
+
+        List<TransactionRepo> unwritten = new ArrayList<TransactionRepo>();
+        queue.drainTo(unwritten);
+        if (!unwritten.isEmpty()) {
+            LOG.error("Dropped " + unwritten.size() + " unwritten transaction record(s) on shutdown, for messages "
+                    + getMessageIds(unwritten));
+        }
+    }
+
+    /**
+     * @return the number of mappings currently cached
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of records waiting to be written
+     */
+    public int getQueuedRecordCount() {
+        return queue.size();
+    }
+
+    /**
+     * Starts the background writer and, if retentionDays is greater than 0, the daily purge.
+     *
+     * @param flushInterval the number of milliseconds between writes of the queued records
+     * @param retentionDays the number of days records are kept
+     */
+    synchronized void start(long flushInterval, final long retentionDays) {
+        if (scheduler != null) {
+            return;
+        }
+        if (flushInterval <= 0) {
+            flushInterval = DEFAULT_FLUSH_INTERVAL;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TransactionStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    LOG.error("Failed to write transaction records: " + e.getMessage(), e);
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+        if (retentionDays > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        purge(retentionDays);
+                    } catch (RuntimeException e) {
+                        LOG.error("Failed to delete expired transaction records: " + e.getMessage(), e);
+                    }
+                }
+            }, PURGE_INTERVAL, PURGE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+
+        shutdownHook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        }, "TransactionStoreShutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    protected String lookupTransactionId(String messageId) {
+        return TransactionDAO.getTransactionDAOInstance().getTransactionId(messageId);
+    }
+
+    protected int insertTransactionRecords(List<TransactionRepo> records) {
+        return TransactionDAO.getTransactionDAOInstance().insertIntoTransactionRepo(records);
+    }
+
+    protected int deleteTransactionRecordsBefore(Timestamp cutoff) {
+        return TransactionDAO.getTransactionDAOInstance().deleteTransactionRecordsBefore(cutoff);
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void requeue(List<TransactionRepo> records) {
+        List<TransactionRepo> dropped = new ArrayList<TransactionRepo>();
+        for (TransactionRepo record : records) {
+            if (!queue.offer(record)) {
+                dropped.add(record);
+            }
+        }
+        if (!dropped.isEmpty()) {
+            LOG.error("Transaction record queue is full, dropped the unwritten records for messages "
+                    + getMessageIds(dropped));
+        }
+    }
+
+    private List<String> getMessageIds(List<TransactionRepo> records) {
+        List<String> messageIds = new ArrayList<String>(records.size());
+        for (TransactionRepo record : records) {
+            messageIds.add(record.getMessageId());
+        }
+        return messageIds;
+    }
+
+    private void cache(String messageId, String transactionId) {
+        if (NullChecker.isNotNullish(messageId) && NullChecker.isNotNullish(transactionId)) {
+            cache.put(messageId, new CachedTransaction(transactionId, currentTimeMillis() + expiration));
+        }
+    }
+
+    private static class CachedTransaction {
+        private final String transactionId;
+        private final long expiresAt;
+
+        CachedTransaction(String transactionId, long expiresAt) {
+            this.transactionId = transactionId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -26,6 +26,7 @@
  */
 package gov.hhs.fha.nhinc.logging.transaction.dao;
 
+import java.sql.Timestamp;
 import java.util.List;
 
 import gov.hhs.fha.nhinc.logging.transaction.model.TransactionRepo;
@@ -36,6 +37,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.HibernateException;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -50,6 +52,7 @@ import org.hibernate.criterion.Expression;
 public final class TransactionDAO {
 
     private static final Log LOG = LogFactory.getLog(TransactionDAO.class);
+    private static final int FLUSH_SIZE = 50;
     private static TransactionDAO transDAOInstance = new TransactionDAO();
 
     /**
@@ -96,7 +99,8 @@ public final class TransactionDAO {
             } catch (HibernateException e) {
                 result = false;
                 transactionRollback(tx);
-                LOG.error("Exception during insertion caused by :" + e.getMessage(), e);
+                LOG.error("Exception during insertion of the record for message " + transactionRepo.getMessageId()
+                        + " caused by :" + e.getMessage(), e);
             } finally {
                 closeSession(session, false);
             }
@@ -105,6 +109,92 @@ public final class TransactionDAO {
         return result;
     }
 
+    /**
+     * Inserts a list of TransactionRepo objects in a single transaction. If the transaction fails, for example because
+     * one of the records already exists, each record is inserted on its own so the others are not lost.
+     * 
+     * @param transactionRepos
+     * @return the number of records inserted
+     */
+    public int insertIntoTransactionRepo(List<TransactionRepo> transactionRepos) {
+
+        LOG.debug("TransactionDAO.insertIntoTransactionRepo(List) - Begin");
+        if (transactionRepos == null || transactionRepos.isEmpty()) {
+            return 0;
+        }
+
+        Session session = null;
+        Transaction tx = null;
+        int result = 0;
+
+        try {
+            SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+            session = sessionFactory.openSession();
+            tx = session.beginTransaction();
+            LOG.debug("Inserting " + transactionRepos.size() + " Records...");
+
+            for (int i = 0; i < transactionRepos.size(); i++) {
+                session.persist(transactionRepos.get(i));
+                if ((i + 1) % FLUSH_SIZE == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+
+            tx.commit();
+            result = transactionRepos.size();
+        } catch (HibernateException e) {
+            transactionRollback(tx);
+            LOG.warn("Batch insertion failed, inserting records individually: " + e.getMessage());
+        } finally {
+            closeSession(session, false);
+        }
+
+        if (result == 0) {
+            for (TransactionRepo transactionRepo : transactionRepos) {
+                // The id may have been assigned by the rolled back transaction.
+                transactionRepo.setId(null);
+                if (insertIntoTransactionRepo(transactionRepo)) {
+                    result++;
+                }
+            }
+        }
+        LOG.debug("TransactionDAO.insertIntoTransactionRepo(List) - End");
+        return result;
+    }
+
+    /**
+     * Deletes the transaction records created before the given time.
+     * 
+     * @param cutoff
+     * @return the number of records deleted
+     */
+    public int deleteTransactionRecordsBefore(Timestamp cutoff) {
+        LOG.debug("TransactionDAO.deleteTransactionRecordsBefore() - Begin");
+        Session session = null;
+        Transaction tx = null;
+        int result = 0;
+
+        try {
+            SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+            session = sessionFactory.openSession();
+            tx = session.beginTransaction();
+
+            Query query = session.createQuery("delete from TransactionRepo where time < :cutoff");
+            query.setTimestamp("cutoff", cutoff);
+            result = query.executeUpdate();
+
+            tx.commit();
+        } catch (HibernateException e) {
+            transactionRollback(tx);
+            LOG.error("Exception during deletion caused by :" + e.getMessage(), e);
+        } finally {
+            closeSession(session, false);
+        }
+        LOG.debug("TransactionDAO.deleteTransactionRecordsBefore() - End");
+        return result;
+    }
+
     /**
      * Queries the database for a transaction record using the messageId.
      * 
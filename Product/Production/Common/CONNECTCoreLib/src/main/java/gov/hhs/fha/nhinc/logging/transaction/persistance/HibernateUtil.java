@@ -27,15 +27,11 @@
 package gov.hhs.fha.nhinc.logging.transaction.persistance;
 
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
-import gov.hhs.fha.nhinc.properties.PropertyAccessException;
-
-import java.io.File;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 
 /**
  * 
@@ -49,8 +45,9 @@ public class HibernateUtil {
 
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            SESSION_FACTORY = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            SESSION_FACTORY = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    NhincConstants.HIBERNATE_TRANSREPO_REPOSITORY);
         } catch (ExceptionInInitializerError ex) {
             // Make sure you log the exception, as it might be swallowed
             LOG.error("Initial SessionFactory creation failed." + ex, ex.getCause());
@@ -66,16 +63,4 @@ public class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return SESSION_FACTORY;
     }
-
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_TRANSREPO_REPOSITORY);
-        } catch (PropertyAccessException ex) {
-            LOG.error("Unable to load " + NhincConstants.HIBERNATE_TRANSREPO_REPOSITORY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-    }
 }
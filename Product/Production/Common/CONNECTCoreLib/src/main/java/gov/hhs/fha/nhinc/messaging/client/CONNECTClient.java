@@ -32,6 +32,8 @@ import gov.hhs.fha.nhinc.messaging.service.ServiceEndpoint;
 import gov.hhs.fha.nhinc.messaging.service.decorator.MTOMServiceEndpointDecorator;
 import gov.hhs.fha.nhinc.messaging.service.decorator.TimeoutServiceEndpointDecorator;
 import gov.hhs.fha.nhinc.messaging.service.decorator.URLServiceEndpointDecorator;
+import gov.hhs.fha.nhinc.tracing.Span;
+import gov.hhs.fha.nhinc.tracing.Tracer;
 import gov.hhs.fha.nhinc.webserviceproxy.WebServiceProxyHelper;
 
 
@@ -50,7 +52,12 @@ public abstract class CONNECTClient<T> {
     public abstract T getPort();
     
     public Object invokePort(Class<T> portClass, String methodName, Object operationInput) throws Exception {        
-        return proxyHelper.invokePort(getPort(), portClass, methodName, operationInput);        
+        Span span = Tracer.startSpan("outbound", methodName);
+        try {
+            return proxyHelper.invokePort(getPort(), portClass, methodName, operationInput);
+        } finally {
+            Tracer.endSpan(span);
+        }
     }
     
     /**
@@ -74,7 +74,7 @@ public class TLSClientParametersFactory {
        
     }
     
-    public static TLSClientParametersFactory getInstance() {
+    public static synchronized TLSClientParametersFactory getInstance() {
         if (INSTANCE == null) {
             INSTANCE = new TLSClientParametersFactory();
         }
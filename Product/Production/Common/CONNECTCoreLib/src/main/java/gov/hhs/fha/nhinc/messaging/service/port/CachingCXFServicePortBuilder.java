@@ -3,8 +3,8 @@
  */
 package gov.hhs.fha.nhinc.messaging.service.port;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.ws.BindingProvider;
 
@@ -15,7 +15,7 @@ import javax.xml.ws.BindingProvider;
  */
 public class CachingCXFServicePortBuilder<T> extends CXFServicePortBuilder<T> {
 
-    private static Map<Class<?>, Object> CACHED_PORTS = new HashMap<Class<?>, Object>();
+    private static ConcurrentMap<Class<?>, Object> CACHED_PORTS = new ConcurrentHashMap<Class<?>, Object>();
     
     public CachingCXFServicePortBuilder(ServicePortDescriptor<T> portDescriptor) {
         super(portDescriptor);    
@@ -29,7 +29,10 @@ public class CachingCXFServicePortBuilder<T> extends CXFServicePortBuilder<T> {
                    port  = super.createPort();
             ((BindingProvider) port).getRequestContext().put(
                     "thread.local.request.context", Boolean.TRUE); 
-            CACHED_PORTS.put(serviceEndpointClass, port);
+            T cachedPort = (T) CACHED_PORTS.putIfAbsent(serviceEndpointClass, port);
+            if (cachedPort != null) {
+                port = cachedPort;
+            }
         }
         return port;
     }
@@ -141,6 +141,63 @@ public class NhincConstants {
     public static final String TIMESTAMP_STRICT = "TimeStampStrict";
     public static final String TIMESTAMP_FUTURE_TIME_TO_LIVE = "FutureTimeToLive";
 
+    // Inbound SAML extraction cache
+    public static final String SAML_ASSERTION_CACHE_SIZE = "SAMLAssertionCacheSize";
+
+    // Transaction logging
+    public static final String TRANSACTION_CACHE_SIZE = "TransactionCacheSize";
+    public static final String TRANSACTION_CACHE_EXPIRATION = "TransactionCacheExpiration";
+    public static final String TRANSACTION_FLUSH_INTERVAL = "TransactionFlushInterval";
+    public static final String TRANSACTION_RETENTION_DAYS = "TransactionRetentionDays";
+
+    // HIEM notify delivery
+    public static final String HIEM_NOTIFY_TIMEOUT = "NotifyDeliveryTimeout";
+    public static final String HIEM_NOTIFY_MAX_ATTEMPTS = "NotifyDeliveryMaxAttempts";
+    public static final String HIEM_NOTIFY_RETRY_DELAY = "NotifyDeliveryRetryDelay";
+
+    // Startup warm-up
+    public static final String WARM_UP_ENABLED = "WarmUpEnabled";
+    public static final String WARM_UP_JAXB_CONTEXTS = "WarmUpJAXBContexts";
+    public static final String WARM_UP_SERVICE_PORTS = "WarmUpServicePorts";
+    public static final String WARM_UP_SELF_SIGN = "WarmUpSelfSign";
+    public static final String WARM_UP_PROXY_CONFIG_FILES = "WarmUpProxyConfigFiles";
+
+    // Request tracing
+    public static final String TRACE_SAMPLE_RATE = "TraceSampleRate";
+    public static final String TRACE_BUFFER_SIZE = "TraceBufferSize";
+
+    // In-process binding of co-located services
+    public static final String IN_PROCESS_BINDING_ENABLED = "InProcessBindingEnabled";
+    public static final String IN_PROCESS_BINDING_CONTEXTS = "InProcessBindingContexts";
+    public static final String IN_PROCESS_BINDING_PREFIX = "InProcessBinding.";
+
+    // Partner concurrency limits and circuit breakers
+    public static final String PARTNER_GUARD_ENABLED = "PartnerGuardEnabled";
+    public static final String PARTNER_CONCURRENCY_LIMIT = "PartnerConcurrencyLimit";
+    public static final String PARTNER_CONCURRENCY_LIMIT_MAX = "PartnerConcurrencyLimitMax";
+    public static final String PARTNER_LATENCY_TOLERANCE = "PartnerLatencyTolerance";
+    public static final String PARTNER_FAILURE_THRESHOLD = "PartnerFailureThreshold";
+    public static final String PARTNER_RETRY_INTERVAL = "PartnerRetryInterval";
+
+    // Document Query response cache
+    public static final String DOC_QUERY_CACHE_ENABLED = "DocQueryCacheEnabled";
+    public static final String DOC_QUERY_CACHE_TTL = "DocQueryCacheTTL";
+    public static final String DOC_QUERY_CACHE_MAX_ENTRIES = "DocQueryCacheMaxEntries";
+
+    // Patient Discovery result cache
+    public static final String PATIENT_DISCOVERY_CACHE_ENABLED = "PatientDiscoveryCacheEnabled";
+    public static final String PATIENT_DISCOVERY_CACHE_TTL = "PatientDiscoveryCacheTTL";
+    public static final String PATIENT_DISCOVERY_CACHE_MAX_ENTRIES = "PatientDiscoveryCacheMaxEntries";
+
+    // Inbound WS-Security caches
+    public static final String CERTIFICATE_TRUST_CACHE_TTL = "CertificateTrustCacheTTL";
+    public static final String CERTIFICATE_TRUST_CACHE_MAX_ENTRIES = "CertificateTrustCacheMaxEntries";
+    public static final String REPLAY_CACHE_TTL = "ReplayCacheTTL";
+    public static final String REPLAY_CACHE_MAX_ENTRIES = "ReplayCacheMaxEntries";
+
+    // Audit log messages
+    public static final String AUDIT_LOG_MESSAGE_PAYLOAD = "AuditLogMessagePayload";
+
     // these 6 not used anymore
     public static final String PATIENT_DISCOVERY_CONNECT_TIMEOUT = "PDConnectTimeout";
     public static final String PATIENT_DISCOVERY_REQUEST_TIMEOUT = "PDRequestTimeout";
@@ -527,6 +584,9 @@ public class NhincConstants {
     public static final String HIBERNATE_AGGREGATOR_REPOSITORY = "aggregator.cfg.xml";
     public static final String AGGREGATOR_LARGE_RESP_DIR_PROP = "aggregatorLargeResponseDir";
     public static final String AGGREGATOR_LARGE_RESP_SIZE_PROP = "aggregatorMaxDbResponseSize";
+    public static final String AGGREGATOR_MAX_IN_MEMORY_RESULTS_PROP = "aggregatorMaxInMemoryResults";
+    public static final String AGGREGATOR_STALE_DURATION_PROP = "aggregatorGarbageCollectionStaleDuration";
+    public static final String AGGREGATOR_SWEEP_INTERVAL_PROP = "aggregatorGarbageCollectionTimeDuration";
     /* -- Begin Document Retrieve deferred Service Name -- */
     public static final String DOCRETRIEVE_DEFERRED_ACTION = "docretrievedeferred";
     public static final String NHINC_DOCUMENT_RETRIEVE_DEFERRED_REQUEST_SERVICE_PASSTHRU_PROPERTY = "documentRetrieveDeferredReqPassthrough";
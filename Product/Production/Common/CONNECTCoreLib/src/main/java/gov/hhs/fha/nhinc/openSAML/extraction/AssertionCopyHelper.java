@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.openSAML.extraction;
+
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.common.nhinccommon.CeType;
+import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
+import gov.hhs.fha.nhinc.common.nhinccommon.PersonNameType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlAuthnStatementType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlAuthzDecisionStatementEvidenceAssertionType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlAuthzDecisionStatementEvidenceConditionsType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlAuthzDecisionStatementEvidenceType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlAuthzDecisionStatementType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlIssuerType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlSignatureKeyInfoType;
+import gov.hhs.fha.nhinc.common.nhinccommon.SamlSignatureType;
+import gov.hhs.fha.nhinc.common.nhinccommon.UserType;
+
+/**
+ * Copies the parts of an AssertionType that are populated by the SAML extractor. This is a plain field copy rather
+ * than a JAXB marshal/unmarshal round trip so that it is cheap enough to run on every cached extraction.
+ *
+ * @author dharley
+ */
+public class AssertionCopyHelper {
+
+    /**
+     * Creates an independent copy of the extracted assertion so that callers may freely modify the result.
+     *
+     * @param source the extracted assertion
+     * @return a copy of the assertion, or null if source is null
+     */
+    public AssertionType copyExtractedAssertion(AssertionType source) {
+        if (source == null) {
+            return null;
+        }
+        AssertionType target = new AssertionType();
+        target.setHomeCommunity(copyHomeCommunity(source.getHomeCommunity()));
+        target.getUniquePatientId().addAll(source.getUniquePatientId());
+        target.setUserInfo(copyUser(source.getUserInfo()));
+        target.setPurposeOfDisclosureCoded(copyCe(source.getPurposeOfDisclosureCoded()));
+        target.setSamlIssuer(copyIssuer(source.getSamlIssuer()));
+        target.setSamlAuthnStatement(copyAuthnStatement(source.getSamlAuthnStatement()));
+        target.setSamlAuthzDecisionStatement(copyAuthzDecisionStatement(source.getSamlAuthzDecisionStatement()));
+        target.setSamlSignature(copySignature(source.getSamlSignature()));
+        target.setMessageId(source.getMessageId());
+        target.getRelatesToList().addAll(source.getRelatesToList());
+        return target;
+    }
+
+    private HomeCommunityType copyHomeCommunity(HomeCommunityType source) {
+        if (source == null) {
+            return null;
+        }
+        HomeCommunityType target = new HomeCommunityType();
+        target.setDescription(source.getDescription());
+        target.setHomeCommunityId(source.getHomeCommunityId());
+        target.setName(source.getName());
+        return target;
+    }
+
+    private UserType copyUser(UserType source) {
+        if (source == null) {
+            return null;
+        }
+        UserType target = new UserType();
+        target.setPersonName(copyPersonName(source.getPersonName()));
+        target.setUserName(source.getUserName());
+        target.setOrg(copyHomeCommunity(source.getOrg()));
+        target.setRoleCoded(copyCe(source.getRoleCoded()));
+        return target;
+    }
+
+    private PersonNameType copyPersonName(PersonNameType source) {
+        if (source == null) {
+            return null;
+        }
+        PersonNameType target = new PersonNameType();
+        target.setFamilyName(source.getFamilyName());
+        target.setGivenName(source.getGivenName());
+        target.setNameType(copyCe(source.getNameType()));
+        target.setSecondNameOrInitials(source.getSecondNameOrInitials());
+        target.setFullName(source.getFullName());
+        target.setPrefix(source.getPrefix());
+        target.setSuffix(source.getSuffix());
+        return target;
+    }
+
+    private CeType copyCe(CeType source) {
+        if (source == null) {
+            return null;
+        }
+        CeType target = new CeType();
+        target.setCode(source.getCode());
+        target.setCodeSystem(source.getCodeSystem());
+        target.setCodeSystemName(source.getCodeSystemName());
+        target.setCodeSystemVersion(source.getCodeSystemVersion());
+        target.setDisplayName(source.getDisplayName());
+        target.setOriginalText(source.getOriginalText());
+        for (CeType translation : source.getTranslation()) {
+            target.getTranslation().add(copyCe(translation));
+        }
+        return target;
+    }
+
+    private SamlIssuerType copyIssuer(SamlIssuerType source) {
+        if (source == null) {
+            return null;
+        }
+        SamlIssuerType target = new SamlIssuerType();
+        target.setIssuer(source.getIssuer());
+        target.setIssuerFormat(source.getIssuerFormat());
+        return target;
+    }
+
+    private SamlAuthnStatementType copyAuthnStatement(SamlAuthnStatementType source) {
+        if (source == null) {
+            return null;
+        }
+        SamlAuthnStatementType target = new SamlAuthnStatementType();
+        target.setAuthInstant(source.getAuthInstant());
+        target.setSessionIndex(source.getSessionIndex());
+        target.setAuthContextClassRef(source.getAuthContextClassRef());
+        target.setSubjectLocalityAddress(source.getSubjectLocalityAddress());
+        target.setSubjectLocalityDNSName(source.getSubjectLocalityDNSName());
+        return target;
+    }
+
+    private SamlAuthzDecisionStatementType copyAuthzDecisionStatement(SamlAuthzDecisionStatementType source) {
+        if (source == null) {
+            return null;
+        }
+        SamlAuthzDecisionStatementType target = new SamlAuthzDecisionStatementType();
+        target.setDecision(source.getDecision());
+        target.setResource(source.getResource());
+        target.setAction(source.getAction());
+        if (source.getEvidence() != null) {
+            SamlAuthzDecisionStatementEvidenceType evidence = new SamlAuthzDecisionStatementEvidenceType();
+            evidence.setAssertion(copyEvidenceAssertion(source.getEvidence().getAssertion()));
+            target.setEvidence(evidence);
+        }
+        return target;
+    }
+
+    private SamlAuthzDecisionStatementEvidenceAssertionType copyEvidenceAssertion(
+            SamlAuthzDecisionStatementEvidenceAssertionType source) {
+        if (source == null) {
+            return null;
+        }
+        SamlAuthzDecisionStatementEvidenceAssertionType target = new SamlAuthzDecisionStatementEvidenceAssertionType();
+        target.setId(source.getId());
+        target.setIssueInstant(source.getIssueInstant());
+        target.setVersion(source.getVersion());
+        target.setIssuer(source.getIssuer());
+        target.setIssuerFormat(source.getIssuerFormat());
+        target.setSubject(source.getSubject());
+        if (source.getConditions() != null) {
+            SamlAuthzDecisionStatementEvidenceConditionsType conditions = new SamlAuthzDecisionStatementEvidenceConditionsType();
+            conditions.setNotBefore(source.getConditions().getNotBefore());
+            conditions.setNotOnOrAfter(source.getConditions().getNotOnOrAfter());
+            target.setConditions(conditions);
+        }
+        target.getAccessConsentPolicy().addAll(source.getAccessConsentPolicy());
+        target.getInstanceAccessConsentPolicy().addAll(source.getInstanceAccessConsentPolicy());
+        return target;
+    }
+
+    private SamlSignatureType copySignature(SamlSignatureType source) {
+        if (source == null) {
+            return null;
+        }
+        SamlSignatureType target = new SamlSignatureType();
+        target.setSignatureValue(copyBytes(source.getSignatureValue()));
+        if (source.getKeyInfo() != null) {
+            SamlSignatureKeyInfoType keyInfo = new SamlSignatureKeyInfoType();
+            keyInfo.setRsaKeyValueExponent(copyBytes(source.getKeyInfo().getRsaKeyValueExponent()));
+            keyInfo.setRsaKeyValueModulus(copyBytes(source.getKeyInfo().getRsaKeyValueModulus()));
+            target.setKeyInfo(keyInfo);
+        }
+        return target;
+    }
+
+    private byte[] copyBytes(byte[] source) {
+        return source == null ? null : source.clone();
+    }
+}
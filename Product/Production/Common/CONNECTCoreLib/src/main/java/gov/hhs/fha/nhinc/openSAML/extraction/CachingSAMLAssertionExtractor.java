@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.openSAML.extraction;
+
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.cxf.extraction.SAMLExtractorDOM;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * SAML extractor that remembers the result of extracting a signed assertion. Retries and deferred responses from the
+ * same partner session carry byte-identical assertions, so the assertion ID together with the signature value is used
+ * to recognize an assertion that has already been walked. The signature itself has been verified by the WS-Security
+ * interceptors before extraction takes place, so a cached entry can only be matched by the same signed content.
+ * Unsigned assertions are never cached.
+ *
+ * Each caller receives its own copy of the cached assertion, so modifying the result does not affect other requests.
+ *
+ * @author dharley
+ */
+public class CachingSAMLAssertionExtractor implements SAMLExtractorDOM {
+
+    private static final Logger log = Logger.getLogger(CachingSAMLAssertionExtractor.class);
+    private static final String SAML2_ASSERTION_NS = "urn:oasis:names:tc:SAML:2.0:assertion";
+    private static final String XML_DSIG_NS = "http://www.w3.org/2000/09/xmldsig#";
+    private static final String ASSERTION_ELEMENT = "Assertion";
+    private static final String SIGNATURE_ELEMENT = "Signature";
+    private static final String SIGNATURE_VALUE_ELEMENT = "SignatureValue";
+    private static final String ID_ATTRIBUTE = "ID";
+    static final int DEFAULT_CACHE_SIZE = 500;
+
+    private final SAMLExtractorDOM delegate;
+    private final Map<String, AssertionType> cache;
+    private final AssertionCopyHelper copyHelper = new AssertionCopyHelper();
+
+    /**
+     * Creates a caching extractor sized from the SAMLAssertionCacheSize gateway property.
+     *
+     * @param delegate the extractor used when the assertion has not been seen before
+     */
+    public CachingSAMLAssertionExtractor(SAMLExtractorDOM delegate) {
+        this(delegate, (int) PropertyAccessor.getInstance().getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                NhincConstants.SAML_ASSERTION_CACHE_SIZE, DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * @param delegate the extractor used when the assertion has not been seen before
+     * @param maxEntries the maximum number of assertions to keep; 0 disables caching
+     */
+    public CachingSAMLAssertionExtractor(SAMLExtractorDOM delegate, final int maxEntries) {
+        this.delegate = delegate;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, AssertionType>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AssertionType> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see gov.hhs.fha.nhinc.cxf.extraction.SAMLExtractorDOM#extractSAMLAssertion(org.w3c.dom.Element)
+     */
+    @Override
+    public AssertionType extractSAMLAssertion(final Element element) {
+        if (element == null) {
+            return null;
+        }
+
+        String key = getCacheKey(element);
+        if (key == null) {
+            return delegate.extractSAMLAssertion(element);
+        }
+
+        AssertionType cached = cache.get(key);
+        if (cached != null) {
+            log.debug("Using cached extraction for SAML assertion.");
+            return copyHelper.copyExtractedAssertion(cached);
+        }
+
+        AssertionType extracted = delegate.extractSAMLAssertion(element);
+        if (extracted != null) {
+            cache.put(key, copyHelper.copyExtractedAssertion(extracted));
+        }
+        return extracted;
+    }
+
+    /**
+     * @return the number of assertions currently cached
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Builds the cache key from the assertion ID and signature value without unmarshalling the assertion.
+     *
+     * @param element the security header or assertion element
+     * @return the key, or null if the assertion is not signed and therefore not cacheable
+     */
+    String getCacheKey(Element element) {
+        Element assertion = findAssertion(element);
+        if (assertion == null || !assertion.hasAttribute(ID_ATTRIBUTE)) {
+            return null;
+        }
+
+        Element signature = getChildElement(assertion, XML_DSIG_NS, SIGNATURE_ELEMENT);
+        if (signature == null) {
+            return null;
+        }
+        NodeList signatureValues = signature.getElementsByTagNameNS(XML_DSIG_NS, SIGNATURE_VALUE_ELEMENT);
+        if (signatureValues.getLength() == 0) {
+            return null;
+        }
+        String signatureValue = signatureValues.item(0).getTextContent();
+        if (signatureValue == null || signatureValue.trim().isEmpty()) {
+            return null;
+        }
+
+        return assertion.getAttribute(ID_ATTRIBUTE) + "|" + signatureValue.trim();
+    }
+
+    private Element findAssertion(Element element) {
+        if (isElement(element, SAML2_ASSERTION_NS, ASSERTION_ELEMENT)) {
+            return element;
+        }
+        NodeList assertions = element.getElementsByTagNameNS(SAML2_ASSERTION_NS, ASSERTION_ELEMENT);
+        return assertions.getLength() > 0 ? (Element) assertions.item(0) : null;
+    }
+
+    private Element getChildElement(Element parent, String namespace, String localName) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && isElement((Element) child, namespace, localName)) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private boolean isElement(Element element, String namespace, String localName) {
+        return namespace.equals(element.getNamespaceURI()) && localName.equals(element.getLocalName());
+    }
+}
@@ -44,6 +44,8 @@ import gov.hhs.fha.nhinc.policyengine.adapter.proxy.PolicyEngineProxy;
 import gov.hhs.fha.nhinc.policyengine.adapter.proxy.PolicyEngineProxyObjectFactory;
 import gov.hhs.fha.nhinc.properties.IPropertyAcessor;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.tracing.Span;
+import gov.hhs.fha.nhinc.tracing.Tracer;
 
 /**
  *
@@ -199,6 +201,7 @@ public abstract class CONNECTOrchestrationBase implements CONNECTOrchestrator {
     private AcknowledgementType audit(LogEventRequestType message, AssertionType assertion) {
         getLogger().debug("Entering CONNECTNhinOrchestrator.audit(...)");
         AcknowledgementType ack = null;
+        Span span = Tracer.startSpan("audit");
         try {
             AuditRepositoryProxyObjectFactory auditRepoFactory = new AuditRepositoryProxyObjectFactory();
             AuditRepositoryProxy proxy = auditRepoFactory.getAuditRepositoryProxy();
@@ -206,6 +209,8 @@ public abstract class CONNECTOrchestrationBase implements CONNECTOrchestrator {
             ack = proxy.auditLog(message, assertion);
         } catch (Exception exc) {
             getLogger().error("Error: Failed to Audit message.", exc);
+        } finally {
+            Tracer.endSpan(span);
         }
         getLogger().debug("Exiting AuditRCONNECTNhinOrchestratorepositoryLogger.audit(...)");
         return ack;
@@ -222,6 +227,7 @@ public abstract class CONNECTOrchestrationBase implements CONNECTOrchestrator {
         getLogger().debug("Entering CONNECTNhinOrchestrator.isPolicyOk(...)");
         boolean policyIsValid = false;
 
+        Span span = Tracer.startSpan("policy");
         try {
             PolicyEngineProxyObjectFactory policyEngFactory = new PolicyEngineProxyObjectFactory();
             PolicyEngineProxy policyProxy = policyEngFactory.getPolicyEngineProxy();
@@ -245,6 +251,8 @@ public abstract class CONNECTOrchestrationBase implements CONNECTOrchestrator {
             }
         } catch (Exception exc) {
             getLogger().error("Error: Failed to check policy.", exc);
+        } finally {
+            Tracer.endSpan(span);
         }
         getLogger().debug("Exiting CONNECTNhinOrchestrator.isPolicyOk(...) with a value of :" + policyIsValid);
         return policyIsValid;
@@ -261,7 +269,12 @@ public abstract class CONNECTOrchestrationBase implements CONNECTOrchestrator {
         Orchestratable resp = null;
         getLogger().debug("Entering CONNECTNhinOrchestrator.delegateToNhin(...)");
         Delegate p = message.getDelegate();
-        resp = p.process(message);
+        Span span = Tracer.startSpan("delegate", message.getServiceName());
+        try {
+            resp = p.process(message);
+        } finally {
+            Tracer.endSpan(span);
+        }
         getLogger().debug("Exiting CONNECTNhinOrchestrator.delegateToNhin(...)");
         return resp;
     }
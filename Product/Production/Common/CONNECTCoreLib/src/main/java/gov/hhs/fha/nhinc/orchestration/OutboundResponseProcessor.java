@@ -37,4 +37,13 @@ public interface OutboundResponseProcessor extends NhinAggregator {
             OutboundOrchestratableMessage cumulativeResponse);
 
     public OutboundOrchestratableMessage processErrorResponse(OutboundOrchestratableMessage request, String error);
+
+    /**
+     * The strategies turn a failed call into an error response, and a target may answer with an error of its own, so
+     * a call that returned a response has not necessarily succeeded.
+     * 
+     * @param individualResponse the response of a single target
+     * @return true if the response reports an error instead of the result of the request
+     */
+    public boolean isErrorResponse(OutboundOrchestratableMessage individualResponse);
 }
@@ -29,7 +29,9 @@ package gov.hhs.fha.nhinc.patientcorrelation.nhinc;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hl7.v3.AddPatientCorrelationResponseType;
 import org.hl7.v3.II;
@@ -105,6 +107,49 @@ public class PatientCorrelationOrchImpl implements PatientCorrelationOrch {
     @Override
     public AddPatientCorrelationResponseType addPatientCorrelation(PRPAIN201301UV02 addPatientCorrelationRequest,
             AssertionType assertion) {
+        CorrelatedIdentifiers correlatedIdentifers = createCorrelatedIdentifiers(addPatientCorrelationRequest,
+                new HashMap<String, Date>());
+        if (correlatedIdentifers == null) {
+            return null;
+        }
+        dao.addPatientCorrelation(correlatedIdentifers);
+        AddPatientCorrelationResponseType result = new AddPatientCorrelationResponseType();
+        result.setMCCIIN000002UV01(AckBuilder.BuildAck(addPatientCorrelationRequest));
+        return result;
+    }
+
+    /**
+     * Stores the correlations from a list of PRPA_IN201301UV02 messages in one call to the dao. Messages that do not
+     * carry both a patient id and a correlated patient id are skipped, as they are by addPatientCorrelation. The dao
+     * stores them in one transaction and passes on the exception if it fails, in which case none of them are stored.
+     *
+     * @param addPatientCorrelationRequests the correlation messages
+     * @param assertion the assertion
+     */
+    @Override
+    public void addPatientCorrelations(List<PRPAIN201301UV02> addPatientCorrelationRequests, AssertionType assertion) {
+        if (addPatientCorrelationRequests == null) {
+            return;
+        }
+        Map<String, Date> expirationDates = new HashMap<String, Date>();
+        List<CorrelatedIdentifiers> correlatedIdentifiersList = new ArrayList<CorrelatedIdentifiers>();
+        for (PRPAIN201301UV02 request : addPatientCorrelationRequests) {
+            CorrelatedIdentifiers correlatedIdentifers = createCorrelatedIdentifiers(request, expirationDates);
+            if (correlatedIdentifers != null) {
+                correlatedIdentifiersList.add(correlatedIdentifers);
+            }
+        }
+        log.debug("Adding " + correlatedIdentifiersList.size() + " of " + addPatientCorrelationRequests.size()
+                + " patient correlation(s)");
+        dao.addPatientCorrelations(correlatedIdentifiersList);
+    }
+
+    /**
+     * Builds the correlation record for a PRPA_IN201301UV02 message, or returns null if the message is incomplete.
+     * Expiration dates are looked up once per assigning authority and kept in the given map.
+     */
+    private CorrelatedIdentifiers createCorrelatedIdentifiers(PRPAIN201301UV02 addPatientCorrelationRequest,
+            Map<String, Date> expirationDates) {
         PRPAMT201301UV02Patient patient = PRPAIN201301UVParser
                 .ParseHL7PatientPersonFrom201301Message(addPatientCorrelationRequest);
         String patientId = "";
@@ -157,17 +202,20 @@ public class PatientCorrelationOrchImpl implements PatientCorrelationOrch {
         }
 
         // calculate the correlation expiration date
-        Date newExpirationDate = calculateCorrelationExpirationDate(correlatedPatientAssigningAuthId);
+        Date newExpirationDate;
+        if (expirationDates.containsKey(correlatedPatientAssigningAuthId)) {
+            newExpirationDate = expirationDates.get(correlatedPatientAssigningAuthId);
+        } else {
+            newExpirationDate = calculateCorrelationExpirationDate(correlatedPatientAssigningAuthId);
+            expirationDates.put(correlatedPatientAssigningAuthId, newExpirationDate);
+        }
         CorrelatedIdentifiers correlatedIdentifers = new CorrelatedIdentifiers();
         correlatedIdentifers.setCorrelatedPatientAssigningAuthorityId(correlatedPatientAssigningAuthId);
         correlatedIdentifers.setCorrelatedPatientId(correlatedPatientId);
         correlatedIdentifers.setPatientId(patientId);
         correlatedIdentifers.setPatientAssigningAuthorityId(patientAssigningAuthId);
         correlatedIdentifers.setCorrelationExpirationDate(newExpirationDate);
-        dao.addPatientCorrelation(correlatedIdentifers);
-        AddPatientCorrelationResponseType result = new AddPatientCorrelationResponseType();
-        result.setMCCIIN000002UV01(AckBuilder.BuildAck(addPatientCorrelationRequest));
-        return result;
+        return correlatedIdentifers;
     }
 
     private static List<String> extractDataSourceList(PRPAIN201309UV02 IN201309) {
@@ -40,6 +40,8 @@ public interface CorrelatedIdentifiersDao {
 
     public void addPatientCorrelation(CorrelatedIdentifiers correlatedIdentifers);
 
+    public void addPatientCorrelations(List<CorrelatedIdentifiers> correlatedIdentifiersList);
+
     public List<QualifiedPatientIdentifier> retrievePatientCorrelation(
             QualifiedPatientIdentifier qualifiedPatientIdentifier, List<String> includeOnlyAssigningAuthorities);
 
@@ -41,6 +41,10 @@ public class CorrelatedIdentifiersDaoImpl implements CorrelatedIdentifiersDao {
         Storer.addPatientCorrelation(correlatedIdentifers);
     }
 
+    public void addPatientCorrelations(List<CorrelatedIdentifiers> correlatedIdentifiersList) {
+        Storer.addPatientCorrelations(correlatedIdentifiersList);
+    }
+
     public List<QualifiedPatientIdentifier> retrievePatientCorrelation(
             QualifiedPatientIdentifier qualifiedPatientIdentifier, List<String> includeOnlyAssigningAuthorities) {
         return Retriever.retrievePatientCorrelation(qualifiedPatientIdentifier, includeOnlyAssigningAuthorities);
@@ -232,6 +232,7 @@ public class Retriever {
             Criteria criteria;
 
             criteria = sess.createCriteria(CorrelatedIdentifiers.class);
+            criteria.setCacheable(true);
 
             if (NullChecker.isNotNullish(correlatedIdentifers.getPatientAssigningAuthorityId())) {
                 log.debug("Retrieving by patientAssigningAuthorityId="
@@ -29,7 +29,12 @@ package gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.CorrelatedIdentifiers;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.QualifiedPatientIdentifier;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.persistence.HibernateUtil;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
@@ -38,6 +43,7 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.criterion.Expression;
+import org.hibernate.criterion.Restrictions;
 
 /**
  * 
@@ -47,6 +53,33 @@ public class Storer {
 
     static Log log = LogFactory.getLog(Storer.class);
 
+    /**
+     * Number of correlations written before the session is flushed and cleared. Should match hibernate.jdbc.batch_size
+     * in CorrelatedIdentifers.hibernate.cfg.xml.
+     */
+    static final int BATCH_SIZE = 50;
+
+    private static final List<CorrelationRemovalListener> removalListeners =
+            new CopyOnWriteArrayList<CorrelationRemovalListener>();
+
+    /**
+     * Registers a listener to be told of every correlation removed from the database.
+     *
+     * @param listener the listener
+     */
+    public static void addRemovalListener(CorrelationRemovalListener listener) {
+        if (!removalListeners.contains(listener)) {
+            removalListeners.add(listener);
+        }
+    }
+
+    /**
+     * @param listener a listener registered with addRemovalListener
+     */
+    public static void removeRemovalListener(CorrelationRemovalListener listener) {
+        removalListeners.remove(listener);
+    }
+
     public static void addPatientCorrelation(CorrelatedIdentifiers correlatedIdentifers) {
         log.info("patient correlation add requested");
         if (!Retriever.doesCorrelationExist(correlatedIdentifers)) {
@@ -59,6 +92,116 @@ public class Storer {
         }
     }
 
+    /**
+     * Stores a list of correlations using a single session and transaction. Each correlation is handled the same way as
+     * addPatientCorrelation: it is added if it does not exist in either direction, otherwise the expiration date of the
+     * existing record is updated when a new one is supplied. Expired records that are found are removed, and the
+     * removal listeners are told once the transaction has committed. If any of them cannot be stored the transaction
+     * is rolled back and the exception is passed on, so none of them are stored.
+     *
+     * @param correlatedIdentifiersList the correlations to store
+     * @throws HibernateException if the correlations could not be stored
+     */
+    public static void addPatientCorrelations(List<CorrelatedIdentifiers> correlatedIdentifiersList) {
+        if (correlatedIdentifiersList == null || correlatedIdentifiersList.isEmpty()) {
+            return;
+        }
+        addPatientCorrelations(correlatedIdentifiersList, HibernateUtil.getSessionFactory());
+    }
+
+    static void addPatientCorrelations(List<CorrelatedIdentifiers> correlatedIdentifiersList, SessionFactory fact) {
+        log.debug("-- Begin CorrelatedIdentifiersDao.addPatientCorrelations() ---");
+        log.info("patient correlation batch add requested for " + correlatedIdentifiersList.size() + " record(s)");
+
+        Session sess = null;
+        Transaction trans = null;
+        int count = 0;
+        Date now = new Date();
+        List<CorrelatedIdentifiers> removed = new ArrayList<CorrelatedIdentifiers>();
+
+        try {
+            if (fact != null) {
+                sess = fact.openSession();
+                trans = sess.beginTransaction();
+                for (CorrelatedIdentifiers correlatedIdentifers : correlatedIdentifiersList) {
+                    CorrelatedIdentifiers existing = findExistingCorrelation(sess, correlatedIdentifers, now,
+                            removed);
+                    if (existing == null) {
+                        sess.save(correlatedIdentifers);
+                    } else if (correlatedIdentifers.getCorrelationExpirationDate() != null) {
+                        existing.setCorrelationExpirationDate(correlatedIdentifers.getCorrelationExpirationDate());
+                    }
+                    if (++count % BATCH_SIZE == 0) {
+                        sess.flush();
+                        sess.clear();
+                    }
+                }
+                trans.commit();
+            } else {
+                throw new HibernateException("Session factory was null");
+            }
+        } catch (HibernateException ex) {
+            log.error("Failed to store " + correlatedIdentifiersList.size() + " patient correlation(s): "
+                    + ex.getMessage(), ex);
+            throw ex;
+        } finally {
+            if (trans != null && trans.isActive()) {
+                try {
+                    trans.rollback();
+                } catch (Throwable t) {
+                    log.error("Failed to rollback transaction: " + t.getMessage(), t);
+                }
+            }
+            if (sess != null) {
+                try {
+                    sess.close();
+                } catch (Throwable t) {
+                    log.error("Failed to close session: " + t.getMessage(), t);
+                }
+            }
+        }
+        for (CorrelatedIdentifiers record : removed) {
+            notifyRemoved(record);
+        }
+        log.debug("-- End CorrelatedIdentifiersDao.addPatientCorrelations() ---");
+    }
+
+    /**
+     * Looks up a correlation in either direction within the given session. Expired records are deleted, added to the
+     * removed list and ignored.
+     */
+    private static CorrelatedIdentifiers findExistingCorrelation(Session sess,
+            CorrelatedIdentifiers correlatedIdentifers, Date now, List<CorrelatedIdentifiers> removed) {
+        Map<String, String> forward = new HashMap<String, String>();
+        forward.put("patientAssigningAuthorityId", correlatedIdentifers.getPatientAssigningAuthorityId());
+        forward.put("patientId", correlatedIdentifers.getPatientId());
+        forward.put("correlatedPatientAssigningAuthorityId",
+                correlatedIdentifers.getCorrelatedPatientAssigningAuthorityId());
+        forward.put("correlatedPatientId", correlatedIdentifers.getCorrelatedPatientId());
+
+        Map<String, String> reverse = new HashMap<String, String>();
+        reverse.put("patientAssigningAuthorityId", correlatedIdentifers.getCorrelatedPatientAssigningAuthorityId());
+        reverse.put("patientId", correlatedIdentifers.getCorrelatedPatientId());
+        reverse.put("correlatedPatientAssigningAuthorityId", correlatedIdentifers.getPatientAssigningAuthorityId());
+        reverse.put("correlatedPatientId", correlatedIdentifers.getPatientId());
+
+        Criteria criteria = sess.createCriteria(CorrelatedIdentifiers.class);
+        criteria.add(Restrictions.or(Restrictions.allEq(forward), Restrictions.allEq(reverse)));
+
+        CorrelatedIdentifiers existing = null;
+        for (Object result : criteria.list()) {
+            CorrelatedIdentifiers record = (CorrelatedIdentifiers) result;
+            if (record.getCorrelationExpirationDate() != null && !now.before(record.getCorrelationExpirationDate())) {
+                log.debug("...removing expired patient correlation record...");
+                sess.delete(record);
+                removed.add(record);
+            } else if (existing == null) {
+                existing = record;
+            }
+        }
+        return existing;
+    }
+
     private static void localUpdatePatientCorrelation(CorrelatedIdentifiers correlatedIdentifers) {
         log.debug("-- Begin CorrelatedIdentifiersDao.localUpdatePatientCorrelation() ---");
         Session sess = null;
@@ -137,11 +280,12 @@ public class Storer {
         String param2 = correlatedIdentifers.getPatientId();
         String param3 = correlatedIdentifers.getCorrelatedPatientAssigningAuthorityId();
         String param4 = correlatedIdentifers.getCorrelatedPatientId();
-        String sql = "delete from correlatedidentifiers where ((PatientAssigningAuthorityId='" + param1
-                + "' and PatientId='" + param2 + "' and CorrelatedPatientAssignAuthId='" + param3
-                + "' and CorrelatedPatientId='" + param4 + "') or (PatientAssigningAuthorityId='" + param3
-                + "' and PatientId='" + param4 + "' and CorrelatedPatientAssignAuthId='" + param1
-                + "' and CorrelatedPatientId='" + param2 + "'))";
+        // HQL rather than SQL, so the delete reaches the catalog the table is mapped to and clears the cached records
+        String hql = "delete from CorrelatedIdentifiers where (patientAssigningAuthorityId = :param1"
+                + " and patientId = :param2 and correlatedPatientAssigningAuthorityId = :param3"
+                + " and correlatedPatientId = :param4) or (patientAssigningAuthorityId = :param3"
+                + " and patientId = :param4 and correlatedPatientAssigningAuthorityId = :param1"
+                + " and correlatedPatientId = :param2)";
         try {
             SessionFactory fact = HibernateUtil.getSessionFactory();
             if (fact != null) {
@@ -149,7 +293,8 @@ public class Storer {
                 sess = fact.openSession();
                 if (sess != null) {
                     trans = sess.beginTransaction();
-                    int rowsDeleted = sess.createSQLQuery(sql).executeUpdate();
+                    int rowsDeleted = sess.createQuery(hql).setString("param1", param1).setString("param2", param2)
+                            .setString("param3", param3).setString("param4", param4).executeUpdate();
                     trans.commit();
                     if (rowsDeleted != 0) {
                         result = true;
@@ -178,6 +323,15 @@ public class Storer {
                 }
             }
         }
+        if (result) {
+            notifyRemoved(correlatedIdentifers);
+        }
         log.debug("-- End CorrelatedIdentifiersDao.removePatientCorrelation() ---");
     }
+
+    private static void notifyRemoved(CorrelatedIdentifiers correlatedIdentifers) {
+        for (CorrelationRemovalListener listener : removalListeners) {
+            listener.correlationRemoved(correlatedIdentifers);
+        }
+    }
 }
@@ -26,13 +26,11 @@
  */
 package gov.hhs.fha.nhinc.patientcorrelation.nhinc.persistence;
 
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import java.io.File;
 
 /**
  * This class will be used as a Utility Class to access the Data Object using Hibernate SessionFactory
@@ -44,8 +42,9 @@ public class HibernateUtil {
     private static Log log = LogFactory.getLog(HibernateUtil.class);
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    NhincConstants.HIBERNATE_PATIENT_CORRELATION);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             log.error("Initial SessionFactory creation failed." + ex);
@@ -61,17 +60,4 @@ public class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return sessionFactory;
     }
-
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_PATIENT_CORRELATION);
-        } catch (Exception ex) {
-            log.error("Unable to load " + NhincConstants.HIBERNATE_PATIENT_CORRELATION + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-
-    }
 }
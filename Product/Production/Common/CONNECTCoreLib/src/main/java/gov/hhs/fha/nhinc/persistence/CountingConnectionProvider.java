@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.persistence;
+
+import gov.hhs.fha.nhinc.tracing.Span;
+import gov.hhs.fha.nhinc.tracing.Tracer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.connection.ConnectionProviderFactory;
+
+/**
+ * Hands out the connections of the provider Hibernate would otherwise have used, counting how many a session factory
+ * holds from its pool at once. For traced requests, the time each connection is held is recorded as a "db" span.
+ *
+ * @author dharley
+ */
+public class CountingConnectionProvider implements ConnectionProvider {
+
+    /**
+     * The property naming the connection provider to count the connections of. When it is not set Hibernate picks the
+     * provider from the data source or connection url, as usual.
+     */
+    public static final String DELEGATE_PROVIDER = "gov.hhs.fha.nhinc.persistence.delegate_provider_class";
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger peakOpenConnections = new AtomicInteger();
+    private final AtomicLong borrowedConnections = new AtomicLong();
+    private final ConcurrentMap<Connection, Span> spans = new ConcurrentHashMap<Connection, Span>();
+    private ConnectionProvider delegate;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.hibernate.connection.ConnectionProvider#configure(java.util.Properties)
+     */
+    @Override
+    public void configure(Properties props) throws HibernateException {
+        Properties delegateProps = new Properties();
+        delegateProps.putAll(props);
+        String delegateProvider = delegateProps.getProperty(DELEGATE_PROVIDER);
+        if (delegateProvider == null) {
+            delegateProps.remove(Environment.CONNECTION_PROVIDER);
+        } else {
+            delegateProps.setProperty(Environment.CONNECTION_PROVIDER, delegateProvider);
+        }
+        delegate = ConnectionProviderFactory.newConnectionProvider(delegateProps);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.hibernate.connection.ConnectionProvider#getConnection()
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Span span = Tracer.startSpan("db");
+        Connection connection = null;
+        try {
+            connection = delegate.getConnection();
+        } finally {
+            if (span != null && connection == null) {
+                Tracer.endSpan(span);
+            } else if (span != null) {
+                spans.put(connection, span);
+            }
+        }
+        borrowedConnections.incrementAndGet();
+        int open = openConnections.incrementAndGet();
+        int peak = peakOpenConnections.get();
+        while (open > peak && !peakOpenConnections.compareAndSet(peak, open)) {
+            peak = peakOpenConnections.get();
+        }
+        return connection;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.hibernate.connection.ConnectionProvider#closeConnection(java.sql.Connection)
+     */
+    @Override
+    public void closeConnection(Connection conn) throws SQLException {
+        try {
+            delegate.closeConnection(conn);
+        } finally {
+            openConnections.decrementAndGet();
+            if (!spans.isEmpty()) {
+                Tracer.endSpan(spans.remove(conn));
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.hibernate.connection.ConnectionProvider#close()
+     */
+    @Override
+    public void close() throws HibernateException {
+        delegate.close();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.hibernate.connection.ConnectionProvider#supportsAggressiveRelease()
+     */
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return delegate.supportsAggressiveRelease();
+    }
+
+    /**
+     * @return the number of connections the session factory holds now
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * @return the most connections the session factory has held at once since the last reset
+     */
+    public int getPeakOpenConnections() {
+        return peakOpenConnections.get();
+    }
+
+    /**
+     * @return the number of connections the session factory has taken from the pool since the last reset
+     */
+    public long getBorrowedConnections() {
+        return borrowedConnections.get();
+    }
+
+    /**
+     * Starts the peak and borrowed counts again from the connections held now.
+     */
+    public void reset() {
+        peakOpenConnections.set(openConnections.get());
+        borrowedConnections.set(0);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.persistence;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.w3c.dom.Document;
+
+/**
+ * Builds the Hibernate session factories of the gateway. The Hibernate configuration files that name the same data
+ * source are mapped into one session factory, so the gateway starts one session factory and keeps one connection pool
+ * rather than one of each per database. A configuration file naming a data source of its own still gets a session
+ * factory of its own, which keeps its database on a separate server.
+ * <p>
+ * The statistics of each session factory are published over JMX under gov.hhs.fha.nhinc:type=Persistence.
+ *
+ * @author dharley
+ */
+public class HibernateSessionFactoryRegistry {
+
+    public static final String OBJECT_NAME_PREFIX = "gov.hhs.fha.nhinc:type=Persistence,name=";
+
+    private static Log log = LogFactory.getLog(HibernateSessionFactoryRegistry.class);
+
+    private static final String[] PERSISTENCE_UNITS = { NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY,
+            NhincConstants.HIBERNATE_ASSIGNING_AUTHORITY, NhincConstants.HIBERNATE_AUDIT_REPOSITORY,
+            NhincConstants.HIBERNATE_PATIENT_CORRELATION, NhincConstants.HIBERNATE_DOCUMENT_REPOSITORY,
+            NhincConstants.HIBERNATE_ASYNCMSGS_REPOSITORY, NhincConstants.HIBERNATE_PATIENTDB_REPOSITORY,
+            NhincConstants.HIBERNATE_PERFREPO_REPOSITORY, NhincConstants.HIBERNATE_TRANSREPO_REPOSITORY,
+            NhincConstants.HIBERNATE_HIEMSUBREP_REPOSITORY };
+
+    private static HibernateSessionFactoryRegistry instance;
+
+    private Map<String, PersistenceUnit> persistenceUnits;
+    private final Map<String, SessionFactory> sessionFactories = new HashMap<String, SessionFactory>();
+    private final List<PersistenceStatistics> statistics = new ArrayList<PersistenceStatistics>();
+
+    protected HibernateSessionFactoryRegistry() {
+    }
+
+    public static synchronized HibernateSessionFactoryRegistry getInstance() {
+        if (instance == null) {
+            instance = new HibernateSessionFactoryRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the session factory of a Hibernate configuration file, building it on first use along with the other
+     * configuration files that share its data source.
+     *
+     * @param configFileName the name of the configuration file, such as NhincConstants.HIBERNATE_AUDIT_REPOSITORY
+     * @return the session factory
+     * @throws HibernateException if the session factory cannot be built
+     */
+    public synchronized SessionFactory getSessionFactory(String configFileName) throws HibernateException {
+        SessionFactory sessionFactory = sessionFactories.get(configFileName);
+        if (sessionFactory != null) {
+            return sessionFactory;
+        }
+
+        PersistenceUnit unit = getPersistenceUnits().get(configFileName);
+        if (unit == null) {
+            sessionFactory = buildSessionFactory(configFileName);
+            sessionFactories.put(configFileName, sessionFactory);
+            return sessionFactory;
+        }
+
+        List<PersistenceUnit> group = new ArrayList<PersistenceUnit>();
+        for (PersistenceUnit member : getPersistenceUnits().values()) {
+            if (member.getDataSourceKey().equals(unit.getDataSourceKey())) {
+                group.add(member);
+            }
+        }
+        sessionFactory = buildSessionFactory(unit.getDataSourceKey(), group);
+        for (PersistenceUnit member : group) {
+            sessionFactories.put(member.getName(), sessionFactory);
+        }
+        return sessionFactory;
+    }
+
+    /**
+     * @return the statistics of the shared session factories built so far
+     */
+    public synchronized List<PersistenceStatistics> getStatistics() {
+        return new ArrayList<PersistenceStatistics>(statistics);
+    }
+
+    /**
+     * @return the names of the configuration files whose session factories may be shared
+     */
+    protected String[] getPersistenceUnitNames() {
+        return PERSISTENCE_UNITS.clone();
+    }
+
+    protected File getHibernateFile(String configFileName) throws PropertyAccessException {
+        return HibernateAccessor.getInstance().getHibernateFile(configFileName);
+    }
+
+    private Map<String, PersistenceUnit> getPersistenceUnits() {
+        if (persistenceUnits == null) {
+            persistenceUnits = new LinkedHashMap<String, PersistenceUnit>();
+            for (String name : getPersistenceUnitNames()) {
+                try {
+                    PersistenceUnit unit = new PersistenceUnit(name, getHibernateFile(name));
+                    if (unit.isAvailable()) {
+                        persistenceUnits.put(name, unit);
+                    }
+                } catch (PropertyAccessException ex) {
+                    log.debug("Unable to load " + name + " " + ex.getMessage());
+                } catch (HibernateException ex) {
+                    log.warn("The session factory of " + name + " will not be shared: " + ex.getMessage(), ex);
+                }
+            }
+        }
+        return persistenceUnits;
+    }
+
+    /**
+     * Builds a session factory of its own for a configuration file, as each file had before they were shared.
+     */
+    private SessionFactory buildSessionFactory(String configFileName) throws HibernateException {
+        try {
+            return new Configuration().configure(getHibernateFile(configFileName)).buildSessionFactory();
+        } catch (PropertyAccessException ex) {
+            throw new HibernateException("Unable to load " + configFileName + " " + ex.getMessage(), ex);
+        }
+    }
+
+    private SessionFactory buildSessionFactory(String dataSourceKey, List<PersistenceUnit> group)
+            throws HibernateException {
+        long start = System.currentTimeMillis();
+
+        Properties properties = mergeProperties(group);
+        String connectionProvider = properties.getProperty(Environment.CONNECTION_PROVIDER);
+        if (connectionProvider != null) {
+            properties.setProperty(CountingConnectionProvider.DELEGATE_PROVIDER, connectionProvider);
+        }
+        properties.setProperty(Environment.CONNECTION_PROVIDER, CountingConnectionProvider.class.getName());
+        properties.setProperty(Environment.GENERATE_STATISTICS, "true");
+
+        Configuration configuration = new Configuration().addProperties(properties);
+        List<String> names = new ArrayList<String>();
+        for (PersistenceUnit unit : group) {
+            for (Document mapping : unit.getMappings()) {
+                configuration.addDocument(mapping);
+            }
+            names.add(unit.getName());
+        }
+        SessionFactory sessionFactory = configuration.buildSessionFactory();
+
+        CountingConnectionProvider connections = (CountingConnectionProvider) ((SessionFactoryImplementor)
+                sessionFactory).getConnectionProvider();
+        PersistenceStatistics persistenceStatistics = new PersistenceStatistics(dataSourceKey, names, sessionFactory,
+                connections);
+        statistics.add(persistenceStatistics);
+        register(persistenceStatistics);
+
+        log.info("Built the session factory of " + names + " on " + dataSourceKey + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return sessionFactory;
+    }
+
+    /**
+     * Merges the properties of the configuration files sharing a session factory. Where two files disagree the first
+     * one wins, since one session factory can only have one value.
+     */
+    private Properties mergeProperties(List<PersistenceUnit> group) {
+        Properties merged = new Properties();
+        for (PersistenceUnit unit : group) {
+            for (String name : unit.getProperties().stringPropertyNames()) {
+                String value = unit.getProperties().getProperty(name);
+                String existing = merged.getProperty(name);
+                if (existing == null) {
+                    merged.setProperty(name, value);
+                } else if (!existing.equals(value)) {
+                    log.warn(unit.getName() + " sets " + name + " to " + value + ", but the session factory it shares"
+                            + " already uses " + existing);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private void register(PersistenceStatistics persistenceStatistics) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME_PREFIX
+                    + ObjectName.quote(persistenceStatistics.getDataSource()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                log.warn("Unable to publish the statistics of " + persistenceStatistics.getDataSource() + ", "
+                        + name + " is already registered");
+            } else {
+                server.registerMBean(persistenceStatistics, name);
+            }
+        } catch (JMException ex) {
+            log.warn("Unable to publish the statistics of " + persistenceStatistics.getDataSource() + ": "
+                    + ex.getMessage(), ex);
+        }
+    }
+}
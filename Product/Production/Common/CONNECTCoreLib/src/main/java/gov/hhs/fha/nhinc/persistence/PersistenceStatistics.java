@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.persistence;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * The connection and cache statistics of one shared session factory.
+ *
+ * @author dharley
+ */
+public class PersistenceStatistics implements PersistenceStatisticsMBean {
+
+    private final String dataSource;
+    private final String[] persistenceUnits;
+    private final Statistics statistics;
+    private final CountingConnectionProvider connections;
+
+    /**
+     * @param dataSource the data source the session factory takes its connections from
+     * @param persistenceUnits the names of the Hibernate configuration files mapped into the session factory
+     * @param sessionFactory the session factory, built with statistics enabled
+     * @param connections the provider of the connections of the session factory
+     */
+    public PersistenceStatistics(String dataSource, List<String> persistenceUnits, SessionFactory sessionFactory,
+            CountingConnectionProvider connections) {
+        this.dataSource = dataSource;
+        this.persistenceUnits = persistenceUnits.toArray(new String[persistenceUnits.size()]);
+        this.statistics = sessionFactory.getStatistics();
+        this.connections = connections;
+    }
+
+    @Override
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public String[] getPersistenceUnits() {
+        return persistenceUnits.clone();
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return connections.getOpenConnections();
+    }
+
+    @Override
+    public int getPeakOpenConnections() {
+        return connections.getPeakOpenConnections();
+    }
+
+    @Override
+    public long getBorrowedConnections() {
+        return connections.getBorrowedConnections();
+    }
+
+    @Override
+    public long getSessionOpenCount() {
+        return statistics.getSessionOpenCount();
+    }
+
+    @Override
+    public long getSecondLevelCacheHitCount() {
+        return statistics.getSecondLevelCacheHitCount();
+    }
+
+    @Override
+    public long getSecondLevelCacheMissCount() {
+        return statistics.getSecondLevelCacheMissCount();
+    }
+
+    @Override
+    public long getSecondLevelCachePutCount() {
+        return statistics.getSecondLevelCachePutCount();
+    }
+
+    @Override
+    public long getQueryCacheHitCount() {
+        return statistics.getQueryCacheHitCount();
+    }
+
+    @Override
+    public long getQueryCacheMissCount() {
+        return statistics.getQueryCacheMissCount();
+    }
+
+    @Override
+    public void clear() {
+        statistics.clear();
+        connections.reset();
+    }
+}
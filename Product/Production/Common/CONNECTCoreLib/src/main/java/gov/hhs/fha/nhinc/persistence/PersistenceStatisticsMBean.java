@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.persistence;
+
+/**
+ * The connection and cache statistics of one shared session factory, published over JMX.
+ *
+ * @author dharley
+ */
+public interface PersistenceStatisticsMBean {
+
+    /**
+     * @return the data source the session factory takes its connections from
+     */
+    String getDataSource();
+
+    /**
+     * @return the names of the Hibernate configuration files mapped into the session factory
+     */
+    String[] getPersistenceUnits();
+
+    /**
+     * @return the number of connections the session factory holds now
+     */
+    int getOpenConnections();
+
+    /**
+     * @return the most connections the session factory has held at once
+     */
+    int getPeakOpenConnections();
+
+    /**
+     * @return the number of connections the session factory has taken from the pool
+     */
+    long getBorrowedConnections();
+
+    /**
+     * @return the number of sessions opened
+     */
+    long getSessionOpenCount();
+
+    /**
+     * @return the number of entities found in the second-level cache
+     */
+    long getSecondLevelCacheHitCount();
+
+    /**
+     * @return the number of entities looked for in the second-level cache and not found
+     */
+    long getSecondLevelCacheMissCount();
+
+    /**
+     * @return the number of entities put in the second-level cache
+     */
+    long getSecondLevelCachePutCount();
+
+    /**
+     * @return the number of query results found in the query cache
+     */
+    long getQueryCacheHitCount();
+
+    /**
+     * @return the number of query results looked for in the query cache and not found
+     */
+    long getQueryCacheMissCount();
+
+    /**
+     * Starts the statistics again.
+     */
+    void clear();
+}
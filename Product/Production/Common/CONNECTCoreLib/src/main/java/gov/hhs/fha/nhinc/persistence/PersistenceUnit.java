@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.util.DTDEntityResolver;
+import org.hibernate.util.ReflectHelper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * The settings and mappings held in one Hibernate configuration file, such as auditrepo.hibernate.cfg.xml. Units
+ * that name the same data source are mapped into one session factory; each keeps its tables in the catalog named by
+ * its hibernate.default_catalog property.
+ *
+ * @author dharley
+ */
+class PersistenceUnit {
+
+    private static Log log = LogFactory.getLog(PersistenceUnit.class);
+    private static final String[] ENTITY_ELEMENTS = { "class", "subclass", "joined-subclass", "union-subclass" };
+
+    private final String name;
+    private final Properties properties = new Properties();
+    private final List<String> mappingResources = new ArrayList<String>();
+    private final String catalog;
+    private List<Document> mappings;
+
+    /**
+     * Reads a Hibernate configuration file.
+     *
+     * @param name the name of the configuration file
+     * @param file the configuration file
+     * @throws HibernateException if the file cannot be read, or maps anything other than classpath resources
+     */
+    PersistenceUnit(String name, File file) throws HibernateException {
+        this.name = name;
+
+        Element sessionFactory = (Element) parse(file).getElementsByTagName("session-factory").item(0);
+        if (sessionFactory == null) {
+            throw new HibernateException(file + " has no session-factory element");
+        }
+
+        NodeList properties = sessionFactory.getElementsByTagName("property");
+        for (int i = 0; i < properties.getLength(); i++) {
+            Element property = (Element) properties.item(i);
+            setProperty(property.getAttribute("name"), property.getTextContent().trim());
+        }
+
+        NodeList mappingElements = sessionFactory.getElementsByTagName("mapping");
+        for (int i = 0; i < mappingElements.getLength(); i++) {
+            Element mapping = (Element) mappingElements.item(i);
+            if (!mapping.hasAttribute("resource")) {
+                throw new HibernateException(file + " maps something other than a classpath resource");
+            }
+            mappingResources.add(mapping.getAttribute("resource"));
+        }
+
+        catalog = (String) this.properties.remove(Environment.DEFAULT_CATALOG);
+        this.properties.remove("default_catalog");
+    }
+
+    /**
+     * Stores a property the way Hibernate does, under its own name and with the hibernate prefix.
+     */
+    private void setProperty(String propertyName, String value) {
+        properties.setProperty(propertyName, value);
+        if (!propertyName.startsWith("hibernate")) {
+            properties.setProperty("hibernate." + propertyName, value);
+        }
+    }
+
+    /**
+     * @return the name of the configuration file
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the Hibernate properties of the unit, without its default catalog
+     */
+    Properties getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the catalog holding the tables of the unit, or null to use the one the connection opens on
+     */
+    String getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return the key of the connections used by the unit: its data source, its connection url or, failing those,
+     *         its own name
+     */
+    String getDataSourceKey() {
+        String dataSource = properties.getProperty(Environment.DATASOURCE);
+        if (dataSource != null) {
+            return dataSource;
+        }
+        String url = properties.getProperty(Environment.URL);
+        if (url != null) {
+            String user = properties.getProperty(Environment.USER);
+            return user == null ? url : user + "@" + url;
+        }
+        return name;
+    }
+
+    /**
+     * @return the mapping documents of the unit, with the catalog of the unit set on each
+     * @throws HibernateException if a mapping cannot be read
+     */
+    synchronized List<Document> getMappings() throws HibernateException {
+        if (mappings == null) {
+            List<Document> documents = new ArrayList<Document>();
+            for (String resource : mappingResources) {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                InputStream in = loader == null ? null : loader.getResourceAsStream(resource);
+                if (in == null) {
+                    in = PersistenceUnit.class.getClassLoader().getResourceAsStream(resource);
+                }
+                if (in == null) {
+                    throw new MappingException("Mapping " + resource + " of " + name + " was not found");
+                }
+                Document document = parse(resource, in);
+                Element root = document.getDocumentElement();
+                if (catalog != null && !root.hasAttribute("catalog")) {
+                    root.setAttribute("catalog", catalog);
+                }
+                documents.add(document);
+            }
+            mappings = Collections.unmodifiableList(documents);
+        }
+        return mappings;
+    }
+
+    /**
+     * A unit can only be mapped if the classes it maps are deployed alongside it, which is not true of every unit in
+     * every web application.
+     *
+     * @return true if every mapping of the unit can be read and every class it maps can be loaded
+     */
+    boolean isAvailable() {
+        try {
+            for (Document mapping : getMappings()) {
+                Element root = mapping.getDocumentElement();
+                String packageName = root.getAttribute("package");
+                for (String tag : ENTITY_ELEMENTS) {
+                    NodeList entities = root.getElementsByTagName(tag);
+                    for (int i = 0; i < entities.getLength(); i++) {
+                        String className = ((Element) entities.item(i)).getAttribute("name");
+                        if (className.length() > 0) {
+                            ReflectHelper.classForName(className.indexOf('.') < 0 && packageName.length() > 0
+                                    ? packageName + "." + className : className);
+                        }
+                    }
+                }
+            }
+            return true;
+        } catch (HibernateException ex) {
+            log.debug(name + " is not deployed here: " + ex.getMessage());
+        } catch (ClassNotFoundException ex) {
+            log.debug(name + " is not deployed here: " + ex.getMessage());
+        }
+        return false;
+    }
+
+    private static Document parse(File file) throws HibernateException {
+        try {
+            return newDocumentBuilder().parse(file);
+        } catch (SAXException ex) {
+            throw new HibernateException("Unable to read " + file, ex);
+        } catch (IOException ex) {
+            throw new HibernateException("Unable to read " + file, ex);
+        }
+    }
+
+    private static Document parse(String resource, InputStream in) throws HibernateException {
+        try {
+            try {
+                return newDocumentBuilder().parse(in);
+            } finally {
+                in.close();
+            }
+        } catch (SAXException ex) {
+            throw new HibernateException("Unable to read " + resource, ex);
+        } catch (IOException ex) {
+            throw new HibernateException("Unable to read " + resource, ex);
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws HibernateException {
+        try {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            // Resolves the Hibernate DTDs from the Hibernate jar, which also fills in the attribute defaults they set
+            builder.setEntityResolver(new DTDEntityResolver());
+            return builder;
+        } catch (ParserConfigurationException ex) {
+            throw new HibernateException("Unable to create an XML parser", ex);
+        }
+    }
+}
@@ -32,10 +32,15 @@ import java.io.File;
 import java.util.Properties;
 import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 /**
  * This class is a POJO class that is used to access properties within a property file.
  */
 public class PropertyAccessor implements IPropertyAcessor {
+    private static Log log = LogFactory.getLog(PropertyAccessor.class);
+
     private static final String CACHE_REFRESH_DURATION = "CacheRefreshDuration";
     
     private static PropertyAccessor instance;
@@ -146,6 +151,25 @@ public class PropertyAccessor implements IPropertyAcessor {
         return propertyFileDAO.getPropertyLong(propertyFile, propertyName);
     }
 
+    /**
+     * This will return the long value conversion of the property, or the given default value if the property is not
+     * set or cannot be converted to a long.
+     * 
+     * @param propertyFile The name of the property file.
+     * @param propertyName The name of the property that contains a long value.
+     * @param defaultValue The value returned when the property cannot be read.
+     * @return This will return the long representation of the value, or the default value.
+     */
+    public long getPropertyLong(String propertyFile, String propertyName, long defaultValue) {
+        try {
+            return getPropertyLong(propertyFile, propertyName);
+        } catch (PropertyAccessException pae) {
+            getLogger().info("Failed to determine " + propertyName + " in " + propertyFile
+                    + ".properties.  Will use default value: " + defaultValue);
+        }
+        return defaultValue;
+    }
+
     /**
      * This method returns the set of keys in a property file.
      * 
@@ -263,6 +287,10 @@ public class PropertyAccessor implements IPropertyAcessor {
         }    
     }
     
+    protected Log getLogger() {
+        return log;
+    }
+
     protected PropertyFileRefreshHandler createPropertyFileRefreshHandler() {
         return new PropertyFileRefreshHandler();
     }
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.proxy;
+
+import gov.hhs.fha.nhinc.util.DirectoryWatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Holds the Spring application context of each proxy configuration file, shared by all of the component proxy object
+ * factories. Looking a context or proxy bean up is a read of a concurrent map. The configuration files are watched from
+ * a background thread: when one changes, a new context is built from it on that thread and swapped in for the old one,
+ * so requests never wait on, or see, a context being refreshed. The replaced context is closed once the requests that
+ * were using it have had time to finish. The watching is stopped by {@link #stopWatching()} when
+ * a web application using the registry is undeployed. The registry is shared by the web applications of the gateway,
+ * so the next {@link #getInstance()} or {@link #register} watches the files again.
+ *
+ * @author dharley
+ */
+public class ApplicationContextRegistry {
+
+    private static Log log = LogFactory.getLog(ApplicationContextRegistry.class);
+
+    private static ApplicationContextRegistry instance = null;
+
+    /**
+     * How long a replaced context is kept open for the requests still using its proxy beans, in milliseconds. It is
+     * several times the default webserviceproxy.timeout.
+     */
+    static final long CLOSE_DELAY = 10 * 60 * 1000L;
+
+    private final ConcurrentMap<String, ContextSnapshot> snapshots = new ConcurrentHashMap<String, ContextSnapshot>();
+    private final ConcurrentMap<ApplicationContext, ContextSnapshot> snapshotsByContext =
+            new ConcurrentHashMap<ApplicationContext, ContextSnapshot>();
+    private final DirectoryWatcher watcher = new DirectoryWatcher("ApplicationContextRegistry-watcher",
+            new DirectoryWatcher.Listener() {
+                @Override
+                public void fileChanged(Path directory, String fileName) {
+                    if (fileName == null) {
+                        reloadAll();
+                    } else {
+                        reload(fileName);
+                    }
+                }
+            }, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    private volatile boolean stopped = false;
+    private final long closeDelay;
+    private ScheduledExecutorService closer = null;
+
+    ApplicationContextRegistry() {
+        this(CLOSE_DELAY);
+    }
+
+    /**
+     * @param closeDelay how long a replaced context is kept open, in milliseconds
+     */
+    ApplicationContextRegistry(long closeDelay) {
+        this.closeDelay = closeDelay;
+    }
+
+    public static synchronized ApplicationContextRegistry getInstance() {
+        if (instance == null) {
+            instance = new ApplicationContextRegistry();
+        } else if (instance.stopped) {
+            instance.resumeWatching();
+        }
+        return instance;
+    }
+
+    /**
+     * Stops watching the configuration files, if the registry has been created.
+     */
+    public static synchronized void stopWatching() {
+        if (instance != null) {
+            instance.stop();
+        }
+    }
+
+    /**
+     * Stops watching the configuration files until {@link #resumeWatching()}.
+     */
+    synchronized void stop() {
+        stopped = true;
+        watcher.stop();
+    }
+
+    /**
+     * Watches the registered configuration files again after {@link #stop()}, and reloads the ones changed while they
+     * were not watched.
+     */
+    synchronized void resumeWatching() {
+        if (!stopped) {
+            return;
+        }
+        stopped = false;
+        for (ContextSnapshot snapshot : snapshots.values()) {
+            watch(snapshot.getConfigFilePath());
+        }
+        reloadAll();
+    }
+
+    /**
+     * @return true if the configuration files are being watched
+     */
+    synchronized boolean isWatching() {
+        return watcher.isRunning();
+    }
+
+    /**
+     * @param configFileName the name of the configuration file
+     * @return the context built from the configuration file, or null if it has not been registered
+     */
+    public ApplicationContext getContext(String configFileName) {
+        ContextSnapshot snapshot = snapshots.get(configFileName);
+        return snapshot == null ? null : snapshot.getApplicationContext();
+    }
+
+    /**
+     * Builds the context of a configuration file and starts watching the file, unless another thread has already done
+     * so.
+     *
+     * @param configFileName the name of the configuration file
+     * @param configFilePath the URL of the configuration file
+     * @param factory the factory to build the context, and later contexts of the file, with
+     * @return the context built from the configuration file
+     */
+    public synchronized ApplicationContext register(String configFileName, String configFilePath,
+            ComponentProxyObjectFactory factory) {
+        resumeWatching();
+        ContextSnapshot snapshot = snapshots.get(configFileName);
+        if (snapshot == null) {
+            snapshot = new ContextSnapshot(configFilePath, factory, Thread.currentThread().getContextClassLoader());
+            snapshotsByContext.put(snapshot.getApplicationContext(), snapshot);
+            snapshots.put(configFileName, snapshot);
+            watch(configFilePath);
+        }
+        return snapshot.getApplicationContext();
+    }
+
+    /**
+     * Gets a bean from a context, caching it if the context is registered. The proxy beans are singletons, so the cache
+     * hands out the bean Spring would.
+     *
+     * @param appContext the context to get the bean from
+     * @param beanName the name of the bean
+     * @return the bean
+     */
+    public Object getBean(ApplicationContext appContext, String beanName) {
+        ContextSnapshot snapshot = snapshotsByContext.get(appContext);
+        return snapshot == null ? appContext.getBean(beanName) : snapshot.getBean(beanName);
+    }
+
+    /**
+     * Builds a new context for a configuration file if the file has changed, and swaps it in. If the new context cannot
+     * be built, the old one is kept.
+     *
+     * @param configFileName the name of the configuration file
+     * @return true if a new context was swapped in
+     */
+    boolean reload(String configFileName) {
+        ContextSnapshot current = snapshots.get(configFileName);
+        if (current == null) {
+            return false;
+        }
+        ComponentProxyObjectFactory factory = current.getFactory();
+        long lastModified = factory.getLastModified(current.getConfigFilePath());
+        if (lastModified == current.getConfigLastModified()) {
+            return false;
+        }
+        // The beans are loaded by the class loader of the web application that registered the file.
+        ContextSnapshot reloaded;
+        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(current.getClassLoader());
+        try {
+            reloaded = new ContextSnapshot(current.getConfigFilePath(), factory, current.getClassLoader());
+        } catch (RuntimeException ex) {
+            log.error("Unable to reload the Spring application context for " + configFileName
+                    + ", still using the previous one: " + ex.getMessage(), ex);
+            return false;
+        } finally {
+            Thread.currentThread().setContextClassLoader(previousClassLoader);
+        }
+        snapshotsByContext.put(reloaded.getApplicationContext(), reloaded);
+        if (!snapshots.replace(configFileName, current, reloaded)) {
+            snapshotsByContext.remove(reloaded.getApplicationContext());
+            scheduleClose(configFileName, reloaded.getApplicationContext());
+            return false;
+        }
+        snapshotsByContext.remove(current.getApplicationContext());
+        scheduleClose(configFileName, current.getApplicationContext());
+        log.info("Reloaded the Spring application context for " + configFileName);
+        return true;
+    }
+
+    /**
+     * Closes a context that is no longer registered, after {@link #CLOSE_DELAY}. Requests in flight may still be using
+     * its proxy beans until then.
+     */
+    private void scheduleClose(final String configFileName, final ApplicationContext replaced) {
+        if (!(replaced instanceof ConfigurableApplicationContext)) {
+            return;
+        }
+        getCloser().schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ((ConfigurableApplicationContext) replaced).close();
+                    log.debug("Closed a replaced Spring application context for " + configFileName);
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to close a replaced Spring application context for " + configFileName + ": "
+                            + ex.getMessage(), ex);
+                }
+            }
+        }, closeDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getCloser() {
+        if (closer == null) {
+            closer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ApplicationContextRegistry-closer");
+                    thread.setDaemon(true);
+                    // Not the class loader of the web application that happened to reload first
+                    thread.setContextClassLoader(ApplicationContextRegistry.class.getClassLoader());
+                    return thread;
+                }
+            });
+        }
+        return closer;
+    }
+
+    private void watch(String configFilePath) {
+        File configFile = toFile(configFilePath);
+        if (configFile == null || configFile.getParentFile() == null) {
+            return;
+        }
+        Path directory = configFile.getParentFile().toPath();
+        try {
+            watcher.watch(directory);
+        } catch (IOException ex) {
+            log.warn("Unable to watch " + directory + " for changes to the proxy configuration files: "
+                    + ex.getMessage(), ex);
+        }
+    }
+
+    private void reloadAll() {
+        for (String configFileName : snapshots.keySet()) {
+            reload(configFileName);
+        }
+    }
+
+    private File toFile(String configFilePath) {
+        try {
+            URI fileURI = new URI(configFilePath.replace('\\', '/').replaceAll(" ", "%20"));
+            if (!"file".equals(fileURI.getScheme())) {
+                return null;
+            }
+            return new File(fileURI);
+        } catch (Exception ex) {
+            log.debug("Not watching " + configFilePath + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The context built from one version of a configuration file, with the proxy beans resolved from it.
+     */
+    static class ContextSnapshot {
+        private final String configFilePath;
+        private final long configLastModified;
+        private final ApplicationContext applicationContext;
+        private final ComponentProxyObjectFactory factory;
+        private final ClassLoader classLoader;
+        private final ConcurrentMap<String, Object> beans = new ConcurrentHashMap<String, Object>();
+
+        ContextSnapshot(String configFilePath, ComponentProxyObjectFactory factory, ClassLoader classLoader) {
+            this.configFilePath = configFilePath;
+            this.factory = factory;
+            this.classLoader = classLoader;
+            this.configLastModified = factory.getLastModified(configFilePath);
+            this.applicationContext = factory.createApplicationContext(configFilePath);
+        }
+
+        String getConfigFilePath() {
+            return configFilePath;
+        }
+
+        long getConfigLastModified() {
+            return configLastModified;
+        }
+
+        ApplicationContext getApplicationContext() {
+            return applicationContext;
+        }
+
+        ComponentProxyObjectFactory getFactory() {
+            return factory;
+        }
+
+        ClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        Object getBean(String beanName) {
+            Object bean = beans.get(beanName);
+            if (bean == null) {
+                bean = createBean(beanName);
+                if (bean != null) {
+                    beans.putIfAbsent(beanName, bean);
+                }
+            }
+            return bean;
+        }
+
+        private Object createBean(String beanName) {
+            String boundBeanName = InProcessBinding.getInstance().getBeanName(applicationContext, beanName);
+            if (!boundBeanName.equals(beanName)) {
+                try {
+                    return applicationContext.getBean(boundBeanName);
+                } catch (BeansException ex) {
+                    log.warn("Unable to bind " + beanName + " in process to " + boundBeanName
+                            + ", calling it over the network: " + ex.getMessage(), ex);
+                }
+            }
+            return applicationContext.getBean(beanName);
+        }
+    }
+}
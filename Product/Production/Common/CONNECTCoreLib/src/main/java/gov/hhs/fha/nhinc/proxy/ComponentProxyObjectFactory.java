@@ -29,28 +29,21 @@ package gov.hhs.fha.nhinc.proxy;
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 import java.io.File;
 import java.net.URI;
-import java.util.HashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationContext;
-import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 
 /**
  * Base class for all component proxy object factories. Performs context loading and refresh management. The application
- * context will be refreshed if the configuraiton file is modified.
+ * context is shared through the {@link ApplicationContextRegistry}, which builds a new one in the background if the
+ * configuration file is modified.
  * 
  * @author Neil Webb, Les Westberg
  */
 public abstract class ComponentProxyObjectFactory {
     protected Log log = null;
 
-    // Getting a context is very expensive. We want to keep them around when we get them. Since
-    // the context is specific to each of the derived classes, we need to keep a map for all of them.
-    // We have synchronized the method that sets and retrieves this to make it thread safe.
-    // ------------------------------------------------------------------------------------------------
-    private static HashMap<String, LocalApplicationContextInfo> contextMap = new HashMap<String, LocalApplicationContextInfo>();
-
     /**
      * Default constructor.
      */
@@ -86,12 +79,9 @@ public abstract class ComponentProxyObjectFactory {
     protected <T extends Object> T getBean(String beanName, Class<T> type) {
         Object proxyObject = null;
 
-        // VERY BIG NOTE: THIS IS A SYNCHRONIZED METHOD SO THAT IT IS THREAD
-        // SAFE. CONTEXT SHOULD ONLY BE SET OR RETRIEVED THROUGH THIS METHOD ONLY.
-        // -------------------------------------------------------------------------
         ApplicationContext workingContext = getContext();
         if (workingContext != null) {
-            proxyObject = workingContext.getBean(beanName);
+            proxyObject = getContextRegistry().getBean(workingContext, beanName);
         } else {
             log.warn("ApplicationContext was null - not retrieving bean.");
         }
@@ -99,45 +89,27 @@ public abstract class ComponentProxyObjectFactory {
     }
 
     /**
-     * This is a helper class for unit test purposes that will return the requested LocalApplicationContextInfo from the
-     * hash map.
+     * Get the registry the application contexts are shared through.
      * 
-     * @param sKey The key to the file. The is the name of the config file.
-     * @return The LocalApplicationContextInfo
+     * @return ApplicationContextRegistry
      */
-    protected LocalApplicationContextInfo getAppContextInfo(String sKey) {
-        return contextMap.get(sKey);
+    protected ApplicationContextRegistry getContextRegistry() {
+        return ApplicationContextRegistry.getInstance();
     }
 
     /**
-     * Get the application context. Create or refresh if necessary. VERY BIG NOTE: THIS IS A SYNCHRONIZED METHOD SO THAT
-     * IT IS THREAD SAFE. CONTEXT SHOULD ONLY BE SET OR RETRIEVED THROUGH THIS METHOD ONLY.
+     * Get the application context, creating it the first time the configuration file is used. Once created, the
+     * context is read from the registry without locking or checking the configuration file; the registry replaces it
+     * when the file is modified.
      * 
      * @return ApplicationContext
      */
-    protected synchronized ApplicationContext getContext() {
-        ApplicationContext appContext = null;
-
-        String configFilePath = getPropertyFileURL() + getConfigFileName();
-        LocalApplicationContextInfo appContextInfo = getAppContextInfo(getConfigFileName());
-
-        if (appContextInfo == null) {
+    protected ApplicationContext getContext() {
+        ApplicationContextRegistry registry = getContextRegistry();
+        ApplicationContext appContext = registry.getContext(getConfigFileName());
+        if (appContext == null) {
             log.debug("ApplicationContext for: " + getConfigFileName() + " was null - creating.");
-            appContextInfo = new LocalApplicationContextInfo();
-            appContextInfo.setApplicationContext(createApplicationContext(configFilePath));
-            appContextInfo.setConfigLastModified(getLastModified(configFilePath));
-            contextMap.put(getConfigFileName(), appContextInfo);
-            appContext = appContextInfo.getApplicationContext();
-        } else {
-            log.debug("ApplicationContext for: " + getConfigFileName()
-                    + " was not null - checking to see if it is stale.");
-            long lastModified = getLastModified(configFilePath);
-            if (appContextInfo.getConfigLastModified() != lastModified) {
-                log.debug("Refreshing the Spring application context for: " + getConfigFileName());
-                refreshConfigurationContext(appContextInfo.getApplicationContext());
-                appContextInfo.setConfigLastModified(lastModified);
-            }
-            appContext = appContextInfo.getApplicationContext();
+            appContext = registry.register(getConfigFileName(), getPropertyFileURL() + getConfigFileName(), this);
         }
         return appContext;
     }
@@ -152,16 +124,6 @@ public abstract class ComponentProxyObjectFactory {
         return new FileSystemXmlApplicationContext(configFilePath);
     }
 
-    /**
-     * Refresh the ApplicationContext to reload the contents.
-     * 
-     * @param appContext ApplicationContext to refresh.
-     */
-    protected void refreshConfigurationContext(ApplicationContext appContext) {
-        ((ConfigurableApplicationContext) appContext).refresh();
-
-    }
-
     /**
      * Get the timestamp in MS of the last time the configuration file was modified.
      * 
@@ -191,49 +153,4 @@ public abstract class ComponentProxyObjectFactory {
      * @return Configuration file name
      */
     protected abstract String getConfigFileName();
-
-    /**
-     * This class is an inner class to put the ApplicationContext, and last modified time together so that they can be
-     * put in the map.
-     */
-    protected class LocalApplicationContextInfo {
-        private ApplicationContext applicationContext = null;
-        private long configLastModified = -1L;
-
-        /**
-         * Return the last modified time for this config file.
-         * 
-         * @return The last modified time for this config file.
-         */
-        public long getConfigLastModified() {
-            return configLastModified;
-        }
-
-        /**
-         * Set the last modified time for this config file.
-         * 
-         * @param configLastModified The last modified time for this config file.
-         */
-        public void setConfigLastModified(long configLastModified) {
-            this.configLastModified = configLastModified;
-        }
-
-        /**
-         * Return the context.
-         * 
-         * @return The context.
-         */
-        public ApplicationContext getApplicationContext() {
-            return applicationContext;
-        }
-
-        /**
-         * Set the context.
-         * 
-         * @param applicationContext The context.
-         */
-        public void setApplicationContext(ApplicationContext applicationContext) {
-            this.applicationContext = applicationContext;
-        }
-    }
 }
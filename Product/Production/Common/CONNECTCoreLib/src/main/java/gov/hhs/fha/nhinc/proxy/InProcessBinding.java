@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.proxy;
+
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerCache;
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerException;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Binds the proxies of the internal services deployed in this gateway to their Java implementations, so a call to
+ * the audit repository, policy engine, patient correlation or adapter document registry and repository does not go out
+ * over HTTP and back in to the same server.
+ * <p>
+ * A web service bean in a proxy configuration file takes part when it carries a <code>servicename</code> meta, the name
+ * of its endpoint in internalConnectionInfo.xml, and an <code>inprocessbean</code> meta, the bean of its Java
+ * implementation. The service is bound in process if InProcessBinding.&lt;servicename&gt; is true in
+ * gateway.properties, or, when that property is not set, if InProcessBindingEnabled is true and the endpoint is on this
+ * host under one of the InProcessBindingContexts. The decision is made once per service and logged.
+ *
+ * @author dharley
+ */
+public class InProcessBinding {
+
+    private static Log log = LogFactory.getLog(InProcessBinding.class);
+
+    static final String META_SERVICE_NAME = "servicename";
+    static final String META_IN_PROCESS_BEAN = "inprocessbean";
+    private static final String DEFAULT_CONTEXT_ROOTS = "/CONNECTGateway,/CONNECTAdapter";
+
+    private static InProcessBinding instance = null;
+
+    private final ConcurrentMap<String, Boolean> bindings = new ConcurrentHashMap<String, Boolean>();
+
+    InProcessBinding() {
+    }
+
+    public static synchronized InProcessBinding getInstance() {
+        if (instance == null) {
+            instance = new InProcessBinding();
+        }
+        return instance;
+    }
+
+    /**
+     * @param appContext the context the bean is requested from
+     * @param beanName the name of the requested bean
+     * @return the name of the Java implementation bean if the requested bean is bound in process, otherwise the name of
+     *         the requested bean
+     */
+    public String getBeanName(ApplicationContext appContext, String beanName) {
+        BeanDefinition beanDefinition = getBeanDefinition(appContext, beanName);
+        if (beanDefinition == null) {
+            return beanName;
+        }
+        Object serviceName = beanDefinition.getAttribute(META_SERVICE_NAME);
+        Object inProcessBeanName = beanDefinition.getAttribute(META_IN_PROCESS_BEAN);
+        if (serviceName == null || inProcessBeanName == null) {
+            return beanName;
+        }
+        return isBoundInProcess(serviceName.toString()) ? inProcessBeanName.toString() : beanName;
+    }
+
+    /**
+     * @param serviceName the name of the service in internalConnectionInfo.xml
+     * @return true if the proxies of the service call its Java implementation
+     */
+    public boolean isBoundInProcess(String serviceName) {
+        Boolean bound = bindings.get(serviceName);
+        if (bound == null) {
+            bound = isBoundInProcess(serviceName, getProperty(NhincConstants.IN_PROCESS_BINDING_PREFIX + serviceName));
+            if (bindings.putIfAbsent(serviceName, bound) == null) {
+                log.info("Service " + serviceName + " is bound " + (bound ? "in process" : "over the network"));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Loads the proxy configuration files and reports which of their services are bound in process. Loading the files
+     * here also spares the first requests building their contexts.
+     *
+     * @param configFileNames the names of the proxy configuration files
+     * @return a line per proxy bean taking part, naming the bean its proxies use
+     */
+    public List<String> report(List<String> configFileNames) {
+        List<String> lines = new ArrayList<String>();
+        for (final String configFileName : configFileNames) {
+            ApplicationContext appContext = new ComponentProxyObjectFactory() {
+                @Override
+                protected String getConfigFileName() {
+                    return configFileName;
+                }
+            }.getContext();
+            if (!(appContext instanceof ConfigurableApplicationContext)) {
+                continue;
+            }
+            ConfigurableListableBeanFactory beanFactory = ((ConfigurableApplicationContext) appContext)
+                    .getBeanFactory();
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                if (beanFactory.getBeanDefinition(beanName).getAttribute(META_SERVICE_NAME) == null) {
+                    continue;
+                }
+                // Only the beans an alias selects are used by the proxies.
+                for (String alias : beanFactory.getAliases(beanName)) {
+                    String boundBeanName = getBeanName(appContext, alias);
+                    lines.add(alias + " (" + configFileName + "): " + (boundBeanName.equals(alias)
+                            ? "remote, " + beanName : "in process, " + boundBeanName));
+                }
+            }
+        }
+        for (String line : lines) {
+            log.info("Proxy binding " + line);
+        }
+        return lines;
+    }
+
+    boolean isBoundInProcess(String serviceName, String override) {
+        if (override != null && override.trim().length() > 0) {
+            return Boolean.parseBoolean(override.trim());
+        }
+        if (!Boolean.parseBoolean(getProperty(NhincConstants.IN_PROCESS_BINDING_ENABLED))) {
+            return false;
+        }
+        String endpointURL = getEndpointURL(serviceName);
+        return endpointURL != null && isCoLocated(endpointURL);
+    }
+
+    /**
+     * @param endpointURL the URL of an internal endpoint
+     * @return true if the endpoint is on this host, under one of the context roots of the gateway
+     */
+    boolean isCoLocated(String endpointURL) {
+        URI uri;
+        try {
+            uri = new URI(endpointURL.trim());
+        } catch (URISyntaxException ex) {
+            log.debug("Not binding " + endpointURL + " in process: " + ex.getMessage());
+            return false;
+        }
+        if (uri.getHost() == null || uri.getPath() == null || !isLocalHost(uri.getHost())) {
+            return false;
+        }
+        String contextRoots = getProperty(NhincConstants.IN_PROCESS_BINDING_CONTEXTS);
+        if (contextRoots == null || contextRoots.trim().length() == 0) {
+            contextRoots = DEFAULT_CONTEXT_ROOTS;
+        }
+        for (String contextRoot : contextRoots.split(",")) {
+            contextRoot = contextRoot.trim();
+            if (contextRoot.length() > 0
+                    && (uri.getPath().equals(contextRoot) || uri.getPath().startsWith(contextRoot + "/"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected boolean isLocalHost(String host) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress() || address.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(address) != null;
+        } catch (UnknownHostException ex) {
+            log.debug("Unable to resolve " + host + ": " + ex.getMessage());
+        } catch (SocketException ex) {
+            log.debug("Unable to read the network interfaces: " + ex.getMessage());
+        }
+        return false;
+    }
+
+    protected String getEndpointURL(String serviceName) {
+        try {
+            return ConnectionManagerCache.getInstance().getInternalEndpointURLByServiceName(serviceName);
+        } catch (ConnectionManagerException ex) {
+            log.warn("Unable to look up the endpoint of " + serviceName + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    protected String getProperty(String propertyName) {
+        try {
+            return PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, propertyName);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private BeanDefinition getBeanDefinition(ApplicationContext appContext, String beanName) {
+        if (!(appContext instanceof ConfigurableApplicationContext)) {
+            return null;
+        }
+        try {
+            // Merging resolves aliases, so the definition is the one of the bean the alias selects.
+            return ((ConfigurableApplicationContext) appContext).getBeanFactory().getMergedBeanDefinition(beanName);
+        } catch (RuntimeException ex) {
+            log.debug("No bean definition for " + beanName + ": " + ex.getMessage());
+            return null;
+        }
+    }
+}
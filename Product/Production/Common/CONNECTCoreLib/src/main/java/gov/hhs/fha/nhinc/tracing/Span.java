@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.tracing;
+
+/**
+ * One timed phase of a traced request, such as the audit, the policy check or the outbound call.
+ *
+ * @author dharley
+ */
+public class Span {
+
+    private final String name;
+    private final String detail;
+    private final String thread;
+    private final long startNanos;
+    private volatile long endNanos = -1;
+
+    Span(String name, String detail, long startNanos) {
+        this.name = name;
+        this.detail = detail;
+        this.thread = Thread.currentThread().getName();
+        this.startNanos = startNanos;
+    }
+
+    void end(long nanos) {
+        endNanos = nanos;
+    }
+
+    /**
+     * @return the name of the phase
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return what the phase worked on, such as the operation called, or null
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return the name of the thread that started the phase
+     */
+    public String getThread() {
+        return thread;
+    }
+
+    /**
+     * @return the System.nanoTime() the phase started at
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return true once the phase has ended
+     */
+    public boolean isEnded() {
+        return endNanos != -1;
+    }
+
+    /**
+     * @return the time the phase took in nanoseconds, or -1 if it has not ended
+     */
+    public long getDurationNanos() {
+        long end = endNanos;
+        return end == -1 ? -1 : end - startNanos;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timed phases of one request handled by the gateway. The spans of a trace may be started by the thread that
+ * received the request and by the worker threads it fans out to.
+ *
+ * @author dharley
+ */
+public class Trace {
+
+    private final String id;
+    private final String name;
+    private final long startTime;
+    private final long startNanos;
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<Span>();
+    private volatile long endNanos = -1;
+
+    /**
+     * @param name the name of the traced request, usually the service it was sent to
+     */
+    public Trace(String name) {
+        this.id = UUID.randomUUID().toString();
+        this.name = name;
+        this.startTime = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts a span of this trace on the current thread.
+     *
+     * @param spanName the name of the phase
+     * @param detail what the phase works on, or null
+     * @return the span, to be ended with {@link #endSpan(Span)}
+     */
+    public Span startSpan(String spanName, String detail) {
+        Span span = new Span(spanName, detail, System.nanoTime());
+        spans.add(span);
+        return span;
+    }
+
+    /**
+     * @param span the span to end
+     */
+    public void endSpan(Span span) {
+        span.end(System.nanoTime());
+    }
+
+    void end() {
+        endNanos = System.nanoTime();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the time the trace started, in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the time the request took in nanoseconds, or -1 if the trace has not ended
+     */
+    public long getDurationNanos() {
+        long end = endNanos;
+        return end == -1 ? -1 : end - startNanos;
+    }
+
+    /**
+     * @return the spans of the trace, in the order they were started
+     */
+    public List<Span> getSpans() {
+        return new ArrayList<Span>(spans);
+    }
+
+    /**
+     * @return the trace as a single line of JSON, with the offsets and durations of the spans in microseconds
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(128 + spans.size() * 96);
+        json.append("{\"id\":\"").append(id).append("\",\"name\":");
+        appendString(json, name);
+        json.append(",\"start\":").append(startTime);
+        json.append(",\"durationMicros\":").append(toMicros(getDurationNanos()));
+        json.append(",\"spans\":[");
+        boolean first = true;
+        for (Span span : spans) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":");
+            appendString(json, span.getName());
+            if (span.getDetail() != null) {
+                json.append(",\"detail\":");
+                appendString(json, span.getDetail());
+            }
+            json.append(",\"thread\":");
+            appendString(json, span.getThread());
+            json.append(",\"offsetMicros\":").append(toMicros(span.getStartNanos() - startNanos));
+            json.append(",\"durationMicros\":").append(toMicros(span.getDurationNanos()));
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.tracing;
+
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageUtils;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.service.Service;
+
+/**
+ * Starts the trace of a request received by the gateway, if the request is sampled. The trace is kept in the exchange
+ * for {@link TraceOutInterceptor} to finish once the response or fault is sent.
+ *
+ * @author dharley
+ */
+public class TraceInInterceptor extends AbstractPhaseInterceptor<Message> {
+
+    /**
+     * Constructor.
+     */
+    public TraceInInterceptor() {
+        super(Phase.RECEIVE);
+    }
+
+    /**
+     * Starts the trace of the request, named after the service it was sent to.
+     *
+     * @param message The message object of the session
+     */
+    @Override
+    public void handleMessage(Message message) {
+        if (MessageUtils.isRequestor(message)) {
+            return;
+        }
+        Exchange exchange = message.getExchange();
+        Trace trace = Tracer.startTrace(getTraceName(message));
+        if (trace != null) {
+            exchange.put(Trace.class, trace);
+        }
+    }
+
+    private String getTraceName(Message message) {
+        Service service = message.getExchange().getService();
+        if (service != null && service.getName() != null) {
+            return service.getName().getLocalPart();
+        }
+        return (String) message.get(Message.REQUEST_URI);
+    }
+}
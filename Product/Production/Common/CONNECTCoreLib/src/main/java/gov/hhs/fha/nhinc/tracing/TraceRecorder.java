@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.tracing;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decides which requests are traced and keeps the traces of the most recent ones. The traces are kept in a ring buffer
+ * published over JMX, and each is written as a line of JSON to the trace log, which log4j.properties sends to its own
+ * file.
+ *
+ * @author dharley
+ */
+public class TraceRecorder implements TraceRecorderMBean {
+
+    public static final String OBJECT_NAME = "gov.hhs.fha.nhinc:type=Tracing";
+
+    /**
+     * The name of the log the traces are written to.
+     */
+    public static final String TRACE_LOG = "gov.hhs.fha.nhinc.tracing.TraceLog";
+
+    private static final int DEFAULT_BUFFER_SIZE = 1000;
+    private static final long SAMPLE_RATE_REFRESH_MILLIS = 30000;
+
+    private static Log log = LogFactory.getLog(TraceRecorder.class);
+    private static Log traceLog = LogFactory.getLog(TRACE_LOG);
+
+    private static TraceRecorder instance = null;
+
+    private final AtomicReferenceArray<Trace> traces;
+    private final AtomicLong recordedTraces = new AtomicLong();
+    private volatile double sampleRate;
+    private volatile long sampleRateReadAt;
+
+    /**
+     * @param bufferSize the number of traces to keep
+     */
+    protected TraceRecorder(int bufferSize) {
+        traces = new AtomicReferenceArray<Trace>(Math.max(bufferSize, 1));
+    }
+
+    public static synchronized TraceRecorder getInstance() {
+        if (instance == null) {
+            instance = new TraceRecorder(readBufferSize());
+            instance.register();
+        }
+        return instance;
+    }
+
+    /**
+     * Decides whether to trace a request. The sample rate is read again from gateway.properties at most every 30
+     * seconds, so that it can be changed without a restart.
+     *
+     * @return true if the request is to be traced
+     */
+    public boolean isSampled() {
+        double rate = getSampleRate();
+        return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Keeps a finished trace in place of the oldest one kept and writes it to the trace log.
+     *
+     * @param trace the finished trace
+     */
+    public void record(Trace trace) {
+        long sequence = recordedTraces.getAndIncrement();
+        traces.set((int) (sequence % traces.length()), trace);
+        if (traceLog.isInfoEnabled()) {
+            traceLog.info(trace.toJson());
+        }
+    }
+
+    /**
+     * @return the traces kept, newest first
+     */
+    public List<Trace> getTraces() {
+        long recorded = recordedTraces.get();
+        int kept = (int) Math.min(recorded, traces.length());
+        List<Trace> recent = new ArrayList<Trace>(kept);
+        for (long sequence = recorded - 1; sequence >= recorded - kept; sequence--) {
+            Trace trace = traces.get((int) (sequence % traces.length()));
+            if (trace != null) {
+                recent.add(trace);
+            }
+        }
+        return recent;
+    }
+
+    @Override
+    public double getSampleRate() {
+        long now = System.currentTimeMillis();
+        if (now - sampleRateReadAt > SAMPLE_RATE_REFRESH_MILLIS) {
+            sampleRate = readSampleRate();
+            sampleRateReadAt = now;
+        }
+        return sampleRate;
+    }
+
+    @Override
+    public long getRecordedTraces() {
+        return recordedTraces.get();
+    }
+
+    @Override
+    public String[] getRecentTraces() {
+        List<Trace> recent = getTraces();
+        String[] json = new String[recent.size()];
+        for (int i = 0; i < json.length; i++) {
+            json[i] = recent.get(i).toJson();
+        }
+        return json;
+    }
+
+    /**
+     * @return the fraction of requests to trace, from gateway.properties
+     */
+    protected double readSampleRate() {
+        try {
+            String value = PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.TRACE_SAMPLE_RATE);
+            if (value != null && value.trim().length() > 0) {
+                return Double.parseDouble(value.trim());
+            }
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + NhincConstants.TRACE_SAMPLE_RATE + " from gateway.properties: "
+                    + ex.getMessage());
+        } catch (NumberFormatException ex) {
+            log.warn(NhincConstants.TRACE_SAMPLE_RATE + " in gateway.properties is not a number: " + ex.getMessage());
+        }
+        return 0;
+    }
+
+    private static int readBufferSize() {
+        try {
+            String value = PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.TRACE_BUFFER_SIZE);
+            if (value != null && value.trim().length() > 0) {
+                return Integer.parseInt(value.trim());
+            }
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + NhincConstants.TRACE_BUFFER_SIZE + " from gateway.properties: "
+                    + ex.getMessage());
+        } catch (NumberFormatException ex) {
+            log.warn(NhincConstants.TRACE_BUFFER_SIZE + " in gateway.properties is not a number: " + ex.getMessage());
+        }
+        return DEFAULT_BUFFER_SIZE;
+    }
+
+    private void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException ex) {
+            log.warn("Unable to publish the traces: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.tracing;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps the trace of the request being handled by the current thread. Requests that were not sampled have no trace, and
+ * {@link #startSpan(String)} and {@link #endSpan(Span)} do nothing for them, so the spans can be left in the code paths
+ * of every request.
+ *
+ * @author dharley
+ */
+public final class Tracer {
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<Trace>();
+
+    private Tracer() {
+    }
+
+    /**
+     * Starts the trace of a request on the current thread, if the request is sampled.
+     *
+     * @param name the name of the request
+     * @return the trace, or null if the request is not sampled
+     */
+    public static Trace startTrace(String name) {
+        Trace trace = null;
+        if (TraceRecorder.getInstance().isSampled()) {
+            trace = new Trace(name);
+        }
+        attach(trace);
+        return trace;
+    }
+
+    /**
+     * Ends a trace, records it and detaches it from the current thread.
+     *
+     * @param trace the trace to finish
+     */
+    public static void finishTrace(Trace trace) {
+        if (CURRENT.get() == trace) {
+            CURRENT.remove();
+        }
+        trace.end();
+        TraceRecorder.getInstance().record(trace);
+    }
+
+    /**
+     * @return the trace of the current thread, or null
+     */
+    public static Trace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a trace the trace of the current thread.
+     *
+     * @param trace the trace, or null to leave the thread without one
+     * @return the trace the thread had before, to be put back with {@link #attach(Trace)}
+     */
+    public static Trace attach(Trace trace) {
+        Trace previous = CURRENT.get();
+        if (trace == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(trace);
+        }
+        return previous;
+    }
+
+    /**
+     * @param name the name of the phase
+     * @return the span started in the trace of the current thread, or null if the thread has no trace
+     */
+    public static Span startSpan(String name) {
+        return startSpan(name, null);
+    }
+
+    /**
+     * @param name the name of the phase
+     * @param detail what the phase works on, or null
+     * @return the span started in the trace of the current thread, or null if the thread has no trace
+     */
+    public static Span startSpan(String name, String detail) {
+        Trace trace = CURRENT.get();
+        return trace == null ? null : trace.startSpan(name, detail);
+    }
+
+    /**
+     * @param span the span to end, or null
+     */
+    public static void endSpan(Span span) {
+        if (span != null) {
+            span.end(System.nanoTime());
+        }
+    }
+
+    /**
+     * Carries the trace of the current thread to the thread that calls the task.
+     *
+     * @param task the task to hand to another thread
+     * @return a task that calls the given one in the trace of the current thread, or the task itself if the thread has
+     *         no trace
+     */
+    public static <V> Callable<V> wrap(final Callable<V> task) {
+        final Trace trace = CURRENT.get();
+        if (trace == null) {
+            return task;
+        }
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                Trace previous = attach(trace);
+                try {
+                    return task.call();
+                } finally {
+                    attach(previous);
+                }
+            }
+        };
+    }
+}
@@ -106,5 +106,7 @@ public class AuditDataTransformConstants {
     public static final String EVENT_ID_CODE_SYS_NAME_XDRREQUEST = "XDRREQUEST";
     public static final String EVENT_ID_DISPLAY_NAME_XDRREQUEST = "XDR Request";
     public static final String EVENT_ID_CODE_SYS_NAME_XDRRESPONSE = "XDRRESPONSE";
+    // ParticipantObjectDetail type of a response answered from a cache instead of by the target
+    public static final String PARTICIPANT_OBJECT_DETAIL_TYPE_CACHED_RESPONSE = "CachedResponse";
 
 }
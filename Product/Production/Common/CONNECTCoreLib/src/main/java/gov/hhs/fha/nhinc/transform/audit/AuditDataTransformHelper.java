@@ -57,6 +57,9 @@ public class AuditDataTransformHelper {
 
     private static String ipAddr = null;
 
+    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+    private static javax.xml.datatype.DatatypeFactory datatypeFactory = null;
+
     /**
      * Create the <code>EventIdentificationType</code> for an audit log record.
      * 
@@ -74,8 +77,8 @@ public class AuditDataTransformHelper {
 
         // Set the Event Action Time
         try {
-            java.util.GregorianCalendar today = new java.util.GregorianCalendar(TimeZone.getTimeZone("GMT"));
-            javax.xml.datatype.DatatypeFactory factory = javax.xml.datatype.DatatypeFactory.newInstance();
+            java.util.GregorianCalendar today = new java.util.GregorianCalendar(GMT);
+            javax.xml.datatype.DatatypeFactory factory = getDatatypeFactory();
             javax.xml.datatype.XMLGregorianCalendar calendar = factory.newXMLGregorianCalendar(
                     today.get(java.util.GregorianCalendar.YEAR), today.get(java.util.GregorianCalendar.MONTH) + 1,
                     today.get(java.util.GregorianCalendar.DAY_OF_MONTH),
@@ -93,7 +96,7 @@ public class AuditDataTransformHelper {
         // Set the Event Outcome Indicator
         BigInteger eventOutcomeBig = BigInteger.ZERO;
         if (eventOutcome != null) {
-            eventOutcomeBig = new BigInteger(eventOutcome.toString());
+            eventOutcomeBig = BigInteger.valueOf(eventOutcome.longValue());
         }
         eventIdentification.setEventOutcomeIndicator(eventOutcomeBig);
 
@@ -103,6 +106,20 @@ public class AuditDataTransformHelper {
         return eventIdentification;
     }
 
+    /**
+     * The DatatypeFactory is looked up once, as the lookup searches the class path every time.
+     * 
+     * @return the DatatypeFactory
+     * @throws DatatypeConfigurationException
+     */
+    private static synchronized javax.xml.datatype.DatatypeFactory getDatatypeFactory()
+            throws DatatypeConfigurationException {
+        if (datatypeFactory == null) {
+            datatypeFactory = javax.xml.datatype.DatatypeFactory.newInstance();
+        }
+        return datatypeFactory;
+    }
+
     /**
      * Create the event id <code>CodedValueType</code> for an audit log record.
      * 
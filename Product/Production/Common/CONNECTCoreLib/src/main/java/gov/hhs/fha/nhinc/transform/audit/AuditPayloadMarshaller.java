@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.transform.audit;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Marshals the messages copied into audit log records. The marshallers of a JAXB context are pooled, each with the
+ * buffer it writes into, so that auditing a message does not create a marshaller and grow a new buffer every time. A
+ * marshaller is only used by one thread at a time, and is dropped from the pool when marshalling fails or the message
+ * was larger than MAX_POOLED_BUFFER_SIZE bytes.
+ *
+ * @author dharley
+ */
+public class AuditPayloadMarshaller {
+
+    private static Log log = LogFactory.getLog(AuditPayloadMarshaller.class);
+
+    static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    static final int MAX_POOLED_MARSHALLERS = 32;
+
+    private static final ConcurrentMap<String, AuditPayloadMarshaller> INSTANCES =
+            new ConcurrentHashMap<String, AuditPayloadMarshaller>();
+
+    private final String contextName;
+    private final Queue<PooledMarshaller> pool = new ConcurrentLinkedQueue<PooledMarshaller>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    AuditPayloadMarshaller(String contextName) {
+        this.contextName = contextName;
+    }
+
+    /**
+     * @param contextName the JAXB context path of the messages
+     * @return the marshaller of the messages of the context
+     */
+    public static AuditPayloadMarshaller getInstance(String contextName) {
+        AuditPayloadMarshaller instance = INSTANCES.get(contextName);
+        if (instance == null) {
+            instance = new AuditPayloadMarshaller(contextName);
+            AuditPayloadMarshaller existing = INSTANCES.putIfAbsent(contextName, instance);
+            if (existing != null) {
+                instance = existing;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns whether the messages audited are copied into the audit log records, as set by the AuditLogMessagePayload
+     * gateway property. They are copied unless the property is false.
+     *
+     * @return true if the messages are copied into the audit log records
+     */
+    public static boolean isPayloadAudited() {
+        try {
+            String value = PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.AUDIT_LOG_MESSAGE_PAYLOAD);
+            return !"false".equalsIgnoreCase(value != null ? value.trim() : null);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + NhincConstants.AUDIT_LOG_MESSAGE_PAYLOAD + ", auditing the messages", ex);
+            return true;
+        }
+    }
+
+    /**
+     * Marshals a message with a pooled marshaller.
+     *
+     * @param message the message, a JAXB element or an instance of a root element class of the context
+     * @return the marshalled message
+     * @throws JAXBException if the context cannot be created or the message cannot be marshalled
+     */
+    public byte[] marshal(Object message) throws JAXBException {
+        PooledMarshaller marshaller = pool.poll();
+        if (marshaller != null) {
+            pooled.decrementAndGet();
+        } else {
+            marshaller = new PooledMarshaller(new JAXBContextHandler().getJAXBContext(contextName).createMarshaller());
+        }
+
+        marshaller.buffer.reset();
+        marshaller.marshaller.marshal(message, marshaller.buffer);
+        byte[] bytes = marshaller.buffer.toByteArray();
+
+        if (bytes.length <= MAX_POOLED_BUFFER_SIZE) {
+            release(marshaller);
+        }
+        return bytes;
+    }
+
+    private void release(PooledMarshaller marshaller) {
+        if (pooled.incrementAndGet() <= MAX_POOLED_MARSHALLERS) {
+            pool.offer(marshaller);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of marshallers waiting in the pool
+     */
+    int getPoolSize() {
+        return pooled.get();
+    }
+
+    private static class PooledMarshaller {
+        private final Marshaller marshaller;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        PooledMarshaller(Marshaller marshaller) {
+            this.marshaller = marshaller;
+        }
+    }
+}
@@ -168,20 +168,7 @@ public class DocumentQueryTransforms {
                 .createParticipantObjectIdentification(patientId);
 
         // Fill in the message field with the contents of the event message
-        try {
-            JAXBContextHandler oHandler = new JAXBContextHandler();
-            JAXBContext jc = oHandler.getJAXBContext("oasis.names.tc.ebxml_regrep.xsd.query._3");
-            Marshaller marshaller = jc.createMarshaller();
-            ByteArrayOutputStream baOutStrm = new ByteArrayOutputStream();
-            baOutStrm.reset();
-            marshaller.marshal(message.getMessage().getAdhocQueryRequest(), baOutStrm);
-            log.debug("Done marshalling the message.");
-
-            partObjId.setParticipantObjectQuery(baOutStrm.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException();
-        }
+        partObjId.setParticipantObjectQuery(marshalQueryMessage(message.getMessage().getAdhocQueryRequest()));
         auditMsg.getParticipantObjectIdentification().add(partObjId);
         response.setAuditMessage(auditMsg);
 
@@ -324,20 +311,7 @@ public class DocumentQueryTransforms {
             }
 
             // Fill in the message field with the contents of the event message
-            try {
-                JAXBContextHandler oHandler = new JAXBContextHandler();
-                JAXBContext jc = oHandler.getJAXBContext("oasis.names.tc.ebxml_regrep.xsd.query._3");
-                Marshaller marshaller = jc.createMarshaller();
-                ByteArrayOutputStream baOutStrm = new ByteArrayOutputStream();
-                baOutStrm.reset();
-                marshaller.marshal(message.getMessage().getAdhocQueryResponse(), baOutStrm);
-                log.debug("Done marshalling the message.");
-
-                partObjId.setParticipantObjectQuery(baOutStrm.toByteArray());
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new RuntimeException();
-            }
+            partObjId.setParticipantObjectQuery(marshalQueryMessage(message.getMessage().getAdhocQueryResponse()));
             auditMsg.getParticipantObjectIdentification().add(partObjId);
         }
         response.setAuditMessage(auditMsg);
@@ -450,6 +424,28 @@ public class DocumentQueryTransforms {
         return result;
     }
 
+    /**
+     * Marshals a query request or response with a pooled marshaller, to be put into the audit log message.
+     * 
+     * @param queryMessage
+     * @return the marshalled message, or null if the messages are not copied into the audit log messages
+     * @throws RuntimeException
+     */
+    private byte[] marshalQueryMessage(Object queryMessage) throws RuntimeException {
+        if (!AuditPayloadMarshaller.isPayloadAudited()) {
+            return null;
+        }
+        try {
+            byte[] bytes = AuditPayloadMarshaller.getInstance("oasis.names.tc.ebxml_regrep.xsd.query._3").marshal(
+                    queryMessage);
+            log.debug("Done marshalling the message.");
+            return bytes;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException();
+        }
+    }
+
     /**
      * 
      * @param baOutStrm
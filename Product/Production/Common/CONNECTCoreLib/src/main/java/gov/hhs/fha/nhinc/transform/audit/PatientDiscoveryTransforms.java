@@ -32,9 +32,7 @@ import javax.xml.bind.JAXBElement;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import javax.xml.bind.JAXBContext;
 import java.io.ByteArrayOutputStream;
-import javax.xml.bind.Marshaller;
 
 import com.services.nhinc.schema.auditmessage.AuditMessageType;
 import com.services.nhinc.schema.auditmessage.AuditSourceIdentificationType;
@@ -46,7 +44,6 @@ import gov.hhs.fha.nhinc.common.nhinccommon.UserType;
 import gov.hhs.fha.nhinc.common.auditlog.LogEventRequestType;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
-import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
 import java.util.ArrayList;
 import org.hl7.v3.CommunityPRPAIN201306UV02ResponseType;
 import org.hl7.v3.II;
@@ -168,9 +165,7 @@ public class PatientDiscoveryTransforms {
                 + oAuditMessageType.getAuditSourceIdentification().get(0).getAuditSourceID());
 
         // Put the contents of the actual message into the Audit Log Message
-        ByteArrayOutputStream baOutStrm = new ByteArrayOutputStream();
-        marshalPatientDiscoveryMessage(baOutStrm, oPatientDiscoveryRequestMessage);
-        participantObject.setParticipantObjectQuery(baOutStrm.toByteArray());
+        participantObject.setParticipantObjectQuery(marshalPatientDiscoveryMessage(oPatientDiscoveryRequestMessage));
         oAuditMessageType.getParticipantObjectIdentification().add(participantObject);
         addLogDebug("Audit record AuditMessageType.getParticipantObjectIdentification().get(0).getAuditSourceID(): "
                 + oAuditMessageType.getParticipantObjectIdentification().get(0).getParticipantObjectID());
@@ -258,6 +253,9 @@ public class PatientDiscoveryTransforms {
         String sAssigningAuthId = "";
 
         if (oIIs != null && oIIs.size() > 0) {
+            // Put the contents of the actual message into the Audit Log Message, once for all of the patients
+            byte[] responseMessage = marshalPatientDiscoveryMessage(oPatientDiscoveryResponseMessage);
+
             // Process all patient ids
             for (II oII : oIIs) {
                 if (oII != null) {
@@ -271,10 +269,7 @@ public class PatientDiscoveryTransforms {
                     /* Assign ParticipationObjectIdentification */
                     ParticipantObjectIdentificationType participantObject = getParticipantObjectIdentificationType(sPatientId);
 
-                    // Put the contents of the actual message into the Audit Log Message
-                    ByteArrayOutputStream baOutStrm = new ByteArrayOutputStream();
-                    marshalPatientDiscoveryMessage(baOutStrm, oPatientDiscoveryResponseMessage);
-                    participantObject.setParticipantObjectQuery(baOutStrm.toByteArray());
+                    participantObject.setParticipantObjectQuery(responseMessage);
                     oAuditMessageType.getParticipantObjectIdentification().add(participantObject);
                     addLogDebug("Audit record AuditMessageType.getParticipantObjectIdentification().get(i).getAuditSourceID(): "
                             + oAuditMessageType.getParticipantObjectIdentification().get(0).getParticipantObjectID());
@@ -718,20 +713,38 @@ public class PatientDiscoveryTransforms {
 
     protected void marshalPatientDiscoveryMessage(ByteArrayOutputStream baOutStrm, Object oPatientDiscoveryMessage)
             throws RuntimeException {
-        // Put the contents of the actual message into the Audit Log Message
+        baOutStrm.reset();
+        byte[] message = marshalPatientDiscoveryMessage(oPatientDiscoveryMessage);
+        if (message != null) {
+            baOutStrm.write(message, 0, message.length);
+        }
+    }
+
+    /**
+     * Marshals a patient discovery message with a pooled marshaller, to be put into the audit log message.
+     * 
+     * @param oPatientDiscoveryMessage
+     * @return the marshalled message, or null if the messages are not copied into the audit log messages
+     */
+    protected byte[] marshalPatientDiscoveryMessage(Object oPatientDiscoveryMessage) throws RuntimeException {
+        if (!isMessagePayloadAudited()) {
+            return null;
+        }
         try {
-            JAXBContextHandler oHandler = new JAXBContextHandler();
-            JAXBContext jc = oHandler.getJAXBContext("org.hl7.v3");
-            Marshaller marshaller = jc.createMarshaller();
-            baOutStrm.reset();
-            marshaller.marshal(oPatientDiscoveryMessage, baOutStrm);
+            byte[] message = AuditPayloadMarshaller.getInstance(JAXB_HL7_CONTEXT_NAME).marshal(
+                    oPatientDiscoveryMessage);
             log.debug("Done marshalling the message.");
+            return message;
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException();
         }
     }
 
+    protected boolean isMessagePayloadAudited() {
+        return AuditPayloadMarshaller.isPayloadAudited();
+    }
+
     // since it is not required to have a patient id to persist an audit log record this method is not required
     protected II getHL7IdentifiersFromRequest(PRPAIN201305UV02 oPatientDiscoveryRequestMessage) {
         II oII = null;
@@ -1087,20 +1100,7 @@ public class PatientDiscoveryTransforms {
         log.info("Setting ACK participantObject id : " + participantObject.getParticipantObjectID());
 
         // Put the contents of the actual message into the Audit Log Message
-        try {
-            JAXBContextHandler oHandler = new JAXBContextHandler();
-            JAXBContext jc = oHandler.getJAXBContext(JAXB_HL7_CONTEXT_NAME);
-            Marshaller marshaller = jc.createMarshaller();
-            ByteArrayOutputStream baOutStrm = new ByteArrayOutputStream();
-            baOutStrm.reset();
-            marshaller.marshal(message, baOutStrm);
-            log.debug("Done marshalling the message.");
-
-            participantObject.setParticipantObjectQuery(baOutStrm.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException();
-        }
+        participantObject.setParticipantObjectQuery(marshalPatientDiscoveryMessage(message));
         auditMsg.getParticipantObjectIdentification().add(participantObject);
 
         addLogDebug("Exiting PatientDiscoveryTransforms.transformAck2AuditMsg method...");
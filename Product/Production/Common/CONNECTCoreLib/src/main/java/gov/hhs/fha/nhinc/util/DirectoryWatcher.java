@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watches directories for files being created or changed and tells a listener, from one background daemon thread. The
+ * thread is started when the first directory is watched and ends when the watcher is stopped. A stopped watcher starts
+ * again if a directory is watched afterwards.
+ *
+ * @author dharley
+ */
+public class DirectoryWatcher {
+
+    private static Log log = LogFactory.getLog(DirectoryWatcher.class);
+
+    /**
+     * Told about the changes in the watched directories, on the thread of the watcher.
+     */
+    public interface Listener {
+
+        /**
+         * @param directory the directory the file is in
+         * @param fileName the name of the file, or null if events were lost and any file of the directory may have
+         *            changed
+         */
+        void fileChanged(Path directory, String fileName);
+    }
+
+    private final String name;
+    private final Listener listener;
+    private final WatchEvent.Kind<?>[] kinds;
+    private final Set<Path> directories = new HashSet<Path>();
+    private WatchService watchService = null;
+    private Thread thread = null;
+
+    /**
+     * @param name the name of the thread
+     * @param listener told about the changes
+     * @param kinds the kinds of change to watch for
+     */
+    public DirectoryWatcher(String name, Listener listener, WatchEvent.Kind<?>... kinds) {
+        this.name = name;
+        this.listener = listener;
+        this.kinds = kinds;
+    }
+
+    /**
+     * Starts watching a directory, unless it is already watched.
+     *
+     * @param directory the directory to watch
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void watch(Path directory) throws IOException {
+        Path absolute = directory.toAbsolutePath();
+        if (directories.contains(absolute)) {
+            return;
+        }
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            thread = startThread(watchService);
+        }
+        absolute.register(watchService, kinds);
+        directories.add(absolute);
+    }
+
+    /**
+     * @return true if the thread of the watcher is running
+     */
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Stops watching all of the directories and ends the thread of the watcher.
+     */
+    public synchronized void stop() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close the watch service of " + name + ": " + ex.getMessage(), ex);
+        }
+        thread.interrupt();
+        watchService = null;
+        thread = null;
+        directories.clear();
+    }
+
+    private Thread startThread(final WatchService service) {
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        processEvents(service, service.take());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ClosedWatchServiceException ex) {
+                    // Stopped
+                }
+                log.debug(name + " stopped");
+            }
+        }, name);
+        watcher.setDaemon(true);
+        watcher.start();
+        return watcher;
+    }
+
+    private void processEvents(WatchService service, WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            String fileName = event.kind() == StandardWatchEventKinds.OVERFLOW ? null : event.context().toString();
+            try {
+                listener.fileChanged(directory, fileName);
+            } catch (RuntimeException ex) {
+                log.error(name + " failed to process a change in " + directory + ": " + ex.getMessage(), ex);
+            }
+        }
+        if (!key.reset()) {
+            log.warn(directory + " is no longer accessible, " + name + " stopped watching it");
+            synchronized (this) {
+                if (service == watchService) {
+                    directories.remove(directory);
+                }
+            }
+        }
+    }
+}
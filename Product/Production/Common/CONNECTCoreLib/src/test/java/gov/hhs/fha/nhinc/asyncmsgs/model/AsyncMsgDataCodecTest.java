@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.asyncmsgs.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class AsyncMsgDataCodecTest {
+
+    private static final String MESSAGE = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<RespondingGateway_PRPA_IN201305UV02Request xmlns=\"urn:hl7-org:v3\">";
+
+    @Test
+    public void testEncodedMessageIsCompressedAndDecodes() throws Exception {
+        StringBuilder message = new StringBuilder(MESSAGE);
+        for (int i = 0; i < 200; i++) {
+            message.append("<subject><patient><id root=\"1.1\" extension=\"").append(i)
+                    .append("\"/></patient></subject>");
+        }
+        byte[] xml = message.toString().getBytes("UTF-8");
+
+        byte[] data = AsyncMsgDataCodec.encode(xml);
+        assertTrue(AsyncMsgDataCodec.isEncoded(data));
+        assertEquals(AsyncMsgDataCodec.FORMAT_DEFLATE, data[1]);
+        assertTrue(data.length * 4 < xml.length);
+        assertArrayEquals(xml, AsyncMsgDataCodec.decode(data));
+    }
+
+    @Test
+    public void testUncompressedMessageIsReadAsItIs() throws Exception {
+        byte[] xml = MESSAGE.getBytes("UTF-8");
+        assertFalse(AsyncMsgDataCodec.isEncoded(xml));
+        assertArrayEquals(xml, AsyncMsgDataCodec.decode(xml));
+    }
+
+    @Test
+    public void testEmptyAndNullMessages() {
+        assertArrayEquals(new byte[0], AsyncMsgDataCodec.decode(AsyncMsgDataCodec.encode(new byte[0])));
+        assertNull(AsyncMsgDataCodec.encode(null));
+        assertNull(AsyncMsgDataCodec.decode((byte[]) null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFormatIsRejected() {
+        AsyncMsgDataCodec.decode(new byte[] { AsyncMsgDataCodec.HEADER, 9, 1, 2 });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedDataIsRejected() throws Exception {
+        byte[] data = AsyncMsgDataCodec.encode(MESSAGE.getBytes("UTF-8"));
+        byte[] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        AsyncMsgDataCodec.decode(truncated);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.callback.cxf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import org.apache.ws.security.WSSecurityException;
+import org.apache.ws.security.components.crypto.Crypto;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class CertificateTrustCacheTest {
+
+    private static final String CERTIFICATE_FILE = "/config/CertificateTrustCacheTest/partner.pem";
+    private static final long ONE_HOUR = 3600000;
+
+    private X509Certificate[] chain;
+    private long notAfter;
+    private Crypto crypto;
+    private File storeDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        InputStream in = getClass().getResourceAsStream(CERTIFICATE_FILE);
+        try {
+            X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(in);
+            chain = new X509Certificate[] { certificate };
+            notAfter = certificate.getNotAfter().getTime();
+        } finally {
+            in.close();
+        }
+        crypto = createCrypto();
+    }
+
+    @After
+    public void tearDown() {
+        CertificateTrustCache.stopWatching();
+        CertificateTrustCache.getInstance().clear();
+        if (storeDirectory != null) {
+            File[] files = storeDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            storeDirectory.delete();
+        }
+    }
+
+    @Test
+    public void testTrustExpiresAfterTimeToLive() {
+        CertificateTrustCache cache = new TestCertificateTrustCache(ONE_HOUR);
+        long now = notAfter - 10 * ONE_HOUR;
+
+        cache.setTrusted(crypto, chain, now);
+
+        assertTrue(cache.isTrusted(crypto, chain, now + ONE_HOUR - 1));
+        assertFalse(cache.isTrusted(crypto, chain, now + ONE_HOUR));
+        assertFalse(cache.isTrusted(createCrypto(), chain, now));
+    }
+
+    @Test
+    public void testTrustNeverOutlivesTheChain() {
+        CertificateTrustCache cache = new TestCertificateTrustCache(10 * ONE_HOUR);
+        long now = notAfter - ONE_HOUR;
+
+        cache.setTrusted(crypto, chain, now);
+
+        assertTrue(cache.isTrusted(crypto, chain, notAfter - 1));
+        assertFalse(cache.isTrusted(crypto, chain, notAfter));
+    }
+
+    @Test
+    public void testExpiredChainIsNotCached() {
+        CertificateTrustCache cache = new TestCertificateTrustCache(ONE_HOUR);
+
+        cache.setTrusted(crypto, chain, notAfter);
+
+        assertFalse(cache.isTrusted(crypto, chain, notAfter - 1));
+    }
+
+    @Test
+    public void testTrustedChainIsVerifiedOnce() throws WSSecurityException {
+        CertificateTrustCache cache = new TestCertificateTrustCache(ONE_HOUR);
+        CountingVerifier verifier = new CountingVerifier(true);
+
+        assertTrue(cache.verifyTrust(crypto, chain, false, verifier));
+        assertTrue(cache.verifyTrust(crypto, chain, false, verifier));
+
+        assertEquals(1, verifier.calls);
+    }
+
+    @Test
+    public void testUntrustedChainIsNotCached() throws WSSecurityException {
+        CertificateTrustCache cache = new TestCertificateTrustCache(ONE_HOUR);
+        CountingVerifier verifier = new CountingVerifier(false);
+
+        assertFalse(cache.verifyTrust(crypto, chain, false, verifier));
+        assertFalse(cache.verifyTrust(crypto, chain, false, verifier));
+
+        assertEquals(2, verifier.calls);
+        assertFalse(cache.isTrusted(crypto, chain));
+    }
+
+    @Test
+    public void testRevocationCheckedChainIsNeverCached() throws WSSecurityException {
+        CertificateTrustCache cache = new TestCertificateTrustCache(ONE_HOUR);
+        CountingVerifier verifier = new CountingVerifier(true);
+
+        assertTrue(cache.verifyTrust(crypto, chain, true, verifier));
+        assertTrue(cache.verifyTrust(crypto, chain, true, verifier));
+
+        assertEquals(2, verifier.calls);
+        assertFalse(cache.isTrusted(crypto, chain));
+    }
+
+    @Test
+    public void testTrustIsDroppedWhenTheTrustStoreChanges() throws Exception {
+        storeDirectory = File.createTempFile("CertificateTrustCacheTest", "");
+        storeDirectory.delete();
+        storeDirectory.mkdir();
+        File trustStore = new File(storeDirectory, "truststore.jks");
+        writeFile(trustStore, "before");
+
+        CertificateTrustCache cache = CertificateTrustCache.getInstance();
+        cache.watch(trustStore);
+        cache.setTrusted(crypto, chain);
+        assertTrue(cache.isTrusted(crypto, chain));
+
+        writeFile(new File(storeDirectory, "other.jks"), "other");
+        Thread.sleep(1000);
+        assertTrue(cache.isTrusted(crypto, chain));
+
+        writeFile(trustStore, "after");
+        long deadline = System.currentTimeMillis() + 30000;
+        while (cache.isTrusted(crypto, chain) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(cache.isTrusted(crypto, chain));
+    }
+
+    private Crypto createCrypto() {
+        return (Crypto) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Crypto.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private void writeFile(File file, String content) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static class TestCertificateTrustCache extends CertificateTrustCache {
+        private final long timeToLive;
+
+        TestCertificateTrustCache(long timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        @Override
+        protected long getTimeToLive() {
+            return timeToLive;
+        }
+
+        @Override
+        protected String getProperty(String propertyName) {
+            return null;
+        }
+    }
+
+    private static class CountingVerifier implements CertificateTrustCache.TrustVerifier {
+        private final boolean trusted;
+        private int calls = 0;
+
+        CountingVerifier(boolean trusted) {
+            this.trusted = trusted;
+        }
+
+        @Override
+        public boolean verifyTrust(X509Certificate[] chain) {
+            calls++;
+            return trusted;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.callback.cxf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class ReplayCacheTest {
+
+    @Test
+    public void testIdentifierIsRejectedInsideItsWindow() {
+        ReplayCache cache = new ReplayCache(10);
+
+        assertTrue(cache.add("message", 2000, 1000));
+        assertFalse(cache.add("message", 2000, 1500));
+        assertTrue(cache.add("other", 2000, 1500));
+    }
+
+    @Test
+    public void testIdentifierIsAcceptedAfterItsWindow() {
+        ReplayCache cache = new ReplayCache(10);
+
+        assertTrue(cache.add("message", 2000, 1000));
+        assertTrue(cache.add("message", 3000, 2000));
+        assertFalse(cache.add("message", 3000, 2500));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiredIdentifiersArePurgedWhenFull() {
+        ReplayCache cache = new ReplayCache(2);
+
+        cache.add("expired", 1500, 1000);
+        cache.add("valid", 5000, 1000);
+        assertTrue(cache.add("new", 5000, 2000));
+
+        assertEquals(2, cache.size());
+        assertFalse(cache.add("valid", 5000, 2000));
+    }
+
+    @Test
+    public void testOldestIdentifiersAreDroppedWhenFullOfValidOnes() {
+        ReplayCache cache = new ReplayCache(2);
+
+        cache.add("first", 5000, 1000);
+        cache.add("second", 5000, 1000);
+        assertTrue(cache.add("third", 5000, 1000));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.add("first", 5000, 1000));
+        assertFalse(cache.add("third", 5000, 1000));
+    }
+}
@@ -18,6 +18,22 @@ public class CertificateManagerImplTest {
     public void testGetInstance() {
         CertificateManager cm = CertificateManagerImpl.getInstance();
     }
+
+    @Test
+    public void testGetInstanceDoesNotKeepFailedLoad() {
+        String keyStore = System.getProperty("javax.net.ssl.keyStore");
+        System.setProperty("javax.net.ssl.keyStore", "does-not-exist.jks");
+        try {
+            CertificateManager cm = CertificateManagerImpl.getInstance();
+            assertNotSame(cm, CertificateManagerImpl.getInstance());
+        } finally {
+            if (keyStore == null) {
+                System.clearProperty("javax.net.ssl.keyStore");
+            } else {
+                System.setProperty("javax.net.ssl.keyStore", keyStore);
+            }
+        }
+    }
     
     @Test
     public void testGetDefaultPublicKey() {
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docrepository.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.docrepository.adapter.model.Document;
+import gov.hhs.fha.nhinc.docrepository.adapter.service.DocumentService;
+import gov.hhs.fha.nhinc.largefile.LargeFileUtils;
+import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType;
+import ihe.iti.xds_b._2007.RetrieveDocumentSetResponseType.DocumentResponse;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+
+import oasis.names.tc.ebxml_regrep.xsd.lcm._3.SubmitObjectsRequest;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ExternalIdentifierType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ExtrinsicObjectType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.InternationalStringType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.LocalizedStringType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ObjectFactory;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.RegistryObjectListType;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
+
+import org.junit.Test;
+
+/**
+ * Stores and retrieves a 1 GB document through the document repository. The attachment is a plain stream, not a file,
+ * so the store path has to spool it to the payload directory itself. It runs with "mvn -Pintegration verify", in a
+ * forked JVM limited to a 256 MB heap.
+ *
+ * @author dharley
+ */
+public class AdapterComponentDocRepositoryOrchImplIT {
+
+    private static final long ONE_GB = 1024L * 1024 * 1024;
+    private static final String DOCUMENT_ID = "doc1";
+    private static final String DOCUMENT_UNIQUE_ID = "1.2.3.4";
+
+    @Test
+    public void testLargeDocumentIsNotMaterialized() throws Exception {
+        assertTrue("The heap must be smaller than the document, run with -Xmx256m",
+                Runtime.getRuntime().maxMemory() < ONE_GB);
+
+        final Document[] saved = new Document[1];
+        AdapterComponentDocRepositoryOrchImpl orchImpl = new AdapterComponentDocRepositoryOrchImpl() {
+            @Override
+            protected DocumentService getDocumentService() {
+                return new DocumentService() {
+                    @Override
+                    public void saveDocument(Document document) {
+                        document.setDocumentid(1L);
+                        saved[0] = document;
+                    }
+                };
+            }
+        };
+
+        RegistryResponseType response = orchImpl.documentRepositoryProvideAndRegisterDocumentSet(createRequest());
+        assertEquals(AdapterComponentDocRepositoryOrchImpl.XDS_RETRIEVE_RESPONSE_STATUS_SUCCESS,
+                response.getStatus());
+
+        Document doc = saved[0];
+        assertNotNull(doc);
+        File documentFile = new File(new URI(new String(doc.getRawData())));
+        try {
+            assertEquals(ONE_GB, documentFile.length());
+            assertEquals(ONE_GB, doc.getSize().longValue());
+            assertEquals(sha1OfZeros(ONE_GB), doc.getHash());
+
+            DocumentResponse documentResponse = new DocumentResponse();
+            assertTrue(orchImpl.setDocumentResponse(doc, documentResponse));
+            CountingOutputStream out = new CountingOutputStream();
+            LargeFileUtils.getInstance().writeDataToStream(documentResponse.getDocument(), out);
+            assertEquals(ONE_GB, out.count);
+        } finally {
+            documentFile.delete();
+        }
+    }
+
+    private ProvideAndRegisterDocumentSetRequestType createRequest() {
+        ObjectFactory rimObjectFactory = new ObjectFactory();
+        ExtrinsicObjectType extrinsicObject = rimObjectFactory.createExtrinsicObjectType();
+        extrinsicObject.setId(DOCUMENT_ID);
+        extrinsicObject.getExternalIdentifier().add(
+                createExternalIdentifier(AdapterComponentDocRepositoryOrchImpl.XDS_DOCUMENT_UNIQUE_ID,
+                        DOCUMENT_UNIQUE_ID));
+        extrinsicObject.getExternalIdentifier().add(
+                createExternalIdentifier(AdapterComponentDocRepositoryOrchImpl.XDS_PATIENT_ID, "D123401^^^&1.1&ISO"));
+
+        RegistryObjectListType registryObjectList = rimObjectFactory.createRegistryObjectListType();
+        registryObjectList.getIdentifiable().add(rimObjectFactory.createExtrinsicObject(extrinsicObject));
+        SubmitObjectsRequest submitObjectsRequest = new SubmitObjectsRequest();
+        submitObjectsRequest.setRegistryObjectList(registryObjectList);
+
+        ProvideAndRegisterDocumentSetRequestType.Document document =
+                new ProvideAndRegisterDocumentSetRequestType.Document();
+        document.setId(DOCUMENT_ID);
+        document.setValue(new DataHandler(new ZeroDataSource(ONE_GB)));
+
+        ProvideAndRegisterDocumentSetRequestType request = new ProvideAndRegisterDocumentSetRequestType();
+        request.setSubmitObjectsRequest(submitObjectsRequest);
+        request.getDocument().add(document);
+        return request;
+    }
+
+    private ExternalIdentifierType createExternalIdentifier(String name, String value) {
+        LocalizedStringType localizedString = new LocalizedStringType();
+        localizedString.setValue(name);
+        InternationalStringType internationalString = new InternationalStringType();
+        internationalString.getLocalizedString().add(localizedString);
+
+        ExternalIdentifierType externalIdentifier = new ExternalIdentifierType();
+        externalIdentifier.setName(internationalString);
+        externalIdentifier.setValue(value);
+        return externalIdentifier;
+    }
+
+    private String sha1OfZeros(long length) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        byte[] zeros = new byte[64 * 1024];
+        for (long remaining = length; remaining > 0; remaining -= zeros.length) {
+            digest.update(zeros, 0, (int) Math.min(zeros.length, remaining));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A stream of zeros that is not backed by a file, like an MTOM attachment read off the wire.
+     */
+    private static class ZeroDataSource implements DataSource {
+        private final long length;
+
+        ZeroDataSource(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private long remaining = length;
+
+                @Override
+                public int read() {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    remaining--;
+                    return 0;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int count = (int) Math.min(len, remaining);
+                    Arrays.fill(b, off, off + count, (byte) 0);
+                    remaining -= count;
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public String getName() {
+            return "ZeroDataSource";
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.List;
 
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryError;
 import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryErrorList;
 
 import org.junit.Test;
@@ -56,6 +57,18 @@ public class AdapterComponentDocRepositoryOrchImplTest {
       
     }
     
+    @Test
+    public void checkDocumentSizeTest()
+    {
+        AdapterComponentDocRepositoryOrchImpl docrepo = new AdapterComponentDocRepositoryOrchImpl();
+        assertNull(docrepo.checkDocumentSize("1.2.3", Integer.MAX_VALUE));
+
+        RegistryError error = docrepo.checkDocumentSize("1.2.3", Integer.MAX_VALUE + 1L);
+        assertNotNull(error);
+        assertEquals(AdapterComponentDocRepositoryOrchImpl.XDS_ERROR_CODE_REPOSITORY_ERROR, error.getErrorCode());
+        assertTrue(error.getValue().contains("1.2.3"));
+    }
+    
     @Test
     public void documentRepositoryRetrieveDocumentSetTest_PartialSuccess()
     {
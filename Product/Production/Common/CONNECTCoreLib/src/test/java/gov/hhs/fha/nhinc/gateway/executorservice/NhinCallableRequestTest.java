@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.executorservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.orchestration.AuditTransformer;
+import gov.hhs.fha.nhinc.orchestration.NhinAggregator;
+import gov.hhs.fha.nhinc.orchestration.Orchestratable;
+import gov.hhs.fha.nhinc.orchestration.OutboundDelegate;
+import gov.hhs.fha.nhinc.orchestration.OutboundOrchestratable;
+import gov.hhs.fha.nhinc.orchestration.OutboundOrchestratableMessage;
+import gov.hhs.fha.nhinc.orchestration.OutboundResponseProcessor;
+import gov.hhs.fha.nhinc.orchestration.PolicyTransformer;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class NhinCallableRequestTest {
+
+    private static final String HCID = "2.2";
+    private static final long RETRY_INTERVAL = 30000;
+
+    @Test
+    public void testErrorResponseCountsAsFailure() {
+        TestProcessor processor = new TestProcessor();
+        TestMessage errorResponse = new TestMessage(null, processor, true);
+        TestDelegate delegate = new TestDelegate(errorResponse);
+        PartnerGuard guard = new PartnerGuard(HCID, 10, 10, 2, 1, RETRY_INTERVAL);
+
+        TestCallableRequest request = new TestCallableRequest(new TestMessage(delegate, processor, false), guard);
+        assertSame(errorResponse, request.call());
+        assertEquals(PartnerGuard.State.OPEN, guard.getState(System.currentTimeMillis()));
+
+        TestMessage response = request.call();
+        assertTrue(response.error);
+        assertEquals(1, delegate.calls);
+        assertEquals(1, processor.errorResponses);
+    }
+
+    @Test
+    public void testResponseCountsAsSuccess() {
+        TestProcessor processor = new TestProcessor();
+        TestMessage okResponse = new TestMessage(null, processor, false);
+        TestDelegate delegate = new TestDelegate(okResponse);
+        PartnerGuard guard = new PartnerGuard(HCID, 10, 10, 2, 1, RETRY_INTERVAL);
+
+        TestCallableRequest request = new TestCallableRequest(new TestMessage(delegate, processor, false), guard);
+        assertSame(okResponse, request.call());
+        assertSame(okResponse, request.call());
+
+        assertEquals(PartnerGuard.State.CLOSED, guard.getState(System.currentTimeMillis()));
+        assertEquals(2, delegate.calls);
+        assertEquals(0, processor.errorResponses);
+        assertEquals(0, guard.getInFlight());
+    }
+
+    @Test
+    public void testExceptionCountsAsFailure() {
+        TestProcessor processor = new TestProcessor();
+        TestDelegate delegate = new TestDelegate(null);
+        PartnerGuard guard = new PartnerGuard(HCID, 10, 10, 2, 1, RETRY_INTERVAL);
+
+        TestCallableRequest request = new TestCallableRequest(new TestMessage(delegate, processor, false), guard);
+        assertTrue(request.call().error);
+
+        assertEquals(PartnerGuard.State.OPEN, guard.getState(System.currentTimeMillis()));
+        assertEquals(1, processor.errorResponses);
+    }
+
+    private static class TestCallableRequest extends NhinCallableRequest<TestMessage> {
+
+        private final PartnerGuard guard;
+
+        TestCallableRequest(TestMessage message, PartnerGuard guard) {
+            super(message, HCID);
+            this.guard = guard;
+        }
+
+        @Override
+        protected PartnerGuard getPartnerGuard() {
+            return guard;
+        }
+    }
+
+    private static class TestMessage implements OutboundOrchestratableMessage {
+
+        private final OutboundDelegate delegate;
+        private final OutboundResponseProcessor processor;
+        private final boolean error;
+
+        TestMessage(OutboundDelegate delegate, OutboundResponseProcessor processor, boolean error) {
+            this.delegate = delegate;
+            this.processor = processor;
+            this.error = error;
+        }
+
+        public OutboundResponseProcessor getResponseProcessor() {
+            return processor;
+        }
+
+        public OutboundDelegate getDelegate() {
+            return delegate;
+        }
+
+        public NhinAggregator getAggregator() {
+            return null;
+        }
+
+        public boolean isPassthru() {
+            return false;
+        }
+
+        public AuditTransformer getAuditTransformer() {
+            return null;
+        }
+
+        public PolicyTransformer getPolicyTransformer() {
+            return null;
+        }
+
+        public AssertionType getAssertion() {
+            return null;
+        }
+
+        public String getServiceName() {
+            return null;
+        }
+    }
+
+    private static class TestDelegate implements OutboundDelegate {
+
+        private final TestMessage response;
+        private int calls = 0;
+
+        /**
+         * @param response the response of every call, or null to have the calls fail
+         */
+        TestDelegate(TestMessage response) {
+            this.response = response;
+        }
+
+        public OutboundOrchestratable process(OutboundOrchestratable message) {
+            calls++;
+            if (response == null) {
+                throw new IllegalStateException("Connection refused");
+            }
+            return response;
+        }
+
+        public Orchestratable process(Orchestratable message) {
+            return process((OutboundOrchestratable) message);
+        }
+
+        public void createErrorResponse(OutboundOrchestratable message, String error) {
+        }
+    }
+
+    private static class TestProcessor implements OutboundResponseProcessor {
+
+        private int errorResponses = 0;
+
+        public OutboundOrchestratableMessage processNhinResponse(OutboundOrchestratableMessage individualResponse,
+                OutboundOrchestratableMessage cumulativeResponse) {
+            return cumulativeResponse;
+        }
+
+        public OutboundOrchestratableMessage processErrorResponse(OutboundOrchestratableMessage request,
+                String error) {
+            errorResponses++;
+            return new TestMessage(null, this, true);
+        }
+
+        public boolean isErrorResponse(OutboundOrchestratableMessage individualResponse) {
+            return ((TestMessage) individualResponse).error;
+        }
+
+        public void aggregate(OutboundOrchestratable to, OutboundOrchestratable from) {
+        }
+    }
+}
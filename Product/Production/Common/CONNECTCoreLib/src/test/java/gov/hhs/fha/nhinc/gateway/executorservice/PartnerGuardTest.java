@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.executorservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class PartnerGuardTest {
+
+    private static final String HCID = "2.2";
+    private static final long RETRY_INTERVAL = 30000;
+    private static final long MILLIS = 1000000;
+
+    @Test
+    public void testLimitRefusesCallsBeyondIt() throws PartnerUnavailableException {
+        PartnerGuard guard = new PartnerGuard(HCID, 2, 10, 2, 5, RETRY_INTERVAL);
+
+        guard.acquire(0);
+        guard.acquire(0);
+        assertRefused(guard, 0);
+
+        guard.release(false, 0, 100 * MILLIS, true);
+        guard.acquire(0);
+        assertEquals(2, guard.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsWithTimelyCallsAndShrinksOnFailure() throws PartnerUnavailableException {
+        PartnerGuard guard = new PartnerGuard(HCID, 2, 10, 2, 0, RETRY_INTERVAL);
+        for (int i = 0; i < 20; i++) {
+            guard.acquire(0);
+            guard.release(false, 0, 100 * MILLIS, true);
+        }
+        int grown = guard.getLimit();
+        assertTrue(grown > 2);
+
+        guard.acquire(0);
+        guard.release(false, 0, 100 * MILLIS, false);
+        assertTrue(guard.getLimit() < grown);
+    }
+
+    @Test
+    public void testSlowCallsShrinkLimit() throws PartnerUnavailableException {
+        PartnerGuard guard = new PartnerGuard(HCID, 10, 10, 2, 5, RETRY_INTERVAL);
+        guard.acquire(0);
+        guard.release(false, 0, 100 * MILLIS, true);
+
+        guard.acquire(0);
+        guard.release(false, 0, 1000 * MILLIS, true);
+        assertEquals(9, guard.getLimit());
+    }
+
+    @Test
+    public void testCircuitOpensAfterFailuresAndProbes() throws PartnerUnavailableException {
+        PartnerGuard guard = new PartnerGuard(HCID, 10, 10, 2, 3, RETRY_INTERVAL);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(guard.acquire(1000));
+            guard.release(false, 1000, 100 * MILLIS, false);
+        }
+        assertEquals(PartnerGuard.State.OPEN, guard.getState(1000));
+        assertRefused(guard, 1000 + RETRY_INTERVAL - 1);
+
+        long retryAt = 1000 + RETRY_INTERVAL;
+        assertEquals(PartnerGuard.State.HALF_OPEN, guard.getState(retryAt));
+        assertTrue(guard.acquire(retryAt));
+        assertRefused(guard, retryAt);
+
+        guard.release(true, retryAt, 100 * MILLIS, false);
+        assertEquals(PartnerGuard.State.OPEN, guard.getState(retryAt));
+
+        retryAt += RETRY_INTERVAL;
+        assertTrue(guard.acquire(retryAt));
+        guard.release(true, retryAt, 100 * MILLIS, true);
+        assertEquals(PartnerGuard.State.CLOSED, guard.getState(retryAt));
+        assertFalse(guard.acquire(retryAt));
+    }
+
+    @Test
+    public void testReset() throws PartnerUnavailableException {
+        PartnerGuard guard = new PartnerGuard(HCID, 10, 10, 2, 1, RETRY_INTERVAL);
+        guard.acquire(0);
+        guard.release(false, 0, 100 * MILLIS, false);
+        assertRefused(guard, 0);
+
+        guard.reset();
+        assertEquals(PartnerGuard.State.CLOSED, guard.getState(0));
+        assertFalse(guard.acquire(0));
+    }
+
+    @Test
+    public void testResetRestoresLimitAndEndsProbe() throws PartnerUnavailableException {
+        PartnerGuard guard = new PartnerGuard(HCID, 8, 10, 2, 1, RETRY_INTERVAL);
+        guard.acquire(0);
+        guard.release(false, 0, 100 * MILLIS, false);
+        assertEquals(4, guard.getLimit());
+        assertTrue(guard.acquire(RETRY_INTERVAL));
+
+        guard.reset();
+        assertEquals(8, guard.getLimit());
+        assertFalse(guard.acquire(RETRY_INTERVAL));
+        guard.release(true, RETRY_INTERVAL, 100 * MILLIS, true);
+        assertEquals(PartnerGuard.State.CLOSED, guard.getState(RETRY_INTERVAL));
+    }
+
+    private void assertRefused(PartnerGuard guard, long now) {
+        try {
+            guard.acquire(now);
+            fail("Call to " + HCID + " was not refused");
+        } catch (PartnerUnavailableException ex) {
+            assertTrue(ex.getMessage().contains(HCID));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.warmup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class GatewayWarmUpTest {
+
+    @Test
+    public void testDisabledWarmUpIsReadyAtOnce() {
+        TestWarmUp warmUp = new TestWarmUp(false);
+        RecordingExecutor executor = new RecordingExecutor();
+
+        assertFalse(warmUp.isReady());
+        warmUp.start(executor);
+
+        assertTrue(warmUp.isReady());
+        assertEquals(0, executor.tasks.size());
+        assertEquals(0, warmUp.steps.size());
+    }
+
+    @Test
+    public void testReadyOnlyOnceWarmUpFinishes() {
+        TestWarmUp warmUp = new TestWarmUp(true);
+        RecordingExecutor executor = new RecordingExecutor();
+
+        warmUp.start(executor);
+        assertEquals(1, executor.tasks.size());
+        assertFalse(warmUp.isReady());
+
+        executor.runAll();
+        assertTrue(warmUp.isReady());
+        assertEquals(Arrays.asList("connections", "port:" + TestWarmUp.PORT_DESCRIPTOR, "proxies",
+                "selfSign"), warmUp.steps);
+    }
+
+    @Test
+    public void testStartedOnceAcrossWebApplications() {
+        TestWarmUp warmUp = new TestWarmUp(true);
+        RecordingExecutor executor = new RecordingExecutor();
+
+        warmUp.start(executor);
+        warmUp.start(executor);
+        warmUp.start(new RecordingExecutor());
+
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(4, warmUp.steps.size());
+    }
+
+    @Test
+    public void testFailingStepsStillFinishWarmUp() throws InterruptedException {
+        TestWarmUp warmUp = new TestWarmUp(true);
+        warmUp.fail = true;
+        warmUp.jaxbContextNames.add("gov.hhs.fha.nhinc.no.such.context");
+        warmUp.start(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+
+        assertTrue(warmUp.awaitReady(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("connections", "port:" + TestWarmUp.PORT_DESCRIPTOR, "proxies",
+                "selfSign"), warmUp.steps);
+    }
+
+    private static class TestWarmUp extends GatewayWarmUp {
+
+        static final String PORT_DESCRIPTOR = "gov.hhs.fha.nhinc.TestServicePortDescriptor";
+
+        private final boolean enabled;
+        final List<String> jaxbContextNames = new ArrayList<String>();
+        final List<String> steps = new ArrayList<String>();
+        boolean fail = false;
+
+        TestWarmUp(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        @Override
+        protected boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        protected boolean isSelfSignEnabled() {
+            return true;
+        }
+
+        @Override
+        protected List<String> getJAXBContextNames() {
+            return jaxbContextNames;
+        }
+
+        @Override
+        protected List<String> getServicePortDescriptorNames() {
+            return Arrays.asList(PORT_DESCRIPTOR);
+        }
+
+        @Override
+        protected void loadConnections() throws Exception {
+            step("connections");
+        }
+
+        @Override
+        protected void createPort(String portDescriptorName) throws Exception {
+            step("port:" + portDescriptorName);
+        }
+
+        @Override
+        protected List<String> getProxyConfigFileNames() {
+            return Arrays.asList("AuditRepositoryProxyConfig.xml");
+        }
+
+        @Override
+        protected void loadProxyConfigs(List<String> configFileNames) throws Exception {
+            step("proxies");
+        }
+
+        @Override
+        protected void selfSign() throws Exception {
+            step("selfSign");
+        }
+
+        private void step(String name) throws Exception {
+            steps.add(name);
+            if (fail) {
+                throw new Exception(name + " failed");
+            }
+        }
+    }
+
+    private static class RecordingExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.largefile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+
+import org.apache.commons.logging.Log;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Checks that large payload files are never buffered in the heap. It writes and reads 1 GB on disk, so it is not part
+ * of the unit tests; it runs with "mvn -Pintegration verify", in a forked JVM limited to a 256 MB heap.
+ *
+ * @author dharley
+ */
+public class LargeFileUtilsIT {
+
+    private static final long ONE_GB = 1024L * 1024 * 1024;
+
+    protected Mockery context = new JUnit4Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+    final Log mockLog = context.mock(Log.class);
+
+    /**
+     * Pushes a 1 GB file through the same calls the document repository makes on store and retrieve. The heap is
+     * smaller than the file, so none of them may buffer it.
+     */
+    @Test
+    public void testLargeFileIsNotMaterialized() throws Exception {
+        context.checking(new Expectations() {
+            {
+                ignoring(mockLog);
+            }
+        });
+        assertTrue("The heap must be smaller than the file, run with -Xmx256m",
+                Runtime.getRuntime().maxMemory() < ONE_GB);
+
+        LargeFileUtils fileUtils = createLargeFileUtils();
+        File sourceFile = File.createTempFile("LargeFileUtilsIT", ".tmp");
+        sourceFile.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(sourceFile, "rw");
+        try {
+            raf.setLength(ONE_GB);
+        } finally {
+            raf.close();
+        }
+
+        File savedFile = fileUtils.saveDataToFile(fileUtils.convertToDataHandler(sourceFile));
+        savedFile.deleteOnExit();
+        try {
+            assertEquals(ONE_GB, fileUtils.getSize(savedFile));
+
+            String digest = fileUtils.computeDigest(savedFile, "SHA-1");
+            assertEquals(sha1OfZeros(ONE_GB), digest);
+
+            CountingOutputStream out = new CountingOutputStream();
+            assertEquals(ONE_GB, fileUtils.writeDataToStream(fileUtils.convertToDataHandler(savedFile), out));
+            assertEquals(ONE_GB, out.count);
+        } finally {
+            savedFile.delete();
+            sourceFile.delete();
+        }
+    }
+
+    private String sha1OfZeros(long length) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        byte[] zeros = new byte[64 * 1024];
+        for (long remaining = length; remaining > 0; remaining -= zeros.length) {
+            digest.update(zeros, 0, (int) Math.min(zeros.length, remaining));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private LargeFileUtils createLargeFileUtils() {
+        return new LargeFileUtils() {
+            protected Log createLogger() {
+                return mockLog;
+            }
+
+            protected String getPayloadSaveDirectory() {
+                return null;
+            }
+        };
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
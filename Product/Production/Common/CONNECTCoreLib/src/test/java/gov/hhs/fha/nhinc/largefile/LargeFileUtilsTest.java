@@ -30,7 +30,9 @@ package gov.hhs.fha.nhinc.largefile;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -105,6 +107,64 @@ public class LargeFileUtilsTest {
         assertEquals(string, RANDOM_DATA);    
     }
     
+    @Test
+    public void testConvertFileToDataHandler() throws Exception {
+        allowAnyMockLogging();
+
+        String RANDOM_DATA = "1234567890";
+
+        LargeFileUtils fileUtils = createLargeFileUtils();
+        File sourceFile = createTempFile(RANDOM_DATA.getBytes());
+
+        DataHandler dh = fileUtils.convertToDataHandler(sourceFile);
+        assertEquals(sourceFile, fileUtils.getFile(dh));
+
+        // a file backed data handler can be read more than once
+        assertEquals(RANDOM_DATA, new String(fileUtils.convertToBytes(dh)));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertEquals(RANDOM_DATA.length(), fileUtils.writeDataToStream(dh, baos));
+        assertEquals(RANDOM_DATA, new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void testCopyFile() throws Exception {
+        allowAnyMockLogging();
+
+        String RANDOM_DATA = "1234567890";
+
+        LargeFileUtils fileUtils = createLargeFileUtils();
+        File sourceFile = createTempFile(RANDOM_DATA.getBytes());
+        File destFile = createTempFile(new byte[0]);
+
+        fileUtils.saveDataToFile(fileUtils.convertToDataHandler(sourceFile), destFile);
+
+        assertEquals(RANDOM_DATA.length(), fileUtils.getSize(destFile));
+        assertEquals(RANDOM_DATA, new String(fileUtils.convertToBytes(fileUtils.convertToDataHandler(destFile))));
+    }
+
+    @Test
+    public void testComputeDigest() throws Exception {
+        allowAnyMockLogging();
+
+        LargeFileUtils fileUtils = createLargeFileUtils();
+        File sourceFile = createTempFile("abc".getBytes());
+
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", fileUtils.computeDigest(sourceFile, "SHA-1"));
+    }
+
+    private File createTempFile(byte[] data) throws IOException {
+        File tempFile = File.createTempFile("temp", ".tmp");
+        tempFile.deleteOnExit();
+
+        FileOutputStream fos = new FileOutputStream(tempFile);
+        try {
+            fos.write(data);
+        } finally {
+            fos.close();
+        }
+        return tempFile;
+    }
+
     private void allowAnyMockLogging() {
         context.checking(new Expectations() {
             {
@@ -118,6 +178,10 @@ public class LargeFileUtilsTest {
             protected Log createLogger() {
                 return mockLog;
             }
+
+            protected String getPayloadSaveDirectory() {
+                return null;
+            }
         };       
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.logging.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import gov.hhs.fha.nhinc.logging.transaction.model.TransactionRepo;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class TransactionStoreTest {
+
+    private static final String MESSAGE_ID = "urn:uuid:AAA-AAA-AAA-AAA";
+    private static final String TRANSACTION_ID = "urn:uuid:BBB-BBB-BBB-BBB";
+
+    @Test
+    public void testLookupIsCached() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        store.database.put(MESSAGE_ID, TRANSACTION_ID);
+
+        assertEquals(TRANSACTION_ID, store.getTransactionId(MESSAGE_ID));
+        assertEquals(TRANSACTION_ID, store.getTransactionId(MESSAGE_ID));
+        assertEquals(1, store.lookups);
+    }
+
+    @Test
+    public void testUnknownMessageIsNotCached() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+
+        assertNull(store.getTransactionId(MESSAGE_ID));
+        store.database.put(MESSAGE_ID, TRANSACTION_ID);
+        assertEquals(TRANSACTION_ID, store.getTransactionId(MESSAGE_ID));
+        assertEquals(2, store.lookups);
+    }
+
+    @Test
+    public void testCachedEntryExpires() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        store.database.put(MESSAGE_ID, TRANSACTION_ID);
+
+        store.getTransactionId(MESSAGE_ID);
+        store.now += 999;
+        store.getTransactionId(MESSAGE_ID);
+        assertEquals(1, store.lookups);
+
+        store.now += 1;
+        assertEquals(TRANSACTION_ID, store.getTransactionId(MESSAGE_ID));
+        assertEquals(2, store.lookups);
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        TestTransactionStore store = new TestTransactionStore(100, 1000);
+        for (int i = 0; i < 1000; i++) {
+            store.addTransactionRecord(createRecord("message" + i, TRANSACTION_ID));
+        }
+
+        assertEquals(100, store.size());
+    }
+
+    @Test
+    public void testAddedRecordIsFoundBeforeItIsWritten() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        store.addTransactionRecord(createRecord(MESSAGE_ID, TRANSACTION_ID));
+
+        assertEquals(TRANSACTION_ID, store.getTransactionId(MESSAGE_ID));
+        assertEquals(0, store.lookups);
+        assertEquals(1, store.getQueuedRecordCount());
+        assertEquals(0, store.database.size());
+    }
+
+    @Test
+    public void testFlushWritesInBatches() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        int count = TransactionStore.FLUSH_BATCH_SIZE * 2 + 1;
+        for (int i = 0; i < count; i++) {
+            store.addTransactionRecord(createRecord("message" + i, TRANSACTION_ID));
+        }
+
+        assertEquals(count, store.flush());
+        assertEquals(3, store.batches.size());
+        assertEquals(TransactionStore.FLUSH_BATCH_SIZE, store.batches.get(0).intValue());
+        assertEquals(1, store.batches.get(2).intValue());
+        assertEquals(count, store.database.size());
+        assertEquals(0, store.getQueuedRecordCount());
+        assertEquals(0, store.flush());
+    }
+
+    @Test
+    public void testRecordIsWrittenWhenQueueIsFull() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        for (int i = 0; i <= TransactionStore.MAX_QUEUED_RECORDS; i++) {
+            store.addTransactionRecord(createRecord("message" + i, TRANSACTION_ID));
+        }
+
+        assertEquals(TransactionStore.MAX_QUEUED_RECORDS, store.getQueuedRecordCount());
+        assertEquals(1, store.database.size());
+    }
+
+    @Test
+    public void testBatchIsRequeuedWhenDatabaseIsUnreachable() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        for (int i = 0; i < 3; i++) {
+            store.addTransactionRecord(createRecord("message" + i, TRANSACTION_ID));
+        }
+
+        store.unreachable = true;
+        assertEquals(0, store.flush());
+        assertEquals(3, store.getQueuedRecordCount());
+
+        store.unreachable = false;
+        assertEquals(3, store.flush());
+        assertEquals(3, store.database.size());
+        assertEquals(0, store.getQueuedRecordCount());
+    }
+
+    @Test
+    public void testShutdownStopsTheWriter() throws InterruptedException {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        store.start(60000, 0);
+        store.addTransactionRecord(createRecord(MESSAGE_ID, TRANSACTION_ID));
+        Thread writer = findThread("TransactionStore");
+        assertNotNull(writer);
+
+        store.shutdown();
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(writer.isAlive());
+        assertEquals(1, store.database.size());
+
+        store.addTransactionRecord(createRecord("message1", TRANSACTION_ID));
+        assertEquals(2, store.database.size());
+        assertEquals(0, store.getQueuedRecordCount());
+    }
+
+    @Test
+    public void testUnwrittenRecordsAreDroppedOnShutdown() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        store.addTransactionRecord(createRecord(MESSAGE_ID, TRANSACTION_ID));
+        store.unreachable = true;
+
+        store.shutdown();
+        assertEquals(0, store.getQueuedRecordCount());
+        assertEquals(0, store.database.size());
+    }
+
+    @Test
+    public void testPurgeUsesRetentionPeriod() {
+        TestTransactionStore store = new TestTransactionStore(10, 1000);
+        store.now = TimeUnit.DAYS.toMillis(40);
+
+        store.purge(30);
+        assertEquals(TimeUnit.DAYS.toMillis(10), store.cutoff.getTime());
+    }
+
+    private Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName()) && thread.isAlive()) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private TransactionRepo createRecord(String messageId, String transactionId) {
+        TransactionRepo record = new TransactionRepo();
+        record.setMessageId(messageId);
+        record.setTransactionId(transactionId);
+        return record;
+    }
+
+    private static class TestTransactionStore extends TransactionStore {
+        private final Map<String, String> database = new HashMap<String, String>();
+        private final List<Integer> batches = new ArrayList<Integer>();
+        private int lookups = 0;
+        private boolean unreachable = false;
+        private long now = 0;
+        private Timestamp cutoff = null;
+
+        TestTransactionStore(int maxEntries, long expiration) {
+            super(maxEntries, expiration);
+        }
+
+        @Override
+        protected String lookupTransactionId(String messageId) {
+            lookups++;
+            return database.get(messageId);
+        }
+
+        @Override
+        protected int insertTransactionRecords(List<TransactionRepo> records) {
+            batches.add(records.size());
+            if (unreachable) {
+                return 0;
+            }
+            for (TransactionRepo record : records) {
+                database.put(record.getMessageId(), record.getTransactionId());
+            }
+            return records.size();
+        }
+
+        @Override
+        protected int deleteTransactionRecordsBefore(Timestamp cutoff) {
+            this.cutoff = cutoff;
+            return 0;
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.openSAML.extraction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.cxf.extraction.SAMLExtractorDOM;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.ws.security.saml.ext.OpenSAMLUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * @author dharley
+ *
+ */
+public class CachingSAMLAssertionExtractorTest {
+
+    private static final String XML_DSIG_NS = "http://www.w3.org/2000/09/xmldsig#";
+    // the first "/" is intentionally not using File.separator, see OpenSAMLAssertionExtractorImplTest.
+    private static final String[] SAMPLE_ASSERTIONS = { "/" + "testing_saml" + File.separator + "complete_saml.xml" };
+
+    private final OpenSAMLAssertionExtractorImpl openSAMLAssertionExtractorImpl = new OpenSAMLAssertionExtractorImpl();
+    static {
+        OpenSAMLUtil.initSamlEngine();
+    }
+
+    private CountingExtractor countingExtractor;
+
+    @Before
+    public void setUp() {
+        countingExtractor = new CountingExtractor();
+    }
+
+    /**
+     * When the element is null, assertion extracted will be null.
+     */
+    @Test
+    public void testNullAssertionElement() {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(openSAMLAssertionExtractorImpl,
+                10);
+        assertNull(extractor.extractSAMLAssertion(null));
+    }
+
+    /**
+     * Unsigned assertions are extracted every time and are never cached.
+     * @throws Exception on error.
+     */
+    @Test
+    public void testUnsignedAssertionsAreNotCached() throws Exception {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(openSAMLAssertionExtractorImpl,
+                10);
+        for (String sample : SAMPLE_ASSERTIONS) {
+            Element element = getElementForSamlFile(sample);
+            assertEquals(marshal(openSAMLAssertionExtractorImpl.extractSAMLAssertion(element)),
+                    marshal(extractor.extractSAMLAssertion(element)));
+            assertNull(extractor.getCacheKey(element));
+        }
+        assertEquals(0, extractor.size());
+    }
+
+    /**
+     * Signed assertions are extracted once and later requests receive an equivalent copy.
+     * @throws Exception on error.
+     */
+    @Test
+    public void testSignedAssertionIsCachedAndEquivalent() throws Exception {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(countingExtractor, 10);
+        for (String sample : SAMPLE_ASSERTIONS) {
+            Element element = getElementForSamlFile(sample);
+            String expected = marshal(openSAMLAssertionExtractorImpl.extractSAMLAssertion(element));
+            countingExtractor.source = element;
+            Element signed = sign(getElementForSamlFile(sample), "c2lnbmF0dXJlLTE=");
+
+            AssertionType first = extractor.extractSAMLAssertion(signed);
+            AssertionType second = extractor.extractSAMLAssertion(signed);
+
+            assertEquals(expected, marshal(first));
+            assertEquals(expected, marshal(second));
+            assertNotSame(first, second);
+        }
+        assertEquals(SAMPLE_ASSERTIONS.length, countingExtractor.calls);
+        assertEquals(SAMPLE_ASSERTIONS.length, extractor.size());
+    }
+
+    /**
+     * Changes made by one caller to its assertion are not seen by the next caller.
+     * @throws Exception on error.
+     */
+    @Test
+    public void testCachedAssertionIsNotShared() throws Exception {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(countingExtractor, 10);
+        Element element = getElementForSamlFile(SAMPLE_ASSERTIONS[0]);
+        String expected = marshal(openSAMLAssertionExtractorImpl.extractSAMLAssertion(element));
+        countingExtractor.source = element;
+        Element signed = sign(getElementForSamlFile(SAMPLE_ASSERTIONS[0]), "c2lnbmF0dXJlLTE=");
+
+        AssertionType first = extractor.extractSAMLAssertion(signed);
+        first.getHomeCommunity().setHomeCommunityId("1.1");
+        first.getUserInfo().getRoleCoded().setCode("changed");
+        first.getUniquePatientId().clear();
+        first.getSamlAuthzDecisionStatement().getEvidence().getAssertion().setId("changed");
+
+        assertEquals(expected, marshal(extractor.extractSAMLAssertion(signed)));
+        assertEquals(1, countingExtractor.calls);
+    }
+
+    /**
+     * The same assertion ID with a different signature value is a different cache entry.
+     * @throws Exception on error.
+     */
+    @Test
+    public void testDifferentSignatureIsNotMatched() throws Exception {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(countingExtractor, 10);
+        countingExtractor.source = getElementForSamlFile(SAMPLE_ASSERTIONS[0]);
+
+        extractor.extractSAMLAssertion(sign(getElementForSamlFile(SAMPLE_ASSERTIONS[0]), "c2lnbmF0dXJlLTE="));
+        extractor.extractSAMLAssertion(sign(getElementForSamlFile(SAMPLE_ASSERTIONS[0]), "c2lnbmF0dXJlLTI="));
+
+        assertEquals(2, countingExtractor.calls);
+        assertEquals(2, extractor.size());
+    }
+
+    /**
+     * The least recently used assertion is evicted once the cache is full.
+     * @throws Exception on error.
+     */
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(countingExtractor, 1);
+        countingExtractor.source = getElementForSamlFile(SAMPLE_ASSERTIONS[0]);
+        Element first = sign(getElementForSamlFile(SAMPLE_ASSERTIONS[0]), "c2lnbmF0dXJlLTE=");
+        Element second = sign(getElementForSamlFile(SAMPLE_ASSERTIONS[0]), "c2lnbmF0dXJlLTI=");
+
+        extractor.extractSAMLAssertion(first);
+        extractor.extractSAMLAssertion(second);
+        extractor.extractSAMLAssertion(first);
+
+        assertEquals(3, countingExtractor.calls);
+        assertEquals(1, extractor.size());
+    }
+
+    /**
+     * A cache size of zero disables caching.
+     * @throws Exception on error.
+     */
+    @Test
+    public void testZeroSizeDisablesCache() throws Exception {
+        CachingSAMLAssertionExtractor extractor = new CachingSAMLAssertionExtractor(countingExtractor, 0);
+        countingExtractor.source = getElementForSamlFile(SAMPLE_ASSERTIONS[0]);
+        Element signed = sign(getElementForSamlFile(SAMPLE_ASSERTIONS[0]), "c2lnbmF0dXJlLTE=");
+
+        extractor.extractSAMLAssertion(signed);
+        extractor.extractSAMLAssertion(signed);
+
+        assertEquals(2, countingExtractor.calls);
+        assertEquals(0, extractor.size());
+    }
+
+    /**
+     * Delegates to the real extractor using the unsigned source element, since the placeholder signature added by
+     * these tests cannot be unmarshalled by OpenSAML.
+     */
+    private class CountingExtractor implements SAMLExtractorDOM {
+        private Element source;
+        private int calls = 0;
+
+        @Override
+        public AssertionType extractSAMLAssertion(Element element) {
+            calls++;
+            return openSAMLAssertionExtractorImpl.extractSAMLAssertion(source);
+        }
+    }
+
+    private Element sign(Element assertion, String signatureValue) {
+        Document document = assertion.getOwnerDocument();
+        Element signature = document.createElementNS(XML_DSIG_NS, "ds:Signature");
+        Element value = document.createElementNS(XML_DSIG_NS, "ds:SignatureValue");
+        value.setTextContent(signatureValue);
+        signature.appendChild(value);
+        assertion.insertBefore(signature, assertion.getFirstChild().getNextSibling());
+        return assertion;
+    }
+
+    private String marshal(AssertionType assertion) throws Exception {
+        JAXBContext context = JAXBContext.newInstance(AssertionType.class);
+        Marshaller marshaller = context.createMarshaller();
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(new JAXBElement<AssertionType>(new QName("urn:gov:hhs:fha:nhinc:common:nhinccommon",
+                "Assertion"), AssertionType.class, assertion), writer);
+        return writer.toString();
+    }
+
+    private Element getElementForSamlFile(String samlFileName) throws Exception {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        Document document = documentBuilder.parse(getSamlFile(samlFileName));
+        return document.getDocumentElement();
+    }
+
+    private File getSamlFile(String samlFileName) {
+        URI uri = null;
+        try {
+            uri = this.getClass().getResource(samlFileName).toURI();
+        } catch (URISyntaxException e) {
+            fail("Could not build URI for filepath. " + e.getMessage());
+        }
+        return new File(uri);
+    }
+
+}
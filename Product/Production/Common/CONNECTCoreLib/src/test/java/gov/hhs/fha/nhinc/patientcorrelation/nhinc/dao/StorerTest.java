@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.CorrelatedIdentifiers;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class StorerTest {
+
+    private static final long ONE_DAY = 86400000;
+
+    private final List<CorrelatedIdentifiers> removed = new ArrayList<CorrelatedIdentifiers>();
+    private final List<String> calls = new ArrayList<String>();
+    private final CorrelationRemovalListener listener = new CorrelationRemovalListener() {
+        @Override
+        public void correlationRemoved(CorrelatedIdentifiers correlatedIdentifiers) {
+            calls.add("correlationRemoved");
+            removed.add(correlatedIdentifiers);
+        }
+    };
+
+    private List<CorrelatedIdentifiers> stored;
+    private boolean failCommit;
+    private boolean committed;
+
+    @Before
+    public void setUp() {
+        Storer.addRemovalListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        Storer.removeRemovalListener(listener);
+    }
+
+    @Test
+    public void testExpiredCorrelationIsRemovedAndListenersToldAfterCommit() {
+        CorrelatedIdentifiers expired = createCorrelation(new Date(System.currentTimeMillis() - ONE_DAY));
+        stored = Collections.singletonList(expired);
+        CorrelatedIdentifiers correlation = createCorrelation(new Date(System.currentTimeMillis() + ONE_DAY));
+
+        Storer.addPatientCorrelations(Collections.singletonList(correlation), createSessionFactory());
+
+        assertEquals(1, removed.size());
+        assertSame(expired, removed.get(0));
+        assertEquals(Arrays.asList("delete", "save", "commit", "close", "correlationRemoved"), calls);
+    }
+
+    @Test
+    public void testCurrentCorrelationIsUpdated() {
+        CorrelatedIdentifiers current = createCorrelation(new Date(System.currentTimeMillis() + ONE_DAY));
+        stored = Collections.singletonList(current);
+        Date expiration = new Date(System.currentTimeMillis() + 2 * ONE_DAY);
+
+        Storer.addPatientCorrelations(Collections.singletonList(createCorrelation(expiration)),
+                createSessionFactory());
+
+        assertTrue(removed.isEmpty());
+        assertEquals(expiration, current.getCorrelationExpirationDate());
+        assertEquals(Arrays.asList("commit", "close"), calls);
+    }
+
+    @Test
+    public void testListenersAreNotToldWhenTheCommitFails() {
+        stored = Collections.singletonList(createCorrelation(new Date(System.currentTimeMillis() - ONE_DAY)));
+        failCommit = true;
+
+        try {
+            Storer.addPatientCorrelations(Collections.singletonList(createCorrelation(null)), createSessionFactory());
+            fail("The failed commit was not passed on");
+        } catch (HibernateException ex) {
+            assertTrue(removed.isEmpty());
+            assertEquals(Arrays.asList("delete", "save", "commit", "rollback", "close"), calls);
+        }
+    }
+
+    private CorrelatedIdentifiers createCorrelation(Date expiration) {
+        CorrelatedIdentifiers correlation = new CorrelatedIdentifiers();
+        correlation.setPatientAssigningAuthorityId("1.1");
+        correlation.setPatientId("P1");
+        correlation.setCorrelatedPatientAssigningAuthorityId("2.2");
+        correlation.setCorrelatedPatientId("P2");
+        correlation.setCorrelationExpirationDate(expiration);
+        return correlation;
+    }
+
+    private SessionFactory createSessionFactory() {
+        final Transaction transaction = createProxy(Transaction.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("commit".equals(name)) {
+                    calls.add(name);
+                    if (failCommit) {
+                        throw new HibernateException("Commit failed");
+                    }
+                    committed = true;
+                } else if ("rollback".equals(name)) {
+                    calls.add(name);
+                } else if ("isActive".equals(name)) {
+                    return !committed;
+                }
+                return null;
+            }
+        });
+        final Criteria criteria = createProxy(Criteria.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("list".equals(method.getName())) {
+                    return new ArrayList<CorrelatedIdentifiers>(stored);
+                }
+                return proxy;
+            }
+        });
+        final Session session = createProxy(Session.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("beginTransaction".equals(name)) {
+                    return transaction;
+                } else if ("createCriteria".equals(name)) {
+                    return criteria;
+                } else if ("delete".equals(name) || "save".equals(name) || "close".equals(name)) {
+                    calls.add(name);
+                }
+                return null;
+            }
+        });
+        return createProxy(SessionFactory.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "openSession".equals(method.getName()) ? session : null;
+            }
+        });
+    }
+
+    private <T> T createProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler));
+    }
+}
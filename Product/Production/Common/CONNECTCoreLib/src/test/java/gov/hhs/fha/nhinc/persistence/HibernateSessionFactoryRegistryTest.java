@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.hhs.fha.nhinc.gateway.aggregator.model.AggTransaction;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.perfrepo.model.Perfrepository;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class HibernateSessionFactoryRegistryTest {
+
+    private static final String CONFIG_DIR = "/config/HibernateSessionFactoryRegistryTest/hibernate/";
+
+    /**
+     * The configuration files whose mapped classes are all in this module. Every one but perfrepo uses the same
+     * connection url.
+     */
+    private static final List<String> DEPLOYED_UNITS = Arrays.asList(NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY,
+            NhincConstants.HIBERNATE_ASSIGNING_AUTHORITY, NhincConstants.HIBERNATE_PATIENT_CORRELATION,
+            NhincConstants.HIBERNATE_DOCUMENT_REPOSITORY, NhincConstants.HIBERNATE_ASYNCMSGS_REPOSITORY,
+            NhincConstants.HIBERNATE_PERFREPO_REPOSITORY, NhincConstants.HIBERNATE_TRANSREPO_REPOSITORY);
+
+    private List<SessionFactory> sessionFactories = new ArrayList<SessionFactory>();
+    private List<HibernateSessionFactoryRegistry> registries = new ArrayList<HibernateSessionFactoryRegistry>();
+
+    @Before
+    public void setUp() {
+        StubConnectionProvider.pools.clear();
+    }
+
+    @After
+    public void tearDown() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (HibernateSessionFactoryRegistry registry : registries) {
+            for (PersistenceStatistics statistics : registry.getStatistics()) {
+                ObjectName name = new ObjectName(HibernateSessionFactoryRegistry.OBJECT_NAME_PREFIX
+                        + ObjectName.quote(statistics.getDataSource()));
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+        }
+        for (SessionFactory sessionFactory : sessionFactories) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void testUnitsOnTheSameConnectionsShareASessionFactory() {
+        HibernateSessionFactoryRegistry registry = createRegistry();
+
+        SessionFactory shared = getSessionFactory(registry, NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY);
+        for (String unit : DEPLOYED_UNITS) {
+            if (unit.equals(NhincConstants.HIBERNATE_PERFREPO_REPOSITORY)) {
+                assertNotSame(shared, getSessionFactory(registry, unit));
+            } else {
+                assertSame(unit, shared, getSessionFactory(registry, unit));
+            }
+        }
+        assertEquals(2, registry.getStatistics().size());
+    }
+
+    @Test
+    public void testEachUnitKeepsItsCatalog() {
+        HibernateSessionFactoryRegistry registry = createRegistry();
+
+        SessionFactory shared = getSessionFactory(registry, NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY);
+        SessionFactory separate = getSessionFactory(registry, NhincConstants.HIBERNATE_PERFREPO_REPOSITORY);
+
+        assertEquals("aggregator.agg_transaction",
+                ((AbstractEntityPersister) shared.getClassMetadata(AggTransaction.class)).getTableName());
+        assertEquals("perfrepo.perfrepository",
+                ((AbstractEntityPersister) separate.getClassMetadata(Perfrepository.class)).getTableName());
+    }
+
+    @Test
+    public void testUnitWithoutItsClassesIsNotShared() {
+        HibernateSessionFactoryRegistry registry = createRegistry();
+
+        getSessionFactory(registry, NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY);
+        for (PersistenceStatistics statistics : registry.getStatistics()) {
+            assertFalse(Arrays.asList(statistics.getPersistenceUnits()).contains(
+                    NhincConstants.HIBERNATE_PATIENTDB_REPOSITORY));
+        }
+    }
+
+    @Test(expected = HibernateException.class)
+    public void testUnitWithoutItsClassesFailsAsBefore() {
+        createRegistry().getSessionFactory(NhincConstants.HIBERNATE_PATIENTDB_REPOSITORY);
+    }
+
+    @Test
+    public void testStatistics() throws JMException {
+        HibernateSessionFactoryRegistry registry = createRegistry();
+        getSessionFactory(registry, NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY);
+
+        PersistenceStatistics statistics = registry.getStatistics().get(0);
+        assertEquals("jdbc:stub:connect", statistics.getDataSource());
+        assertEquals(new HashSet<String>(Arrays.asList(NhincConstants.HIBERNATE_AGGREGATOR_REPOSITORY,
+                NhincConstants.HIBERNATE_ASSIGNING_AUTHORITY, NhincConstants.HIBERNATE_PATIENT_CORRELATION,
+                NhincConstants.HIBERNATE_DOCUMENT_REPOSITORY, NhincConstants.HIBERNATE_ASYNCMSGS_REPOSITORY,
+                NhincConstants.HIBERNATE_TRANSREPO_REPOSITORY)), new HashSet<String>(Arrays.asList(statistics
+                .getPersistenceUnits())));
+        // The one connection Hibernate reads the database metadata from, since handed back
+        assertEquals(1, statistics.getBorrowedConnections());
+        assertEquals(0, statistics.getOpenConnections());
+        assertEquals(1, statistics.getPeakOpenConnections());
+
+        statistics.clear();
+        assertEquals(0, statistics.getBorrowedConnections());
+        assertEquals(0, statistics.getPeakOpenConnections());
+
+        ObjectName name = new ObjectName(HibernateSessionFactoryRegistry.OBJECT_NAME_PREFIX
+                + ObjectName.quote("jdbc:stub:connect"));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testStartupBuildsFewerSessionFactoriesAndIdleConnections() {
+        buildSeparately();
+        int separateFactories = sessionFactories.size();
+        int separatePools = StubConnectionProvider.pools.size();
+        int separateIdle = StubConnectionProvider.getIdleConnections();
+
+        StubConnectionProvider.pools.clear();
+        HibernateSessionFactoryRegistry registry = buildShared();
+        int sharedFactories = sessionFactories.size() - separateFactories;
+
+        assertEquals(DEPLOYED_UNITS.size(), separateFactories);
+        assertEquals(DEPLOYED_UNITS.size(), separatePools);
+        assertEquals(DEPLOYED_UNITS.size(), separateIdle);
+        assertEquals(2, sharedFactories);
+        assertEquals(2, registry.getStatistics().size());
+        assertEquals(2, StubConnectionProvider.pools.size());
+        assertEquals(2, StubConnectionProvider.getIdleConnections());
+    }
+
+    private void buildSeparately() {
+        for (String unit : DEPLOYED_UNITS) {
+            sessionFactories.add(new Configuration().configure(getConfigFile(unit)).buildSessionFactory());
+        }
+    }
+
+    private HibernateSessionFactoryRegistry buildShared() {
+        HibernateSessionFactoryRegistry registry = createRegistry();
+        for (String unit : DEPLOYED_UNITS) {
+            getSessionFactory(registry, unit);
+        }
+        return registry;
+    }
+
+    private SessionFactory getSessionFactory(HibernateSessionFactoryRegistry registry, String unit) {
+        SessionFactory sessionFactory = registry.getSessionFactory(unit);
+        if (!sessionFactories.contains(sessionFactory)) {
+            sessionFactories.add(sessionFactory);
+        }
+        return sessionFactory;
+    }
+
+    private HibernateSessionFactoryRegistry createRegistry() {
+        HibernateSessionFactoryRegistry registry = new HibernateSessionFactoryRegistry() {
+            @Override
+            protected File getHibernateFile(String configFileName) throws PropertyAccessException {
+                File file = getConfigFile(configFileName);
+                if (!file.exists()) {
+                    throw new PropertyAccessException("Unable to locate " + file);
+                }
+                return file;
+            }
+        };
+        registries.add(registry);
+        return registry;
+    }
+
+    private File getConfigFile(String configFileName) {
+        try {
+            return new File(new File(getClass().getResource(CONFIG_DIR).toURI()), configFileName);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A connection pool that hands out stand-in connections and keeps each one idle once it is handed back.
+     */
+    public static class StubConnectionProvider implements ConnectionProvider {
+
+        static final List<StubConnectionProvider> pools = new ArrayList<StubConnectionProvider>();
+
+        private final LinkedList<Connection> idle = new LinkedList<Connection>();
+
+        static synchronized int getIdleConnections() {
+            int count = 0;
+            for (StubConnectionProvider pool : pools) {
+                count += pool.idle.size();
+            }
+            return count;
+        }
+
+        @Override
+        public void configure(Properties props) {
+            synchronized (StubConnectionProvider.class) {
+                pools.add(this);
+            }
+        }
+
+        @Override
+        public synchronized Connection getConnection() {
+            return idle.isEmpty() ? createConnection() : idle.removeFirst();
+        }
+
+        @Override
+        public synchronized void closeConnection(Connection conn) {
+            idle.addFirst(conn);
+        }
+
+        @Override
+        public synchronized void close() {
+            idle.clear();
+        }
+
+        @Override
+        public boolean supportsAggressiveRelease() {
+            return false;
+        }
+
+        private static Connection createConnection() {
+            DatabaseMetaData metaData = (DatabaseMetaData) stub(DatabaseMetaData.class, null);
+            return (Connection) stub(Connection.class, metaData);
+        }
+
+        /**
+         * @return an implementation of the interface whose methods all return their default, apart from getMetaData
+         */
+        private static Object stub(final Class<?> type, final DatabaseMetaData metaData) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    Class<?> returnType = method.getReturnType();
+                    if (method.getName().equals("getMetaData")) {
+                        return metaData;
+                    } else if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    } else if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("toString")) {
+                        return "stub " + type.getSimpleName();
+                    } else if (returnType == boolean.class) {
+                        return Boolean.FALSE;
+                    } else if (returnType == int.class) {
+                        return 0;
+                    } else if (returnType == long.class) {
+                        return 0L;
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+}
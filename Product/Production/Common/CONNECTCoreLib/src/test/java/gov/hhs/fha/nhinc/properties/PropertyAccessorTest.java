@@ -160,6 +160,14 @@ public class PropertyAccessorTest {
         long propertyValue = propAccessor.getPropertyLong(PROPERTY_FILE_NAME, PROPERTY_NAME);
         assertEquals(PROPERTY_VALUE_LONG, propertyValue);        
     }
+
+    @Test
+    public void testGetPropertyLongWithDefault() {
+        PropertyAccessor propAccessor = createPropertyAccessor();
+
+        assertEquals(PROPERTY_VALUE_LONG, propAccessor.getPropertyLong(PROPERTY_FILE_NAME, PROPERTY_NAME, 5));
+        assertEquals(5, propAccessor.getPropertyLong(PROPERTY_FILE_NAME, null, 5));
+    }
         
     @Test
     public void testGetPropertyNames() throws PropertyAccessException {
@@ -228,6 +236,10 @@ public class PropertyAccessorTest {
                 return mockRefreshHandler;
             }
             
+            protected Log getLogger() {
+                return mockLog;
+            }
+
             protected PropertyAccessorFileUtilities createPropertyAccessorFileUtilities() {
                 return new PropertyAccessorFileUtilities() {
                     public String getPropertyFileLocation(String propertyFileName) {
@@ -26,6 +26,11 @@
  */
 package gov.hhs.fha.nhinc.proxy;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.logging.Log;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -140,38 +145,6 @@ public class ComponentProxyObjectFactoryTest {
         }
     }
 
-    @Test
-    public void testRefreshApplicationContext() {
-        try {
-            final ApplicationContext mockContext = context.mock(ApplicationContext.class);
-
-            ComponentProxyObjectFactory sut = new ComponentProxyObjectFactory() {
-
-                @Override
-                protected Log createLogger() {
-                    return mockLog;
-                }
-
-                @Override
-                protected void refreshConfigurationContext(ApplicationContext appContext) {
-                }
-
-                @Override
-                protected String getConfigFileName() {
-                    return "";
-                }
-
-            };
-            sut.refreshConfigurationContext(mockContext);
-            // Success if completes
-            assertTrue(true);
-        } catch (Throwable t) {
-            System.out.println("Error running testRefreshApplicationContext test: " + t.getMessage());
-            t.printStackTrace();
-            fail("Error running testRefreshApplicationContext test: " + t.getMessage());
-        }
-    }
-
     @Test
     public void testGetLastModified() {
         try {
@@ -232,6 +205,7 @@ public class ComponentProxyObjectFactoryTest {
     public void testGetContextHappy() {
         try {
             final ApplicationContext mockContext = context.mock(ApplicationContext.class);
+            final ApplicationContextRegistry registry = new ApplicationContextRegistry();
 
             context.checking(new Expectations() {
                 {
@@ -265,8 +239,14 @@ public class ComponentProxyObjectFactoryTest {
                     return mockContext;
                 }
 
+                @Override
+                protected ApplicationContextRegistry getContextRegistry() {
+                    return registry;
+                }
+
             };
             assertNotNull("ApplicationContext from getContext", sut.getContext());
+            assertSame("ApplicationContext from the registry", mockContext, registry.getContext("TestFile.xml"));
         } catch (Throwable t) {
             System.out.println("Error running testGetContextHappy test: " + t.getMessage());
             t.printStackTrace();
@@ -275,9 +255,13 @@ public class ComponentProxyObjectFactoryTest {
     }
 
     @Test
-    public void testGetContextRefresh() {
+    public void testGetContextReload() {
         try {
-            final ApplicationContext mockContext = context.mock(ApplicationContext.class);
+            final ApplicationContext firstContext = context.mock(ApplicationContext.class, "firstContext");
+            final ApplicationContext secondContext = context.mock(ApplicationContext.class, "secondContext");
+            final ApplicationContextRegistry registry = new ApplicationContextRegistry();
+            final long[] lastModified = { 5L };
+            final ApplicationContext[] nextContext = { firstContext };
 
             ComponentProxyObjectFactory sut = new ComponentProxyObjectFactory() {
                 @Override
@@ -286,12 +270,193 @@ public class ComponentProxyObjectFactoryTest {
                 }
 
                 @Override
-                protected void refreshConfigurationContext(ApplicationContext appContext) {
+                protected long getLastModified(String filePath) {
+                    return lastModified[0];
+                }
+
+                @Override
+                protected String getPropertyFileURL() {
+                    return "/test/";
+                }
+
+                @Override
+                protected String getConfigFileName() {
+                    return "TestFile.xml";
+                }
+
+                @Override
+                protected ApplicationContext createApplicationContext(String configFilePath) {
+                    return nextContext[0];
+                }
+
+                @Override
+                protected ApplicationContextRegistry getContextRegistry() {
+                    return registry;
+                }
+
+            };
+            context.checking(new Expectations() {
+                {
+                    oneOf(mockLog).debug("ApplicationContext for: TestFile.xml was null - creating.");
+                }
+            });
+            assertSame("ApplicationContext from getContext", firstContext, sut.getContext());
+            assertFalse("Reloaded an unmodified file", registry.reload("TestFile.xml"));
+
+            lastModified[0] = 6L;
+            nextContext[0] = secondContext;
+            assertTrue("Did not reload a modified file", registry.reload("TestFile.xml"));
+            assertSame("ApplicationContext from getContext after reload", secondContext, sut.getContext());
+            assertFalse("Reloaded an unregistered file", registry.reload("OtherFile.xml"));
+        } catch (Throwable t) {
+            System.out.println("Error running testGetContextReload test: " + t.getMessage());
+            t.printStackTrace();
+            fail("Error running testGetContextReload test: " + t.getMessage());
+        }
+    }
+
+    @Test
+    public void testGetContextAfterWatchingStopped() throws IOException {
+        final File configDir = File.createTempFile("ComponentProxyObjectFactoryTest", "");
+        configDir.delete();
+        configDir.mkdir();
+        final ApplicationContextRegistry registry = new ApplicationContextRegistry();
+        try {
+            final ApplicationContext firstContext = context.mock(ApplicationContext.class, "firstContext");
+            final ApplicationContext secondContext = context.mock(ApplicationContext.class, "secondContext");
+            final long[] lastModified = { 5L };
+            final ApplicationContext[] nextContext = { firstContext };
+
+            ComponentProxyObjectFactory sut = new ComponentProxyObjectFactory() {
+                @Override
+                protected Log createLogger() {
+                    return mockLog;
                 }
 
                 @Override
                 protected long getLastModified(String filePath) {
-                    return 6L;
+                    return lastModified[0];
+                }
+
+                @Override
+                protected String getPropertyFileURL() {
+                    return configDir.toURI().toString();
+                }
+
+                @Override
+                protected String getConfigFileName() {
+                    return "TestFile.xml";
+                }
+
+                @Override
+                protected ApplicationContext createApplicationContext(String configFilePath) {
+                    return nextContext[0];
+                }
+
+                @Override
+                protected ApplicationContextRegistry getContextRegistry() {
+                    return registry;
+                }
+
+            };
+            context.checking(new Expectations() {
+                {
+                    oneOf(mockLog).debug("ApplicationContext for: TestFile.xml was null - creating.");
+                }
+            });
+            assertSame("ApplicationContext from getContext", firstContext, sut.getContext());
+            assertTrue("Not watching the registered file", registry.isWatching());
+
+            registry.stop();
+            assertFalse("Still watching after stop", registry.isWatching());
+            lastModified[0] = 6L;
+            nextContext[0] = secondContext;
+
+            registry.resumeWatching();
+            assertTrue("Not watching after resume", registry.isWatching());
+            assertSame("ApplicationContext changed while not watched", secondContext, sut.getContext());
+        } finally {
+            registry.stop();
+            configDir.delete();
+        }
+    }
+
+    @Test
+    public void testReplacedContextIsClosed() throws InterruptedException {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final ApplicationContext firstContext = new FileSystemXmlApplicationContext() {
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        final ApplicationContext secondContext = context.mock(ApplicationContext.class);
+        final ApplicationContextRegistry registry = new ApplicationContextRegistry(10);
+        final long[] lastModified = { 5L };
+        final ApplicationContext[] nextContext = { firstContext };
+
+        ComponentProxyObjectFactory sut = new ComponentProxyObjectFactory() {
+            @Override
+            protected Log createLogger() {
+                return mockLog;
+            }
+
+            @Override
+            protected long getLastModified(String filePath) {
+                return lastModified[0];
+            }
+
+            @Override
+            protected String getPropertyFileURL() {
+                return "/test/";
+            }
+
+            @Override
+            protected String getConfigFileName() {
+                return "TestFile.xml";
+            }
+
+            @Override
+            protected ApplicationContext createApplicationContext(String configFilePath) {
+                return nextContext[0];
+            }
+
+            @Override
+            protected ApplicationContextRegistry getContextRegistry() {
+                return registry;
+            }
+
+        };
+        context.checking(new Expectations() {
+            {
+                oneOf(mockLog).debug("ApplicationContext for: TestFile.xml was null - creating.");
+            }
+        });
+        assertSame("ApplicationContext from getContext", firstContext, sut.getContext());
+
+        lastModified[0] = 6L;
+        nextContext[0] = secondContext;
+        assertTrue("Did not reload a modified file", registry.reload("TestFile.xml"));
+        assertSame("ApplicationContext from getContext after reload", secondContext, sut.getContext());
+        assertTrue("Replaced context was not closed", closed.await(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testGetContextReloadFailureKeepsContext() {
+        try {
+            final ApplicationContext mockContext = context.mock(ApplicationContext.class);
+            final ApplicationContextRegistry registry = new ApplicationContextRegistry();
+            final long[] lastModified = { 5L };
+
+            ComponentProxyObjectFactory sut = new ComponentProxyObjectFactory() {
+                @Override
+                protected Log createLogger() {
+                    return mockLog;
+                }
+
+                @Override
+                protected long getLastModified(String filePath) {
+                    return lastModified[0];
                 }
 
                 @Override
@@ -306,30 +471,93 @@ public class ComponentProxyObjectFactoryTest {
 
                 @Override
                 protected ApplicationContext createApplicationContext(String configFilePath) {
+                    if (lastModified[0] > 5L) {
+                        throw new IllegalStateException("Invalid configuration file");
+                    }
                     return mockContext;
                 }
 
                 @Override
-                protected LocalApplicationContextInfo getAppContextInfo(String sKey) {
-                    LocalApplicationContextInfo oInfo = new LocalApplicationContextInfo();
-                    oInfo.setApplicationContext(mockContext);
-                    oInfo.setConfigLastModified(5L);
-                    return oInfo;
+                protected ApplicationContextRegistry getContextRegistry() {
+                    return registry;
                 }
 
             };
             context.checking(new Expectations() {
                 {
-                    oneOf(mockLog).debug(
-                            "ApplicationContext for: TestFile.xml was not null - checking to see if it is stale.");
-                    oneOf(mockLog).debug("Refreshing the Spring application context for: TestFile.xml");
+                    oneOf(mockLog).debug("ApplicationContext for: TestFile.xml was null - creating.");
                 }
             });
-            assertNotNull("ApplicationContext from getContext", sut.getContext());
+            assertSame("ApplicationContext from getContext", mockContext, sut.getContext());
+
+            lastModified[0] = 6L;
+            assertFalse("Reloaded an invalid file", registry.reload("TestFile.xml"));
+            assertSame("ApplicationContext from getContext after reload", mockContext, sut.getContext());
+        } catch (Throwable t) {
+            System.out.println("Error running testGetContextReloadFailureKeepsContext test: " + t.getMessage());
+            t.printStackTrace();
+            fail("Error running testGetContextReloadFailureKeepsContext test: " + t.getMessage());
+        }
+    }
+
+    @Test
+    public void testGetBeanCached() {
+        try {
+            final int[] lookups = { 0 };
+            final ApplicationContext appContext = new FileSystemXmlApplicationContext() {
+                @Override
+                public Object getBean(String beanName) {
+                    lookups[0]++;
+                    return "testbean";
+                }
+            };
+            final ApplicationContextRegistry registry = new ApplicationContextRegistry();
+
+            ComponentProxyObjectFactory sut = new ComponentProxyObjectFactory() {
+
+                @Override
+                protected Log createLogger() {
+                    return mockLog;
+                }
+
+                @Override
+                protected long getLastModified(String filePath) {
+                    return 5L;
+                }
+
+                @Override
+                protected String getPropertyFileURL() {
+                    return "/test/";
+                }
+
+                @Override
+                protected String getConfigFileName() {
+                    return "TestFile.xml";
+                }
+
+                @Override
+                protected ApplicationContext createApplicationContext(String configFilePath) {
+                    return appContext;
+                }
+
+                @Override
+                protected ApplicationContextRegistry getContextRegistry() {
+                    return registry;
+                }
+
+            };
+            context.checking(new Expectations() {
+                {
+                    oneOf(mockLog).debug("ApplicationContext for: TestFile.xml was null - creating.");
+                }
+            });
+            assertEquals("getBean test value", "testbean", sut.getBean("testBean", String.class));
+            assertEquals("getBean test value", "testbean", sut.getBean("testBean", String.class));
+            assertEquals("Bean looked up in the context more than once", 1, lookups[0]);
         } catch (Throwable t) {
-            System.out.println("Error running testGetContextRefresh test: " + t.getMessage());
+            System.out.println("Error running testGetBeanCached test: " + t.getMessage());
             t.printStackTrace();
-            fail("Error running testGetContextRefresh test: " + t.getMessage());
+            fail("Error running testGetBeanCached test: " + t.getMessage());
         }
     }
 
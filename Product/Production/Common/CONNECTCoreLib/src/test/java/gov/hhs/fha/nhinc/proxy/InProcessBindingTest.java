@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * @author dharley
+ */
+public class InProcessBindingTest {
+
+    private static final String SERVICE_NAME = "auditrepositorysecured";
+    private static final String ENDPOINT_URL =
+            "https://localhost:8181/CONNECTGateway/GatewayService/AuditRepositoryManagerSecuredService";
+
+    @Test
+    public void testCoLocatedServiceIsBoundInProcess() {
+        TestBinding binding = new TestBinding(ENDPOINT_URL);
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_ENABLED, "true");
+
+        assertTrue(binding.isBoundInProcess(SERVICE_NAME));
+        assertEquals("auditrepositoryjava", binding.getBeanName(createContext(), "auditrepository"));
+    }
+
+    @Test
+    public void testDisabledBindingUsesWebService() {
+        TestBinding binding = new TestBinding(ENDPOINT_URL);
+
+        assertFalse(binding.isBoundInProcess(SERVICE_NAME));
+        assertEquals("auditrepository", binding.getBeanName(createContext(), "auditrepository"));
+    }
+
+    @Test
+    public void testRemoteServiceUsesWebService() {
+        TestBinding binding = new TestBinding(
+                "https://audit.example.org:8181/CONNECTGateway/GatewayService/AuditRepositoryManagerSecuredService");
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_ENABLED, "true");
+
+        assertFalse(binding.isBoundInProcess(SERVICE_NAME));
+    }
+
+    @Test
+    public void testOverrideWinsOverCoLocation() {
+        TestBinding binding = new TestBinding(ENDPOINT_URL);
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_ENABLED, "true");
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_PREFIX + SERVICE_NAME, "false");
+        assertFalse(binding.isBoundInProcess(SERVICE_NAME));
+
+        binding = new TestBinding("https://audit.example.org:8181/CONNECTGateway/GatewayService/Audit");
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_PREFIX + SERVICE_NAME, "true");
+        assertTrue(binding.isBoundInProcess(SERVICE_NAME));
+    }
+
+    @Test
+    public void testContextRoots() {
+        TestBinding binding = new TestBinding(null);
+
+        assertTrue(binding.isCoLocated("http://localhost:8080/CONNECTAdapter/AdapterProxyService/AdapterPolicyEngine"));
+        assertFalse(binding.isCoLocated("http://localhost:8080/NhinConnect/AuditRepositoryManagerService"));
+        assertFalse(binding.isCoLocated("http://localhost:8080/CONNECTGatewayOther/Service"));
+
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_CONTEXTS, "/NhinConnect");
+        assertTrue(binding.isCoLocated("http://localhost:8080/NhinConnect/AuditRepositoryManagerService"));
+    }
+
+    @Test
+    public void testBeansWithoutServiceNameAreNotBound() {
+        TestBinding binding = new TestBinding(ENDPOINT_URL);
+        binding.properties.put(NhincConstants.IN_PROCESS_BINDING_ENABLED, "true");
+
+        assertEquals("auditrepositoryjava", binding.getBeanName(createContext(), "auditrepositoryjava"));
+        assertEquals("nosuchbean", binding.getBeanName(createContext(), "nosuchbean"));
+    }
+
+    private GenericApplicationContext createContext() {
+        GenericApplicationContext appContext = new GenericApplicationContext();
+        RootBeanDefinition secured = new RootBeanDefinition(Object.class);
+        secured.setAttribute(InProcessBinding.META_SERVICE_NAME, SERVICE_NAME);
+        secured.setAttribute(InProcessBinding.META_IN_PROCESS_BEAN, "auditrepositoryjava");
+        appContext.registerBeanDefinition("auditrepositorywssecured", secured);
+        appContext.registerBeanDefinition("auditrepositoryjava", new RootBeanDefinition(Object.class));
+        appContext.registerAlias("auditrepositorywssecured", "auditrepository");
+        return appContext;
+    }
+
+    private static class TestBinding extends InProcessBinding {
+
+        private final String endpointURL;
+        final Map<String, String> properties = new HashMap<String, String>();
+
+        TestBinding(String endpointURL) {
+            this.endpointURL = endpointURL;
+        }
+
+        @Override
+        protected boolean isLocalHost(String host) {
+            return "localhost".equals(host);
+        }
+
+        @Override
+        protected String getEndpointURL(String serviceName) {
+            return endpointURL;
+        }
+
+        @Override
+        protected String getProperty(String propertyName) {
+            return properties.get(propertyName);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class TracerTest {
+
+    @After
+    public void tearDown() {
+        Tracer.attach(null);
+    }
+
+    @Test
+    public void testSpansWithoutTraceDoNothing() {
+        Span span = Tracer.startSpan("audit");
+
+        assertNull(span);
+        Tracer.endSpan(span);
+        assertNull(Tracer.current());
+    }
+
+    @Test
+    public void testSpansAreAddedToCurrentTrace() {
+        Trace trace = new Trace("RespondingGateway_Service");
+        Tracer.attach(trace);
+
+        Span span = Tracer.startSpan("policy");
+        assertFalse(span.isEnded());
+        Tracer.endSpan(span);
+
+        assertTrue(span.isEnded());
+        assertTrue(span.getDurationNanos() >= 0);
+        assertEquals(1, trace.getSpans().size());
+        assertSame(span, trace.getSpans().get(0));
+    }
+
+    @Test
+    public void testWrapWithoutTraceReturnsTask() {
+        Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        };
+
+        assertSame(task, Tracer.wrap(task));
+    }
+
+    @Test
+    public void testWrapCarriesTraceToWorkerThread() throws Exception {
+        final Trace trace = new Trace("EntityDocQuery");
+        Tracer.attach(trace);
+
+        FutureTask<Trace> task = new FutureTask<Trace>(Tracer.wrap(new Callable<Trace>() {
+            @Override
+            public Trace call() {
+                Tracer.endSpan(Tracer.startSpan("outbound", "respondingGatewayCrossGatewayQuery"));
+                return Tracer.current();
+            }
+        }));
+        Thread worker = new Thread(task, "worker");
+        worker.start();
+
+        assertSame(trace, task.get());
+        List<Span> spans = trace.getSpans();
+        assertEquals(1, spans.size());
+        assertEquals("worker", spans.get(0).getThread());
+        assertEquals("respondingGatewayCrossGatewayQuery", spans.get(0).getDetail());
+    }
+
+    @Test
+    public void testToJson() {
+        Trace trace = new Trace("Doc\"Query\"");
+        trace.endSpan(trace.startSpan("db", null));
+        trace.startSpan("outbound", "line\nbreak");
+        trace.end();
+
+        String json = trace.toJson();
+        assertTrue(json.startsWith("{\"id\":\"" + trace.getId() + "\",\"name\":\"Doc\\\"Query\\\"\""));
+        assertTrue(json.contains("{\"name\":\"db\",\"thread\":"));
+        assertTrue(json.contains("\"detail\":\"line\\nbreak\""));
+        assertTrue(json.endsWith("\"durationMicros\":-1}]}"));
+        assertFalse(json.contains("\n"));
+    }
+
+    @Test
+    public void testRecorderKeepsNewestTraces() {
+        TestRecorder recorder = new TestRecorder(3, 1);
+        for (int i = 0; i < 5; i++) {
+            Trace trace = new Trace("trace" + i);
+            trace.end();
+            recorder.record(trace);
+        }
+
+        List<Trace> traces = recorder.getTraces();
+        assertEquals(5, recorder.getRecordedTraces());
+        assertEquals(3, traces.size());
+        assertEquals("trace4", traces.get(0).getName());
+        assertEquals("trace3", traces.get(1).getName());
+        assertEquals("trace2", traces.get(2).getName());
+        assertEquals(3, recorder.getRecentTraces().length);
+    }
+
+    @Test
+    public void testSampleRate() {
+        assertTrue(new TestRecorder(1, 1).isSampled());
+        assertFalse(new TestRecorder(1, 0).isSampled());
+    }
+
+    private static class TestRecorder extends TraceRecorder {
+
+        private final double sampleRate;
+
+        TestRecorder(int bufferSize, double sampleRate) {
+            super(bufferSize);
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        protected double readSampleRate() {
+            return sampleRate;
+        }
+    }
+}
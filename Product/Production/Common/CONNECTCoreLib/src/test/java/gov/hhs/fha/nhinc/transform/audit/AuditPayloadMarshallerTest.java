@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.transform.audit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBException;
+
+import org.hl7.v3.II;
+import org.hl7.v3.MCCIMT000100UV01Sender;
+import org.hl7.v3.PRPAIN201305UV02;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class AuditPayloadMarshallerTest {
+
+    private static final String HL7_CONTEXT_NAME = "org.hl7.v3";
+
+    @Test
+    public void testMarshalledMessageMatchesUnpooledMarshaller() throws JAXBException {
+        AuditPayloadMarshaller marshaller = new AuditPayloadMarshaller(HL7_CONTEXT_NAME);
+        PRPAIN201305UV02 longMessage = createMessage("1234567890123456789012345678901234567890");
+        PRPAIN201305UV02 shortMessage = createMessage("1");
+
+        assertArrayEquals(marshalUnpooled(longMessage), marshaller.marshal(longMessage));
+        assertArrayEquals(marshalUnpooled(shortMessage), marshaller.marshal(shortMessage));
+        assertArrayEquals(marshalUnpooled(longMessage), marshaller.marshal(longMessage));
+        assertEquals(1, marshaller.getPoolSize());
+    }
+
+    @Test
+    public void testLargeMessageBufferIsNotPooled() throws JAXBException {
+        AuditPayloadMarshaller marshaller = new AuditPayloadMarshaller(HL7_CONTEXT_NAME);
+        char[] extension = new char[AuditPayloadMarshaller.MAX_POOLED_BUFFER_SIZE];
+        Arrays.fill(extension, '1');
+        PRPAIN201305UV02 largeMessage = createMessage(new String(extension));
+
+        assertArrayEquals(marshalUnpooled(largeMessage), marshaller.marshal(largeMessage));
+        assertEquals(0, marshaller.getPoolSize());
+    }
+
+    @Test
+    public void testInstanceIsSharedPerContext() {
+        assertSame(AuditPayloadMarshaller.getInstance(HL7_CONTEXT_NAME),
+                AuditPayloadMarshaller.getInstance(HL7_CONTEXT_NAME));
+    }
+
+    private byte[] marshalUnpooled(Object message) throws JAXBException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JAXBContextHandler().getJAXBContext(HL7_CONTEXT_NAME).createMarshaller().marshal(message, out);
+        return out.toByteArray();
+    }
+
+    private PRPAIN201305UV02 createMessage(String extension) {
+        II id = new II();
+        id.setRoot("2.16.840.1.113883.3.200");
+        id.setExtension(extension);
+        MCCIMT000100UV01Sender sender = new MCCIMT000100UV01Sender();
+        sender.setTypeId(id);
+
+        PRPAIN201305UV02 message = new PRPAIN201305UV02();
+        message.setId(id);
+        message.setSender(sender);
+        return message;
+    }
+}
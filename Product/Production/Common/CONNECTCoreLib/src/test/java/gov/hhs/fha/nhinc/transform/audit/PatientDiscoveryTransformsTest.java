@@ -38,9 +38,11 @@ import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
 import gov.hhs.fha.nhinc.common.nhinccommon.PersonNameType;
 import gov.hhs.fha.nhinc.common.nhinccommon.UserType;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
 import gov.hhs.fha.nhinc.transform.subdisc.HL7AckTransforms;
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.xml.bind.JAXBElement;
 import junit.framework.Assert;
@@ -655,6 +657,43 @@ public class PatientDiscoveryTransformsTest {
 
     }
 
+    @Test
+    public void testTransformPRPAIN201306ResponseToAuditMsgCopiesResponseForEachPatient() throws Exception {
+        PatientDiscoveryTransforms testSubject = getResponseTransformsWithTwoPatients(true);
+        PRPAIN201306UV02 response = getTestPatientDiscoveryResponse();
+
+        LogEventRequestType result = testSubject.transformPRPAIN201306ResponseToAuditMsg(response,
+                getTestAssertion(), NhincConstants.AUDIT_LOG_OUTBOUND_DIRECTION,
+                NhincConstants.AUDIT_LOG_NHIN_INTERFACE, NhincConstants.AUDIT_LOG_SYNC_TYPE);
+
+        context.assertIsSatisfied();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new JAXBContextHandler().getJAXBContext("org.hl7.v3").createMarshaller().marshal(response, expected);
+        List<ParticipantObjectIdentificationType> participantObjects = result.getAuditMessage()
+                .getParticipantObjectIdentification();
+        Assert.assertEquals(2, participantObjects.size());
+        Assert.assertTrue(Arrays.equals(expected.toByteArray(), participantObjects.get(0).getParticipantObjectQuery()));
+        Assert.assertTrue(Arrays.equals(expected.toByteArray(), participantObjects.get(1).getParticipantObjectQuery()));
+    }
+
+    @Test
+    public void testTransformPRPAIN201306ResponseToAuditMsgWithoutMessagePayload() {
+        PatientDiscoveryTransforms testSubject = getResponseTransformsWithTwoPatients(false);
+
+        LogEventRequestType result = testSubject.transformPRPAIN201306ResponseToAuditMsg(
+                getTestPatientDiscoveryResponse(), getTestAssertion(), NhincConstants.AUDIT_LOG_OUTBOUND_DIRECTION,
+                NhincConstants.AUDIT_LOG_NHIN_INTERFACE, NhincConstants.AUDIT_LOG_SYNC_TYPE);
+
+        context.assertIsSatisfied();
+
+        List<ParticipantObjectIdentificationType> participantObjects = result.getAuditMessage()
+                .getParticipantObjectIdentification();
+        Assert.assertEquals(2, participantObjects.size());
+        Assert.assertNull(participantObjects.get(0).getParticipantObjectQuery());
+        Assert.assertNull(participantObjects.get(1).getParticipantObjectQuery());
+    }
+
     @Test
     public void testTransformPRPAIN201306ResponseToAuditMsgWillFailForNullRequiredFields() {
         final Log mockLogger = context.mock(Log.class);
@@ -1323,6 +1362,66 @@ public class PatientDiscoveryTransformsTest {
         Assert.assertNotNull(auditMsg.getAuditMessage());
     }
 
+    private PatientDiscoveryTransforms getResponseTransformsWithTwoPatients(final boolean messagePayloadAudited) {
+        final Log mockLogger = context.mock(Log.class);
+        final List<II> patientIds = new ArrayList<II>();
+        for (String extension : new String[] { "1111", "2222" }) {
+            II patientId = new II();
+            patientId.setExtension(extension);
+            patientId.setRoot("2.2.2.2");
+            patientIds.add(patientId);
+        }
+
+        context.checking(new Expectations() {
+
+            {
+                allowing(mockLogger).info(with(any(String.class)));
+                allowing(mockLogger).debug(with(any(String.class)));
+            }
+        });
+
+        return new PatientDiscoveryTransforms() {
+            @Override
+            protected Log createLogger() {
+                return mockLogger;
+            }
+
+            @Override
+            protected List<II> getHL7IdentitiersFromResponse(PRPAIN201306UV02 oPatientDiscoveryResponseMessage) {
+                return patientIds;
+            }
+
+            @Override
+            protected boolean areRequired201306fieldsNull(PRPAIN201306UV02 oPatientDiscoveryResponseMessage,
+                    AssertionType oAssertion) {
+                return false;
+            }
+
+            @Override
+            protected boolean isMessagePayloadAudited() {
+                return messagePayloadAudited;
+            }
+        };
+    }
+
+    private PRPAIN201306UV02 getTestPatientDiscoveryResponse() {
+        MCCIMT000300UV01Sender sender = new MCCIMT000300UV01Sender();
+        II typeId = new II();
+        typeId.setRoot("2.16.840.1.113883.3.200");
+        sender.setTypeId(typeId);
+
+        PRPAIN201306UV02 response = new PRPAIN201306UV02();
+        response.setSender(sender);
+        response.setControlActProcess(new PRPAIN201306UV02MFMIMT700711UV01ControlActProcess());
+        return response;
+    }
+
+    private AssertionType getTestAssertion() {
+        AssertionType assertion = new AssertionType();
+        assertion.setUserInfo(getTestUserType());
+        return assertion;
+    }
+
     private UserType getTestUserType() {
         PersonNameType personName = new PersonNameType();
         HomeCommunityType home = new HomeCommunityType();
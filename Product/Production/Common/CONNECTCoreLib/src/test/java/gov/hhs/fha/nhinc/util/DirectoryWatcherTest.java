@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class DirectoryWatcherTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final BlockingQueue<String> changes = new LinkedBlockingQueue<String>();
+    private File directory;
+    private DirectoryWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("DirectoryWatcherTest", "");
+        directory.delete();
+        directory.mkdir();
+        watcher = new DirectoryWatcher("DirectoryWatcherTest-watcher", new DirectoryWatcher.Listener() {
+            @Override
+            public void fileChanged(Path dir, String fileName) {
+                changes.add(fileName == null ? "" : fileName);
+            }
+        }, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testListenerIsToldAboutNewFiles() throws Exception {
+        assertFalse(watcher.isRunning());
+        watcher.watch(directory.toPath());
+        watcher.watch(directory.getAbsoluteFile().toPath());
+        assertTrue(watcher.isRunning());
+
+        writeFile("first.xml");
+        assertEquals("first.xml", nextChange());
+    }
+
+    @Test
+    public void testStopEndsTheThread() throws Exception {
+        watcher.watch(directory.toPath());
+        Thread thread = findThread("DirectoryWatcherTest-watcher");
+        assertNotNull(thread);
+
+        watcher.stop();
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        assertFalse(thread.isAlive());
+        assertFalse(watcher.isRunning());
+
+        watcher.stop();
+        writeFile("ignored.xml");
+        assertNull(changes.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWatchAfterStopStartsAgain() throws Exception {
+        watcher.watch(directory.toPath());
+        watcher.stop();
+
+        watcher.watch(directory.toPath());
+        assertTrue(watcher.isRunning());
+        writeFile("second.xml");
+        assertEquals("second.xml", nextChange());
+    }
+
+    private String nextChange() throws InterruptedException {
+        String change = changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        // Writing a file may be reported as a creation followed by changes
+        while (change != null && change.length() == 0) {
+            change = changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        return change;
+    }
+
+    private Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private void writeFile(String name) throws IOException {
+        FileWriter writer = new FileWriter(new File(directory, name));
+        try {
+            writer.write("<Configuration/>");
+        } finally {
+            writer.close();
+        }
+    }
+}
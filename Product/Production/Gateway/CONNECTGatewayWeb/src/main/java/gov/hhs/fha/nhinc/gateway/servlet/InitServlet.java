@@ -26,7 +26,11 @@
  */
 package gov.hhs.fha.nhinc.gateway.servlet;
 
+import gov.hhs.fha.nhinc.callback.cxf.CertificateTrustCache;
 import gov.hhs.fha.nhinc.gateway.executorservice.ExecutorServiceHelper;
+import gov.hhs.fha.nhinc.gateway.warmup.GatewayWarmUp;
+import gov.hhs.fha.nhinc.logging.transaction.TransactionStore;
+import gov.hhs.fha.nhinc.proxy.ApplicationContextRegistry;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -49,6 +53,11 @@ import org.apache.commons.logging.LogFactory;
  * 3. Also creates a second largeJobExecutor with a fixed size thread pool (largeJobExecutor is used for TaskExecutors
  * that get a callable list of size comparable to the size of the main ExecutorService)
  * 
+ * 4. Starts the GatewayWarmUp on the main ExecutorService (once per gateway)
+ * 
+ * 5. On shutdown, stops the threads watching the proxy configuration files and the key and trust stores, and the
+ * transaction record writer
+ * 
  * @author paul.eftis
  */
 public class InitServlet extends HttpServlet {
@@ -66,6 +75,7 @@ public class InitServlet extends HttpServlet {
         executor = Executors.newFixedThreadPool(ExecutorServiceHelper.getInstance().getExecutorPoolSize());
         largeJobExecutor = Executors.newFixedThreadPool(ExecutorServiceHelper.getInstance()
                 .getLargeJobExecutorPoolSize());
+        GatewayWarmUp.getInstance().start(executor);
     }
 
     public static ExecutorService getExecutorService() {
@@ -91,6 +101,9 @@ public class InitServlet extends HttpServlet {
             } catch (Exception e) {
             }
         }
+        ApplicationContextRegistry.stopWatching();
+        CertificateTrustCache.stopWatching();
+        TransactionStore.shutdownInstance();
     }
 
 }
@@ -27,6 +27,7 @@
 package gov.hhs.fha.nhinc.gateway.servlet;
 
 import gov.hhs.fha.nhinc.gateway.executorservice.ExecutorServiceHelper;
+import gov.hhs.fha.nhinc.gateway.warmup.GatewayWarmUp;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -54,6 +55,8 @@ import org.apache.commons.logging.LogFactory;
  * (largeJobExecutor is used for TaskExecutors that get a callable list of size
  * comparable to the size of the main ExecutorService)
  *
+ * 4. Starts the GatewayWarmUp on the main ExecutorService (once per gateway)
+ *
  * @author paul.eftis
  */
 public class InitServlet extends HttpServlet{
@@ -76,6 +79,7 @@ public class InitServlet extends HttpServlet{
         log.debug("InitServlet start...");
         executor = Executors.newFixedThreadPool(ExecutorServiceHelper.getInstance().getExecutorPoolSize());
         largeJobExecutor = Executors.newFixedThreadPool(ExecutorServiceHelper.getInstance().getLargeJobExecutorPoolSize());
+        GatewayWarmUp.getInstance().start(executor);
     }
 
 
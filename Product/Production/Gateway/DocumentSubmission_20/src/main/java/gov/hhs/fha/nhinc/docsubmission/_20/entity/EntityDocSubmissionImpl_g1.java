@@ -33,6 +33,7 @@ import gov.hhs.fha.nhinc.common.nhinccommonentity.RespondingGatewayProvideAndReg
 import gov.hhs.fha.nhinc.common.nhinccommonentity.RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType;
 import gov.hhs.fha.nhinc.cxf.extraction.SAML2AssertionExtractor;
 import gov.hhs.fha.nhinc.docsubmission.entity.EntityDocSubmissionOrchImpl;
+import gov.hhs.fha.nhinc.gateway.servlet.InitServlet;
 import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType;
 
 import javax.xml.ws.WebServiceContext;
@@ -87,7 +88,8 @@ class EntityDocSubmissionImpl_g1 {
     }
 
     private EntityDocSubmissionOrchImpl createEntityDocSubmissionOrchImpl() {
-        return new EntityDocSubmissionOrchImpl();
+        return new EntityDocSubmissionOrchImpl(InitServlet.getExecutorService(),
+                InitServlet.getLargeJobExecutorService());
     }
 
 }
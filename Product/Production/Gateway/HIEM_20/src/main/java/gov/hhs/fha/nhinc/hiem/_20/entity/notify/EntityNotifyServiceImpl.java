@@ -29,6 +29,7 @@ package gov.hhs.fha.nhinc.hiem._20.entity.notify;
 import gov.hhs.fha.nhinc.common.nhinccommon.AcknowledgementType;
 import gov.hhs.fha.nhinc.common.nhinccommonentity.NotifyRequestType;
 import gov.hhs.fha.nhinc.cxf.extraction.SAML2AssertionExtractor;
+import gov.hhs.fha.nhinc.gateway.servlet.InitServlet;
 import gov.hhs.fha.nhinc.hiem.dte.SoapUtil;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.notify.entity.EntityNotifyOrchImpl;
@@ -54,7 +55,8 @@ public class EntityNotifyServiceImpl {
         try {
             String rawNotifyXml = new SoapUtil().extractSoapMessage(context, NhincConstants.HTTP_REQUEST_ATTRIBUTE_SOAPMESSAGE);
 
-            EntityNotifyOrchImpl processor = new EntityNotifyOrchImpl();
+            EntityNotifyOrchImpl processor = new EntityNotifyOrchImpl(InitServlet.getExecutorService(),
+                    InitServlet.getLargeJobExecutorService());
             processor.processNotify(notifyRequest.getNotify(), notifyRequest.getAssertion(), rawNotifyXml);
         } catch (Throwable t) {
             log.error("Exception encountered processing notify message: " + t.getMessage(), t);
@@ -69,7 +71,8 @@ public class EntityNotifyServiceImpl {
 
         try {
             String rawNotifyXml = new SoapUtil().extractSoapMessage(context, NhincConstants.HTTP_REQUEST_ATTRIBUTE_SOAPMESSAGE);
-            EntityNotifyOrchImpl processor = new EntityNotifyOrchImpl();
+            EntityNotifyOrchImpl processor = new EntityNotifyOrchImpl(InitServlet.getExecutorService(),
+                    InitServlet.getLargeJobExecutorService());
             processor.processNotify(notifyRequest, SAML2AssertionExtractor.getInstance().extractSamlAssertion(context), rawNotifyXml);
         } catch (Throwable t) {
             log.error("Exception encountered processing notify message: " + t.getMessage(), t);
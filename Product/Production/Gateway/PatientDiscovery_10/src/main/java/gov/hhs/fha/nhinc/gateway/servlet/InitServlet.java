@@ -27,6 +27,7 @@
 package gov.hhs.fha.nhinc.gateway.servlet;
 
 import gov.hhs.fha.nhinc.gateway.executorservice.ExecutorServiceHelper;
+import gov.hhs.fha.nhinc.gateway.warmup.GatewayWarmUp;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -47,6 +48,8 @@ import org.apache.commons.logging.LogFactory;
  * 3. Also creates a second largeJobExecutor with a fixed size thread pool (largeJobExecutor is used for TaskExecutors
  * that get a callable list of size comparable to the size of the main ExecutorService)
  * 
+ * 4. Starts the GatewayWarmUp on the main ExecutorService (once per gateway)
+ * 
  * @author paul.eftis
  */
 public class InitServlet extends HttpServlet {
@@ -69,6 +72,7 @@ public class InitServlet extends HttpServlet {
         executor = Executors.newFixedThreadPool(ExecutorServiceHelper.getInstance().getExecutorPoolSize());
         largeJobExecutor = Executors.newFixedThreadPool(ExecutorServiceHelper.getInstance()
                 .getLargeJobExecutorPoolSize());
+        GatewayWarmUp.getInstance().start(executor);
     }
 
     public static ExecutorService getExecutorService() {
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.ConnectionManagerDAOBase;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+
+import org.uddi.api_v3.AccessPoint;
+import org.uddi.api_v3.BindingTemplate;
+import org.uddi.api_v3.BindingTemplates;
+import org.uddi.api_v3.BusinessDetail;
+import org.uddi.api_v3.BusinessEntity;
+import org.uddi.api_v3.BusinessService;
+import org.uddi.api_v3.BusinessServices;
+import org.uddi.api_v3.CategoryBag;
+import org.uddi.api_v3.IdentifierBag;
+import org.uddi.api_v3.KeyedReference;
+import org.uddi.api_v3.Name;
+
+/**
+ * Writes the uddiConnectionInfo.xml and internalConnectionInfo.xml files that point the gateway at the stub gateways.
+ * The UDDI file lists only the stubs. The internal file keeps the entries of an existing internal file, so the
+ * gateway still finds its own adapters, and replaces any entries for the stub home community ids.
+ *
+ * @author dharley
+ */
+public class ConnectionInfoGenerator extends ConnectionManagerDAOBase {
+
+    public static final String UDDI_FILE_NAME = "uddiConnectionInfo.xml";
+    public static final String INTERNAL_FILE_NAME = "internalConnectionInfo.xml";
+
+    private static final String HOME_COMMUNITY_ID_KEY = "uddi:nhin:nhie:homecommunityid";
+
+    /**
+     * Writes both connection information files.
+     *
+     * @param stubs the stub gateways
+     * @param template the internal connection information to keep, or null to write the stubs only
+     * @param dir the directory to write the files to
+     * @throws JAXBException if the template cannot be read
+     */
+    public void generate(List<StubGateway> stubs, File template, File dir) throws JAXBException {
+        BusinessDetail uddi = new BusinessDetail();
+        addStubs(uddi, stubs);
+        saveBusinessDetail(uddi, new File(dir, UDDI_FILE_NAME));
+
+        BusinessDetail internal = template != null && template.exists() ? loadBusinessDetail(template)
+                : new BusinessDetail();
+        removeStubs(internal, stubs);
+        addStubs(internal, stubs);
+        saveBusinessDetail(internal, new File(dir, INTERNAL_FILE_NAME));
+    }
+
+    /**
+     * @param stub a stub gateway
+     * @return the business entity describing the stub
+     */
+    BusinessEntity createBusinessEntity(StubGateway stub) {
+        String hcid = stub.getHomeCommunityId();
+
+        BusinessEntity businessEntity = new BusinessEntity();
+        businessEntity.setBusinessKey("uddi:nhincnode:" + hcid);
+        businessEntity.getName().add(createName("Load Test Stub " + hcid));
+
+        BusinessServices businessServices = new BusinessServices();
+        for (NhinService service : NhinService.values()) {
+            businessServices.getBusinessService().add(createBusinessService(service, stub.getServiceUrl(service)));
+        }
+        businessEntity.setBusinessServices(businessServices);
+
+        IdentifierBag identifierBag = new IdentifierBag();
+        identifierBag.getKeyedReference().add(createKeyedReference(HOME_COMMUNITY_ID_KEY, "", hcid));
+        businessEntity.setIdentifierBag(identifierBag);
+
+        return businessEntity;
+    }
+
+    private BusinessService createBusinessService(NhinService service, String endpoint) {
+        String serviceName = service.getServiceName();
+
+        BusinessService businessService = new BusinessService();
+        businessService.setServiceKey("uddi:nhincnode:" + serviceName);
+        businessService.getName().add(createName(serviceName));
+
+        BindingTemplate bindingTemplate = new BindingTemplate();
+        bindingTemplate.setBindingKey("uddi:nhincnode:" + serviceName);
+        bindingTemplate.setServiceKey("uddi:nhincnode:" + serviceName);
+
+        AccessPoint accessPoint = new AccessPoint();
+        accessPoint.setUseType("endPoint");
+        accessPoint.setValue(endpoint);
+        bindingTemplate.setAccessPoint(accessPoint);
+
+        CategoryBag serviceVersionCategoryBag = new CategoryBag();
+        for (String version : service.getVersions()) {
+            serviceVersionCategoryBag.getKeyedReference().add(
+                    createKeyedReference("uddi:nhin:versionofservice", "", version));
+        }
+        bindingTemplate.setCategoryBag(serviceVersionCategoryBag);
+
+        BindingTemplates bindingTemplates = new BindingTemplates();
+        bindingTemplates.getBindingTemplate().add(bindingTemplate);
+        businessService.setBindingTemplates(bindingTemplates);
+
+        CategoryBag serviceNameCategoryBag = new CategoryBag();
+        serviceNameCategoryBag.getKeyedReference().add(
+                createKeyedReference("uddi:nhin:standard-servicenames", serviceName, serviceName));
+        businessService.setCategoryBag(serviceNameCategoryBag);
+
+        return businessService;
+    }
+
+    private void addStubs(BusinessDetail businessDetail, List<StubGateway> stubs) {
+        for (StubGateway stub : stubs) {
+            businessDetail.getBusinessEntity().add(createBusinessEntity(stub));
+        }
+    }
+
+    private void removeStubs(BusinessDetail businessDetail, List<StubGateway> stubs) {
+        Set<String> stubIds = new HashSet<String>();
+        for (StubGateway stub : stubs) {
+            stubIds.add(stub.getHomeCommunityId());
+        }
+
+        Iterator<BusinessEntity> entities = businessDetail.getBusinessEntity().iterator();
+        while (entities.hasNext()) {
+            String hcid = getHomeCommunityId(entities.next());
+            if (hcid != null && stubIds.contains(hcid)) {
+                entities.remove();
+            }
+        }
+    }
+
+    private String getHomeCommunityId(BusinessEntity businessEntity) {
+        if (businessEntity.getIdentifierBag() == null) {
+            return null;
+        }
+        for (KeyedReference reference : businessEntity.getIdentifierBag().getKeyedReference()) {
+            if (HOME_COMMUNITY_ID_KEY.equals(reference.getTModelKey())) {
+                return reference.getKeyValue();
+            }
+        }
+        return null;
+    }
+
+    private Name createName(String value) {
+        Name name = new Name();
+        name.setValue(value);
+        name.setLang("en");
+        return name;
+    }
+
+    private KeyedReference createKeyedReference(String tModelKey, String keyName, String keyValue) {
+        KeyedReference keyedReference = new KeyedReference();
+        keyedReference.setTModelKey(tModelKey);
+        keyedReference.setKeyName(keyName);
+        keyedReference.setKeyValue(keyValue);
+        return keyedReference;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Counts the rows of the CONNECT tables. The tables are named by database and table as in nhincdb.sql, which works
+ * against both MySQL and the embedded database.
+ *
+ * @author dharley
+ */
+public class DatabaseMonitor {
+
+    private static Log log = LogFactory.getLog(DatabaseMonitor.class);
+
+    static final String[] TABLES = {
+        "aggregator.agg_transaction",
+        "aggregator.agg_message_results",
+        "assigningauthoritydb.aa_to_home_community_mapping",
+        "auditrepo.auditrepository",
+        "docrepository.document",
+        "docrepository.eventcode",
+        "patientcorrelationdb.correlatedidentifiers",
+        "patientcorrelationdb.pddeferredcorrelation",
+        "subscriptionrepository.subscription",
+        "asyncmsgs.asyncmsgrepo",
+        "logging.log",
+        "patientdb.patient",
+        "patientdb.identifier",
+        "patientdb.personname",
+        "patientdb.address",
+        "patientdb.phonenumber",
+        "perfrepo.perfrepository",
+        "transrepo.transactionrepository" };
+
+    private final Connection connection;
+
+    /**
+     * @param connection the connection to count rows with
+     */
+    public DatabaseMonitor(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Counts the rows of every table. A table that cannot be read, e.g. because it is not installed, is left out.
+     *
+     * @return the row counts by table, in the order of nhincdb.sql
+     */
+    public Map<String, Long> countRows() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (String table : TABLES) {
+            try {
+                counts.put(table, countRows(table));
+            } catch (SQLException ex) {
+                log.warn("Unable to count the rows of " + table + ": " + ex.getMessage());
+            }
+        }
+        return counts;
+    }
+
+    private long countRows(String table) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table);
+            result.next();
+            return result.getLong(1);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @param table a table named by database and table
+     * @return the database the table belongs to
+     */
+    static String getSchema(String table) {
+        return table.substring(0, table.indexOf('.'));
+    }
+}
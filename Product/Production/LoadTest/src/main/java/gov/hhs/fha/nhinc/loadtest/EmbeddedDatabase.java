@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import gov.hhs.fha.nhinc.dbscripts.Migration;
+import gov.hhs.fha.nhinc.dbscripts.MigrationRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.h2.tools.RunScript;
+import org.h2.tools.Server;
+
+/**
+ * An in-memory H2 database holding the CONNECT schemas, served over TCP so the gateway can use it in place of MySQL.
+ * The schemas are created from the DBScripts and brought up to the latest migration, so they carry the same indexes
+ * as an installed gateway. The database lives as long as the harness, so every run starts from empty tables.
+ *
+ * @author dharley
+ */
+public class EmbeddedDatabase {
+
+    private static Log log = LogFactory.getLog(EmbeddedDatabase.class);
+
+    private static final String SCHEMA_SCRIPT = "/nhincdb/nhincdb_h2.sql";
+
+    private final int port;
+    private final String user;
+    private final String password;
+    private Server server;
+    private Connection connection;
+
+    /**
+     * @param port the TCP port of the database
+     * @param user the database user
+     * @param password the database password
+     */
+    public EmbeddedDatabase(int port, String user, String password) {
+        this.port = port;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * @return the url the gateway data sources use, without the schema setting
+     */
+    public String getUrl() {
+        return "jdbc:h2:tcp://localhost:" + port + "/mem:connect;MODE=MySQL";
+    }
+
+    /**
+     * Starts the database, creates the CONNECT schemas and applies the migrations.
+     *
+     * @throws SQLException if the database cannot be started
+     * @throws IOException if the schema or migration scripts cannot be read
+     */
+    public void start() throws SQLException, IOException {
+        server = Server.createTcpServer("-tcpPort", String.valueOf(port)).start();
+
+        // the connection is held open for the whole run, which keeps the in-memory database alive
+        connection = DriverManager.getConnection(getUrl(), user, password);
+        InputStream in = EmbeddedDatabase.class.getResourceAsStream(SCHEMA_SCRIPT);
+        if (in == null) {
+            throw new IOException("Schema script " + SCHEMA_SCRIPT + " was not found");
+        }
+        try {
+            RunScript.execute(connection, new InputStreamReader(in, MessageTemplate.UTF8));
+        } finally {
+            in.close();
+        }
+        new MigrationRunner(connection, Migration.load(MigrationRunner.DEFAULT_LOCATION)).migrate();
+        log.info("Started the embedded database at " + getUrl());
+    }
+
+    /**
+     * @return the connection held by the harness
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Stops the database. Its contents are lost.
+     */
+    public void stop() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                log.warn("Unable to close the embedded database connection", ex);
+            }
+            connection = null;
+        }
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+/**
+ * The entity interfaces of the gateway driven by the harness. The name of each value is the name used in the load
+ * mix, and its request template is read from requests/&lt;name&gt;.xml.
+ *
+ * @author dharley
+ */
+public enum EntityService {
+
+    PatientDiscovery("/Gateway/PatientDiscovery/1_0/EntityPatientDiscovery",
+            "urn:RespondingGateway_PRPA_IN201305UV02"),
+    QueryForDocuments("/Gateway/DocumentQuery/2_0/EntityService/EntityDocQueryUnsecured",
+            "urn:RespondingGateway_CrossGatewayQuery"),
+    RetrieveDocuments("/Gateway/DocumentRetrieve/2_0/EntityService/EntityDocRetrieve",
+            "urn:RespondingGateway_CrossGatewayRetrieve"),
+    DocSubmission("/Gateway/DocumentSubmission/2_0/EntityService/EntityDocSubmissionUnsecured", null),
+    Subscribe("/Gateway/HIEM/2_0/EntityNotificationProducer", "urn:Subscribe");
+
+    private final String path;
+    private final String soapAction;
+
+    private EntityService(String path, String soapAction) {
+        this.path = path;
+        this.soapAction = soapAction;
+    }
+
+    /**
+     * @return the path of the entity interface below the gateway url
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the SOAP action of the request, or null if the interface does not use one
+     */
+    public String getSoapAction() {
+        return soapAction;
+    }
+
+    /**
+     * @return the classpath resource holding the request template
+     */
+    public String getTemplateResource() {
+        return "/requests/" + name() + ".xml";
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sends entity requests to the gateway at a fixed rate. The requests are scheduled open loop: a request is sent when
+ * it is due whether or not the earlier requests have been answered, and its latency is measured from the time it was
+ * due. A gateway that falls behind therefore shows its queueing time in the latencies instead of slowing the load.
+ *
+ * @author dharley
+ */
+public class LoadDriver {
+
+    private static Log log = LogFactory.getLog(LoadDriver.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 300000;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LoadTestConfiguration configuration;
+    private final List<String> targetHomeCommunityIds;
+    private final Map<EntityService, MessageTemplate> templates = new EnumMap<EntityService, MessageTemplate>(
+            EntityService.class);
+    private final Map<EntityService, LatencyRecorder> recorders = new EnumMap<EntityService, LatencyRecorder>(
+            EntityService.class);
+    private final EntityService[] mix;
+    private long measuredNanos;
+
+    /**
+     * @param configuration the load test settings
+     * @param targetHomeCommunityIds the home community ids the requests are sent to, in turn
+     * @throws IOException if the request templates cannot be read
+     */
+    public LoadDriver(LoadTestConfiguration configuration, List<String> targetHomeCommunityIds) throws IOException {
+        this.configuration = configuration;
+        this.targetHomeCommunityIds = new ArrayList<String>(targetHomeCommunityIds);
+
+        Map<EntityService, Integer> weights = parseMix(configuration.getLoadMix());
+        List<EntityService> mixList = new ArrayList<EntityService>();
+        for (Map.Entry<EntityService, Integer> weight : weights.entrySet()) {
+            templates.put(weight.getKey(), MessageTemplate.load(weight.getKey().getTemplateResource()));
+            recorders.put(weight.getKey(), new LatencyRecorder());
+            mixList.addAll(Collections.nCopies(weight.getValue(), weight.getKey()));
+        }
+        mix = mixList.toArray(new EntityService[mixList.size()]);
+    }
+
+    /**
+     * Parses a load mix such as "PatientDiscovery:40,QueryForDocuments:60".
+     *
+     * @param mix the load mix
+     * @return the weight of each request, in the order given
+     */
+    static Map<EntityService, Integer> parseMix(String mix) {
+        Map<EntityService, Integer> weights = new LinkedHashMap<EntityService, Integer>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Load mix entry " + entry
+                        + " is not of the form <request>:<weight>");
+            }
+            EntityService service;
+            int weight;
+            try {
+                service = EntityService.valueOf(parts[0].trim());
+                weight = Integer.parseInt(parts[1].trim());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Load mix entry " + entry + " is not valid", ex);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Load mix entry " + entry + " has a negative weight");
+            }
+            if (weight > 0) {
+                weights.put(service, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Load mix " + mix + " does not send any requests");
+        }
+        return weights;
+    }
+
+    /**
+     * Runs the warm up and the measured load. Returns when every request has been answered.
+     *
+     * @throws InterruptedException if the harness is interrupted
+     */
+    public void run() throws InterruptedException {
+        long interval = (long) (NANOS_PER_SECOND / configuration.getLoadRate());
+        Random random = new Random(configuration.getLoadSeed());
+        ExecutorService workers = Executors.newFixedThreadPool(configuration.getLoadThreads());
+
+        long start = System.nanoTime();
+        long warmupEnd = start + configuration.getLoadWarmupSeconds() * NANOS_PER_SECOND;
+        long end = warmupEnd + configuration.getLoadDurationSeconds() * NANOS_PER_SECOND;
+        log.info("Warming up for " + configuration.getLoadWarmupSeconds() + " seconds at "
+                + configuration.getLoadRate() + " requests per second");
+
+        boolean measuring = false;
+        long next = start;
+        long sequence = 0;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            if (!measuring && next >= warmupEnd) {
+                measuring = true;
+                log.info("Measuring for " + configuration.getLoadDurationSeconds() + " seconds");
+            }
+
+            EntityService service = mix[random.nextInt(mix.length)];
+            String target = targetHomeCommunityIds.get((int) (sequence++ % targetHomeCommunityIds.size()));
+            workers.execute(new Request(service, target, next, measuring));
+            next += interval;
+        }
+
+        workers.shutdown();
+        while (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.info("Waiting for the outstanding requests to be answered");
+        }
+        measuredNanos = System.nanoTime() - warmupEnd;
+    }
+
+    /**
+     * @return the recorders of the measured requests, by entity service
+     */
+    public Map<EntityService, LatencyRecorder> getRecorders() {
+        return Collections.unmodifiableMap(recorders);
+    }
+
+    /**
+     * @return the time from the end of the warm up until the last request was answered, in nanoseconds
+     */
+    public long getMeasuredNanos() {
+        return measuredNanos;
+    }
+
+    private byte[] createMessage(EntityService service, String target) {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("localHomeCommunityId", configuration.getGatewayHomeCommunityId());
+        values.put("targetHomeCommunityId", target);
+        values.put("patientId", configuration.getLoadPatientId());
+        values.put("documentId", configuration.getLoadDocumentId());
+        values.put("notificationEndpoint", configuration.getLoadNotificationEndpoint());
+        values.put("messageId", UUID.randomUUID().toString());
+        return templates.get(service).fill(values).getBytes(MessageTemplate.UTF8);
+    }
+
+    /**
+     * Posts a message to an entity interface.
+     *
+     * @return true if the gateway answered with HTTP 200
+     */
+    private boolean send(EntityService service, byte[] message) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(configuration.getGatewayUrl() + service.getPath())
+                .openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        String contentType = "application/soap+xml; charset=UTF-8";
+        if (service.getSoapAction() != null) {
+            contentType += "; action=\"" + service.getSoapAction() + "\"";
+        }
+        connection.setRequestProperty("Content-Type", contentType);
+
+        // the body is buffered so it is sent with the headers; streaming it separately stalls each request on a
+        // delayed acknowledgement, which would show up in every latency
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(message);
+        } finally {
+            out.close();
+        }
+
+        // the response is read to the end so the connection is kept alive for the next request
+        int status = connection.getResponseCode();
+        InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() : connection
+                .getErrorStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    continue;
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status == HttpURLConnection.HTTP_OK;
+    }
+
+    /**
+     * One scheduled request.
+     */
+    private class Request implements Runnable {
+
+        private final EntityService service;
+        private final String target;
+        private final long dueNanos;
+        private final boolean measured;
+
+        Request(EntityService service, String target, long dueNanos, boolean measured) {
+            this.service = service;
+            this.target = target;
+            this.dueNanos = dueNanos;
+            this.measured = measured;
+        }
+
+        @Override
+        public void run() {
+            boolean success;
+            try {
+                success = send(service, createMessage(service, target));
+            } catch (IOException ex) {
+                log.debug("Request " + service + " to " + target + " failed", ex);
+                success = false;
+            }
+
+            if (measured) {
+                LatencyRecorder recorder = recorders.get(service);
+                if (success) {
+                    recorder.record(System.nanoTime() - dueNanos);
+                } else {
+                    recorder.recordError();
+                }
+            }
+        }
+    }
+}
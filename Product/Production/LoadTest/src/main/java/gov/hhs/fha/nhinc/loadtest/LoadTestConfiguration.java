@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The settings of a load test run. The defaults are read from loadtest.properties on the classpath and may be
+ * overridden by a properties file given on the command line.
+ *
+ * @author dharley
+ */
+public class LoadTestConfiguration {
+
+    private static final String DEFAULTS = "/loadtest.properties";
+
+    private final Properties properties;
+
+    /**
+     * @param properties the settings
+     */
+    public LoadTestConfiguration(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the default settings and overlays the settings of the given file.
+     *
+     * @param file the settings file, or null to use the defaults only
+     * @return the configuration
+     * @throws IOException if a settings file cannot be read
+     */
+    public static LoadTestConfiguration load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = LoadTestConfiguration.class.getResourceAsStream(DEFAULTS);
+        if (in == null) {
+            throw new IOException("Default load test settings " + DEFAULTS + " were not found");
+        }
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        if (file != null) {
+            in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return new LoadTestConfiguration(properties);
+    }
+
+    public String getGatewayUrl() {
+        return getString("gateway.url");
+    }
+
+    public String getGatewayHomeCommunityId() {
+        return getString("gateway.homeCommunityId");
+    }
+
+    /**
+     * @return the gateway properties directory, or null if the connection information is not written to the gateway
+     */
+    public File getGatewayPropertiesDir() {
+        String dir = getString("gateway.propertiesDir");
+        return dir.isEmpty() ? null : new File(dir);
+    }
+
+    /**
+     * @return the JMX service url of the gateway, or null if the gateway threads are not sampled
+     */
+    public String getGatewayJmxUrl() {
+        String url = getString("gateway.jmxUrl");
+        return url.isEmpty() ? null : url;
+    }
+
+    public int getStubCount() {
+        return getInt("stub.count");
+    }
+
+    public String getStubHost() {
+        return getString("stub.host");
+    }
+
+    public int getStubBasePort() {
+        return getInt("stub.basePort");
+    }
+
+    public String getStubHomeCommunityIdPrefix() {
+        return getString("stub.homeCommunityIdPrefix");
+    }
+
+    public long getStubLatencyMillis() {
+        return getLong("stub.latencyMillis");
+    }
+
+    public long getStubLatencyJitterMillis() {
+        return getLong("stub.latencyJitterMillis");
+    }
+
+    public double getStubErrorRate() {
+        return getDouble("stub.errorRate");
+    }
+
+    public int getStubDocumentBytes() {
+        return getInt("stub.documentBytes");
+    }
+
+    public int getStubQueryResultCount() {
+        return getInt("stub.queryResultCount");
+    }
+
+    public String getStubPatientId() {
+        return getString("stub.patientId");
+    }
+
+    public boolean isStubSignResponses() {
+        return Boolean.parseBoolean(getString("stub.signResponses"));
+    }
+
+    public double getLoadRate() {
+        return getDouble("load.rate");
+    }
+
+    public int getLoadThreads() {
+        return getInt("load.threads");
+    }
+
+    public long getLoadWarmupSeconds() {
+        return getLong("load.warmupSeconds");
+    }
+
+    public long getLoadDurationSeconds() {
+        return getLong("load.durationSeconds");
+    }
+
+    public String getLoadMix() {
+        return getString("load.mix");
+    }
+
+    public long getLoadSeed() {
+        return getLong("load.seed");
+    }
+
+    public String getLoadPatientId() {
+        return getString("load.patientId");
+    }
+
+    public String getLoadDocumentId() {
+        return getString("load.documentId");
+    }
+
+    public String getLoadNotificationEndpoint() {
+        return getString("load.notificationEndpoint");
+    }
+
+    public boolean isDbEmbedded() {
+        return Boolean.parseBoolean(getString("db.embedded"));
+    }
+
+    public int getDbPort() {
+        return getInt("db.port");
+    }
+
+    /**
+     * @return the url of the database to count rows in, or null if only the embedded database is counted
+     */
+    public String getDbUrl() {
+        String url = getString("db.url");
+        return url.isEmpty() ? null : url;
+    }
+
+    public String getDbUser() {
+        return getString("db.user");
+    }
+
+    public String getDbPassword() {
+        return getString("db.password");
+    }
+
+    /**
+     * @return the transaction repository sizes to time message id lookups at, empty if the lookups are not timed
+     */
+    public long[] getTransactionLookupRows() {
+        String value = getString("transactionLookup.rows");
+        if (value.isEmpty()) {
+            return new long[0];
+        }
+        String[] counts = value.split(",");
+        long[] rows = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            try {
+                rows[i] = Long.parseLong(counts[i].trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Load test setting transactionLookup.rows is not a list of numbers",
+                        ex);
+            }
+        }
+        return rows;
+    }
+
+    public int getTransactionLookupCount() {
+        return getInt("transactionLookup.lookups");
+    }
+
+    public File getOutputDir() {
+        return new File(getString("output.dir"));
+    }
+
+    /**
+     * @param name the name of the setting
+     * @return the value of the setting, trimmed; an empty string if it is not set
+     */
+    public String getString(String name) {
+        String value = properties.getProperty(name);
+        return value == null ? "" : value.trim();
+    }
+
+    private int getInt(String name) {
+        try {
+            return Integer.parseInt(getString(name));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Load test setting " + name + " is not a number", ex);
+        }
+    }
+
+    private long getLong(String name) {
+        try {
+            return Long.parseLong(getString(name));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Load test setting " + name + " is not a number", ex);
+        }
+    }
+
+    private double getDouble(String name) {
+        try {
+            return Double.parseDouble(getString(name));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Load test setting " + name + " is not a number", ex);
+        }
+    }
+}
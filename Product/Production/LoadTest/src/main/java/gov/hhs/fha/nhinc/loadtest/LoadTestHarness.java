@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Runs a load test against a gateway on the same machine. The harness starts the embedded database and the stub
+ * partner gateways, points the gateway at the stubs through its connection information files, drives the entity
+ * interfaces at the configured rate and writes a report to the output directory.
+ *
+ * <pre>
+ * java -jar loadtest.jar [loadtest.properties]
+ * </pre>
+ *
+ * @author dharley
+ */
+public class LoadTestHarness {
+
+    private static Log log = LogFactory.getLog(LoadTestHarness.class);
+
+    private static final String BACKUP_SUFFIX = ".loadtest-backup";
+
+    private final LoadTestConfiguration configuration;
+    private final List<StubGateway> stubs;
+    private final List<File> backups = new ArrayList<File>();
+    private final List<File> createdFiles = new ArrayList<File>();
+    private EmbeddedDatabase database;
+    private Connection monitorConnection;
+
+    /**
+     * @param configuration the load test settings
+     */
+    public LoadTestHarness(LoadTestConfiguration configuration) {
+        this.configuration = configuration;
+        this.stubs = StubGateway.createStubs(configuration);
+    }
+
+    /**
+     * @param args the optional path of a settings file overriding the defaults
+     */
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            File settings = args.length > 0 && !args[0].trim().isEmpty() ? new File(args[0]) : null;
+            new LoadTestHarness(LoadTestConfiguration.load(settings)).run();
+        } catch (Exception ex) {
+            log.error("Load test failed", ex);
+            status = 1;
+        }
+        // the stub endpoints leave non-daemon threads behind
+        System.exit(status);
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @throws Exception if the load test cannot be set up
+     */
+    public void run() throws Exception {
+        // keep a connection open for each sending thread instead of the default five
+        System.setProperty("http.maxConnections", String.valueOf(configuration.getLoadThreads()));
+
+        try {
+            startDatabase();
+            for (StubGateway stub : stubs) {
+                stub.start();
+            }
+            writeConnectionInfo();
+
+            DatabaseMonitor databaseMonitor = monitorConnection == null ? null : new DatabaseMonitor(
+                    monitorConnection);
+            Map<String, Long> rowsBefore = databaseMonitor == null ? null : databaseMonitor.countRows();
+
+            List<String> targets = new ArrayList<String>();
+            for (StubGateway stub : stubs) {
+                targets.add(stub.getHomeCommunityId());
+            }
+            LoadDriver driver = new LoadDriver(configuration, targets);
+            ThreadMonitor threadMonitor = new ThreadMonitor(configuration.getGatewayJmxUrl());
+            threadMonitor.start();
+            try {
+                driver.run();
+            } finally {
+                threadMonitor.stop();
+            }
+
+            Map<String, Long> rowsAfter = databaseMonitor == null ? null : databaseMonitor.countRows();
+            List<TransactionLookupLoad.Step> lookupSteps = runTransactionLookups();
+            LoadTestReport report = new LoadTestReport(configuration, driver, stubs, threadMonitor, rowsBefore,
+                    rowsAfter, lookupSteps);
+            File file = report.write(configuration.getOutputDir());
+            log.info("Load test report written to " + file.getAbsolutePath() + "\n" + report);
+        } finally {
+            for (StubGateway stub : stubs) {
+                stub.stop();
+            }
+            restoreConnectionInfo();
+            stopDatabase();
+        }
+    }
+
+    private void startDatabase() throws SQLException, IOException {
+        if (configuration.isDbEmbedded()) {
+            database = new EmbeddedDatabase(configuration.getDbPort(), configuration.getDbUser(),
+                    configuration.getDbPassword());
+            database.start();
+            monitorConnection = database.getConnection();
+        } else if (configuration.getDbUrl() != null) {
+            monitorConnection = DriverManager.getConnection(configuration.getDbUrl(), configuration.getDbUser(),
+                    configuration.getDbPassword());
+        } else {
+            log.info("No database is configured, row growth is not reported");
+        }
+    }
+
+    private void stopDatabase() {
+        if (database != null) {
+            database.stop();
+        } else if (monitorConnection != null) {
+            try {
+                monitorConnection.close();
+            } catch (SQLException ex) {
+                log.warn("Unable to close the database connection", ex);
+            }
+        }
+    }
+
+    /**
+     * Times the transaction id lookups at the configured table sizes, after the load test so the added rows are not
+     * part of the row growth.
+     *
+     * @return the measured steps, or null if the lookups are not timed
+     */
+    private List<TransactionLookupLoad.Step> runTransactionLookups() throws SQLException {
+        long[] rows = configuration.getTransactionLookupRows();
+        if (rows.length == 0) {
+            return null;
+        }
+        if (monitorConnection == null) {
+            log.info("No database is configured, transaction lookups are not timed");
+            return null;
+        }
+        TransactionLookupLoad lookupLoad = new TransactionLookupLoad(monitorConnection, rows,
+                configuration.getTransactionLookupCount(), configuration.getLoadSeed());
+        lookupLoad.run();
+        return lookupLoad.getSteps();
+    }
+
+    /**
+     * Writes the stub connection information into the gateway properties directory, keeping a copy of the files it
+     * replaces so they can be restored after the run, or into the output directory when no gateway properties
+     * directory is configured.
+     */
+    private void writeConnectionInfo() throws Exception {
+        File propertiesDir = configuration.getGatewayPropertiesDir();
+        File dir = propertiesDir == null ? configuration.getOutputDir() : propertiesDir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create the directory " + dir);
+        }
+
+        File template = null;
+        if (propertiesDir != null) {
+            template = backup(new File(propertiesDir, ConnectionInfoGenerator.INTERNAL_FILE_NAME));
+            backup(new File(propertiesDir, ConnectionInfoGenerator.UDDI_FILE_NAME));
+        }
+        new ConnectionInfoGenerator().generate(stubs, template, dir);
+        log.info("Connection information for the stubs written to " + dir.getAbsolutePath());
+    }
+
+    private File backup(File file) throws IOException {
+        if (!file.exists()) {
+            createdFiles.add(file);
+            return null;
+        }
+        File backup = new File(file.getPath() + BACKUP_SUFFIX);
+        Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        backups.add(backup);
+        return backup;
+    }
+
+    private void restoreConnectionInfo() {
+        for (File backup : backups) {
+            String path = backup.getPath();
+            File original = new File(path.substring(0, path.length() - BACKUP_SUFFIX.length()));
+            try {
+                Files.move(backup.toPath(), original.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                log.error("Unable to restore " + original + " from " + backup, ex);
+            }
+        }
+        backups.clear();
+        for (File file : createdFiles) {
+            file.delete();
+        }
+        createdFiles.clear();
+    }
+}
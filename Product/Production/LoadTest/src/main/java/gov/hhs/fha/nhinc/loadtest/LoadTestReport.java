@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The text report of a load test run: latency percentiles and throughput by entity service, the requests received by
+ * the stubs, the thread counts, the row growth of each database and the transaction lookup times.
+ *
+ * @author dharley
+ */
+public class LoadTestReport {
+
+    public static final String FILE_NAME = "loadtest-report.txt";
+
+    private static final String LINE = "%-24s %10s %10s %10s %10s %10s %10s %10s%n";
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final StringBuilder report = new StringBuilder();
+
+    /**
+     * @param configuration the load test settings
+     * @param driver the driver after its run
+     * @param stubs the stub gateways
+     * @param threads the thread monitor after its run
+     * @param rowsBefore the row counts before the run, or null if the rows were not counted
+     * @param rowsAfter the row counts after the run, or null if the rows were not counted
+     * @param lookupSteps the timed transaction lookups, or null if the lookups were not timed
+     */
+    public LoadTestReport(LoadTestConfiguration configuration, LoadDriver driver, List<StubGateway> stubs,
+            ThreadMonitor threads, Map<String, Long> rowsBefore, Map<String, Long> rowsAfter,
+            List<TransactionLookupLoad.Step> lookupSteps) {
+        appendSettings(configuration);
+        appendLatencies(driver);
+        appendStubs(stubs);
+        appendThreads(threads);
+        appendRows(rowsBefore, rowsAfter);
+        appendTransactionLookups(lookupSteps);
+    }
+
+    /**
+     * Writes the report to the output directory.
+     *
+     * @param dir the output directory
+     * @return the report file
+     * @throws IOException if the report cannot be written
+     */
+    public File write(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create the output directory " + dir);
+        }
+        File file = new File(dir, FILE_NAME);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), MessageTemplate.UTF8);
+        try {
+            writer.write(report.toString());
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return report.toString();
+    }
+
+    private void appendSettings(LoadTestConfiguration configuration) {
+        report.append(String.format("CONNECT load test%n%n"));
+        report.append(String.format("Gateway:  %s%n", configuration.getGatewayUrl()));
+        report.append(String.format("Rate:     %s requests per second, %d threads%n", configuration.getLoadRate(),
+                configuration.getLoadThreads()));
+        report.append(String.format("Duration: %d seconds after %d seconds of warm up%n",
+                configuration.getLoadDurationSeconds(), configuration.getLoadWarmupSeconds()));
+        report.append(String.format("Mix:      %s%n", configuration.getLoadMix()));
+        report.append(String.format("Stubs:    %d, %d ms latency + up to %d ms jitter, %s error rate, "
+                + "%d byte documents, %d query results%n%n", configuration.getStubCount(),
+                configuration.getStubLatencyMillis(), configuration.getStubLatencyJitterMillis(),
+                configuration.getStubErrorRate(), configuration.getStubDocumentBytes(),
+                configuration.getStubQueryResultCount()));
+    }
+
+    private void appendLatencies(LoadDriver driver) {
+        double seconds = driver.getMeasuredNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+        report.append(String.format("Latency (ms)%n"));
+        report.append(String.format(LINE, "Request", "Count", "Errors", "Per sec", "p50", "p90", "p99", "Max"));
+
+        int totalCount = 0;
+        int totalErrors = 0;
+        for (Map.Entry<EntityService, LatencyRecorder> entry : driver.getRecorders().entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            long[] sorted = recorder.getSortedLatencies();
+            totalCount += sorted.length;
+            totalErrors += recorder.getErrorCount();
+            report.append(String.format(LINE, entry.getKey(), sorted.length, recorder.getErrorCount(),
+                    formatRate(sorted.length, seconds), formatMillis(LatencyRecorder.percentile(sorted, 50)),
+                    formatMillis(LatencyRecorder.percentile(sorted, 90)),
+                    formatMillis(LatencyRecorder.percentile(sorted, 99)),
+                    formatMillis(sorted.length == 0 ? 0 : sorted[sorted.length - 1])));
+        }
+        report.append(String.format(LINE, "Total", totalCount, totalErrors, formatRate(totalCount, seconds), "", "",
+                "", ""));
+        report.append(String.format("%n"));
+    }
+
+    private void appendStubs(List<StubGateway> stubs) {
+        Map<NhinService, long[]> totals = new EnumMap<NhinService, long[]>(NhinService.class);
+        for (NhinService service : NhinService.values()) {
+            totals.put(service, new long[2]);
+        }
+        for (StubGateway stub : stubs) {
+            for (Map.Entry<NhinService, Long> count : stub.getRequestCounts().entrySet()) {
+                totals.get(count.getKey())[0] += count.getValue();
+            }
+            for (Map.Entry<NhinService, Long> count : stub.getFaultCounts().entrySet()) {
+                totals.get(count.getKey())[1] += count.getValue();
+            }
+        }
+
+        report.append(String.format("Requests received by the stubs, including warm up%n"));
+        for (Map.Entry<NhinService, long[]> total : totals.entrySet()) {
+            report.append(String.format("%-24s %10d %10d faults%n", total.getKey().getServiceName(),
+                    total.getValue()[0], total.getValue()[1]));
+        }
+        report.append(String.format("%n"));
+    }
+
+    private void appendThreads(ThreadMonitor threads) {
+        report.append(String.format("Threads%n"));
+        report.append(String.format("%-24s %10d average %10d max%n", "Harness", threads.getHarnessAverage(),
+                threads.getHarnessMax()));
+        if (threads.hasGatewaySamples()) {
+            report.append(String.format("%-24s %10d average %10d max%n", "Gateway", threads.getGatewayAverage(),
+                    threads.getGatewayMax()));
+        } else {
+            report.append(String.format("%-24s %10s%n", "Gateway", "not sampled"));
+        }
+        report.append(String.format("%n"));
+    }
+
+    private void appendRows(Map<String, Long> rowsBefore, Map<String, Long> rowsAfter) {
+        if (rowsBefore == null || rowsAfter == null) {
+            return;
+        }
+
+        Map<String, Long> growthBySchema = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Long> after : rowsAfter.entrySet()) {
+            Long before = rowsBefore.get(after.getKey());
+            long growth = after.getValue() - (before == null ? 0 : before);
+            String schema = DatabaseMonitor.getSchema(after.getKey());
+            Long schemaGrowth = growthBySchema.get(schema);
+            growthBySchema.put(schema, (schemaGrowth == null ? 0 : schemaGrowth) + growth);
+        }
+
+        report.append(String.format("Row growth, including warm up%n"));
+        for (Map.Entry<String, Long> growth : growthBySchema.entrySet()) {
+            report.append(String.format("%-24s %10d%n", growth.getKey(), growth.getValue()));
+        }
+        for (Map.Entry<String, Long> after : rowsAfter.entrySet()) {
+            Long before = rowsBefore.get(after.getKey());
+            report.append(String.format("  %-48s %10d -> %10d%n", after.getKey(), before == null ? 0 : before,
+                    after.getValue()));
+        }
+    }
+
+    private void appendTransactionLookups(List<TransactionLookupLoad.Step> steps) {
+        if (steps == null || steps.isEmpty()) {
+            return;
+        }
+
+        report.append(String.format("%nTransaction lookups by message id (ms)%n"));
+        report.append(String.format(LINE, "Rows added", "Count", "Not found", "", "p50", "p90", "p99", "Max"));
+        for (TransactionLookupLoad.Step step : steps) {
+            LatencyRecorder recorder = step.getLatencies();
+            long[] sorted = recorder.getSortedLatencies();
+            report.append(String.format(LINE, step.getRows(), sorted.length, recorder.getErrorCount(), "",
+                    formatMillis(LatencyRecorder.percentile(sorted, 50)),
+                    formatMillis(LatencyRecorder.percentile(sorted, 90)),
+                    formatMillis(LatencyRecorder.percentile(sorted, 99)),
+                    formatMillis(sorted.length == 0 ? 0 : sorted[sorted.length - 1])));
+        }
+    }
+
+    private static String formatRate(int count, double seconds) {
+        return seconds <= 0 ? "" : String.format("%.1f", count / seconds);
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.1f", nanos / NANOS_PER_MILLI);
+    }
+}
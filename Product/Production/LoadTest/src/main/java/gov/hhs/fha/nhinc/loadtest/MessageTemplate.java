@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * A SOAP message or payload checked into the harness with ${name} placeholders. The template is split once when it
+ * is loaded so filling it in is a single pass over the parts.
+ *
+ * @author dharley
+ */
+public class MessageTemplate {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String PLACEHOLDER_START = "${";
+    private static final String PLACEHOLDER_END = "}";
+
+    private final String[] text;
+    private final String[] names;
+
+    /**
+     * @param template the template text
+     */
+    public MessageTemplate(String template) {
+        int count = 0;
+        int index = template.indexOf(PLACEHOLDER_START);
+        while (index >= 0) {
+            count++;
+            index = template.indexOf(PLACEHOLDER_START, index + PLACEHOLDER_START.length());
+        }
+
+        text = new String[count + 1];
+        names = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int open = template.indexOf(PLACEHOLDER_START, start);
+            int close = template.indexOf(PLACEHOLDER_END, open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder at offset " + open);
+            }
+            text[i] = template.substring(start, open);
+            names[i] = template.substring(open + PLACEHOLDER_START.length(), close);
+            start = close + PLACEHOLDER_END.length();
+        }
+        text[count] = template.substring(start);
+    }
+
+    /**
+     * @param resource the classpath resource holding the template
+     * @return the template
+     * @throws IOException if the resource cannot be read
+     */
+    public static MessageTemplate load(String resource) throws IOException {
+        InputStream in = MessageTemplate.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Message template " + resource + " was not found");
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new MessageTemplate(new String(out.toByteArray(), UTF8));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Fills in the placeholders. Values are escaped for use in XML text and attributes; values that are themselves
+     * XML are passed in the markup map and inserted as they are.
+     *
+     * @param values the text values by placeholder name
+     * @param markup the XML values by placeholder name, may be null
+     * @return the message
+     */
+    public String fill(Map<String, String> values, Map<String, String> markup) {
+        StringBuilder message = new StringBuilder(text[0].length() * 2);
+        for (int i = 0; i < names.length; i++) {
+            message.append(text[i]);
+            String value = markup == null ? null : markup.get(names[i]);
+            if (value != null) {
+                message.append(value);
+            } else {
+                value = values.get(names[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("No value for placeholder " + names[i]);
+                }
+                appendEscaped(message, value);
+            }
+        }
+        message.append(text[names.length]);
+        return message.toString();
+    }
+
+    /**
+     * @param values the text values by placeholder name
+     * @return the message
+     */
+    public String fill(Map<String, String> values) {
+        return fill(values, null);
+    }
+
+    private static void appendEscaped(StringBuilder message, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                message.append("&amp;");
+                break;
+            case '<':
+                message.append("&lt;");
+                break;
+            case '>':
+                message.append("&gt;");
+                break;
+            case '"':
+                message.append("&quot;");
+                break;
+            default:
+                message.append(c);
+            }
+        }
+    }
+}
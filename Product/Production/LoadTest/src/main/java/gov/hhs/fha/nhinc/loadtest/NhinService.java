@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+/**
+ * The NHIN services answered by each stub gateway, with the versions advertised for them in the connection
+ * information.
+ *
+ * @author dharley
+ */
+public enum NhinService {
+
+    PATIENT_DISCOVERY(NhincConstants.PATIENT_DISCOVERY_SERVICE_NAME, "1.0", "2.0"),
+    DOC_QUERY(NhincConstants.DOC_QUERY_SERVICE_NAME, "2.0", "3.0"),
+    DOC_RETRIEVE(NhincConstants.DOC_RETRIEVE_SERVICE_NAME, "2.0", "3.0"),
+    DOC_SUBMISSION(NhincConstants.NHINC_XDR_SERVICE_NAME, "1.1", "2.0"),
+    HIEM_SUBSCRIBE(NhincConstants.HIEM_SUBSCRIBE_SERVICE_NAME, "2.0"),
+    HIEM_NOTIFY(NhincConstants.HIEM_NOTIFY_SERVICE_NAME, "2.0"),
+    HIEM_SUBSCRIPTION_MANAGER(NhincConstants.HIEM_SUBSCRIPTION_MANAGER_SERVICE_NAME, "2.0");
+
+    private final String serviceName;
+    private final String[] versions;
+
+    private NhinService(String serviceName, String... versions) {
+        this.serviceName = serviceName;
+        this.versions = versions;
+    }
+
+    /**
+     * @return the service name used in the connection information
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return the service versions used in the connection information
+     */
+    public String[] getVersions() {
+        return versions.clone();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.ws.Endpoint;
+import javax.xml.ws.handler.Handler;
+import javax.xml.ws.soap.AddressingFeature;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.cxf.jaxws.EndpointImpl;
+import org.apache.cxf.ws.security.wss4j.WSS4JOutInterceptor;
+import org.apache.ws.security.handler.WSHandlerConstants;
+
+/**
+ * An in-process stand-in for a partner gateway. Each stub has its own home community id and port, and publishes one
+ * CXF endpoint for each NHIN service at http://&lt;host&gt;:&lt;port&gt;/stub/&lt;home community id&gt;/&lt;service
+ * name&gt;.
+ *
+ * @author dharley
+ */
+public class StubGateway {
+
+    private static Log log = LogFactory.getLog(StubGateway.class);
+
+    private static final String WSU_NAMESPACE =
+            "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd";
+
+    private final String homeCommunityId;
+    private final String baseUrl;
+    private final LoadTestConfiguration configuration;
+    private final Map<NhinService, StubServiceProvider> providers = new EnumMap<NhinService, StubServiceProvider>(
+            NhinService.class);
+    private final List<Endpoint> endpoints = new ArrayList<Endpoint>();
+
+    /**
+     * @param homeCommunityId the home community id of the stub
+     * @param port the port the stub listens on
+     * @param configuration the load test settings
+     */
+    public StubGateway(String homeCommunityId, int port, LoadTestConfiguration configuration) {
+        this.homeCommunityId = homeCommunityId;
+        this.baseUrl = "http://" + configuration.getStubHost() + ":" + port + "/stub/" + homeCommunityId + "/";
+        this.configuration = configuration;
+    }
+
+    /**
+     * Creates the stubs described by the settings, without starting them.
+     *
+     * @param configuration the load test settings
+     * @return the stubs
+     */
+    public static List<StubGateway> createStubs(LoadTestConfiguration configuration) {
+        List<StubGateway> stubs = new ArrayList<StubGateway>();
+        for (int i = 1; i <= configuration.getStubCount(); i++) {
+            stubs.add(new StubGateway(configuration.getStubHomeCommunityIdPrefix() + i,
+                    configuration.getStubBasePort() + i, configuration));
+        }
+        return stubs;
+    }
+
+    public String getHomeCommunityId() {
+        return homeCommunityId;
+    }
+
+    /**
+     * @param service the NHIN service
+     * @return the url the stub answers the service at
+     */
+    public String getServiceUrl(NhinService service) {
+        return baseUrl + service.getServiceName();
+    }
+
+    /**
+     * Publishes the endpoints of the stub.
+     *
+     * @throws IOException if the response templates cannot be read
+     */
+    public void start() throws IOException {
+        for (NhinService service : NhinService.values()) {
+            StubServiceProvider provider = new StubServiceProvider(this, configuration);
+            Endpoint endpoint = Endpoint.create(provider, new AddressingFeature(true, false));
+
+            List<Handler> handlerChain = new ArrayList<Handler>();
+            handlerChain.add(new StubHeaderHandler());
+            endpoint.getBinding().setHandlerChain(handlerChain);
+            if (configuration.isStubSignResponses()) {
+                ((EndpointImpl) endpoint).getOutInterceptors().add(createSignatureInterceptor());
+            }
+
+            endpoint.publish(getServiceUrl(service));
+            providers.put(service, provider);
+            endpoints.add(endpoint);
+        }
+        log.info("Started stub gateway " + homeCommunityId + " at " + baseUrl);
+    }
+
+    /**
+     * Stops the endpoints of the stub.
+     */
+    public void stop() {
+        for (Endpoint endpoint : endpoints) {
+            endpoint.stop();
+        }
+        endpoints.clear();
+    }
+
+    /**
+     * @return the number of requests the stub has answered, by NHIN service
+     */
+    public Map<NhinService, Long> getRequestCounts() {
+        Map<NhinService, Long> counts = new HashMap<NhinService, Long>();
+        for (Map.Entry<NhinService, StubServiceProvider> entry : providers.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getRequestCount());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of requests the stub has answered with a fault, by NHIN service
+     */
+    public Map<NhinService, Long> getFaultCounts() {
+        Map<NhinService, Long> counts = new HashMap<NhinService, Long>();
+        for (Map.Entry<NhinService, StubServiceProvider> entry : providers.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getFaultCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Signs the timestamp and body of the responses with the gateway key, as a partner gateway would.
+     */
+    private WSS4JOutInterceptor createSignatureInterceptor() {
+        Map<String, Object> outProps = new HashMap<String, Object>();
+        outProps.put(WSHandlerConstants.ACTION, "Timestamp Signature");
+        outProps.put(WSHandlerConstants.TTL_TIMESTAMP, "3600");
+        outProps.put(WSHandlerConstants.USER, "gateway");
+        outProps.put(WSHandlerConstants.PW_CALLBACK_CLASS, "gov.hhs.fha.nhinc.callback.cxf.CXFPasswordCallbackHandler");
+        outProps.put(WSHandlerConstants.SIG_PROP_FILE, "keystore.properties");
+        outProps.put(WSHandlerConstants.SIG_ALGO, "http://www.w3.org/2000/09/xmldsig#rsa-sha1");
+        outProps.put(WSHandlerConstants.SIG_DIGEST_ALGO, "http://www.w3.org/2000/09/xmldsig#sha1");
+        outProps.put(WSHandlerConstants.SIGNATURE_PARTS, "{Element}{" + WSU_NAMESPACE + "}Timestamp;"
+                + "{Element}{http://www.w3.org/2003/05/soap-envelope}Body;");
+        return new WSS4JOutInterceptor(outProps);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.BindingType;
+import javax.xml.ws.Provider;
+import javax.xml.ws.Service;
+import javax.xml.ws.ServiceMode;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.WebServiceProvider;
+import javax.xml.ws.soap.SOAPBinding;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Answers the NHIN requests sent to a stub gateway. The response is chosen by the root element of the request body,
+ * so one provider class serves every NHIN service. Each answer is delayed by the configured latency and a configured
+ * fraction of the requests is answered with a SOAP fault.
+ *
+ * @author dharley
+ */
+@WebServiceProvider
+@ServiceMode(Service.Mode.PAYLOAD)
+@BindingType(SOAPBinding.SOAP12HTTP_BINDING)
+public class StubServiceProvider implements Provider<Source> {
+
+    private static final String IHE_NAMESPACE = "urn:ihe:iti:xds-b:2007";
+    private static final String CREATION_TIME_FORMAT = "yyyyMMddHHmmss";
+
+    private static final ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>() {
+        @Override
+        protected Transformer initialValue() {
+            try {
+                return TransformerFactory.newInstance().newTransformer();
+            } catch (TransformerException ex) {
+                throw new IllegalStateException("Unable to create a transformer", ex);
+            }
+        }
+    };
+
+    private final StubGateway stub;
+    private final LoadTestConfiguration configuration;
+    private final Random random = new Random();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong faultCount = new AtomicLong();
+
+    private final MessageTemplate patientDiscoveryResponse;
+    private final MessageTemplate adhocQueryResponse;
+    private final MessageTemplate extrinsicObject;
+    private final MessageTemplate retrieveDocumentSetResponse;
+    private final MessageTemplate registryResponse;
+    private final MessageTemplate subscribeResponse;
+    private final MessageTemplate unsubscribeResponse;
+    private final String document;
+
+    /**
+     * @param stub the stub gateway the provider answers for
+     * @param configuration the load test settings
+     * @throws IOException if the response templates cannot be read
+     */
+    public StubServiceProvider(StubGateway stub, LoadTestConfiguration configuration) throws IOException {
+        this.stub = stub;
+        this.configuration = configuration;
+        patientDiscoveryResponse = MessageTemplate.load("/responses/PRPA_IN201306UV02.xml");
+        adhocQueryResponse = MessageTemplate.load("/responses/AdhocQueryResponse.xml");
+        extrinsicObject = MessageTemplate.load("/responses/ExtrinsicObject.xml");
+        retrieveDocumentSetResponse = MessageTemplate.load("/responses/RetrieveDocumentSetResponse.xml");
+        registryResponse = MessageTemplate.load("/responses/RegistryResponse.xml");
+        subscribeResponse = MessageTemplate.load("/responses/SubscribeResponse.xml");
+        unsubscribeResponse = MessageTemplate.load("/responses/UnsubscribeResponse.xml");
+
+        byte[] documentBytes = new byte[configuration.getStubDocumentBytes()];
+        Arrays.fill(documentBytes, (byte) 'x');
+        document = DatatypeConverter.printBase64Binary(documentBytes);
+    }
+
+    @Override
+    public Source invoke(Source request) {
+        requestCount.incrementAndGet();
+        delay();
+        if (configuration.getStubErrorRate() > 0 && nextDouble() < configuration.getStubErrorRate()) {
+            faultCount.incrementAndGet();
+            throw new WebServiceException("Stub gateway " + stub.getHomeCommunityId() + " failed the request");
+        }
+
+        Element body = toElement(request);
+        String name = body.getLocalName();
+        String response;
+        if ("PRPA_IN201305UV02".equals(name)) {
+            response = patientDiscoveryResponse.fill(createValues());
+        } else if ("AdhocQueryRequest".equals(name)) {
+            response = createAdhocQueryResponse();
+        } else if ("RetrieveDocumentSetRequest".equals(name)) {
+            response = createRetrieveDocumentSetResponse(body);
+        } else if ("ProvideAndRegisterDocumentSetRequest".equals(name)) {
+            response = registryResponse.fill(createValues());
+        } else if ("Subscribe".equals(name)) {
+            Map<String, String> values = createValues();
+            values.put("subscriptionManagerUrl", stub.getServiceUrl(NhinService.HIEM_SUBSCRIPTION_MANAGER));
+            values.put("subscriptionId", UUID.randomUUID().toString());
+            response = subscribeResponse.fill(values);
+        } else if ("Unsubscribe".equals(name)) {
+            response = unsubscribeResponse.fill(createValues());
+        } else if ("Notify".equals(name)) {
+            // notify is one way
+            return null;
+        } else {
+            throw new WebServiceException("Stub gateway does not answer " + name + " requests");
+        }
+        return new StreamSource(new StringReader(response));
+    }
+
+    /**
+     * @return the number of requests answered by this provider
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests answered with a fault by this provider
+     */
+    public long getFaultCount() {
+        return faultCount.get();
+    }
+
+    private void delay() {
+        long latency = configuration.getStubLatencyMillis();
+        long jitter = configuration.getStubLatencyJitterMillis();
+        if (jitter > 0) {
+            latency += (long) (nextDouble() * jitter);
+        }
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private Map<String, String> createValues() {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("homeCommunityId", stub.getHomeCommunityId());
+        values.put("localHomeCommunityId", configuration.getGatewayHomeCommunityId());
+        values.put("messageId", UUID.randomUUID().toString());
+        values.put("creationTime", new SimpleDateFormat(CREATION_TIME_FORMAT).format(new Date()));
+        values.put("patientId", configuration.getStubPatientId());
+        return values;
+    }
+
+    private String createAdhocQueryResponse() {
+        Map<String, String> values = createValues();
+        values.put("documentSize", String.valueOf(configuration.getStubDocumentBytes()));
+
+        StringBuilder registryObjects = new StringBuilder();
+        for (int i = 1; i <= configuration.getStubQueryResultCount(); i++) {
+            values.put("entryUuid", UUID.randomUUID().toString());
+            values.put("documentIndex", String.valueOf(i));
+            values.put("documentId", stub.getHomeCommunityId() + "." + i);
+            registryObjects.append(extrinsicObject.fill(values));
+        }
+
+        Map<String, String> markup = new HashMap<String, String>();
+        markup.put("registryObjects", registryObjects.toString());
+        return adhocQueryResponse.fill(values, markup);
+    }
+
+    private String createRetrieveDocumentSetResponse(Element request) {
+        Map<String, String> values = createValues();
+        NodeList ids = request.getElementsByTagNameNS(IHE_NAMESPACE, "DocumentUniqueId");
+        values.put("documentId", ids.getLength() > 0 ? ids.item(0).getTextContent() : stub.getHomeCommunityId() + ".1");
+
+        Map<String, String> markup = new HashMap<String, String>();
+        markup.put("document", document);
+        return retrieveDocumentSetResponse.fill(values, markup);
+    }
+
+    private Element toElement(Source source) {
+        Node node;
+        if (source instanceof DOMSource) {
+            node = ((DOMSource) source).getNode();
+        } else {
+            DOMResult result = new DOMResult();
+            try {
+                TRANSFORMER.get().transform(source, result);
+            } catch (TransformerException ex) {
+                throw new WebServiceException("Unable to read the request", ex);
+            }
+            node = result.getNode();
+        }
+
+        if (node instanceof Document) {
+            return ((Document) node).getDocumentElement();
+        }
+        return (Element) node;
+    }
+}
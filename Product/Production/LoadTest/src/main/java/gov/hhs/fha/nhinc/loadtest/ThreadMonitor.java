@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Samples the live thread count of the harness, which hosts the stubs, and of the gateway once a second while the
+ * load runs. The gateway is read over JMX when a JMX url is configured.
+ *
+ * @author dharley
+ */
+public class ThreadMonitor {
+
+    private static Log log = LogFactory.getLog(ThreadMonitor.class);
+
+    private static final String THREADING = "java.lang:type=Threading";
+
+    private final String gatewayJmxUrl;
+    private final ThreadMXBean harnessThreads = ManagementFactory.getThreadMXBean();
+    private ScheduledExecutorService sampler;
+    private JMXConnector connector;
+    private MBeanServerConnection gateway;
+
+    private int harnessMax;
+    private long harnessTotal;
+    private int gatewayMax;
+    private long gatewayTotal;
+    private int samples;
+    private int gatewaySamples;
+
+    /**
+     * @param gatewayJmxUrl the JMX service url of the gateway, or null to sample the harness only
+     */
+    public ThreadMonitor(String gatewayJmxUrl) {
+        this.gatewayJmxUrl = gatewayJmxUrl;
+    }
+
+    /**
+     * Starts sampling.
+     */
+    public void start() {
+        if (gatewayJmxUrl != null) {
+            try {
+                connector = JMXConnectorFactory.connect(new JMXServiceURL(gatewayJmxUrl));
+                gateway = connector.getMBeanServerConnection();
+            } catch (IOException ex) {
+                log.warn("Unable to connect to the gateway at " + gatewayJmxUrl + ", its threads are not sampled", ex);
+            }
+        }
+
+        sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "loadtest-thread-monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, 0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops sampling.
+     */
+    public void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+        if (connector != null) {
+            try {
+                connector.close();
+            } catch (IOException ex) {
+                log.debug("Unable to close the gateway JMX connection", ex);
+            }
+        }
+    }
+
+    private synchronized void sample() {
+        int harness = harnessThreads.getThreadCount();
+        harnessMax = Math.max(harnessMax, harness);
+        harnessTotal += harness;
+        samples++;
+
+        if (gateway != null) {
+            try {
+                int count = ((Number) gateway.getAttribute(new ObjectName(THREADING), "ThreadCount")).intValue();
+                gatewayMax = Math.max(gatewayMax, count);
+                gatewayTotal += count;
+                gatewaySamples++;
+            } catch (JMException ex) {
+                log.debug("Unable to sample the gateway threads", ex);
+            } catch (IOException ex) {
+                log.debug("Unable to sample the gateway threads", ex);
+            }
+        }
+    }
+
+    public synchronized int getHarnessMax() {
+        return harnessMax;
+    }
+
+    public synchronized int getHarnessAverage() {
+        return samples == 0 ? 0 : (int) (harnessTotal / samples);
+    }
+
+    /**
+     * @return true if the gateway threads were sampled
+     */
+    public synchronized boolean hasGatewaySamples() {
+        return gatewaySamples > 0;
+    }
+
+    public synchronized int getGatewayMax() {
+        return gatewayMax;
+    }
+
+    public synchronized int getGatewayAverage() {
+        return gatewaySamples == 0 ? 0 : (int) (gatewayTotal / gatewaySamples);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Measures the cost of looking up a transaction id by message id as the transaction repository grows. The table is
+ * filled in steps, e.g. to 100 thousand, 1 million and 5 million rows, and after each step the same query the
+ * gateway's TransactionDAO runs is timed for a number of random message ids. With the messageId index the lookup cost
+ * should stay about the same from step to step. The rows added here are deleted when the measurement ends.
+ *
+ * @author dharley
+ */
+public class TransactionLookupLoad {
+
+    private static Log log = LogFactory.getLog(TransactionLookupLoad.class);
+
+    static final String MESSAGE_ID_PREFIX = "urn:uuid:loadtest-";
+
+    private static final String INSERT = "INSERT INTO transrepo.transactionrepository (transactionId, messageId, time)"
+            + " VALUES (?, ?, ?)";
+    private static final String LOOKUP = "SELECT transactionId FROM transrepo.transactionrepository"
+            + " WHERE messageId = ?";
+    private static final String DELETE = "DELETE FROM transrepo.transactionrepository WHERE messageId LIKE ?";
+    private static final int BATCH_SIZE = 10000;
+
+    private final Connection connection;
+    private final long[] rowCounts;
+    private final int lookups;
+    private final Random random;
+    private final List<Step> steps = new ArrayList<Step>();
+    private long rows;
+
+    /**
+     * @param connection the connection to the database holding the transrepo schema
+     * @param rowCounts the number of rows to measure at, in increasing order
+     * @param lookups the number of lookups timed at each step
+     * @param seed the seed used to pick the message ids looked up
+     */
+    public TransactionLookupLoad(Connection connection, long[] rowCounts, int lookups, long seed) {
+        this.connection = connection;
+        this.rowCounts = rowCounts.clone();
+        this.lookups = lookups;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Fills the table step by step, timing the lookups after each step, then deletes the rows it added.
+     *
+     * @throws SQLException if the table cannot be filled or queried
+     */
+    public void run() throws SQLException {
+        try {
+            for (long rowCount : rowCounts) {
+                insertRows(rowCount);
+                steps.add(new Step(rows, timeLookups()));
+                log.info("Timed " + lookups + " transaction lookups at " + rows + " rows");
+            }
+        } finally {
+            deleteRows();
+        }
+    }
+
+    /**
+     * @return the measured steps, in the order they were run
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    private void insertRows(long rowCount) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        PreparedStatement statement = connection.prepareStatement(INSERT);
+        try {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            while (rows < rowCount) {
+                statement.setString(1, "loadtest-transaction-" + rows);
+                statement.setString(2, createMessageId(rows));
+                statement.setTimestamp(3, now);
+                statement.addBatch();
+                rows++;
+                if (rows % BATCH_SIZE == 0 || rows == rowCount) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+            }
+        } finally {
+            statement.close();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private LatencyRecorder timeLookups() throws SQLException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        PreparedStatement statement = connection.prepareStatement(LOOKUP);
+        try {
+            for (int i = 0; i < lookups; i++) {
+                long row = (long) (random.nextDouble() * rows);
+                long start = System.nanoTime();
+                statement.setString(1, createMessageId(row));
+                ResultSet result = statement.executeQuery();
+                boolean found = result.next();
+                result.close();
+                if (found) {
+                    recorder.record(System.nanoTime() - start);
+                } else {
+                    recorder.recordError();
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return recorder;
+    }
+
+    private void deleteRows() {
+        try {
+            PreparedStatement statement = connection.prepareStatement(DELETE);
+            try {
+                statement.setString(1, MESSAGE_ID_PREFIX + "%");
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException ex) {
+            log.warn("Unable to delete the transaction rows added by the lookup test: " + ex.getMessage());
+        }
+    }
+
+    private static String createMessageId(long row) {
+        return MESSAGE_ID_PREFIX + row;
+    }
+
+    /**
+     * The lookups timed at one table size.
+     */
+    public static class Step {
+        private final long rows;
+        private final LatencyRecorder latencies;
+
+        Step(long rows, LatencyRecorder latencies) {
+            this.rows = rows;
+            this.latencies = latencies;
+        }
+
+        /**
+         * @return the number of rows added to the table when the lookups were timed
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the lookup latencies; lookups that found no row are counted as errors
+         */
+        public LatencyRecorder getLatencies() {
+            return latencies;
+        }
+    }
+}
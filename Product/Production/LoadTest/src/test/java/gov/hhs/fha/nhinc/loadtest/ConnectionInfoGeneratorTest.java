@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uddi.api_v3.BindingTemplate;
+import org.uddi.api_v3.BusinessDetail;
+import org.uddi.api_v3.BusinessEntity;
+import org.uddi.api_v3.BusinessService;
+import org.uddi.api_v3.IdentifierBag;
+import org.uddi.api_v3.KeyedReference;
+
+/**
+ * @author dharley
+ */
+public class ConnectionInfoGeneratorTest {
+
+    private File dir;
+    private List<StubGateway> stubs;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("connect-loadtest").toFile();
+
+        Properties properties = new Properties();
+        properties.setProperty("stub.count", "2");
+        properties.setProperty("stub.host", "localhost");
+        properties.setProperty("stub.basePort", "9100");
+        properties.setProperty("stub.homeCommunityIdPrefix", "2.2.");
+        stubs = StubGateway.createStubs(new LoadTestConfiguration(properties));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testUddiConnectionInfo() throws Exception {
+        new ConnectionInfoGenerator().generate(stubs, null, dir);
+
+        BusinessDetail uddi = load(new File(dir, ConnectionInfoGenerator.UDDI_FILE_NAME));
+        assertEquals(2, uddi.getBusinessEntity().size());
+
+        BusinessEntity entity = uddi.getBusinessEntity().get(1);
+        assertEquals("uddi:nhincnode:2.2.2", entity.getBusinessKey());
+        assertEquals("2.2.2", entity.getIdentifierBag().getKeyedReference().get(0).getKeyValue());
+        assertEquals(NhinService.values().length, entity.getBusinessServices().getBusinessService().size());
+
+        BusinessService service = entity.getBusinessServices().getBusinessService().get(0);
+        assertEquals("PatientDiscovery", service.getName().get(0).getValue());
+        BindingTemplate binding = service.getBindingTemplates().getBindingTemplate().get(0);
+        assertEquals("http://localhost:9102/stub/2.2.2/PatientDiscovery", binding.getAccessPoint().getValue());
+        assertEquals(2, binding.getCategoryBag().getKeyedReference().size());
+        assertEquals("1.0", binding.getCategoryBag().getKeyedReference().get(0).getKeyValue());
+        assertEquals("2.0", binding.getCategoryBag().getKeyedReference().get(1).getKeyValue());
+    }
+
+    @Test
+    public void testInternalConnectionInfoKeepsTemplate() throws Exception {
+        BusinessDetail template = new BusinessDetail();
+        template.getBusinessEntity().add(createEntity("1.1"));
+        template.getBusinessEntity().add(createEntity("2.2.1"));
+        File templateFile = new File(dir, "template.xml");
+        new Saver().save(template, templateFile);
+
+        new ConnectionInfoGenerator().generate(stubs, templateFile, dir);
+
+        BusinessDetail internal = load(new File(dir, ConnectionInfoGenerator.INTERNAL_FILE_NAME));
+        assertEquals(3, internal.getBusinessEntity().size());
+        assertEquals("uddi:localnode:1.1", internal.getBusinessEntity().get(0).getBusinessKey());
+        assertNull(internal.getBusinessEntity().get(0).getBusinessServices());
+        assertEquals("uddi:nhincnode:2.2.1", internal.getBusinessEntity().get(1).getBusinessKey());
+        assertEquals(NhinService.values().length, internal.getBusinessEntity().get(1).getBusinessServices()
+                .getBusinessService().size());
+        assertEquals("uddi:nhincnode:2.2.2", internal.getBusinessEntity().get(2).getBusinessKey());
+    }
+
+    private BusinessEntity createEntity(String hcid) {
+        KeyedReference hcidKeyRef = new KeyedReference();
+        hcidKeyRef.setTModelKey("uddi:nhin:nhie:homecommunityid");
+        hcidKeyRef.setKeyName("");
+        hcidKeyRef.setKeyValue(hcid);
+        IdentifierBag identifierBag = new IdentifierBag();
+        identifierBag.getKeyedReference().add(hcidKeyRef);
+
+        BusinessEntity entity = new BusinessEntity();
+        entity.setBusinessKey("uddi:localnode:" + hcid);
+        entity.setIdentifierBag(identifierBag);
+        return entity;
+    }
+
+    private BusinessDetail load(File file) throws JAXBException {
+        return new Saver().load(file);
+    }
+
+    /**
+     * Reads and writes connection information files the way the gateway does.
+     */
+    private static class Saver extends ConnectionInfoGenerator {
+
+        BusinessDetail load(File file) throws JAXBException {
+            return loadBusinessDetail(file);
+        }
+
+        void save(BusinessDetail businessDetail, File file) {
+            saveBusinessDetail(businessDetail, file);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.asyncmsgs.dao.AsyncMsgRecordDao;
+import gov.hhs.fha.nhinc.common.connectionmanager.dao.AssigningAuthorityHomeCommunityMappingDAO;
+import gov.hhs.fha.nhinc.common.deferredqueuemanager.QueryDeferredQueueRequestType;
+import gov.hhs.fha.nhinc.dbscripts.Migration;
+import gov.hhs.fha.nhinc.dbscripts.MigrationRunner;
+import gov.hhs.fha.nhinc.docrepository.adapter.dao.DocumentDao;
+import gov.hhs.fha.nhinc.docrepository.adapter.dao.EventCodeDao;
+import gov.hhs.fha.nhinc.docrepository.adapter.model.Document;
+import gov.hhs.fha.nhinc.docrepository.adapter.model.DocumentQueryParams;
+import gov.hhs.fha.nhinc.docrepository.adapter.model.EventCodeParam;
+import gov.hhs.fha.nhinc.gateway.aggregator.dao.AggMessageResultDao;
+import gov.hhs.fha.nhinc.gateway.aggregator.dao.AggTransactionDao;
+import gov.hhs.fha.nhinc.hibernate.AuditRepositoryDAO;
+import gov.hhs.fha.nhinc.logging.transaction.dao.TransactionDAO;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao.PDDeferredCorrelationDao;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao.Retriever;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao.Storer;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.CorrelatedIdentifiers;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.QualifiedPatientIdentifier;
+import gov.hhs.fha.nhinc.patientdb.dao.AddressDAO;
+import gov.hhs.fha.nhinc.patientdb.dao.PersonnameDAO;
+import gov.hhs.fha.nhinc.patientdb.dao.PhonenumberDAO;
+import gov.hhs.fha.nhinc.subscription.repository.dao.SubscriptionStorageItemDao;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.datatype.DatatypeFactory;
+
+import org.h2.tools.RunScript;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the queries of the DAOs through their Hibernate mappings against the nhincdb schemas in an embedded database,
+ * records the SQL Hibernate generates for them and checks that, once the migrations are applied, none of it scans a
+ * whole table. The configuration files in the hibernate test resource directory point every persistence unit at the
+ * embedded database through RecordingConnectionProvider.
+ *
+ * @author dharley
+ */
+public class DaoQueryPlanTest {
+
+    private static final String URL = "jdbc:h2:mem:daoqueries;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String SCHEMA_SCRIPT = "/nhincdb/nhincdb_h2.sql";
+
+    /**
+     * The tables the DAO calls below query, so a persistence unit that failed to reach the database is noticed.
+     */
+    private static final String[] QUERIED_TABLES = { "aggregator.agg_transaction",
+        "aggregator.agg_message_results", "assigningauthoritydb.aa_to_home_community_mapping",
+        "auditrepo.auditrepository", "docrepository.document", "docrepository.eventcode",
+        "patientcorrelationdb.correlatedidentifiers", "patientcorrelationdb.pddeferredcorrelation",
+        "subscriptionrepository.subscription", "asyncmsgs.asyncmsgrepo", "transrepo.transactionrepository",
+        "patientdb.personname", "patientdb.address", "patientdb.phonenumber" };
+
+    // 2012-06-01 and 2012-07-01 UTC
+    private static final Date START = new Date(1338508800000L);
+    private static final Date END = new Date(1341100800000L);
+
+    private static Connection connection;
+
+    @BeforeClass
+    public static void setUpDatabase() throws Exception {
+        // held open with the database for the whole class; the DAOs open their own connections to it
+        connection = DriverManager.getConnection(URL, "sa", "");
+        InputStream in = DaoQueryPlanTest.class.getResourceAsStream(SCHEMA_SCRIPT);
+        try {
+            RunScript.execute(connection, new InputStreamReader(in, MessageTemplate.UTF8));
+        } finally {
+            in.close();
+        }
+        new MigrationRunner(connection, Migration.load(MigrationRunner.DEFAULT_LOCATION)).migrate();
+    }
+
+    @AfterClass
+    public static void tearDownDatabase() throws SQLException {
+        RecordingConnectionProvider.clear();
+        Statement statement = connection.createStatement();
+        try {
+            // drops the database, which the delay in its url would otherwise keep for the life of the JVM
+            statement.execute("SHUTDOWN");
+        } finally {
+            statement.close();
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testDaoQueriesDoNotScanTables() throws Exception {
+        RecordingConnectionProvider.clear();
+        runDaoQueries();
+
+        List<RecordedStatement> statements = RecordingConnectionProvider.getStatements();
+        StringBuilder allSql = new StringBuilder();
+        for (RecordedStatement statement : statements) {
+            allSql.append(statement.getSql().toLowerCase()).append('\n');
+        }
+        for (String table : QUERIED_TABLES) {
+            assertTrue("No query of " + table + " was recorded", allSql.indexOf(table + " ") >= 0);
+        }
+
+        List<String> scans = new ArrayList<String>();
+        for (RecordedStatement statement : statements) {
+            if (!statement.isLookup()) {
+                continue;
+            }
+            for (RecordedStatement branch : statement.getBranches()) {
+                if (isTableScan(branch)) {
+                    scans.add(branch.getSql());
+                }
+            }
+        }
+        assertTrue("Queries scanning a whole table: " + scans, scans.isEmpty());
+    }
+
+    /**
+     * Calls each DAO method that looks records up, with the arguments the gateway passes them.
+     */
+    private void runDaoQueries() throws Exception {
+        new AggTransactionDao().findOlderThan(START);
+        new AggMessageResultDao().findByMessageKey("t1", "k1");
+
+        AssigningAuthorityHomeCommunityMappingDAO mappingDao = new AssigningAuthorityHomeCommunityMappingDAO();
+        mappingDao.getAssigningAuthority("1.1");
+        mappingDao.getAssigningAuthoritiesByHomeCommunity("1.1");
+        mappingDao.getHomeCommunityId("1.1");
+
+        AuditRepositoryDAO auditDao = AuditRepositoryDAO.getAuditRepositoryDAOInstance();
+        auditDao.queryAuditRepositoryOnCriteria(null, "p1", START, END);
+        auditDao.queryAuditRepositoryOnCriteria("u1", null, START, null);
+        auditDao.queryAuditRepositoryOnCriteria(null, null, START, END);
+
+        DocumentQueryParams documentQuery = new DocumentQueryParams();
+        documentQuery.setPatientId("p1^^^&1.1&ISO");
+        documentQuery.setClassCodes(Arrays.asList("34133-9^^2.16.840.1.113883.6.1", "11488-4"));
+        documentQuery.setCreationTimeFrom(START);
+        documentQuery.setCreationTimeTo(END);
+        documentQuery.setStatuses(Collections.singletonList("urn:oasis:names:tc:ebxml-regrep:StatusType:Approved"));
+        new DocumentDao().findDocuments(documentQuery);
+        DocumentQueryParams documentRetrieve = new DocumentQueryParams();
+        documentRetrieve.setDocumentUniqueId(Arrays.asList("1.1.1", "1.1.2"));
+        new DocumentDao().findDocuments(documentRetrieve);
+
+        Document document = new Document();
+        document.setDocumentid(1L);
+        new EventCodeDao().findForDocument(document);
+        EventCodeParam eventCode = new EventCodeParam();
+        eventCode.setEventCode("e1");
+        eventCode.setEventCodeScheme("1.1");
+        new EventCodeDao().eventCodeQuery(eventCode);
+
+        QualifiedPatientIdentifier patient = new QualifiedPatientIdentifier();
+        patient.setAssigningAuthority("1.1");
+        patient.setPatientId("p1");
+        Retriever.retrievePatientCorrelation(patient);
+        CorrelatedIdentifiers correlation = new CorrelatedIdentifiers();
+        correlation.setPatientAssigningAuthorityId("1.1");
+        correlation.setPatientId("p1");
+        correlation.setCorrelatedPatientAssigningAuthorityId("2.2");
+        correlation.setCorrelatedPatientId("p2");
+        Storer.addPatientCorrelations(Collections.singletonList(correlation));
+        Storer.removePatientCorrelation(correlation);
+        new PDDeferredCorrelationDao().queryByMessageId("m1");
+
+        SubscriptionStorageItemDao subscriptionDao = new SubscriptionStorageItemDao();
+        subscriptionDao.findBySubscriptionId("s1");
+        subscriptionDao.findByRootTopic("t1", "p1");
+        subscriptionDao.findByProducer("p1");
+        subscriptionDao.findByParentSubscriptionId("s1");
+
+        AsyncMsgRecordDao asyncDao = new AsyncMsgRecordDao();
+        asyncDao.queryByMessageIdAndDirection("m1", "outbound");
+        asyncDao.queryByMessageIdAndServiceName("m1", "PatientDiscoveryDeferredReq");
+        asyncDao.queryByTime(START);
+        asyncDao.queryForExpired(START);
+        asyncDao.queryForDeferredQueueProcessing();
+        asyncDao.queryForDeferredQueueSelected();
+        QueryDeferredQueueRequestType queueQuery = new QueryDeferredQueueRequestType();
+        queueQuery.setCreationBeginTime(DatatypeFactory.newInstance().newXMLGregorianCalendar("2012-06-01"));
+        queueQuery.setCreationEndTime(DatatypeFactory.newInstance().newXMLGregorianCalendar("2012-07-01"));
+        queueQuery.getServiceName().add("PatientDiscoveryDeferredReq");
+        queueQuery.setDirection("inbound");
+        asyncDao.queryByCriteria(queueQuery);
+
+        TransactionDAO transactionDao = TransactionDAO.getTransactionDAOInstance();
+        transactionDao.getTransactionId("m1");
+        transactionDao.deleteTransactionRecordsBefore(new Timestamp(START.getTime()));
+
+        PersonnameDAO.getPersonnameDAOInstance().findPatientPersonnames(1L);
+        AddressDAO.getAddressDAOInstance().findPatientAddresses(1L);
+        PhonenumberDAO.getPhonenumberDAOInstance().findPatientPhonenumbers(1L);
+    }
+
+    private boolean isTableScan(RecordedStatement recorded) throws Exception {
+        PreparedStatement statement = connection.prepareStatement("EXPLAIN " + recorded.getSql());
+        try {
+            recorded.bind(statement);
+            ResultSet plan = statement.executeQuery();
+            StringBuilder text = new StringBuilder();
+            while (plan.next()) {
+                text.append(plan.getString(1));
+            }
+            return text.indexOf(".tableScan") >= 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * A statement Hibernate prepared, with the parameters it set.
+     */
+    static class RecordedStatement {
+
+        private final String sql;
+        private final Map<Integer, Object[]> parameters = new TreeMap<Integer, Object[]>();
+
+        RecordedStatement(String sql) {
+            this.sql = sql;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        synchronized void setParameter(Method setter, Object[] args) {
+            parameters.put((Integer) args[0], new Object[] { setter, args.clone() });
+        }
+
+        synchronized void bind(PreparedStatement statement) throws IllegalAccessException, InvocationTargetException {
+            for (Object[] parameter : parameters.values()) {
+                ((Method) parameter[0]).invoke(statement, (Object[]) parameter[1]);
+            }
+        }
+
+        /**
+         * @return true if the statement selects, updates or deletes the rows matching a condition
+         */
+        boolean isLookup() {
+            String lower = sql.toLowerCase();
+            return (lower.startsWith("select") || lower.startsWith("update") || lower.startsWith("delete"))
+                    && lower.contains(" where ");
+        }
+
+        /**
+         * MySQL reads each side of an OR through its own index and merges the rows, which the embedded database
+         * does not plan. A condition that is an OR at the top level is split into one statement per side, so each side
+         * is checked for an index of its own.
+         *
+         * @return the statement for each side of a top level OR, or just this statement
+         */
+        synchronized List<RecordedStatement> getBranches() {
+            int where = sql.toLowerCase().indexOf(" where ");
+            String prefix = sql.substring(0, where);
+            List<String> branches = splitOr(sql.substring(where + " where ".length()));
+            if (branches.size() == 1) {
+                return Collections.singletonList(this);
+            }
+
+            int prefixCount = countParameters(prefix);
+            int offset = prefixCount;
+            List<RecordedStatement> statements = new ArrayList<RecordedStatement>();
+            for (String branch : branches) {
+                RecordedStatement statement = new RecordedStatement(prefix + " where " + branch);
+                for (int i = 1; i <= prefixCount; i++) {
+                    statement.copyParameter(parameters.get(i), i);
+                }
+                int count = countParameters(branch);
+                for (int i = 1; i <= count; i++) {
+                    statement.copyParameter(parameters.get(offset + i), prefixCount + i);
+                }
+                offset += count;
+                statements.add(statement);
+            }
+            return statements;
+        }
+
+        private void copyParameter(Object[] parameter, int index) {
+            Object[] args = ((Object[]) parameter[1]).clone();
+            args[0] = Integer.valueOf(index);
+            parameters.put(index, new Object[] { parameter[0], args });
+        }
+
+        private static List<String> splitOr(String condition) {
+            String trimmed = condition.trim();
+            while (trimmed.startsWith("(") && findClose(trimmed, 0) == trimmed.length() - 1) {
+                trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+            }
+
+            List<String> branches = new ArrayList<String>();
+            String lower = trimmed.toLowerCase();
+            int depth = 0;
+            int start = 0;
+            for (int i = 0; i < trimmed.length(); i++) {
+                char c = trimmed.charAt(i);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (depth == 0 && lower.startsWith(" or ", i)) {
+                    branches.add(trimmed.substring(start, i).trim());
+                    start = i + " or ".length();
+                }
+            }
+            branches.add(trimmed.substring(start).trim());
+            return branches;
+        }
+
+        private static int findClose(String text, int open) {
+            int depth = 0;
+            for (int i = open; i < text.length(); i++) {
+                if (text.charAt(i) == '(') {
+                    depth++;
+                } else if (text.charAt(i) == ')' && --depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int countParameters(String text) {
+            int count = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '?') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Hands Hibernate connections to the embedded database that record each statement prepared on them.
+     */
+    public static class RecordingConnectionProvider implements ConnectionProvider {
+
+        private static final List<RecordedStatement> statements = new ArrayList<RecordedStatement>();
+
+        private String url;
+        private Properties connectionProperties;
+
+        static List<RecordedStatement> getStatements() {
+            synchronized (statements) {
+                return new ArrayList<RecordedStatement>(statements);
+            }
+        }
+
+        static void clear() {
+            synchronized (statements) {
+                statements.clear();
+            }
+        }
+
+        @Override
+        public void configure(Properties props) throws HibernateException {
+            url = props.getProperty(Environment.URL);
+            connectionProperties = new Properties();
+            connectionProperties.setProperty("user", props.getProperty(Environment.USER, ""));
+            connectionProperties.setProperty("password", props.getProperty(Environment.PASS, ""));
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = DriverManager.getConnection(url, connectionProperties);
+            return (Connection) Proxy.newProxyInstance(DaoQueryPlanTest.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = invokeOn(connection, method, args);
+                            if ("prepareStatement".equals(method.getName())) {
+                                RecordedStatement recorded = new RecordedStatement((String) args[0]);
+                                synchronized (statements) {
+                                    statements.add(recorded);
+                                }
+                                return record((PreparedStatement) result, recorded);
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        private static PreparedStatement record(final PreparedStatement statement, final RecordedStatement recorded) {
+            return (PreparedStatement) Proxy.newProxyInstance(DaoQueryPlanTest.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().startsWith("set") && args != null && args.length > 1
+                                    && args[0] instanceof Integer) {
+                                recorded.setParameter(method, args);
+                            }
+                            return invokeOn(statement, method, args);
+                        }
+                    });
+        }
+
+        private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        @Override
+        public void closeConnection(Connection conn) throws SQLException {
+            conn.close();
+        }
+
+        @Override
+        public void close() throws HibernateException {
+        }
+
+        @Override
+        public boolean supportsAggressiveRelease() {
+            return false;
+        }
+    }
+}
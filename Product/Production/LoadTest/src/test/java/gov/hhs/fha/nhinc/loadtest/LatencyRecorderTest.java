@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void testRecordGrows() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 3000; i > 0; i--) {
+            recorder.record(i);
+        }
+        recorder.recordError();
+
+        assertEquals(3000, recorder.getCount());
+        assertEquals(1, recorder.getErrorCount());
+        long[] sorted = recorder.getSortedLatencies();
+        assertEquals(3000, sorted.length);
+        assertEquals(1, sorted[0]);
+        assertEquals(3000, sorted[2999]);
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+
+        assertEquals(1, LatencyRecorder.percentile(sorted, 0));
+        assertEquals(50, LatencyRecorder.percentile(sorted, 50));
+        assertEquals(90, LatencyRecorder.percentile(sorted, 90));
+        assertEquals(99, LatencyRecorder.percentile(sorted, 99));
+        assertEquals(100, LatencyRecorder.percentile(sorted, 99.9));
+        assertEquals(100, LatencyRecorder.percentile(sorted, 100));
+    }
+
+    @Test
+    public void testPercentileOfFewLatencies() {
+        assertEquals(0, LatencyRecorder.percentile(new long[0], 50));
+        assertEquals(7, LatencyRecorder.percentile(new long[] { 7 }, 99));
+        assertEquals(5, LatencyRecorder.percentile(new long[] { 5, 9 }, 50));
+        assertEquals(9, LatencyRecorder.percentile(new long[] { 5, 9 }, 51));
+    }
+
+    @Test
+    public void testSortedLatenciesAreACopy() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(2);
+        recorder.record(1);
+
+        long[] sorted = recorder.getSortedLatencies();
+        sorted[0] = 10;
+
+        assertArrayEquals(new long[] { 1, 2 }, recorder.getSortedLatencies());
+    }
+}
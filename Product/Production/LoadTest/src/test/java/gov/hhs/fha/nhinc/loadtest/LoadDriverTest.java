@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class LoadDriverTest {
+
+    @Test
+    public void testParseMix() {
+        Map<EntityService, Integer> weights = LoadDriver.parseMix(" RetrieveDocuments:20, PatientDiscovery : 40 ,"
+                + "DocSubmission:0");
+
+        assertEquals(2, weights.size());
+        Iterator<Map.Entry<EntityService, Integer>> entries = weights.entrySet().iterator();
+        Map.Entry<EntityService, Integer> entry = entries.next();
+        assertEquals(EntityService.RetrieveDocuments, entry.getKey());
+        assertEquals(Integer.valueOf(20), entry.getValue());
+        entry = entries.next();
+        assertEquals(EntityService.PatientDiscovery, entry.getKey());
+        assertEquals(Integer.valueOf(40), entry.getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMixUnknownRequest() {
+        LoadDriver.parseMix("PatientDiscovery:40,AdminDistribution:10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMixMissingWeight() {
+        LoadDriver.parseMix("PatientDiscovery");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMixNegativeWeight() {
+        LoadDriver.parseMix("PatientDiscovery:-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMixWithoutRequests() {
+        LoadDriver.parseMix("PatientDiscovery:0");
+    }
+}
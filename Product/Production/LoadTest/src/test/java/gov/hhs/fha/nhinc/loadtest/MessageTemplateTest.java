@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class MessageTemplateTest {
+
+    @Test
+    public void testFill() {
+        MessageTemplate template = new MessageTemplate("<a id=\"${id}\">${text}</a>${id}");
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("id", "1.1");
+        values.put("text", "x");
+
+        assertEquals("<a id=\"1.1\">x</a>1.1", template.fill(values));
+    }
+
+    @Test
+    public void testFillWithoutPlaceholders() {
+        assertEquals("<a/>", new MessageTemplate("<a/>").fill(new HashMap<String, String>()));
+    }
+
+    @Test
+    public void testValuesAreEscaped() {
+        MessageTemplate template = new MessageTemplate("<a b=\"${value}\">${value}</a>");
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("value", "D123401^^^&1.1&ISO <\"x\">");
+
+        assertEquals("<a b=\"D123401^^^&amp;1.1&amp;ISO &lt;&quot;x&quot;&gt;\">"
+                + "D123401^^^&amp;1.1&amp;ISO &lt;&quot;x&quot;&gt;</a>", template.fill(values));
+    }
+
+    @Test
+    public void testMarkupIsNotEscaped() {
+        MessageTemplate template = new MessageTemplate("<list>${items}</list>");
+        Map<String, String> markup = new HashMap<String, String>();
+        markup.put("items", "<item/><item/>");
+
+        assertEquals("<list><item/><item/></list>", template.fill(new HashMap<String, String>(), markup));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingValue() {
+        new MessageTemplate("<a>${missing}</a>").fill(new HashMap<String, String>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedPlaceholder() {
+        new MessageTemplate("<a>${missing</a>");
+    }
+
+    @Test
+    public void testRequestTemplates() throws Exception {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("localHomeCommunityId", "1.1");
+        values.put("targetHomeCommunityId", "2.2");
+        values.put("patientId", "D123401^^^&1.1&ISO");
+        values.put("documentId", "1.123401.11111");
+        values.put("notificationEndpoint", "http://localhost:8080/consumer");
+        values.put("messageId", "1");
+
+        for (EntityService service : EntityService.values()) {
+            String message = MessageTemplate.load(service.getTemplateResource()).fill(values);
+
+            assertTrue(service.name(), message.contains("2.2"));
+            assertFalse(service.name(), message.contains("${"));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.loadtest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class TransactionLookupLoadTest {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:transactionlookup;MODE=MySQL", "sa", "");
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("CREATE SCHEMA transrepo");
+            statement.execute("CREATE TABLE transrepo.transactionrepository (id BIGINT NOT NULL AUTO_INCREMENT,"
+                    + " transactionId VARCHAR(100) NOT NULL, messageId VARCHAR(100) NOT NULL, time TIMESTAMP NULL,"
+                    + " PRIMARY KEY (id))");
+            statement.execute("CREATE INDEX messageId_IDX ON transrepo.transactionrepository (messageId)");
+            statement.execute("INSERT INTO transrepo.transactionrepository (transactionId, messageId)"
+                    + " VALUES ('gateway-transaction', 'urn:uuid:gateway-message')");
+        } finally {
+            statement.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void testLookupsAreTimedAtEachStep() throws Exception {
+        TransactionLookupLoad lookupLoad = new TransactionLookupLoad(connection, new long[] { 100, 25000 }, 50, 1);
+
+        lookupLoad.run();
+
+        List<TransactionLookupLoad.Step> steps = lookupLoad.getSteps();
+        assertEquals(2, steps.size());
+        assertEquals(100, steps.get(0).getRows());
+        assertEquals(25000, steps.get(1).getRows());
+        for (TransactionLookupLoad.Step step : steps) {
+            assertEquals(50, step.getLatencies().getCount());
+            assertEquals(0, step.getLatencies().getErrorCount());
+        }
+    }
+
+    @Test
+    public void testAddedRowsAreDeleted() throws Exception {
+        new TransactionLookupLoad(connection, new long[] { 1000 }, 10, 1).run();
+
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT messageId FROM transrepo.transactionrepository");
+            result.next();
+            assertEquals("urn:uuid:gateway-message", result.getString(1));
+            assertEquals(false, result.next());
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -26,13 +26,11 @@
  */
 package gov.hhs.fha.nhinc.hibernate.util;
 
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import java.io.File;
 
 /**
  * This class will be used as a Utility Class to access the Data Object using Hibernate SessionFactory
@@ -45,9 +43,11 @@ public class HibernateUtil {
     private static Log log = LogFactory.getLog(HibernateUtil.class);
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
+            // Share the SessionFactory of the databases on the same data source
 
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+
+                    NhincConstants.HIBERNATE_AUDIT_REPOSITORY);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             log.error("Initial SessionFactory creation failed." + ex);
@@ -55,19 +55,6 @@ public class HibernateUtil {
         }
     }
 
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_AUDIT_REPOSITORY);
-        } catch (Exception ex) {
-            log.error("Unable to load " + NhincConstants.HIBERNATE_AUDIT_REPOSITORY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-
-    }
-
     /**
      * Method returns an instance of Hibernate SessionFactory
      * 
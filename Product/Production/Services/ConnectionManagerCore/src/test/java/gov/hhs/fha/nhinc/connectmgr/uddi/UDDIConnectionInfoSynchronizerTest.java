@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.connectmgr.uddi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerCache;
+import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerException;
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.InternalConnectionInfoDAOFileImpl;
+import gov.hhs.fha.nhinc.connectmgr.persistance.dao.UddiConnectionInfoDAOFileImpl;
+import gov.hhs.fha.nhinc.connectmgr.uddi.UDDIChangeReport.ChangeType;
+import gov.hhs.fha.nhinc.connectmgr.uddi.proxy.UDDIFindBusinessException;
+import gov.hhs.fha.nhinc.connectmgr.uddi.proxy.UDDIFindBusinessProxyBase;
+
+import java.io.File;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.uddi.api_v3.AccessPoint;
+import org.uddi.api_v3.BindingTemplate;
+import org.uddi.api_v3.BindingTemplates;
+import org.uddi.api_v3.BusinessDetail;
+import org.uddi.api_v3.BusinessEntity;
+import org.uddi.api_v3.BusinessList;
+import org.uddi.api_v3.BusinessService;
+import org.uddi.api_v3.BusinessServices;
+import org.uddi.api_v3.CategoryBag;
+import org.uddi.api_v3.GetBusinessDetail;
+import org.uddi.api_v3.IdentifierBag;
+import org.uddi.api_v3.KeyedReference;
+
+/**
+ * @author dharley
+ *
+ */
+@RunWith(JMock.class)
+public class UDDIConnectionInfoSynchronizerTest {
+
+    private static final String HOME_COMMUNITY_ID_KEY = "uddi:nhin:nhie:homecommunityid";
+    private static final String SERVICE_NAMES_KEY = "uddi:nhin:standard-servicenames";
+
+    Mockery context = new JUnit4Mockery() {
+
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private File directory;
+    private File uddiFile;
+    private UddiConnectionInfoDAOFileImpl uddiDao;
+    private StubUDDIFindBusinessProxy uddiProxy;
+    private TestConnectionManagerCache cache;
+    private TestSynchronizer synchronizer;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("uddisync", "");
+        directory.delete();
+        directory.mkdir();
+        uddiFile = new File(directory, "uddiConnectionInfo.xml");
+
+        // a DAO of its own, so the shared instance keeps pointing at the real file
+        uddiDao = new UddiConnectionInfoDAOFileImpl() {
+        };
+        uddiDao.setFileName(uddiFile.getAbsolutePath());
+
+        final InternalConnectionInfoDAOFileImpl internalDao = context.mock(InternalConnectionInfoDAOFileImpl.class);
+        context.checking(new Expectations() {
+            {
+                allowing(internalDao).loadBusinessDetail();
+                will(returnValue(new BusinessDetail()));
+                allowing(internalDao).getLastModified();
+                will(returnValue(0L));
+            }
+        });
+
+        uddiProxy = new StubUDDIFindBusinessProxy();
+        cache = new TestConnectionManagerCache(internalDao);
+        synchronizer = new TestSynchronizer(cache);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testInitialSynchronizationAddsEverything() throws Exception {
+        uddiProxy.businessDetail = createBusinessDetail(createEntity("1.1", "https://one/pd"),
+                createEntity("2.2", "https://two/pd"));
+
+        UDDIBusinessDetailDiff diff = synchronizer.synchronize(uddiProxy.getBusinessDetail(new GetBusinessDetail()));
+
+        assertEquals(2, diff.getAddedEntities().size());
+        assertEquals(2, diff.getChangeReport().getChanges(ChangeType.ADDED).size());
+        assertTrue(uddiFile.exists());
+        assertEquals(2, uddiDao.loadBusinessDetail().getBusinessEntity().size());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testOnlyChangedEntriesAreApplied() throws Exception {
+        uddiProxy.businessDetail = createBusinessDetail(createEntity("1.1", "https://one/pd"),
+                createEntity("2.2", "https://two/pd"));
+        synchronizer.synchronize(uddiProxy.getBusinessDetail(new GetBusinessDetail()));
+        cache.forceRefreshUDDICache();
+        BusinessEntity previousEntity = cache.getBusinessEntity("1.1");
+
+        BusinessEntity changedEntity = createEntity("1.1", "https://one/pd");
+        BusinessEntity addedEntity = createEntity("3.3", "https://three/pd");
+        uddiProxy.businessDetail = createBusinessDetail(changedEntity, addedEntity);
+        changedEntity.getBusinessServices().getBusinessService().get(0).getBindingTemplates().getBindingTemplate()
+                .get(0).getAccessPoint().setValue("https://one/pd2");
+
+        UDDIBusinessDetailDiff diff = synchronizer.synchronize(uddiProxy.getBusinessDetail(new GetBusinessDetail()));
+
+        UDDIChangeReport report = diff.getChangeReport();
+        assertEquals(1, report.getChanges(ChangeType.ADDED).size());
+        assertEquals(1, report.getChanges(ChangeType.REMOVED).size());
+        assertEquals(1, report.getChanges(ChangeType.CHANGED).size());
+        assertEquals("https://one/pd", report.getChanges(ChangeType.CHANGED).get(0).getOldUrl());
+        assertEquals("https://one/pd2", report.getChanges(ChangeType.CHANGED).get(0).getNewUrl());
+        assertEquals("2.2", report.getChanges(ChangeType.REMOVED).get(0).getHomeCommunityId());
+
+        // The cache holds the synchronized objects rather than a reparse of the file.
+        assertSame(changedEntity, cache.getBusinessEntity("1.1"));
+        assertSame(addedEntity, cache.getBusinessEntity("3.3"));
+        assertNull(cache.getBusinessEntity("2.2"));
+        assertNotSame(previousEntity, cache.getBusinessEntity("1.1"));
+        assertEquals(1, cache.uddiLoadCount);
+    }
+
+    @Test
+    public void testUnchangedDataIsNotRewritten() throws Exception {
+        uddiProxy.businessDetail = createBusinessDetail(createEntity("1.1", "https://one/pd"));
+        synchronizer.synchronize(uddiProxy.getBusinessDetail(new GetBusinessDetail()));
+        assertTrue(uddiFile.setLastModified(1000L));
+
+        uddiProxy.businessDetail = createBusinessDetail(createEntity("1.1", "https://one/pd"));
+        UDDIBusinessDetailDiff diff = synchronizer.synchronize(uddiProxy.getBusinessDetail(new GetBusinessDetail()));
+
+        assertTrue(diff.isEmpty());
+        assertTrue(diff.getChangeReport().isEmpty());
+        assertEquals(1000L, uddiFile.lastModified());
+    }
+
+    private BusinessDetail createBusinessDetail(BusinessEntity... entities) {
+        BusinessDetail businessDetail = new BusinessDetail();
+        for (BusinessEntity entity : entities) {
+            businessDetail.getBusinessEntity().add(entity);
+        }
+        return businessDetail;
+    }
+
+    private BusinessEntity createEntity(String homeCommunityId, String url) {
+        BusinessEntity entity = new BusinessEntity();
+        entity.setBusinessKey("uddi:business:" + homeCommunityId);
+        entity.setIdentifierBag(new IdentifierBag());
+        entity.getIdentifierBag().getKeyedReference().add(createKeyedReference(HOME_COMMUNITY_ID_KEY, homeCommunityId));
+
+        BusinessService service = new BusinessService();
+        service.setServiceKey("uddi:service:" + homeCommunityId + ":PatientDiscovery");
+        service.setCategoryBag(new CategoryBag());
+        service.getCategoryBag().getKeyedReference().add(createKeyedReference(SERVICE_NAMES_KEY, "PatientDiscovery"));
+
+        BindingTemplate binding = new BindingTemplate();
+        binding.setBindingKey("uddi:binding:" + homeCommunityId + ":PatientDiscovery");
+        binding.setAccessPoint(new AccessPoint());
+        binding.getAccessPoint().setValue(url);
+        service.setBindingTemplates(new BindingTemplates());
+        service.getBindingTemplates().getBindingTemplate().add(binding);
+
+        entity.setBusinessServices(new BusinessServices());
+        entity.getBusinessServices().getBusinessService().add(service);
+        return entity;
+    }
+
+    private KeyedReference createKeyedReference(String key, String value) {
+        KeyedReference reference = new KeyedReference();
+        reference.setTModelKey(key);
+        reference.setKeyValue(value);
+        return reference;
+    }
+
+    /**
+     * Stands in for the UDDI server by returning a fixed business detail.
+     */
+    private class StubUDDIFindBusinessProxy extends UDDIFindBusinessProxyBase {
+        private BusinessDetail businessDetail = new BusinessDetail();
+
+        @Override
+        public BusinessList findBusinessesFromUDDI() throws UDDIFindBusinessException {
+            return new BusinessList();
+        }
+
+        @Override
+        public BusinessDetail getBusinessDetail(GetBusinessDetail searchParams) throws UDDIFindBusinessException {
+            return businessDetail;
+        }
+    }
+
+    private class TestConnectionManagerCache extends ConnectionManagerCache {
+        private final InternalConnectionInfoDAOFileImpl internalDao;
+        private int uddiLoadCount = 0;
+
+        TestConnectionManagerCache(InternalConnectionInfoDAOFileImpl internalDao) {
+            this.internalDao = internalDao;
+        }
+
+        @Override
+        protected UddiConnectionInfoDAOFileImpl getUddiConnectionManagerDAO() {
+            return uddiDao;
+        }
+
+        @Override
+        protected InternalConnectionInfoDAOFileImpl getInternalConnectionManagerDAO() {
+            return internalDao;
+        }
+
+        @Override
+        public void forceRefreshUDDICache() throws ConnectionManagerException {
+            uddiLoadCount++;
+            super.forceRefreshUDDICache();
+        }
+    }
+
+    private class TestSynchronizer extends UDDIConnectionInfoSynchronizer {
+        private final ConnectionManagerCache cache;
+
+        TestSynchronizer(ConnectionManagerCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        protected UddiConnectionInfoDAOFileImpl getUddiConnectionManagerDAO() {
+            return uddiDao;
+        }
+
+        @Override
+        protected ConnectionManagerCache getConnectionManagerCache() {
+            return cache;
+        }
+    }
+}
@@ -34,12 +34,16 @@ import gov.hhs.fha.nhinc.common.auditlog.AdhocQueryResponseMessageType;
 import gov.hhs.fha.nhinc.common.auditlog.LogEventRequestType;
 import gov.hhs.fha.nhinc.common.nhinccommon.AcknowledgementType;
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.transform.audit.AuditDataTransformConstants;
 import gov.hhs.healthit.nhin.DocQueryAcknowledgementType;
 import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryRequest;
 import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.services.nhinc.schema.auditmessage.ParticipantObjectIdentificationType;
+import com.services.nhinc.schema.auditmessage.TypeValuePairType;
+
 /**
  * 
  * @author jhoppesc
@@ -112,6 +116,45 @@ public class DocQueryAuditLog {
         return ack;
     }
 
+    /**
+     * Audits a DQ response answered from the DocQueryResponseCache instead of by the target. The audit record is the
+     * one of the response received from the target, with a CachedResponse detail on each of its participant objects.
+     * 
+     * @param msg the cached response
+     * @param assertion Assertion of the request
+     * @param direction The direction this message is going (Inbound or Outbound)
+     * @param _interface The interface this message is being received/sent on (Entity, Adapter, or Nhin)
+     * @param requestCommunityID the home community id of the target
+     * @return An acknowledgment of whether or not the message was successfully logged.
+     */
+    public AcknowledgementType auditCachedDQResponse(AdhocQueryResponse msg, AssertionType assertion,
+            String direction, String _interface, String requestCommunityID) {
+        getLog().debug("Entering DocQueryAuditLog.auditCachedDQResponse()...");
+
+        AdhocQueryResponseMessageType message = new AdhocQueryResponseMessageType();
+        message.setAssertion(assertion);
+        message.setAdhocQueryResponse(msg);
+
+        AcknowledgementType ack = new AcknowledgementType();
+        LogEventRequestType auditLogMsg = getAuditRepositoryLogger().logAdhocQueryResult(message, direction,
+                _interface, requestCommunityID);
+        if (auditLogMsg != null) {
+            if (auditLogMsg.getAuditMessage() != null) {
+                for (ParticipantObjectIdentificationType partObjId : auditLogMsg.getAuditMessage()
+                        .getParticipantObjectIdentification()) {
+                    TypeValuePairType detail = new TypeValuePairType();
+                    detail.setType(AuditDataTransformConstants.PARTICIPANT_OBJECT_DETAIL_TYPE_CACHED_RESPONSE);
+                    detail.setValue(Boolean.TRUE.toString().getBytes());
+                    partObjId.getParticipantObjectDetail().add(detail);
+                }
+            }
+            ack = getAuditRepositoryProxy().auditLog(auditLogMsg, assertion);
+        }
+
+        getLog().debug("Exiting DocQueryAuditLog.auditCachedDQResponse()...");
+        return ack;
+    }
+
     /**
      * This method will log Document Query Requests sent on the Nhin Interface
      * 
@@ -276,4 +319,12 @@ public class DocQueryAuditLog {
         return LOG;
     }
 
+    protected AuditRepositoryLogger getAuditRepositoryLogger() {
+        return new AuditRepositoryLogger();
+    }
+
+    protected AuditRepositoryProxy getAuditRepositoryProxy() {
+        return new AuditRepositoryProxyObjectFactory().getAuditRepositoryProxy();
+    }
+
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docquery.entity;
+
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.common.nhinccommon.CeType;
+import gov.hhs.fha.nhinc.gateway.aggregator.document.DocumentConstants;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.util.hash.SHA1HashCode;
+
+import java.io.UnsupportedEncodingException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryRequest;
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.SlotType1;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the successful Document Query responses of each partner for a short time, so a query repeated within minutes
+ * for the same patient is answered without calling the partner again.
+ * <p>
+ * A response is stored per target community, under a digest of the query slots, the target home community id and the
+ * role and purpose of use of the assertion; each target keeps its own time to live, so a repeated query only calls the
+ * partners whose responses have expired. The cache is off unless DocQueryCacheEnabled is true, and a query carrying
+ * the {@link #BYPASS_SLOT} slot always calls every partner.
+ *
+ * @author dharley
+ */
+public class DocQueryResponseCache {
+
+    /**
+     * The slot that makes a query bypass the cache. It is removed from the query before it is sent on.
+     */
+    public static final String BYPASS_SLOT = "$CONNECTBypassCache";
+
+    private static final long DEFAULT_TIME_TO_LIVE = 300000;
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static Log log = LogFactory.getLog(DocQueryResponseCache.class);
+
+    private static DocQueryResponseCache instance = null;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * A cached response, with the api level of the partner that sent it.
+     */
+    static class Entry {
+        private final AdhocQueryResponse response;
+        private final boolean specA0;
+        private final long expiresAt;
+
+        Entry(AdhocQueryResponse response, boolean specA0, long expiresAt) {
+            this.response = response;
+            this.specA0 = specA0;
+            this.expiresAt = expiresAt;
+        }
+
+        AdhocQueryResponse getResponse() {
+            return response;
+        }
+
+        boolean isSpecA0() {
+            return specA0;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    protected DocQueryResponseCache() {
+    }
+
+    public static synchronized DocQueryResponseCache getInstance() {
+        if (instance == null) {
+            instance = new DocQueryResponseCache();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if DocQueryCacheEnabled is set to true in gateway.properties
+     */
+    public boolean isEnabled() {
+        return "true".equalsIgnoreCase(getProperty(NhincConstants.DOC_QUERY_CACHE_ENABLED));
+    }
+
+    /**
+     * Removes the {@link #BYPASS_SLOT} slot from the query.
+     *
+     * @param request the query
+     * @return true if the query carried the slot
+     */
+    public static boolean removeBypassSlot(AdhocQueryRequest request) {
+        boolean bypass = false;
+        if (request != null && request.getAdhocQuery() != null) {
+            Iterator<SlotType1> slots = request.getAdhocQuery().getSlot().iterator();
+            while (slots.hasNext()) {
+                if (BYPASS_SLOT.equals(slots.next().getName())) {
+                    slots.remove();
+                    bypass = true;
+                }
+            }
+        }
+        return bypass;
+    }
+
+    /**
+     * Computes the key of a query sent to one target. Slots and their values are sorted first, so the same query
+     * written in another order has the same key.
+     *
+     * @param request the query, with the patient id of the target
+     * @param targetHomeCommunityId the home community id of the target
+     * @param assertion the assertion the query is sent with
+     * @return the key, or null if it cannot be computed
+     */
+    public String getKey(AdhocQueryRequest request, String targetHomeCommunityId, AssertionType assertion) {
+        if (request == null || request.getAdhocQuery() == null || targetHomeCommunityId == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(targetHomeCommunityId).append('|').append(request.getAdhocQuery().getId());
+        if (request.getResponseOption() != null) {
+            text.append('|').append(request.getResponseOption().getReturnType());
+        }
+        if (assertion != null) {
+            if (assertion.getUserInfo() != null) {
+                text.append("|role=").append(getCode(assertion.getUserInfo().getRoleCoded()));
+            }
+            text.append("|purpose=").append(getCode(assertion.getPurposeOfDisclosureCoded()));
+        }
+        List<SlotType1> slots = new ArrayList<SlotType1>(request.getAdhocQuery().getSlot());
+        Collections.sort(slots, new Comparator<SlotType1>() {
+            @Override
+            public int compare(SlotType1 first, SlotType1 second) {
+                return String.valueOf(first.getName()).compareTo(String.valueOf(second.getName()));
+            }
+        });
+        for (SlotType1 slot : slots) {
+            text.append('|').append(slot.getName()).append('=');
+            if (slot.getValueList() != null) {
+                List<String> values = new ArrayList<String>(slot.getValueList().getValue());
+                Collections.sort(values);
+                text.append(values);
+            }
+        }
+        try {
+            return SHA1HashCode.calculateSHA1(text.toString());
+        } catch (NoSuchAlgorithmException ex) {
+            log.warn("Unable to compute the doc query cache key: " + ex.getMessage());
+        } catch (UnsupportedEncodingException ex) {
+            log.warn("Unable to compute the doc query cache key: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key of the query
+     * @param now the current time in milliseconds
+     * @return the cached response of the target, or null if there is none or it has expired
+     */
+    Entry get(String key, long now) {
+        if (key == null) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the response of a target, if it is a success and the target's time to live is not zero.
+     *
+     * @param key the key of the query
+     * @param targetHomeCommunityId the home community id of the target
+     * @param response the response of the target
+     * @param specA0 whether the response came from an a0 endpoint
+     * @param now the current time in milliseconds
+     */
+    void put(String key, String targetHomeCommunityId, AdhocQueryResponse response, boolean specA0, long now) {
+        if (key == null || response == null
+                || !DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS.equals(response.getStatus())) {
+            return;
+        }
+        long timeToLive = getTimeToLive(targetHomeCommunityId);
+        if (timeToLive <= 0) {
+            return;
+        }
+        if (entries.size() >= getMaxEntries()) {
+            removeExpired(now);
+            if (entries.size() >= getMaxEntries()) {
+                log.debug("Doc query cache is full, response of " + targetHomeCommunityId + " not cached");
+                return;
+            }
+        }
+        entries.put(key, new Entry(response, specA0, now + timeToLive));
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of responses held, expired ones included
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param targetHomeCommunityId the home community id of the target
+     * @return DocQueryCacheTTL.&lt;hcid&gt; if set, else DocQueryCacheTTL, in milliseconds
+     */
+    protected long getTimeToLive(String targetHomeCommunityId) {
+        String value = getProperty(NhincConstants.DOC_QUERY_CACHE_TTL + "." + targetHomeCommunityId);
+        if (value == null || value.trim().length() == 0) {
+            value = getProperty(NhincConstants.DOC_QUERY_CACHE_TTL);
+        }
+        return parse(NhincConstants.DOC_QUERY_CACHE_TTL, value, DEFAULT_TIME_TO_LIVE);
+    }
+
+    protected int getMaxEntries() {
+        return (int) parse(NhincConstants.DOC_QUERY_CACHE_MAX_ENTRIES,
+                getProperty(NhincConstants.DOC_QUERY_CACHE_MAX_ENTRIES), DEFAULT_MAX_ENTRIES);
+    }
+
+    protected String getProperty(String propertyName) {
+        try {
+            return PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, propertyName);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private void removeExpired(long now) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().isExpired(now)) {
+                entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private long parse(String propertyName, String value, long defaultValue) {
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                log.warn(propertyName + " in gateway.properties is not a number: " + ex.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String getCode(CeType code) {
+        return code == null ? null : code.getCode();
+    }
+}
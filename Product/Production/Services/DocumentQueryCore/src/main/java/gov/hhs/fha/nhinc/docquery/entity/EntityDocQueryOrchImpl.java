@@ -144,6 +144,7 @@ public class EntityDocQueryOrchImpl {
         request.setAdhocQueryRequest(adhocQueryRequest);
         request.setNhinTargetCommunities(targets);
         auditInitialEntityRequest(request, assertion, auditLog);
+        boolean bypassCache = DocQueryResponseCache.removeBypassSlot(adhocQueryRequest);
 
         try {
             if (targets != null && NullChecker.isNotNullish(targets.getNhinTargetCommunity())) {
@@ -196,7 +197,7 @@ public class EntityDocQueryOrchImpl {
                                     + targetCommunity.getHomeCommunityId());
 
                             if (isValidPolicy(adhocQueryRequest, assertion, targetCommunity)) {
-                                OutboundDelegate nd = new OutboundDocQueryDelegate();
+                                OutboundDelegate nd = getDelegate(bypassCache);
                                 OutboundResponseProcessor np = null;
                                 if (responseIsSpecA0) {
                                     np = new OutboundDocQueryProcessor(NhincConstants.GATEWAY_API_LEVEL.LEVEL_g0);
@@ -238,7 +239,7 @@ public class EntityDocQueryOrchImpl {
                                                     nd, np, null, null, assertion,
                                                     NhincConstants.DOC_QUERY_SERVICE_NAME, target, clonedRequest);
                                             callableList.add(new NhinCallableRequest<OutboundDocQueryOrchestratable>(
-                                                    message));
+                                                    message, urlInfo.getHcid()));
 
                                         } else {
                                             RegistryError regErr = new RegistryError();
@@ -360,6 +361,18 @@ public class EntityDocQueryOrchImpl {
         return responseIsSpecA0;
     }
 
+    /**
+     * @param bypassCache whether the query asked to bypass the response cache
+     * @return the delegate that calls a target, through the response cache if it is enabled
+     */
+    protected OutboundDelegate getDelegate(boolean bypassCache) {
+        DocQueryResponseCache cache = DocQueryResponseCache.getInstance();
+        if (!bypassCache && cache.isEnabled()) {
+            return new OutboundDocQueryCachingDelegate(cache);
+        }
+        return new OutboundDocQueryDelegate();
+    }
+
     /**
      * @param targets
      * @param docQueryServiceName
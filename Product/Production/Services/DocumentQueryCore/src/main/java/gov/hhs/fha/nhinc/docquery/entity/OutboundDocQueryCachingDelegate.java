@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docquery.entity;
+
+import gov.hhs.fha.nhinc.docquery.DocQueryAuditLog;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Doc Query delegate that answers from the {@link DocQueryResponseCache} when it holds an unexpired response of the
+ * target, and otherwise calls the target and caches its response. A cached response is audited as received from the
+ * target, as the call would have been, with a detail that marks it as answered from the cache.
+ *
+ * @author dharley
+ */
+public class OutboundDocQueryCachingDelegate extends OutboundDocQueryDelegate {
+
+    private static Log log = LogFactory.getLog(OutboundDocQueryCachingDelegate.class);
+
+    private final DocQueryResponseCache cache;
+
+    public OutboundDocQueryCachingDelegate(DocQueryResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public OutboundDocQueryOrchestratable process(OutboundDocQueryOrchestratable message) {
+        String hcid = message.getTarget().getHomeCommunity().getHomeCommunityId();
+        String key = cache.getKey(message.getRequest(), hcid, message.getAssertion());
+
+        DocQueryResponseCache.Entry entry = cache.get(key, System.currentTimeMillis());
+        if (entry != null) {
+            log.info("Doc query response of " + hcid + " served from cache");
+            OutboundDocQueryOrchestratable response = createResponse(message, entry.isSpecA0());
+            response.setResponse(entry.getResponse());
+            auditCacheHit(response, hcid);
+            return response;
+        }
+
+        OutboundDocQueryOrchestratable response = callTarget(message);
+        if (response != null) {
+            cache.put(key, hcid, response.getResponse(), response instanceof OutboundDocQueryOrchestratable_a0,
+                    System.currentTimeMillis());
+        }
+        return response;
+    }
+
+    protected OutboundDocQueryOrchestratable callTarget(OutboundDocQueryOrchestratable message) {
+        return super.process(message);
+    }
+
+    protected void auditCacheHit(OutboundDocQueryOrchestratable response, String hcid) {
+        getAuditLog().auditCachedDQResponse(response.getResponse(), response.getAssertion(),
+                NhincConstants.AUDIT_LOG_INBOUND_DIRECTION, NhincConstants.AUDIT_LOG_NHIN_INTERFACE, hcid);
+    }
+
+    protected DocQueryAuditLog getAuditLog() {
+        return new DocQueryAuditLog();
+    }
+
+    private OutboundDocQueryOrchestratable createResponse(OutboundDocQueryOrchestratable message, boolean specA0) {
+        if (specA0) {
+            return new OutboundDocQueryOrchestratable_a0(null, message.getResponseProcessor(),
+                    message.getAuditTransformer(), message.getPolicyTransformer(), message.getAssertion(),
+                    message.getServiceName(), message.getTarget(), message.getRequest());
+        }
+        return new OutboundDocQueryOrchestratable_a1(null, message.getResponseProcessor(),
+                message.getAuditTransformer(), message.getPolicyTransformer(), message.getAssertion(),
+                message.getServiceName(), message.getTarget(), message.getRequest());
+    }
+}
@@ -460,6 +460,28 @@ public class OutboundDocQueryProcessor implements OutboundResponseProcessor {
         return null;
     }
 
+    /**
+     * A DQ response is an error response when it is missing, when its status is Failure, or when it has a registry
+     * error of severity Error.
+     * 
+     * @param individualResponse the OutboundDocQueryOrchestratable of a single target
+     * @return true if its DQ response reports an error
+     */
+    public boolean isErrorResponse(OutboundOrchestratableMessage individualResponse) {
+        AdhocQueryResponse response = ((OutboundDocQueryOrchestratable) individualResponse).getResponse();
+        if (response == null || DocumentConstants.XDS_QUERY_RESPONSE_STATUS_FAILURE.equals(response.getStatus())) {
+            return true;
+        }
+        if (response.getRegistryErrorList() != null) {
+            for (RegistryError regErr : response.getRegistryErrorList().getRegistryError()) {
+                if (NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR.equals(regErr.getSeverity())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * NOT USED
      */
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.aggregator.document;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.IdentifiableType;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryError;
+
+/**
+ * The state of one Document Query aggregator transaction. The registry objects and registry errors of each response
+ * are merged into this object as the response arrives. Responses that were written to files because the transaction
+ * had grown too large are only recorded by file.
+ *
+ * @author dharley
+ */
+public class DocQueryAggregation {
+
+    private final String transactionId;
+    private final long startTime;
+    private final Map<String, Boolean> messageKeys = new LinkedHashMap<String, Boolean>();
+    private final List<JAXBElement<? extends IdentifiableType>> registryObjects = new ArrayList<JAXBElement<? extends IdentifiableType>>();
+    private final List<RegistryError> registryErrors = new ArrayList<RegistryError>();
+    private final List<File> spilledResponses = new ArrayList<File>();
+    private boolean closed = false;
+
+    /**
+     * @param transactionId the transaction id
+     * @param messageKeys the keys of the messages whose responses are expected
+     * @param startTime the time the transaction was started
+     */
+    DocQueryAggregation(String transactionId, Collection<String> messageKeys, long startTime) {
+        this.transactionId = transactionId;
+        this.startTime = startTime;
+        for (String messageKey : messageKeys) {
+            this.messageKeys.put(messageKey, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * @return the transaction id
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return the time the transaction was started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @param messageKey the message key
+     * @return true if the message is part of this transaction
+     */
+    public synchronized boolean isExpected(String messageKey) {
+        return messageKeys.containsKey(messageKey);
+    }
+
+    /**
+     * @param messageKey the message key
+     * @return true if a response has been recorded for the message
+     */
+    public synchronized boolean isReceived(String messageKey) {
+        return Boolean.TRUE.equals(messageKeys.get(messageKey));
+    }
+
+    /**
+     * @return true if a response has been recorded for every message of the transaction
+     */
+    public synchronized boolean isComplete() {
+        return !messageKeys.containsValue(Boolean.FALSE);
+    }
+
+    /**
+     * @return true once the transaction has been collected or discarded; no more responses are recorded
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the keys of the messages that have no response
+     */
+    public synchronized List<String> getPendingMessageKeys() {
+        List<String> pending = new ArrayList<String>();
+        for (Map.Entry<String, Boolean> entry : messageKeys.entrySet()) {
+            if (!entry.getValue()) {
+                pending.add(entry.getKey());
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return the number of registry objects held in memory
+     */
+    public synchronized int getRegistryObjectCount() {
+        return registryObjects.size();
+    }
+
+    /**
+     * @return the registry objects merged so far, not including those of responses written to files
+     */
+    public synchronized List<JAXBElement<? extends IdentifiableType>> getRegistryObjects() {
+        return new ArrayList<JAXBElement<? extends IdentifiableType>>(registryObjects);
+    }
+
+    /**
+     * @return the registry errors merged so far, not including those of responses written to files
+     */
+    public synchronized List<RegistryError> getRegistryErrors() {
+        return new ArrayList<RegistryError>(registryErrors);
+    }
+
+    /**
+     * @return the files holding responses that were not merged in memory
+     */
+    public synchronized List<File> getSpilledResponses() {
+        return new ArrayList<File>(spilledResponses);
+    }
+
+    /**
+     * Merges the registry objects and registry errors of a response and marks the message as received.
+     *
+     * @param messageKey the message key
+     * @param response the response, which may be null if the message had no response content
+     */
+    synchronized void merge(String messageKey, AdhocQueryResponse response) {
+        if (response != null) {
+            if ((response.getRegistryObjectList() != null)
+                    && (response.getRegistryObjectList().getIdentifiable() != null)) {
+                registryObjects.addAll(response.getRegistryObjectList().getIdentifiable());
+            }
+            if ((response.getRegistryErrorList() != null)
+                    && (response.getRegistryErrorList().getRegistryError() != null)) {
+                registryErrors.addAll(response.getRegistryErrorList().getRegistryError());
+            }
+        }
+        messageKeys.put(messageKey, Boolean.TRUE);
+    }
+
+    /**
+     * Records a response that was written to a file and marks the message as received.
+     *
+     * @param messageKey the message key
+     * @param file the file holding the response
+     */
+    synchronized void addSpilledResponse(String messageKey, File file) {
+        spilledResponses.add(file);
+        messageKeys.put(messageKey, Boolean.TRUE);
+    }
+
+    /**
+     * Stops the transaction from recording responses and deletes the files it wrote.
+     */
+    synchronized void close() {
+        closed = true;
+        registryObjects.clear();
+        registryErrors.clear();
+        for (File file : spilledResponses) {
+            if (file.exists() && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        spilledResponses.clear();
+    }
+}
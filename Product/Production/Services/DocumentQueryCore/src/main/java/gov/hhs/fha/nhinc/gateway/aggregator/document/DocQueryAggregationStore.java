@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.aggregator.document;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.nhinclib.NullChecker;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the Document Query aggregator transactions in memory. Each response is merged into its transaction when it is
+ * set, so a response is not marshalled or written to the aggregator database while the query is in flight. Once a
+ * transaction holds more than the configured number of registry objects, further responses are written to files in the
+ * aggregator large response directory and only read back when the results are collected.
+ *
+ * Transactions that are not collected within the aggregator stale duration are discarded.
+ *
+ * @author dharley
+ */
+public class DocQueryAggregationStore {
+
+    private static final Log LOG = LogFactory.getLog(DocQueryAggregationStore.class);
+
+    static final long DEFAULT_MAX_IN_MEMORY_RESULTS = 10000;
+    static final long DEFAULT_STALE_DURATION = 120;
+    static final long DEFAULT_SWEEP_INTERVAL = 60;
+
+    private static final String QUERY_CONTEXT = "oasis.names.tc.ebxml_regrep.xsd.query._3";
+    private static final String SPILL_FILE_PREFIX = "docquery";
+    private static final String SPILL_FILE_SUFFIX = ".xml";
+
+    private static DocQueryAggregationStore instance = null;
+
+    private final Map<String, DocQueryAggregation> transactions = new ConcurrentHashMap<String, DocQueryAggregation>();
+    private final long maxInMemoryResults;
+    private final File spillDirectory;
+    private final long staleDuration;
+    private final long sweepInterval;
+    private long lastSweep;
+
+    /**
+     * @param maxInMemoryResults the number of registry objects a transaction holds in memory before responses are
+     *            written to files; 0 or less never writes responses to files
+     * @param spillDirectory the directory responses are written to, or null for the system temporary directory
+     * @param staleDuration the number of milliseconds after which an uncollected transaction is discarded
+     * @param sweepInterval the minimum number of milliseconds between checks for stale transactions
+     */
+    DocQueryAggregationStore(long maxInMemoryResults, File spillDirectory, long staleDuration, long sweepInterval) {
+        this.maxInMemoryResults = maxInMemoryResults;
+        this.spillDirectory = spillDirectory;
+        this.staleDuration = staleDuration;
+        this.sweepInterval = sweepInterval;
+        this.lastSweep = currentTimeMillis();
+    }
+
+    /**
+     * Returns the store configured from gateway.properties.
+     *
+     * @return DocQueryAggregationStore
+     */
+    public static synchronized DocQueryAggregationStore getInstance() {
+        if (instance == null) {
+            PropertyAccessor props = PropertyAccessor.getInstance();
+            instance = new DocQueryAggregationStore(props.getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.AGGREGATOR_MAX_IN_MEMORY_RESULTS_PROP, DEFAULT_MAX_IN_MEMORY_RESULTS),
+                    getSpillDirectory(), TimeUnit.SECONDS.toMillis(props.getPropertyLong(
+                            NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.AGGREGATOR_STALE_DURATION_PROP,
+                            DEFAULT_STALE_DURATION)), TimeUnit.SECONDS.toMillis(props.getPropertyLong(
+                            NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.AGGREGATOR_SWEEP_INTERVAL_PROP,
+                            DEFAULT_SWEEP_INTERVAL)));
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a transaction expecting one response for each message key.
+     *
+     * @param messageKeys the message keys
+     * @return the transaction id
+     */
+    public String startTransaction(Collection<String> messageKeys) {
+        removeStaleTransactions();
+
+        String transactionId = UUID.randomUUID().toString();
+        transactions.put(transactionId, new DocQueryAggregation(transactionId, messageKeys, currentTimeMillis()));
+        return transactionId;
+    }
+
+    /**
+     * @param transactionId the transaction id
+     * @return the transaction, or null if it is not known or has already been collected
+     */
+    public DocQueryAggregation getTransaction(String transactionId) {
+        if (NullChecker.isNullish(transactionId)) {
+            return null;
+        }
+        return transactions.get(transactionId);
+    }
+
+    /**
+     * Merges the response to a message into its transaction. If the transaction already holds the maximum number of
+     * registry objects in memory the response is written to a file instead.
+     *
+     * @param transactionId the transaction id
+     * @param messageKey the message key
+     * @param response the response, which may be null if the message had no response content
+     * @return false if the transaction or message is not known, or the transaction has already been collected
+     */
+    public boolean setResponse(String transactionId, String messageKey, AdhocQueryResponse response) {
+        DocQueryAggregation aggregation = getTransaction(transactionId);
+        if (aggregation == null) {
+            return false;
+        }
+
+        synchronized (aggregation) {
+            if (aggregation.isClosed() || !aggregation.isExpected(messageKey)) {
+                return false;
+            }
+            if (aggregation.isReceived(messageKey)) {
+                LOG.warn("Ignoring a second response for transaction " + transactionId + " and message key "
+                        + messageKey);
+                return true;
+            }
+
+            if ((response != null) && (maxInMemoryResults > 0)
+                    && (aggregation.getRegistryObjectCount() >= maxInMemoryResults)) {
+                try {
+                    aggregation.addSpilledResponse(messageKey, writeResponse(response));
+                    return true;
+                } catch (IOException ioe) {
+                    LOG.warn("Failed to write response for transaction " + transactionId
+                            + " to a file, keeping it in memory: " + ioe.getMessage(), ioe);
+                }
+            }
+            aggregation.merge(messageKey, response);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a transaction from the store. The caller should close the transaction once it has read its results.
+     *
+     * @param transactionId the transaction id
+     * @return the transaction, or null if it is not known or was already removed
+     */
+    public DocQueryAggregation removeTransaction(String transactionId) {
+        if (NullChecker.isNullish(transactionId)) {
+            return null;
+        }
+        return transactions.remove(transactionId);
+    }
+
+    /**
+     * Reads a response that was written to a file.
+     *
+     * @param file the file
+     * @return the response
+     * @throws IOException if the file cannot be read
+     */
+    public AdhocQueryResponse readResponse(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return (AdhocQueryResponse) getQueryContext().createUnmarshaller().unmarshal(in);
+        } catch (JAXBException je) {
+            throw new IOException("Failed to read aggregated response from " + file.getAbsolutePath(), je);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the number of transactions held
+     */
+    public int size() {
+        return transactions.size();
+    }
+
+    /**
+     * Discards the transactions that were started more than the stale duration ago. The check is made at most once per
+     * sweep interval.
+     */
+    void removeStaleTransactions() {
+        long now = currentTimeMillis();
+        synchronized (this) {
+            if (now - lastSweep < sweepInterval) {
+                return;
+            }
+            lastSweep = now;
+        }
+
+        List<DocQueryAggregation> stale = new ArrayList<DocQueryAggregation>();
+        for (Iterator<DocQueryAggregation> it = transactions.values().iterator(); it.hasNext();) {
+            DocQueryAggregation aggregation = it.next();
+            if (now - aggregation.getStartTime() >= staleDuration) {
+                it.remove();
+                stale.add(aggregation);
+            }
+        }
+        for (DocQueryAggregation aggregation : stale) {
+            aggregation.close();
+        }
+        if (!stale.isEmpty()) {
+            LOG.debug("Discarded " + stale.size() + " stale document query aggregator transaction(s)");
+        }
+    }
+
+    protected File writeResponse(AdhocQueryResponse response) throws IOException {
+        if ((spillDirectory != null) && !spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IOException("Failed to create directory " + spillDirectory.getAbsolutePath());
+        }
+        File file = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, spillDirectory);
+        boolean written = false;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            getQueryContext().createMarshaller().marshal(response, out);
+            written = true;
+        } catch (JAXBException je) {
+            throw new IOException("Failed to write aggregated response to " + file.getAbsolutePath(), je);
+        } finally {
+            out.close();
+            if (!written) {
+                file.delete();
+            }
+        }
+        return file;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private JAXBContext getQueryContext() throws JAXBException {
+        return new JAXBContextHandler().getJAXBContext(QUERY_CONTEXT);
+    }
+
+    private static File getSpillDirectory() {
+        try {
+            String dir = PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE,
+                    NhincConstants.AGGREGATOR_LARGE_RESP_DIR_PROP);
+            if (NullChecker.isNotNullish(dir)) {
+                return new File(dir);
+            }
+        } catch (PropertyAccessException pae) {
+            LOG.info("Failed to determine " + NhincConstants.AGGREGATOR_LARGE_RESP_DIR_PROP
+                    + " in gateway.properties.  Will use default value.");
+        }
+        return null;
+    }
+}
@@ -27,8 +27,8 @@
 package gov.hhs.fha.nhinc.gateway.aggregator.document;
 
 import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
-import java.util.Date;
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -43,20 +43,13 @@ import gov.hhs.fha.nhinc.gateway.aggregator.AggregatorException;
 import gov.hhs.fha.nhinc.gateway.aggregator.GetAggResultsDocQueryRequestType;
 import gov.hhs.fha.nhinc.gateway.aggregator.GetAggResultsDocQueryResponseType;
 import gov.hhs.fha.nhinc.gateway.aggregator.model.DocQueryMessageKey;
-import gov.hhs.fha.nhinc.gateway.aggregator.model.AggTransaction;
-import gov.hhs.fha.nhinc.gateway.aggregator.model.AggMessageResult;
-
-import gov.hhs.fha.nhinc.gateway.aggregator.dao.AggTransactionDao;
 
 import gov.hhs.fha.nhinc.gateway.aggregator.StartTransactionDocQueryRequestType;
 import gov.hhs.fha.nhinc.gateway.aggregator.SetResponseMsgDocQueryRequestType;
-import gov.hhs.fha.nhinc.gateway.aggregator.dao.AggMessageResultDao;
-import gov.hhs.fha.nhinc.gateway.aggregator.persistence.GarbageCollectorMgr;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
 import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.Set;
 import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
 
 import javax.xml.bind.JAXBContext;
@@ -75,13 +68,21 @@ import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryErrorList;
  */
 public class DocQueryAggregator {
     private static Log log = LogFactory.getLog(DocQueryAggregator.class);
-    private static String DOC_QUERY_NAME = "documentquery";
-    private static String DOC_QUERY_RESPONSE = "AdhocQueryResponse";
+
+    private final DocQueryAggregationStore store;
 
     /**
      * Default constructor
      */
     public DocQueryAggregator() {
+        this(DocQueryAggregationStore.getInstance());
+    }
+
+    /**
+     * @param store The store that holds the transactions.
+     */
+    DocQueryAggregator(DocQueryAggregationStore store) {
+        this.store = store;
     }
 
     /**
@@ -144,10 +145,6 @@ public class DocQueryAggregator {
             HashMap<String, String> hAssignAuthHomeCommMap) {
         String sTransactionId = "";
 
-        // Based on property settings, spin off the garbage collector thread
-        // -------------------------------------------------------------------
-        GarbageCollectorMgr.runGarbageCollection();
-
         if ((oRequest != null) && (oRequest.getQualifiedPatientIdentifiers() != null)
                 && (oRequest.getQualifiedPatientIdentifiers().getQualifiedSubjectIdentifier() != null)
                 && (oRequest.getQualifiedPatientIdentifiers().getQualifiedSubjectIdentifier().size() > 0)) {
@@ -238,7 +235,6 @@ public class DocQueryAggregator {
         String sTransactionId = "";
         String sHomeCommunityId = "";
         DocQueryMessageKey oKey = new DocQueryMessageKey();
-        String sAdhocQueryResponseXML = "";
 
         if (oRequest != null) {
             // Transaction Id
@@ -285,14 +281,8 @@ public class DocQueryAggregator {
                 sStatus = DocumentConstants.FAIL_TEXT;
             }
 
-            // Marshall the AdhocQueryResponse
-            // ---------------------------------
-            if (oRequest.getAdhocQueryResponse() != null) {
-                sAdhocQueryResponseXML = marshalAdhocQueryResponse(oRequest.getAdhocQueryResponse());
-            }
-
             if (!sStatus.equals(DocumentConstants.FAIL_TEXT)) {
-                sStatus = setResponseMsg(sTransactionId, oKey, sAdhocQueryResponseXML);
+                sStatus = setResponseMsg(sTransactionId, oKey, oRequest.getAdhocQueryResponse());
             }
         } else {
             sStatus = DocumentConstants.FAIL_TEXT;
@@ -355,11 +345,10 @@ public class DocQueryAggregator {
 
     /**
      * This method starts a transaction using the set of message keys passed in. It will create a transaction, with one
-     * message for each message key. The entries will be written to the AGGREGATOR.AGG_TRANSACTION and
-     * AGGREGATOR.AGG_MESSAGE_RESULTS tables.
+     * expected response for each message key. The transaction is held in memory until its results are retrieved or it
+     * becomes stale.
      * 
-     * @param oaMessageKey The set of message keys. There will be one row written to the AGG_MESSAGE_RESULTS table for
-     *            each array item.
+     * @param oaMessageKey The set of message keys. One response is expected for each array item.
      * @return The transaction Id that was assigned when this transaction was started.
      */
     public String startTransaction(DocQueryMessageKey[] oaMessageKey) {
@@ -370,40 +359,19 @@ public class DocQueryAggregator {
                                    // a transaction for.
         }
 
-        Date dtNow = new Date();
-
-        AggTransaction oTrans = new AggTransaction();
-        oTrans.setServiceType(DOC_QUERY_NAME);
-        oTrans.setTransactionStartTime(dtNow);
-
-        HashSet<AggMessageResult> hMsgResult = new HashSet<AggMessageResult>();
-
+        List<String> olMessageKey = new ArrayList<String>(oaMessageKey.length);
         for (DocQueryMessageKey oMessageKey : oaMessageKey) {
-            AggMessageResult oMsgResult = new AggMessageResult();
-            oMsgResult.setAggTransaction(oTrans);
-            oMsgResult.setMessageKey(oMessageKey.createXMLMessageKey());
-            oMsgResult.setMessageOutTime(dtNow);
-            oMsgResult.setResponseMessageType(DOC_QUERY_RESPONSE);
-            oMsgResult.setResponseMessage("");
-            oMsgResult.setResponseReceivedTime(null);
-            hMsgResult.add(oMsgResult);
+            olMessageKey.add(oMessageKey.createXMLMessageKey());
         }
-        oTrans.setAggMessageResults(hMsgResult);
-
-        AggTransactionDao oTransDao = new AggTransactionDao();
-        oTransDao.save(oTrans);
 
-        if ((oTrans != null) && (oTrans.getTransactionId() != null) && (oTrans.getTransactionId().length() > 0)) {
-            sTransactionId = oTrans.getTransactionId();
-        }
+        sTransactionId = store.startTransaction(olMessageKey);
 
         return sTransactionId;
     }
 
     /**
-     * This method retrieves the message result entry in the database and fills in the response information for that
-     * message. It locates the entry based on the message key and transaction Id based on the information that was
-     * passed in.
+     * This method fills in the response information for a message of a transaction. It locates the message based on
+     * the message key and transaction Id that were passed in.
      * 
      * @param sTransactionId The transaction Id associated with the message.
      * @param oKey The information that is used for the message key.
@@ -411,59 +379,34 @@ public class DocQueryAggregator {
      * @return The status. "SUCCESS" or "FAIL".
      */
     public String setResponseMsg(String sTransactionId, DocQueryMessageKey oKey, String sAdhocQueryResponseXML) {
-        String sStatus = DocumentConstants.SUCCESS_TEXT;
-        String sMessageKey = oKey.createXMLMessageKey();
-
-        AggMessageResultDao oAggMessageResultDao = new AggMessageResultDao();
-        AggMessageResult oMsgResult = null;
-        try {
-            oMsgResult = oAggMessageResultDao.findByMessageKey(sTransactionId, sMessageKey);
-        } catch (Exception e) {
-            String sErrorMessage = "Failed to retrieve AggMessageResult for: TransactionId: " + sTransactionId
-                    + ", MessageKey: " + oKey.createXMLMessageKey() + ".  Message: " + e.getMessage();
-            log.error(sErrorMessage, e);
-            sStatus = DocumentConstants.FAIL_TEXT;
-            return sStatus; // No reason to proceed....
-        }
-
-        if (oMsgResult == null) {
-            String sErrorMessage = "Failed to find existing AggMessageResult for: TransactionId: " + sTransactionId
-                    + ", MessageKey: " + oKey.createXMLMessageKey() + ".  Message response not recorded.";
-            log.error(sErrorMessage);
-            sStatus = DocumentConstants.FAIL_TEXT;
-            return sStatus; // No reason to proceed....
+        AdhocQueryResponse oAdhocQueryResponse = null;
+        if ((sAdhocQueryResponseXML != null) && (sAdhocQueryResponseXML.trim().length() > 0)) {
+            oAdhocQueryResponse = unmarshalAdhocQueryResponse(sAdhocQueryResponseXML);
         }
 
-        // if we got here - we have the message and we need to fill in the response information...
-        // ----------------------------------------------------------------------------------------
-        oMsgResult.setResponseReceivedTime(new Date());
-        oMsgResult.setResponseMessage(sAdhocQueryResponseXML);
-        oAggMessageResultDao.save(oMsgResult);
-
-        return DocumentConstants.SUCCESS_TEXT;
+        return setResponseMsg(sTransactionId, oKey, oAdhocQueryResponse);
     }
 
     /**
-     * This method looks through the results to see if all responses have been received. If they have, then it returns
-     * true. Otherwise it returns false.
+     * This method merges the response to a message into the results of its transaction. It locates the message based
+     * on the message key and transaction Id that were passed in.
      * 
-     * @param oTrans The Transaction with all of the message results.
-     * @return TRUE if all responses have been received, FALSE if not.
+     * @param sTransactionId The transaction Id associated with the message.
+     * @param oKey The information that is used for the message key.
+     * @param oAdhocQueryResponse The AdhocQueryResponse, which may be null if there was no response content.
+     * @return The status. "SUCCESS" or "FAIL".
      */
-    private boolean areResultsReady(AggTransaction oTrans) {
-        if (oTrans == null) {
-            return false;
-        }
+    public String setResponseMsg(String sTransactionId, DocQueryMessageKey oKey, AdhocQueryResponse oAdhocQueryResponse) {
+        String sMessageKey = oKey.createXMLMessageKey();
 
-        for (AggMessageResult oMsgResult : oTrans.getAggMessageResults()) {
-            // If we fall through - we are still waiting for results.
-            // -------------------------------------------------------
-            if ((oMsgResult != null) && (oMsgResult.getResponseReceivedTime() == null)) {
-                return false;
-            }
+        if (!store.setResponse(sTransactionId, sMessageKey, oAdhocQueryResponse)) {
+            String sErrorMessage = "Failed to find existing aggregator transaction for: TransactionId: "
+                    + sTransactionId + ", MessageKey: " + sMessageKey + ".  Message response not recorded.";
+            log.error(sErrorMessage);
+            return DocumentConstants.FAIL_TEXT;
         }
 
-        return true;
+        return DocumentConstants.SUCCESS_TEXT;
     }
 
     /**
@@ -481,85 +424,78 @@ public class DocQueryAggregator {
     }
 
     /**
-     * This method is used to combine the results together into a single AdhocQueryResponse. It will extract the items
-     * in the RegistryObjectList from the various systems and place them into the new response.
+     * This method returns the registry error list of the response, creating it if it does not exist yet.
      * 
-     * @param olMsgResult List of messages to be combined
+     * @param oAdhocQueryResponse The response.
+     * @return The registry error list.
+     */
+    private RegistryErrorList getRegistryErrorList(AdhocQueryResponse oAdhocQueryResponse) {
+        if (oAdhocQueryResponse.getRegistryErrorList() == null) {
+            oAdhocQueryResponse.setRegistryErrorList(new RegistryErrorList());
+        }
+        return oAdhocQueryResponse.getRegistryErrorList();
+    }
+
+    /**
+     * This method is used to combine the results together into a single AdhocQueryResponse. The items in the
+     * RegistryObjectList from the various systems were merged as the responses arrived; this adds the responses that
+     * were written to files and an error for each system that never responded.
+     * 
+     * @param oAggregation The transaction to be combined
      * @return The combined AdhocQueryResponse object.
      */
-    private AdhocQueryResponse combineResults(Set<AggMessageResult> olMsgResult) {
+    private AdhocQueryResponse combineResults(DocQueryAggregation oAggregation) {
         AdhocQueryResponse oAdhocQueryResponse = createEmptyResult();
-        RegistryObjectListType oRegObjList = oAdhocQueryResponse.getRegistryObjectList();
-
-        for (AggMessageResult oMsgResult : olMsgResult) {
-            // If the message contains a response received time, then it means that we
-            // received the response from the remote system. We need to aggregate the
-            // results.
-            // --------------------------------------------------------------------------
-            if (oMsgResult.getResponseReceivedTime() != null) {
-                // The response may have been empty - if so - there is nothing to aggregate from here.
-                // -------------------------------------------------------------------------------------
-                if ((oMsgResult.getResponseMessage() != null) && (oMsgResult.getResponseMessage().trim().length() > 0)) {
-                    AdhocQueryResponse oTempResponse = unmarshalAdhocQueryResponse(oMsgResult.getResponseMessage());
-                    if ((oTempResponse != null) && (oTempResponse.getRegistryObjectList() != null)
-                            && (oTempResponse.getRegistryObjectList().getIdentifiable() != null)
-                            && (oTempResponse.getRegistryObjectList().getIdentifiable().size() > 0)) {
-                        List<JAXBElement<? extends IdentifiableType>> olNewRegObjs = oTempResponse
-                                .getRegistryObjectList().getIdentifiable();
-
-                        for (JAXBElement<? extends IdentifiableType> oJAXBElement : olNewRegObjs) {
-                            oRegObjList.getIdentifiable().add(oJAXBElement);
-                        } // for (JAXBElement<? extends IdentifiableType> oJAXBElement : olNewRegObjs)
-                    } // if ((oTempResponse != null) &&
-
-                    // It is possible that there may be error information in this message
-                    // that we need to pull out too...
-                    // --------------------------------------------------------------------
-                    if ((oTempResponse != null) && (oTempResponse.getRegistryErrorList() != null)
-                            && (oTempResponse.getRegistryErrorList().getRegistryError() != null)
-                            && (oTempResponse.getRegistryErrorList().getRegistryError().size() > 0)) {
-                        RegistryErrorList oRegErrors = null;
-                        if (oAdhocQueryResponse.getRegistryErrorList() == null) {
-                            oRegErrors = new RegistryErrorList();
-                            oAdhocQueryResponse.setRegistryErrorList(oRegErrors);
-                        } else {
-                            oRegErrors = oAdhocQueryResponse.getRegistryErrorList();
-                        }
-
-                        List<RegistryError> olRegError = oRegErrors.getRegistryError();
-                        for (RegistryError oRegError : oTempResponse.getRegistryErrorList().getRegistryError()) {
-                            olRegError.add(oRegError);
-                        }
-                    }
-                } // if ((oMsgResult.getResponseMessage() != null) &&
-            } // if (oMsgResult.getResponseReceivedTime() != null)
-            else // This means that this result never received a response - log an error that this one timed out.
-            {
-                RegistryErrorList oRegErrors = null;
-                if (oAdhocQueryResponse.getRegistryErrorList() == null) {
-                    oRegErrors = new RegistryErrorList();
-                    oAdhocQueryResponse.setRegistryErrorList(oRegErrors);
-                } else {
-                    oRegErrors = oAdhocQueryResponse.getRegistryErrorList();
-                }
+        List<JAXBElement<? extends IdentifiableType>> olRegObjs = oAdhocQueryResponse.getRegistryObjectList()
+                .getIdentifiable();
 
-                List<RegistryError> olRegError = oRegErrors.getRegistryError();
-                RegistryError oRegError = new RegistryError();
-                olRegError.add(oRegError);
-                oRegError.setErrorCode(DocumentConstants.XDS_RETRIEVE_ERRORCODE_REGISTRY_ERROR);
-                oRegError.setCodeContext(DocumentConstants.XDS_RETRIEVE_CODECONTEXT_TIMEDOUT_MSG);
-                if ((oMsgResult.getMessageKey() != null) && (oMsgResult.getMessageKey().length() > 0)) {
-                    try {
-                        DocQueryMessageKey oMessageKey = new DocQueryMessageKey(oMsgResult.getMessageKey());
-                        oRegError.setLocation(oMessageKey.getHomeCommunityId());
-                    } catch (Exception e) {
-                        String sErrorMessage = "Failed to parse message key.  Message = " + e.getMessage();
-                        log.error(sErrorMessage, e);
-                        // do not throw an error - we will log it and move on...
-                    }
-                } // if ((oMsgResult.getMessageKey() != null) &&
-            } // else ...
-        } // for (AggMessageResult oMsgResult : olMsgResult)
+        olRegObjs.addAll(oAggregation.getRegistryObjects());
+        if (!oAggregation.getRegistryErrors().isEmpty()) {
+            getRegistryErrorList(oAdhocQueryResponse).getRegistryError().addAll(oAggregation.getRegistryErrors());
+        }
+
+        // Responses that did not fit in memory were written to files - read them back now.
+        // ----------------------------------------------------------------------------------
+        for (File oFile : oAggregation.getSpilledResponses()) {
+            AdhocQueryResponse oTempResponse = null;
+            try {
+                oTempResponse = store.readResponse(oFile);
+            } catch (IOException e) {
+                String sErrorMessage = "Failed to read aggregated response.  Message = " + e.getMessage();
+                log.error(sErrorMessage, e);
+            }
+
+            if ((oTempResponse != null) && (oTempResponse.getRegistryObjectList() != null)
+                    && (oTempResponse.getRegistryObjectList().getIdentifiable() != null)) {
+                olRegObjs.addAll(oTempResponse.getRegistryObjectList().getIdentifiable());
+            }
+
+            if ((oTempResponse != null) && (oTempResponse.getRegistryErrorList() != null)
+                    && (oTempResponse.getRegistryErrorList().getRegistryError() != null)
+                    && (oTempResponse.getRegistryErrorList().getRegistryError().size() > 0)) {
+                getRegistryErrorList(oAdhocQueryResponse).getRegistryError().addAll(
+                        oTempResponse.getRegistryErrorList().getRegistryError());
+            }
+        }
+
+        // These results never received a response - log an error that they timed out.
+        // ------------------------------------------------------------------------------
+        for (String sMessageKey : oAggregation.getPendingMessageKeys()) {
+            RegistryError oRegError = new RegistryError();
+            getRegistryErrorList(oAdhocQueryResponse).getRegistryError().add(oRegError);
+            oRegError.setErrorCode(DocumentConstants.XDS_RETRIEVE_ERRORCODE_REGISTRY_ERROR);
+            oRegError.setCodeContext(DocumentConstants.XDS_RETRIEVE_CODECONTEXT_TIMEDOUT_MSG);
+            if ((sMessageKey != null) && (sMessageKey.length() > 0)) {
+                try {
+                    DocQueryMessageKey oMessageKey = new DocQueryMessageKey(sMessageKey);
+                    oRegError.setLocation(oMessageKey.getHomeCommunityId());
+                } catch (Exception e) {
+                    String sErrorMessage = "Failed to parse message key.  Message = " + e.getMessage();
+                    log.error(sErrorMessage, e);
+                    // do not throw an error - we will log it and move on...
+                }
+            }
+        }
 
         return oAdhocQueryResponse;
     }
@@ -577,43 +513,35 @@ public class DocQueryAggregator {
     public AdhocQueryResponse getAggResults(String sTransactionId, boolean bTimedOut) throws AggregatorException {
         AdhocQueryResponse oResponse = null;
 
-        // Retrieve the records and see if everything is ready...
-        // --------------------------------------------------------
-        AggTransactionDao oAggTransactionDao = new AggTransactionDao();
-        AggTransaction oTrans = oAggTransactionDao.findById(sTransactionId);
-        if (oTrans == null) {
+        // Retrieve the transaction and see if everything is ready...
+        // ------------------------------------------------------------
+        DocQueryAggregation oAggregation = store.getTransaction(sTransactionId);
+        if (oAggregation == null) {
             String sErrorMessage = "Failed to find an aggregator transaction for TransactionId: " + sTransactionId;
             log.error(sErrorMessage);
             throw new AggregatorException(sErrorMessage);
         }
 
-        // Make sure this transaction ID is for the right type of transaction.
-        // --------------------------------------------------------------------
-        if ((oTrans.getServiceType() == null)
-                || ((oTrans.getServiceType() != null) && (!oTrans.getServiceType().equals(DOC_QUERY_NAME)))) {
-            String sErrorMessage = "The specified TransactionId: " + sTransactionId + " is not associated with "
-                    + " Document Query messages.  It is for: " + oTrans.getServiceType() + ".";
-            log.error(sErrorMessage);
-            throw new AggregatorException(sErrorMessage);
-        }
-
         // If we have timed out, or if the results are ready then aggregate them
         // and return them.
         // ----------------------------------------------------------------------
-        if ((bTimedOut) || (areResultsReady(oTrans))) {
-            if ((oTrans.getAggMessageResults() != null) && (oTrans.getAggMessageResults().size() > 0)) {
-                oResponse = combineResults(oTrans.getAggMessageResults());
-            } else {
-                // If we got here - it was a transaction with no expected results
-                // create an empty result set and return it.
-                // ---------------------------------------------------------------
-                oResponse = createEmptyResult();
+        if ((bTimedOut) || (oAggregation.isComplete())) {
+            // Only one caller gets to collect the results.
+            // ----------------------------------------------
+            if (store.removeTransaction(sTransactionId) == null) {
+                String sErrorMessage = "The aggregator transaction for TransactionId: " + sTransactionId
+                        + " has already been retrieved.";
+                log.error(sErrorMessage);
+                throw new AggregatorException(sErrorMessage);
             }
 
-            // Delete the entries out of the database...
-            // --------------------------------------------
-            oAggTransactionDao.delete(oTrans);
-            oTrans = null;
+            synchronized (oAggregation) {
+                try {
+                    oResponse = combineResults(oAggregation);
+                } finally {
+                    oAggregation.close();
+                }
+            }
         }
 
         return oResponse;
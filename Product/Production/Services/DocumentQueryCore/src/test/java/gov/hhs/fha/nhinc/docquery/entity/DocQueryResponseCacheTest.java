@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docquery.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.auditrepository.AuditRepositoryLogger;
+import gov.hhs.fha.nhinc.auditrepository.nhinc.proxy.AuditRepositoryProxy;
+import gov.hhs.fha.nhinc.common.auditlog.AdhocQueryResponseMessageType;
+import gov.hhs.fha.nhinc.common.auditlog.LogEventRequestType;
+import gov.hhs.fha.nhinc.common.nhinccommon.AcknowledgementType;
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.common.nhinccommon.CeType;
+import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
+import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetSystemType;
+import gov.hhs.fha.nhinc.common.nhinccommon.UserType;
+import gov.hhs.fha.nhinc.docquery.DocQueryAuditLog;
+import gov.hhs.fha.nhinc.gateway.aggregator.document.DocumentConstants;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.transform.audit.AuditDataTransformConstants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryRequest;
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.AdhocQueryType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.SlotType1;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ValueListType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.services.nhinc.schema.auditmessage.AuditMessageType;
+import com.services.nhinc.schema.auditmessage.ParticipantObjectIdentificationType;
+import com.services.nhinc.schema.auditmessage.TypeValuePairType;
+
+/**
+ * @author dharley
+ */
+public class DocQueryResponseCacheTest {
+
+    private static final String HCID = "2.2";
+    private static final String OTHER_HCID = "3.3";
+
+    private final Map<String, String> properties = new HashMap<String, String>();
+    private DocQueryResponseCache cache;
+
+    @Before
+    public void setUp() {
+        properties.clear();
+        properties.put(NhincConstants.DOC_QUERY_CACHE_ENABLED, "true");
+        properties.put(NhincConstants.DOC_QUERY_CACHE_TTL, "1000");
+        cache = new DocQueryResponseCache() {
+            @Override
+            protected String getProperty(String propertyName) {
+                return properties.get(propertyName);
+            }
+        };
+    }
+
+    @Test
+    public void testKeyIgnoresSlotOrder() {
+        AdhocQueryRequest first = createRequest();
+        addSlot(first, "$XDSDocumentEntryStatus", "Approved", "Deprecated");
+        addSlot(first, "$XDSDocumentEntryPatientId", "1234^^^&2.2&ISO");
+        AdhocQueryRequest second = createRequest();
+        addSlot(second, "$XDSDocumentEntryPatientId", "1234^^^&2.2&ISO");
+        addSlot(second, "$XDSDocumentEntryStatus", "Deprecated", "Approved");
+
+        AssertionType assertion = createAssertion("doctor", "TREATMENT");
+        String key = cache.getKey(first, HCID, assertion);
+        assertNotNull(key);
+        assertEquals(key, cache.getKey(second, HCID, assertion));
+    }
+
+    @Test
+    public void testKeyDependsOnTargetAndAssertion() {
+        AdhocQueryRequest request = createRequest();
+        addSlot(request, "$XDSDocumentEntryPatientId", "1234^^^&2.2&ISO");
+
+        String key = cache.getKey(request, HCID, createAssertion("doctor", "TREATMENT"));
+        assertFalse(key.equals(cache.getKey(request, OTHER_HCID, createAssertion("doctor", "TREATMENT"))));
+        assertFalse(key.equals(cache.getKey(request, HCID, createAssertion("nurse", "TREATMENT"))));
+        assertFalse(key.equals(cache.getKey(request, HCID, createAssertion("doctor", "OPERATIONS"))));
+    }
+
+    @Test
+    public void testEntriesExpireWithTheirTarget() {
+        properties.put(NhincConstants.DOC_QUERY_CACHE_TTL + "." + OTHER_HCID, "5000");
+        cache.put("a", HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS), true, 0);
+        cache.put("b", OTHER_HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS), false, 0);
+
+        assertNotNull(cache.get("a", 999));
+        assertNull(cache.get("a", 1000));
+        assertNotNull(cache.get("b", 1000));
+        assertFalse(cache.get("b", 1000).isSpecA0());
+        assertNull(cache.get("b", 5000));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testOnlySuccessfulResponsesAreCached() {
+        properties.put(NhincConstants.DOC_QUERY_CACHE_TTL + "." + OTHER_HCID, "0");
+        cache.put("a", HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_FAILURE), true, 0);
+        cache.put("b", HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_PARTIALSUCCESS), true, 0);
+        cache.put("c", OTHER_HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS), true, 0);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testFullCacheDropsExpiredEntries() {
+        properties.put(NhincConstants.DOC_QUERY_CACHE_MAX_ENTRIES, "1");
+        cache.put("a", HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS), true, 0);
+        cache.put("b", HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS), true, 500);
+        assertNull(cache.get("b", 500));
+
+        cache.put("b", HCID, createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS), true, 1000);
+        assertNotNull(cache.get("b", 1000));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveBypassSlot() {
+        AdhocQueryRequest request = createRequest();
+        addSlot(request, "$XDSDocumentEntryPatientId", "1234^^^&2.2&ISO");
+        assertFalse(DocQueryResponseCache.removeBypassSlot(request));
+
+        addSlot(request, DocQueryResponseCache.BYPASS_SLOT, "true");
+        assertTrue(DocQueryResponseCache.removeBypassSlot(request));
+        assertEquals(1, request.getAdhocQuery().getSlot().size());
+    }
+
+    @Test
+    public void testCachingDelegateCallsTargetOnce() {
+        final int[] calls = new int[1];
+        final int[] hits = new int[1];
+        OutboundDocQueryCachingDelegate delegate = new OutboundDocQueryCachingDelegate(cache) {
+            @Override
+            protected OutboundDocQueryOrchestratable callTarget(OutboundDocQueryOrchestratable message) {
+                calls[0]++;
+                OutboundDocQueryOrchestratable_a1 response = new OutboundDocQueryOrchestratable_a1(null, null, null,
+                        null, message.getAssertion(), message.getServiceName(), message.getTarget(),
+                        message.getRequest());
+                response.setResponse(createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS));
+                return response;
+            }
+
+            @Override
+            protected void auditCacheHit(OutboundDocQueryOrchestratable response, String hcid) {
+                hits[0]++;
+            }
+        };
+        AdhocQueryRequest request = createRequest();
+        addSlot(request, "$XDSDocumentEntryPatientId", "1234^^^&2.2&ISO");
+
+        OutboundDocQueryOrchestratable first = delegate.process(createMessage(request));
+        OutboundDocQueryOrchestratable second = delegate.process(createMessage(request));
+
+        assertEquals(1, calls[0]);
+        assertEquals(1, hits[0]);
+        assertTrue(second instanceof OutboundDocQueryOrchestratable_a1);
+        assertSame(first.getResponse(), second.getResponse());
+    }
+
+    @Test
+    public void testCacheHitIsAuditedAsCached() {
+        final List<LogEventRequestType> audited = new ArrayList<LogEventRequestType>();
+        final DocQueryAuditLog auditLog = new DocQueryAuditLog() {
+            @Override
+            protected AuditRepositoryLogger getAuditRepositoryLogger() {
+                return new AuditRepositoryLogger() {
+                    @Override
+                    public LogEventRequestType logAdhocQueryResult(AdhocQueryResponseMessageType message,
+                            String direction, String _interface, String requestCommunityID) {
+                        AuditMessageType auditMsg = new AuditMessageType();
+                        auditMsg.getParticipantObjectIdentification().add(new ParticipantObjectIdentificationType());
+                        LogEventRequestType auditLogMsg = new LogEventRequestType();
+                        auditLogMsg.setAuditMessage(auditMsg);
+                        auditLogMsg.setDirection(direction);
+                        return auditLogMsg;
+                    }
+                };
+            }
+
+            @Override
+            protected AuditRepositoryProxy getAuditRepositoryProxy() {
+                return new AuditRepositoryProxy() {
+                    public AcknowledgementType auditLog(LogEventRequestType request, AssertionType assertion) {
+                        audited.add(request);
+                        return new AcknowledgementType();
+                    }
+                };
+            }
+        };
+        OutboundDocQueryCachingDelegate delegate = new OutboundDocQueryCachingDelegate(cache) {
+            @Override
+            protected OutboundDocQueryOrchestratable callTarget(OutboundDocQueryOrchestratable message) {
+                OutboundDocQueryOrchestratable_a1 response = new OutboundDocQueryOrchestratable_a1(null, null, null,
+                        null, message.getAssertion(), message.getServiceName(), message.getTarget(),
+                        message.getRequest());
+                response.setResponse(createResponse(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS));
+                return response;
+            }
+
+            @Override
+            protected DocQueryAuditLog getAuditLog() {
+                return auditLog;
+            }
+        };
+        AdhocQueryRequest request = createRequest();
+        addSlot(request, "$XDSDocumentEntryPatientId", "1234^^^&2.2&ISO");
+
+        delegate.process(createMessage(request));
+        assertTrue(audited.isEmpty());
+
+        delegate.process(createMessage(request));
+        assertEquals(1, audited.size());
+        assertEquals(NhincConstants.AUDIT_LOG_INBOUND_DIRECTION, audited.get(0).getDirection());
+        List<TypeValuePairType> details = audited.get(0).getAuditMessage().getParticipantObjectIdentification().get(0)
+                .getParticipantObjectDetail();
+        assertEquals(1, details.size());
+        assertEquals(AuditDataTransformConstants.PARTICIPANT_OBJECT_DETAIL_TYPE_CACHED_RESPONSE, details.get(0)
+                .getType());
+        assertEquals("true", new String(details.get(0).getValue()));
+    }
+
+    private OutboundDocQueryOrchestratable createMessage(AdhocQueryRequest request) {
+        HomeCommunityType community = new HomeCommunityType();
+        community.setHomeCommunityId(HCID);
+        NhinTargetSystemType target = new NhinTargetSystemType();
+        target.setHomeCommunity(community);
+        return new OutboundDocQueryOrchestratable(null, null, null, null, createAssertion("doctor", "TREATMENT"),
+                NhincConstants.DOC_QUERY_SERVICE_NAME, target, request);
+    }
+
+    private AdhocQueryRequest createRequest() {
+        AdhocQueryType query = new AdhocQueryType();
+        query.setId("urn:uuid:14d4debf-8f97-4251-9a74-a90016b0af0d");
+        AdhocQueryRequest request = new AdhocQueryRequest();
+        request.setAdhocQuery(query);
+        return request;
+    }
+
+    private void addSlot(AdhocQueryRequest request, String name, String... values) {
+        SlotType1 slot = new SlotType1();
+        slot.setName(name);
+        ValueListType valueList = new ValueListType();
+        for (String value : values) {
+            valueList.getValue().add(value);
+        }
+        slot.setValueList(valueList);
+        request.getAdhocQuery().getSlot().add(slot);
+    }
+
+    private AssertionType createAssertion(String role, String purpose) {
+        CeType roleCoded = new CeType();
+        roleCoded.setCode(role);
+        UserType user = new UserType();
+        user.setRoleCoded(roleCoded);
+        CeType purposeCoded = new CeType();
+        purposeCoded.setCode(purpose);
+        AssertionType assertion = new AssertionType();
+        assertion.setUserInfo(user);
+        assertion.setPurposeOfDisclosureCoded(purposeCoded);
+        return assertion;
+    }
+
+    private AdhocQueryResponse createResponse(String status) {
+        AdhocQueryResponse response = new AdhocQueryResponse();
+        response.setStatus(status);
+        return response;
+    }
+}
@@ -77,6 +77,26 @@ public class OutboundDocQueryProcessorTest {
 
     }
 
+    @Test
+    public void testIsErrorResponse() {
+        OutboundDocQueryProcessor processor = new OutboundDocQueryProcessor();
+        assertTrue(processor.isErrorResponse(individualResponse(getIndividualResponse())));
+        assertTrue(processor.isErrorResponse(getIndividualResponse()));
+
+        OutboundDocQueryOrchestratable_a0 individual = (OutboundDocQueryOrchestratable_a0) getIndividualResponse();
+        AdhocQueryResponse response = new AdhocQueryResponse();
+        response.setStatus(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS);
+        individual.setResponse(response);
+        assertFalse(processor.isErrorResponse(individual));
+
+        RegistryError regErr = new RegistryError();
+        regErr.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        response.setStatus(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_PARTIAL_SUCCESS);
+        response.setRegistryErrorList(new RegistryErrorList());
+        response.getRegistryErrorList().getRegistryError().add(regErr);
+        assertTrue(processor.isErrorResponse(individual));
+    }
+
     private OutboundDocQueryOrchestratable_a0 createCumulativeResponse(OutboundOrchestratableMessage individual) {
 
         AssertionType assertion = new AssertionType();
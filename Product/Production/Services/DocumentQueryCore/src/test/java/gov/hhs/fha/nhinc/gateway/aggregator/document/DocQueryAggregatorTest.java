@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.gateway.aggregator.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import gov.hhs.fha.nhinc.gateway.aggregator.AggregatorException;
+import gov.hhs.fha.nhinc.gateway.aggregator.model.DocQueryMessageKey;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+
+import oasis.names.tc.ebxml_regrep.xsd.query._3.AdhocQueryResponse;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ExtrinsicObjectType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.IdentifiableType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ObjectFactory;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.RegistryObjectListType;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryError;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryErrorList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class DocQueryAggregatorTest {
+
+    private File spillDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        spillDirectory = File.createTempFile("aggregator", "");
+        spillDirectory.delete();
+        spillDirectory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = spillDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        spillDirectory.delete();
+    }
+
+    @Test
+    public void testResultParityWithDatabaseAggregator() throws AggregatorException {
+        Map<DocQueryMessageKey, AdhocQueryResponse> responses = createResponses();
+
+        DocQueryAggregator aggregator = new DocQueryAggregator(createStore(0));
+        String transactionId = aggregator.startTransaction(responses.keySet().toArray(new DocQueryMessageKey[0]));
+        for (Map.Entry<DocQueryMessageKey, AdhocQueryResponse> entry : responses.entrySet()) {
+            assertEquals(DocumentConstants.SUCCESS_TEXT,
+                    aggregator.setResponseMsg(transactionId, entry.getKey(), entry.getValue()));
+        }
+
+        AdhocQueryResponse expected = aggregateThroughXml(aggregator, responses, null);
+        AdhocQueryResponse actual = aggregator.getAggResults(transactionId, false);
+        assertEquivalent(expected, actual);
+        assertEquals(7, getIds(actual).size());
+    }
+
+    @Test
+    public void testTimedOutResultParityWithDatabaseAggregator() throws AggregatorException {
+        Map<DocQueryMessageKey, AdhocQueryResponse> responses = createResponses();
+        DocQueryMessageKey missing = createKey("3.3", "PID3");
+
+        List<DocQueryMessageKey> keys = new ArrayList<DocQueryMessageKey>(responses.keySet());
+        keys.add(missing);
+
+        DocQueryAggregator aggregator = new DocQueryAggregator(createStore(0));
+        String transactionId = aggregator.startTransaction(keys.toArray(new DocQueryMessageKey[0]));
+        for (Map.Entry<DocQueryMessageKey, AdhocQueryResponse> entry : responses.entrySet()) {
+            aggregator.setResponseMsg(transactionId, entry.getKey(), entry.getValue());
+        }
+
+        assertNull(aggregator.getAggResults(transactionId, false));
+
+        AdhocQueryResponse expected = aggregateThroughXml(aggregator, responses, missing);
+        AdhocQueryResponse actual = aggregator.getAggResults(transactionId, true);
+        assertEquivalent(expected, actual);
+        assertTrue(getErrors(actual).contains(DocumentConstants.XDS_RETRIEVE_ERRORCODE_REGISTRY_ERROR + "|"
+                + DocumentConstants.XDS_RETRIEVE_CODECONTEXT_TIMEDOUT_MSG + "|3.3"));
+    }
+
+    @Test
+    public void testLargeResultIsWrittenToFiles() throws AggregatorException {
+        Map<DocQueryMessageKey, AdhocQueryResponse> responses = createResponses();
+
+        DocQueryAggregationStore store = createStore(1);
+        DocQueryAggregator aggregator = new DocQueryAggregator(store);
+        String transactionId = aggregator.startTransaction(responses.keySet().toArray(new DocQueryMessageKey[0]));
+        for (Map.Entry<DocQueryMessageKey, AdhocQueryResponse> entry : responses.entrySet()) {
+            aggregator.setResponseMsg(transactionId, entry.getKey(), entry.getValue());
+        }
+
+        DocQueryAggregation aggregation = store.getTransaction(transactionId);
+        assertEquals(2, aggregation.getRegistryObjectCount());
+        assertEquals(2, aggregation.getSpilledResponses().size());
+        assertEquals(2, spillDirectory.listFiles().length);
+
+        AdhocQueryResponse expected = aggregateThroughXml(aggregator, responses, null);
+        assertEquivalent(expected, aggregator.getAggResults(transactionId, false));
+        assertEquals(0, spillDirectory.listFiles().length);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testResponseForUnknownTransactionFails() {
+        DocQueryAggregator aggregator = new DocQueryAggregator(createStore(0));
+
+        assertEquals(DocumentConstants.FAIL_TEXT,
+                aggregator.setResponseMsg("unknown", createKey("1.1", "PID1"), new AdhocQueryResponse()));
+    }
+
+    @Test(expected = AggregatorException.class)
+    public void testResultsCanOnlyBeRetrievedOnce() throws AggregatorException {
+        DocQueryAggregator aggregator = new DocQueryAggregator(createStore(0));
+        DocQueryMessageKey key = createKey("1.1", "PID1");
+        String transactionId = aggregator.startTransaction(new DocQueryMessageKey[] { key });
+        aggregator.setResponseMsg(transactionId, key, new AdhocQueryResponse());
+
+        aggregator.getAggResults(transactionId, false);
+        aggregator.getAggResults(transactionId, false);
+    }
+
+    @Test
+    public void testStaleTransactionIsDiscarded() {
+        final long[] now = { 0 };
+        DocQueryAggregationStore store = new DocQueryAggregationStore(0, spillDirectory, 1000, 100) {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+
+        String staleId = store.startTransaction(Collections.singletonList("stale"));
+        now[0] = 1000;
+        String freshId = store.startTransaction(Collections.singletonList("fresh"));
+
+        assertNull(store.getTransaction(staleId));
+        assertEquals(freshId, store.getTransaction(freshId).getTransactionId());
+        assertEquals(1, store.size());
+    }
+
+    private DocQueryAggregationStore createStore(long maxInMemoryResults) {
+        return new DocQueryAggregationStore(maxInMemoryResults, spillDirectory, 60000, 60000);
+    }
+
+    /**
+     * Aggregates the responses the way the database backed aggregator did: each response is marshalled when it is set,
+     * then unmarshalled and merged when the results are retrieved.
+     */
+    private AdhocQueryResponse aggregateThroughXml(DocQueryAggregator aggregator,
+            Map<DocQueryMessageKey, AdhocQueryResponse> responses, DocQueryMessageKey missing) {
+        AdhocQueryResponse result = new AdhocQueryResponse();
+        result.setStatus(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS);
+        result.setRegistryObjectList(new RegistryObjectListType());
+
+        for (AdhocQueryResponse response : responses.values()) {
+            String xml = (response == null) ? "" : aggregator.marshalAdhocQueryResponse(response);
+            if (xml.trim().length() == 0) {
+                continue;
+            }
+            AdhocQueryResponse stored = aggregator.unmarshalAdhocQueryResponse(xml);
+            if (stored.getRegistryObjectList() != null) {
+                result.getRegistryObjectList().getIdentifiable().addAll(stored.getRegistryObjectList().getIdentifiable());
+            }
+            if ((stored.getRegistryErrorList() != null) && !stored.getRegistryErrorList().getRegistryError().isEmpty()) {
+                if (result.getRegistryErrorList() == null) {
+                    result.setRegistryErrorList(new RegistryErrorList());
+                }
+                result.getRegistryErrorList().getRegistryError().addAll(stored.getRegistryErrorList().getRegistryError());
+            }
+        }
+
+        if (missing != null) {
+            if (result.getRegistryErrorList() == null) {
+                result.setRegistryErrorList(new RegistryErrorList());
+            }
+            RegistryError error = new RegistryError();
+            error.setErrorCode(DocumentConstants.XDS_RETRIEVE_ERRORCODE_REGISTRY_ERROR);
+            error.setCodeContext(DocumentConstants.XDS_RETRIEVE_CODECONTEXT_TIMEDOUT_MSG);
+            error.setLocation(missing.getHomeCommunityId());
+            result.getRegistryErrorList().getRegistryError().add(error);
+        }
+        return result;
+    }
+
+    private void assertEquivalent(AdhocQueryResponse expected, AdhocQueryResponse actual) {
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(getIds(expected), getIds(actual));
+        assertEquals(getErrors(expected), getErrors(actual));
+        assertEquals(expected.getRegistryErrorList() == null, actual.getRegistryErrorList() == null);
+    }
+
+    private List<String> getIds(AdhocQueryResponse response) {
+        List<String> ids = new ArrayList<String>();
+        for (JAXBElement<? extends IdentifiableType> element : response.getRegistryObjectList().getIdentifiable()) {
+            ids.add(element.getValue().getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private List<String> getErrors(AdhocQueryResponse response) {
+        List<String> errors = new ArrayList<String>();
+        if (response.getRegistryErrorList() != null) {
+            for (RegistryError error : response.getRegistryErrorList().getRegistryError()) {
+                errors.add(error.getErrorCode() + "|" + error.getCodeContext() + "|" + error.getLocation());
+            }
+        }
+        Collections.sort(errors);
+        return errors;
+    }
+
+    private Map<DocQueryMessageKey, AdhocQueryResponse> createResponses() {
+        Map<DocQueryMessageKey, AdhocQueryResponse> responses = new LinkedHashMap<DocQueryMessageKey, AdhocQueryResponse>();
+        responses.put(createKey("1.1", "PID1"), createResponse("urn:uuid:1-", 2, null));
+        responses.put(createKey("2.2", "PID2"), createResponse("urn:uuid:2-", 3, "Registry unavailable"));
+        responses.put(createKey("4.4", "PID4"), null);
+        responses.put(createKey("5.5", "PID5"), createResponse("urn:uuid:5-", 2, null));
+        return responses;
+    }
+
+    private DocQueryMessageKey createKey(String homeCommunityId, String patientId) {
+        DocQueryMessageKey key = new DocQueryMessageKey();
+        key.setHomeCommunityId(homeCommunityId);
+        key.setAssigningAuthority(homeCommunityId);
+        key.setPatientId(patientId);
+        return key;
+    }
+
+    private AdhocQueryResponse createResponse(String idPrefix, int count, String errorContext) {
+        ObjectFactory factory = new ObjectFactory();
+        AdhocQueryResponse response = new AdhocQueryResponse();
+        response.setStatus(DocumentConstants.XDS_QUERY_RESPONSE_STATUS_SUCCESS);
+        response.setRegistryObjectList(new RegistryObjectListType());
+        for (int i = 0; i < count; i++) {
+            ExtrinsicObjectType document = new ExtrinsicObjectType();
+            document.setId(idPrefix + i);
+            document.setMimeType("text/xml");
+            response.getRegistryObjectList().getIdentifiable().add(factory.createExtrinsicObject(document));
+        }
+        if (errorContext != null) {
+            RegistryError error = new RegistryError();
+            error.setErrorCode(DocumentConstants.XDS_RETRIEVE_ERRORCODE_REGISTRY_ERROR);
+            error.setCodeContext(errorContext);
+            response.setRegistryErrorList(new RegistryErrorList());
+            response.getRegistryErrorList().getRegistryError().add(error);
+        }
+        return response;
+    }
+}
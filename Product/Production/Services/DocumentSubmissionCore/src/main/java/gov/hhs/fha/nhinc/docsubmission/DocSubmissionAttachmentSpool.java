@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission;
+
+import gov.hhs.fha.nhinc.largefile.LargeFileUtils;
+import gov.hhs.fha.nhinc.transform.marshallers.JAXBContextHandler;
+import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType;
+import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import oasis.names.tc.ebxml_regrep.xsd.lcm._3.SubmitObjectsRequest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the documents of a ProvideAndRegisterDocumentSetRequest in files so the request can be sent to several
+ * targets. Each document is read from the incoming message once; every request created by the spool streams its
+ * documents from those files. The metadata is serialized once and each request gets its own copy of it, as the requests
+ * are sent concurrently.
+ *
+ * @author dharley
+ */
+public class DocSubmissionAttachmentSpool {
+
+    private static Log log = LogFactory.getLog(DocSubmissionAttachmentSpool.class);
+
+    private static final QName SUBMIT_OBJECTS_REQUEST_QNAME = new QName("urn:oasis:names:tc:ebxml-regrep:xsd:lcm:3.0",
+            "SubmitObjectsRequest");
+
+    private final ProvideAndRegisterDocumentSetRequestType request;
+    private final List<File> documentFiles = new ArrayList<File>();
+    private final List<File> spooledFiles = new ArrayList<File>();
+    private byte[] submitObjectsRequest;
+
+    /**
+     * @param request the request whose documents are spooled
+     */
+    public DocSubmissionAttachmentSpool(ProvideAndRegisterDocumentSetRequestType request) {
+        this.request = request;
+    }
+
+    /**
+     * Saves each document of the request to a file. Documents that are already backed by a file are not copied.
+     *
+     * @throws IOException if a document or the metadata cannot be saved, any files saved so far are deleted
+     */
+    public void spool() throws IOException {
+        LargeFileUtils fileUtils = getLargeFileUtils();
+        try {
+            submitObjectsRequest = marshalSubmitObjectsRequest(request.getSubmitObjectsRequest());
+            for (Document doc : request.getDocument()) {
+                File file = fileUtils.getFile(doc.getValue());
+                if (file == null) {
+                    file = fileUtils.saveDataToFile(doc.getValue());
+                    spooledFiles.add(file);
+                }
+                documentFiles.add(file);
+            }
+        } catch (IOException ioe) {
+            release();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Creates a copy of the request for one target, with its own copy of the metadata and the documents read from the
+     * spooled files.
+     *
+     * @return a request that can be sent independently of the other copies
+     * @throws IOException if a spooled file no longer exists or the metadata cannot be copied
+     */
+    public ProvideAndRegisterDocumentSetRequestType createRequest() throws IOException {
+        LargeFileUtils fileUtils = getLargeFileUtils();
+
+        ProvideAndRegisterDocumentSetRequestType copy = new ProvideAndRegisterDocumentSetRequestType();
+        copy.setSubmitObjectsRequest(unmarshalSubmitObjectsRequest(submitObjectsRequest));
+
+        List<Document> docs = request.getDocument();
+        for (int i = 0; i < docs.size(); i++) {
+            Document doc = new Document();
+            doc.setId(docs.get(i).getId());
+            doc.setValue(fileUtils.convertToDataHandler(documentFiles.get(i)));
+            copy.getDocument().add(doc);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Deletes the files created by spool. Files that backed the original documents are left in place.
+     */
+    public void release() {
+        for (File file : spooledFiles) {
+            if (file.exists() && !file.delete()) {
+                log.warn("Failed to delete spooled attachment " + file.getAbsolutePath());
+            }
+        }
+        spooledFiles.clear();
+        documentFiles.clear();
+        submitObjectsRequest = null;
+    }
+
+    private byte[] marshalSubmitObjectsRequest(SubmitObjectsRequest metadata) throws IOException {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            getSubmitObjectsRequestContext().createMarshaller().marshal(
+                    new JAXBElement<SubmitObjectsRequest>(SUBMIT_OBJECTS_REQUEST_QNAME, SubmitObjectsRequest.class,
+                            metadata), out);
+            return out.toByteArray();
+        } catch (JAXBException e) {
+            throw new IOException("Failed to serialize the submission metadata", e);
+        }
+    }
+
+    private SubmitObjectsRequest unmarshalSubmitObjectsRequest(byte[] metadata) throws IOException {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            return getSubmitObjectsRequestContext().createUnmarshaller()
+                    .unmarshal(new StreamSource(new ByteArrayInputStream(metadata)), SubmitObjectsRequest.class)
+                    .getValue();
+        } catch (JAXBException e) {
+            throw new IOException("Failed to copy the submission metadata", e);
+        }
+    }
+
+    private JAXBContext getSubmitObjectsRequestContext() throws JAXBException {
+        return new JAXBContextHandler().getJAXBContext(oasis.names.tc.ebxml_regrep.xsd.lcm._3.ObjectFactory.class,
+                oasis.names.tc.ebxml_regrep.xsd.rim._3.ObjectFactory.class);
+    }
+
+    protected LargeFileUtils getLargeFileUtils() {
+        return LargeFileUtils.getInstance();
+    }
+}
@@ -27,11 +27,13 @@
 package gov.hhs.fha.nhinc.docsubmission.adapter.component;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,6 +41,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 
@@ -81,14 +84,7 @@ public class ConfigurationManager {
         Config result = new Config();
 
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(file);
-            doc.getDocumentElement().normalize();
-
-            NodeList nodeLst = doc.getElementsByTagName("RoutingInformation");
-            result.setRoutingInfo(loadRoutingInfo(nodeLst));
-
+            result = parseConfiguration(file);
         } catch (Exception e) {
             log.error("unable to load FTAConfiguration file", e);
             e.printStackTrace();
@@ -97,6 +93,31 @@ public class ConfigurationManager {
         return result;
     }
 
+    /**
+     * Parses a routing configuration file, failing rather than returning an empty configuration if the file cannot be
+     * read or has no RoutingInformation element.
+     *
+     * @param file the routing configuration file
+     * @return the configuration
+     * @throws ParserConfigurationException if no XML parser is available
+     * @throws SAXException if the file is not well formed or has no RoutingInformation element
+     * @throws IOException if the file cannot be read
+     */
+    public Config parseConfiguration(File file) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document doc = db.parse(file);
+        doc.getDocumentElement().normalize();
+
+        NodeList nodeLst = doc.getElementsByTagName("RoutingInformation");
+        if (nodeLst.getLength() == 0) {
+            throw new SAXException("No RoutingInformation element in " + file);
+        }
+        Config result = new Config();
+        result.setRoutingInfo(loadRoutingInfo(nodeLst));
+        return result;
+    }
+
     private List<RoutingConfig> loadRoutingInfo(NodeList list) {
         ArrayList<RoutingConfig> result = new ArrayList<RoutingConfig>();
         Node channels = list.item(0);
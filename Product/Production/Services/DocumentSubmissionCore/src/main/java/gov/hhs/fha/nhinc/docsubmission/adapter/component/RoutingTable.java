@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission.adapter.component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The XDR routing configuration, compiled into a map from the lower-cased recipient to its routing bean. A table is
+ * never changed once built; a new configuration is compiled into a new table.
+ *
+ * @author dharley
+ */
+public class RoutingTable {
+
+    private final Map<String, String> beansByRecipient;
+
+    private RoutingTable(Map<String, String> beansByRecipient) {
+        this.beansByRecipient = Collections.unmodifiableMap(beansByRecipient);
+    }
+
+    /**
+     * Compiles a routing configuration. When a recipient is configured more than once, its first bean is used.
+     *
+     * @param config the routing configuration
+     * @return the routing table
+     * @throws IllegalArgumentException if a routing entry has no recipient or no bean
+     */
+    public static RoutingTable compile(Config config) {
+        Map<String, String> beansByRecipient = new HashMap<String, String>();
+        for (RoutingConfig rc : config.getRoutingInfo()) {
+            String recipient = rc.getRecepient() == null ? "" : rc.getRecepient().trim();
+            String bean = rc.getBean() == null ? "" : rc.getBean().trim();
+            if (recipient.length() == 0 || bean.length() == 0) {
+                throw new IllegalArgumentException("Routing entry without a recipient or bean: recipient=" + recipient
+                        + ", bean=" + bean);
+            }
+            String key = recipient.toLowerCase();
+            if (!beansByRecipient.containsKey(key)) {
+                beansByRecipient.put(key, bean);
+            }
+        }
+        return new RoutingTable(beansByRecipient);
+    }
+
+    /**
+     * @param recipient the intended recipient, in any case
+     * @return the routing bean of the recipient, or null if it is not configured
+     */
+    public String getBean(String recipient) {
+        return recipient == null ? null : beansByRecipient.get(recipient.trim().toLowerCase());
+    }
+
+    /**
+     * @return the number of configured recipients
+     */
+    public int size() {
+        return beansByRecipient.size();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission.adapter.component;
+
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.util.DirectoryWatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the compiled XDR routing table, loaded from XDRConfiguration.xml once and shared by all requests. The file is
+ * watched from a background thread: when it changes, it is parsed and compiled on that thread and the new table is
+ * swapped in. A file that cannot be parsed or compiled is rejected, and the previous table stays in use. The watching
+ * is stopped by {@link #stopWatching()} when a web application using the registry is undeployed. The registry is
+ * shared by the web applications of the gateway, so the next {@link #getInstance()} watches the file again.
+ *
+ * @author dharley
+ */
+public class RoutingTableRegistry {
+
+    private static Log log = LogFactory.getLog(RoutingTableRegistry.class);
+
+    private static RoutingTableRegistry instance = null;
+
+    private final File configFile;
+    private final AtomicReference<RoutingTable> table = new AtomicReference<RoutingTable>(
+            RoutingTable.compile(new Config()));
+    private final DirectoryWatcher watcher = new DirectoryWatcher("RoutingTableRegistry-watcher",
+            new DirectoryWatcher.Listener() {
+                @Override
+                public void fileChanged(Path directory, String fileName) {
+                    if (fileName == null || configFile.getName().equals(fileName)) {
+                        reload();
+                    }
+                }
+            }, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    private volatile boolean stopped = false;
+
+    RoutingTableRegistry(File configFile) {
+        this.configFile = configFile;
+    }
+
+    public static synchronized RoutingTableRegistry getInstance() {
+        if (instance == null) {
+            instance = new RoutingTableRegistry(new File(PropertyAccessor.getInstance().getPropertyFileLocation(),
+                    ConfigurationManager.XDR_CONFIG_FILE));
+            instance.reload();
+            instance.watch();
+        } else if (instance.stopped) {
+            instance.resumeWatching();
+        }
+        return instance;
+    }
+
+    /**
+     * Stops watching the configuration file, if the registry has been created.
+     */
+    public static synchronized void stopWatching() {
+        if (instance != null) {
+            instance.stop();
+        }
+    }
+
+    /**
+     * Stops watching the configuration file until {@link #resumeWatching()}.
+     */
+    synchronized void stop() {
+        stopped = true;
+        watcher.stop();
+    }
+
+    /**
+     * Watches the configuration file again after {@link #stop()}, and loads the changes made while it was not watched.
+     */
+    synchronized void resumeWatching() {
+        if (!stopped) {
+            return;
+        }
+        stopped = false;
+        reload();
+        watch();
+    }
+
+    /**
+     * @return true if the configuration file is being watched
+     */
+    synchronized boolean isWatching() {
+        return watcher.isRunning();
+    }
+
+    /**
+     * @return the current routing table, empty if the configuration file has never been loaded
+     */
+    public RoutingTable getRoutingTable() {
+        return table.get();
+    }
+
+    /**
+     * Parses and compiles the configuration file and swaps the new table in. If the file cannot be parsed or compiled,
+     * the previous table is kept.
+     *
+     * @return true if a new table was swapped in
+     */
+    boolean reload() {
+        RoutingTable reloaded;
+        try {
+            reloaded = RoutingTable.compile(new ConfigurationManager().parseConfiguration(configFile));
+        } catch (Exception ex) {
+            log.error("Unable to load the XDR routing configuration from " + configFile
+                    + ", still using the previous one: " + ex.getMessage(), ex);
+            return false;
+        }
+        table.set(reloaded);
+        log.info("Loaded " + reloaded.size() + " XDR routing entries from " + configFile);
+        return true;
+    }
+
+    private void watch() {
+        Path directory = configFile.getAbsoluteFile().getParentFile().toPath();
+        try {
+            watcher.watch(directory);
+        } catch (IOException ex) {
+            log.warn("Unable to watch " + directory + " for changes to the XDR routing configuration: "
+                    + ex.getMessage(), ex);
+        }
+    }
+}
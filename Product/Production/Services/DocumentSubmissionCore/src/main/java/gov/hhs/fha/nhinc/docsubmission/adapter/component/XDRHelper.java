@@ -240,20 +240,12 @@ public class XDRHelper {
     public List<String> getRoutingBeans(List<String> intendedRecipients) {
         ArrayList<String> result = new ArrayList<String>();
 
-        ConfigurationManager configMgr = new ConfigurationManager();
-
-        Config config = configMgr.loadConfiguration();
+        RoutingTable routingTable = getRoutingTable();
 
         for (String recipient : intendedRecipients) {
-            // Loop through List of configured beans
-            for (RoutingConfig rc : config.getRoutingInfo()) {
-                if (rc.getRecepient().equalsIgnoreCase(recipient)) {
-                    if (result.contains(rc.getBean()) == false) {
-                        result.add(rc.getBean());
-                    }
-                    break;
-                }
-
+            String bean = routingTable.getBean(recipient);
+            if (bean != null && result.contains(bean) == false) {
+                result.add(bean);
             }
         }
 
@@ -265,6 +257,10 @@ public class XDRHelper {
         return result;
     }
 
+    protected RoutingTable getRoutingTable() {
+        return RoutingTableRegistry.getInstance().getRoutingTable();
+    }
+
     protected boolean checkIdsMatch() {
         boolean checkIds = false;
 
@@ -26,6 +26,9 @@
  */
 package gov.hhs.fha.nhinc.docsubmission.adapter.component.routing;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 
@@ -42,15 +45,19 @@ public class RoutingObjectFactory {
 
     private static ApplicationContext context = null;
 
+    // The routing beans are singletons, so the cache hands out the bean Spring would, without the lookup.
+    private static final ConcurrentMap<String, XDRRouting> routings = new ConcurrentHashMap<String, XDRRouting>();
+
     static {
         context = new
                 FileSystemXmlApplicationContext(PropertyAccessor.getInstance().getPropertyFileURL() + CONFIG_FILE_NAME);
     }
 
     public XDRRouting getNhinXDRRouting(String beanName) {
-        XDRRouting proxy = null;
-        if (context != null) {
+        XDRRouting proxy = routings.get(beanName);
+        if (proxy == null && context != null) {
             proxy = (XDRRouting) context.getBean(beanName);
+            routings.putIfAbsent(beanName, proxy);
         }
         return proxy;
     }
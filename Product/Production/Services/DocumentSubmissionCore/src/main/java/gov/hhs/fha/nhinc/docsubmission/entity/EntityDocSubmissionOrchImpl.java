@@ -29,16 +29,27 @@ package gov.hhs.fha.nhinc.docsubmission.entity;
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
 import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
 import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetCommunitiesType;
+import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetCommunityType;
 import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetSystemType;
 import gov.hhs.fha.nhinc.common.nhinccommon.UrlInfoType;
 import gov.hhs.fha.nhinc.common.nhinccommonentity.RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType;
+import gov.hhs.fha.nhinc.docsubmission.DocSubmissionAttachmentSpool;
 import gov.hhs.fha.nhinc.docsubmission.XDRAuditLogger;
 import gov.hhs.fha.nhinc.docsubmission.XDRPolicyChecker;
 import gov.hhs.fha.nhinc.gateway.aggregator.document.DocumentConstants;
+import gov.hhs.fha.nhinc.gateway.executorservice.ExecutorServiceHelper;
+import gov.hhs.fha.nhinc.gateway.executorservice.NhinCallableRequest;
+import gov.hhs.fha.nhinc.gateway.executorservice.NhinTaskExecutor;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
 import gov.hhs.fha.nhinc.transform.policy.SubjectHelper;
 import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryError;
 import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryErrorList;
 import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
@@ -49,12 +60,24 @@ public class EntityDocSubmissionOrchImpl {
 
     private static Log log = LogFactory.getLog(EntityDocSubmissionOrchImpl.class);
     private XDRAuditLogger auditLogger = null;
+    private ExecutorService regularExecutor = null;
+    private ExecutorService largejobExecutor = null;
     
     public EntityDocSubmissionOrchImpl() {
         log = getLogger();
         auditLogger = getXDRAuditLogger();
     }
 
+    /**
+     * Constructs the orch impl with the executor services used when a submission has more than one target. Which one
+     * is used is decided by ExecutorServiceHelper.checkExecutorTaskIsLarge on the number of targets.
+     */
+    public EntityDocSubmissionOrchImpl(ExecutorService e, ExecutorService le) {
+        this();
+        regularExecutor = e;
+        largejobExecutor = le;
+    }
+
     public RegistryResponseType provideAndRegisterDocumentSetB(ProvideAndRegisterDocumentSetRequestType body,
             AssertionType assertion, NhinTargetCommunitiesType targets, UrlInfoType urlInfo) {
         RegistryResponseType response = null;
@@ -64,7 +87,10 @@ public class EntityDocSubmissionOrchImpl {
 
         auditRequestFromAdapter(request, assertion);
 
-        if (isPolicyValid(request, assertion)) {
+        if (hasMultipleTargets(targets)) {
+            log.info("Sending document submission to " + targets.getNhinTargetCommunity().size() + " targets");
+            response = getResponseFromTargets(body, assertion, targets);
+        } else if (isPolicyValid(request, assertion)) {
             log.info("Policy check successful");
             response = getResponseFromTarget(request, assertion);
         } else {
@@ -77,6 +103,20 @@ public class EntityDocSubmissionOrchImpl {
         return response;
     }
 
+    /**
+     * Sends the submission to a single target of a multi target submission whose policy check has passed. The entity
+     * audit is done once by provideAndRegisterDocumentSetB, the Nhin audit once per target here.
+     * 
+     * @param body the request for this target
+     * @param assertion the assertion
+     * @param target the target community
+     * @return the response of the target, or a failure response if the send failed
+     */
+    RegistryResponseType provideAndRegisterDocumentSetBToTarget(ProvideAndRegisterDocumentSetRequestType body,
+            AssertionType assertion, NhinTargetCommunityType target) {
+        return getResponseFromTarget(createRequestForTarget(body, assertion, target), assertion);
+    }
+
     protected boolean hasNhinTargetHomeCommunityId(
             RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType request) {
 
@@ -112,7 +152,112 @@ public class EntityDocSubmissionOrchImpl {
     protected OutboundDocSubmissionDelegate getOutboundDocSubmissionDelegate() {
         return new OutboundDocSubmissionDelegate();
     }
+
+    protected DocSubmissionAttachmentSpool createAttachmentSpool(ProvideAndRegisterDocumentSetRequestType body) {
+        return new DocSubmissionAttachmentSpool(body);
+    }
+
+    private boolean hasMultipleTargets(NhinTargetCommunitiesType targets) {
+        return targets != null && targets.getNhinTargetCommunity().size() > 1;
+    }
+
+    /**
+     * Checks policy for every target, then spools the documents once and sends a copy of the request to every target
+     * that passed through NhinTaskExecutor. Each copy streams its documents from the spool. The policy check runs
+     * before the send, so that a local denial is not counted as a failure of the partner by its PartnerGuard. When no
+     * executor services were injected the targets are sent to one at a time on the calling thread.
+     */
+    @SuppressWarnings("static-access")
+    private RegistryResponseType getResponseFromTargets(ProvideAndRegisterDocumentSetRequestType body,
+            AssertionType assertion, NhinTargetCommunitiesType targets) {
+
+        DocSubmissionAttachmentSpool spool = createAttachmentSpool(body);
+        try {
+            spool.spool();
+
+            OutboundDocSubmissionProcessor processor = new OutboundDocSubmissionProcessor();
+            OutboundDocSubmissionTargetDelegate delegate = new OutboundDocSubmissionTargetDelegate(this);
+            List<NhinCallableRequest<OutboundDocSubmissionTargetOrchestratable>> callableList = new ArrayList<NhinCallableRequest<OutboundDocSubmissionTargetOrchestratable>>();
+            List<OutboundDocSubmissionTargetOrchestratable> allowed =
+                    new ArrayList<OutboundDocSubmissionTargetOrchestratable>();
+            List<OutboundDocSubmissionTargetOrchestratable> denied =
+                    new ArrayList<OutboundDocSubmissionTargetOrchestratable>();
+            for (NhinTargetCommunityType target : targets.getNhinTargetCommunity()) {
+                NhinTargetSystemType targetSystem = new NhinTargetSystemType();
+                targetSystem.setHomeCommunity(target.getHomeCommunity());
+
+                if (!isPolicyValid(createRequestForTarget(body, assertion, target), assertion)) {
+                    log.error("Failed policy check for community " + getTargetHomeCommunityId(target)
+                            + ".  Sending error response.");
+                    OutboundDocSubmissionTargetOrchestratable message = new OutboundDocSubmissionTargetOrchestratable(
+                            null, processor, body, targetSystem, assertion);
+                    message.setResponse(createFailedPolicyCheckResponse());
+                    denied.add(message);
+                    continue;
+                }
+
+                OutboundDocSubmissionTargetOrchestratable message = new OutboundDocSubmissionTargetOrchestratable(
+                        delegate, processor, spool.createRequest(), targetSystem, assertion);
+                allowed.add(message);
+                callableList.add(new NhinCallableRequest<OutboundDocSubmissionTargetOrchestratable>(message, message
+                        .getTargetHomeCommunityId()));
+            }
+
+            OutboundDocSubmissionTargetOrchestratable result = null;
+            if (!callableList.isEmpty()) {
+                ExecutorService executor;
+                if (ExecutorServiceHelper.getInstance().checkExecutorTaskIsLarge(callableList.size())) {
+                    executor = largejobExecutor;
+                } else {
+                    executor = regularExecutor;
+                }
+                if (executor == null) {
+                    log.debug("No executor service was injected, sending to " + callableList.size()
+                            + " targets on the calling thread");
+                    for (OutboundDocSubmissionTargetOrchestratable message : allowed) {
+                        OutboundDocSubmissionTargetOrchestratable response =
+                                (OutboundDocSubmissionTargetOrchestratable) delegate.process(message);
+                        result = (OutboundDocSubmissionTargetOrchestratable) processor.processNhinResponse(response,
+                                result);
+                    }
+                } else {
+                    NhinTaskExecutor<OutboundDocSubmissionTargetOrchestratable, OutboundDocSubmissionTargetOrchestratable> dsexecutor = new NhinTaskExecutor<OutboundDocSubmissionTargetOrchestratable, OutboundDocSubmissionTargetOrchestratable>(
+                            executor, callableList, assertion.getMessageId());
+                    dsexecutor.executeTask();
+                    result = dsexecutor.getFinalResponse();
+                }
+            }
+            for (OutboundDocSubmissionTargetOrchestratable message : denied) {
+                result = (OutboundDocSubmissionTargetOrchestratable) processor.processNhinResponse(message, result);
+            }
+
+            if (result != null) {
+                return result.getResponse();
+            }
+            log.error("No responses were received from the document submission targets.");
+            return createFailedMultipleTargetResponse("No responses were received from the targets");
+        } catch (IOException ioe) {
+            log.error("Failed to spool the documents of the submission.", ioe);
+            return createFailedMultipleTargetResponse("Failed to spool the documents: " + ioe.getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while sending the submission to multiple targets.", ie);
+            return createFailedMultipleTargetResponse("Interrupted while waiting for the targets");
+        } catch (Exception e) {
+            log.error("Fault encountered while sending the submission to multiple targets.", e);
+            return createFailedMultipleTargetResponse(e.getMessage());
+        } finally {
+            spool.release();
+        }
+    }
     
+    private RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType createRequestForTarget(
+            ProvideAndRegisterDocumentSetRequestType body, AssertionType assertion, NhinTargetCommunityType target) {
+        NhinTargetCommunitiesType targets = new NhinTargetCommunitiesType();
+        targets.getNhinTargetCommunity().add(target);
+        return createRequestForInternalProcessing(body, assertion, targets, null);
+    }
+
     private RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType createRequestForInternalProcessing(
             ProvideAndRegisterDocumentSetRequestType msg, AssertionType assertion, NhinTargetCommunitiesType targets,
             UrlInfoType urlInfo) {
@@ -235,6 +380,13 @@ public class EntityDocSubmissionOrchImpl {
         return getNhinTargetHomeCommunity(request).getHomeCommunityId();
     }
 
+    private String getTargetHomeCommunityId(NhinTargetCommunityType target) {
+        if (target != null && target.getHomeCommunity() != null) {
+            return target.getHomeCommunity().getHomeCommunityId();
+        }
+        return null;
+    }
+
     private RegistryResponseType createFailedPolicyCheckResponse() {
         RegistryErrorList regErrList = new RegistryErrorList();
         regErrList.setHighestSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
@@ -266,4 +418,21 @@ public class EntityDocSubmissionOrchImpl {
         return response;
     }
 
+    private RegistryResponseType createFailedMultipleTargetResponse(String error) {
+        RegistryErrorList regErrList = new RegistryErrorList();
+        regErrList.setHighestSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        RegistryError regErr = new RegistryError();
+        regErrList.getRegistryError().add(regErr);
+        regErr.setCodeContext("Fault encountered processing provideAndRegisterDocumentSetB for multiple targets: "
+                + error);
+        regErr.setErrorCode("XDSRepositoryError");
+        regErr.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+
+        RegistryResponseType response = new RegistryResponseType();
+        response.setRegistryErrorList(regErrList);
+        response.setStatus(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE);
+
+        return response;
+    }
+
 }
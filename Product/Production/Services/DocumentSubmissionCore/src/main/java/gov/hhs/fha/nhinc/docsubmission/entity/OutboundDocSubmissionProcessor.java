@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission.entity;
+
+import gov.hhs.fha.nhinc.gateway.aggregator.document.DocumentConstants;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.orchestration.OutboundOrchestratable;
+import gov.hhs.fha.nhinc.orchestration.OutboundOrchestratableMessage;
+import gov.hhs.fha.nhinc.orchestration.OutboundResponseProcessor;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.SlotListType;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.SlotType1;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.ValueListType;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryError;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryErrorList;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Aggregates the responses of a multi target document submission into a single RegistryResponseType. The response
+ * slot list has one slot per target, named by the target home community id, whose value is the status returned by
+ * that target. Registry errors from each target are copied with their location set to the target home community id.
+ *
+ * @author dharley
+ */
+public class OutboundDocSubmissionProcessor implements OutboundResponseProcessor {
+
+    private static Log log = LogFactory.getLog(OutboundDocSubmissionProcessor.class);
+
+    @Override
+    public OutboundOrchestratableMessage processNhinResponse(OutboundOrchestratableMessage individual,
+            OutboundOrchestratableMessage cumulativeResponse) {
+
+        if (individual == null) {
+            log.error("OutboundDocSubmissionProcessor::processNhinResponse individual received was null!!!");
+            return cumulativeResponse;
+        }
+
+        OutboundDocSubmissionTargetOrchestratable cumulative = (OutboundDocSubmissionTargetOrchestratable) cumulativeResponse;
+        if (cumulative == null) {
+            cumulative = new OutboundDocSubmissionTargetOrchestratable(null, this, null, null,
+                    ((OutboundDocSubmissionTargetOrchestratable) individual).getAssertion());
+            RegistryResponseType response = new RegistryResponseType();
+            response.setResponseSlotList(new SlotListType());
+            cumulative.setResponse(response);
+        }
+
+        aggregate(cumulative, individual);
+        return cumulative;
+    }
+
+    @Override
+    public OutboundOrchestratableMessage processErrorResponse(OutboundOrchestratableMessage request, String error) {
+        OutboundDocSubmissionTargetOrchestratable dsRequest = (OutboundDocSubmissionTargetOrchestratable) request;
+
+        OutboundDocSubmissionTargetOrchestratable response = new OutboundDocSubmissionTargetOrchestratable(null, this,
+                dsRequest.getRequest(), dsRequest.getTarget(), dsRequest.getAssertion());
+        response.setResponse(createErrorResponse(dsRequest.getTargetHomeCommunityId(), error));
+        return response;
+    }
+
+    /**
+     * A DS response is an error response when it is missing, when its status is Failure, or when it has a registry
+     * error of severity Error.
+     * 
+     * @param individualResponse the OutboundDocSubmissionTargetOrchestratable of a single target
+     * @return true if its DS response reports an error
+     */
+    @Override
+    public boolean isErrorResponse(OutboundOrchestratableMessage individualResponse) {
+        RegistryResponseType response = ((OutboundDocSubmissionTargetOrchestratable) individualResponse).getResponse();
+        if (response == null || DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE.equals(response.getStatus())) {
+            return true;
+        }
+        if (response.getRegistryErrorList() != null) {
+            for (RegistryError regErr : response.getRegistryErrorList().getRegistryError()) {
+                if (NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR.equals(regErr.getSeverity())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the response of one target to the aggregated response.
+     * 
+     * @param to the cumulative OutboundDocSubmissionTargetOrchestratable
+     * @param from the OutboundDocSubmissionTargetOrchestratable of a single target
+     */
+    @Override
+    public void aggregate(OutboundOrchestratable to, OutboundOrchestratable from) {
+        RegistryResponseType cumulative = ((OutboundDocSubmissionTargetOrchestratable) to).getResponse();
+        OutboundDocSubmissionTargetOrchestratable individual = (OutboundDocSubmissionTargetOrchestratable) from;
+        RegistryResponseType response = individual.getResponse();
+        String hcid = individual.getTargetHomeCommunityId();
+
+        String status = DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE;
+        if (response != null && response.getStatus() != null) {
+            status = response.getStatus();
+        }
+        cumulative.getResponseSlotList().getSlot().add(createSlot(hcid, status));
+
+        if (response != null && response.getRegistryErrorList() != null) {
+            for (RegistryError regErr : response.getRegistryErrorList().getRegistryError()) {
+                addRegistryError(cumulative, copyRegistryError(regErr, hcid));
+            }
+        }
+
+        cumulative.setStatus(determineStatus(cumulative.getResponseSlotList()));
+    }
+
+    /**
+     * Creates the response for a target that could not be reached.
+     * 
+     * @param hcid the home community id of the target
+     * @param error the reason for the failure
+     * @return a failure response
+     */
+    public RegistryResponseType createErrorResponse(String hcid, String error) {
+        RegistryErrorList regErrList = new RegistryErrorList();
+        regErrList.setHighestSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        RegistryError regErr = new RegistryError();
+        regErrList.getRegistryError().add(regErr);
+        regErr.setCodeContext("Fault encountered processing provideAndRegisterDocumentSetB for community " + hcid
+                + ": " + error);
+        regErr.setErrorCode("XDSRegistryBusy");
+        regErr.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        regErr.setLocation(hcid);
+
+        RegistryResponseType response = new RegistryResponseType();
+        response.setRegistryErrorList(regErrList);
+        response.setStatus(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE);
+
+        return response;
+    }
+
+    /**
+     * Copies a registry error of a target response, so that the target response is left unchanged. The copy is
+     * located by the target home community id unless the error already has a location.
+     */
+    private RegistryError copyRegistryError(RegistryError regErr, String hcid) {
+        RegistryError copy = new RegistryError();
+        copy.setCodeContext(regErr.getCodeContext());
+        copy.setErrorCode(regErr.getErrorCode());
+        copy.setSeverity(regErr.getSeverity());
+        copy.setValue(regErr.getValue());
+        copy.setLocation(regErr.getLocation() != null ? regErr.getLocation() : hcid);
+        return copy;
+    }
+
+    private SlotType1 createSlot(String name, String value) {
+        SlotType1 slot = new SlotType1();
+        slot.setName(name);
+        ValueListType valueList = new ValueListType();
+        valueList.getValue().add(value);
+        slot.setValueList(valueList);
+        return slot;
+    }
+
+    private void addRegistryError(RegistryResponseType cumulative, RegistryError regErr) {
+        RegistryErrorList regErrList = cumulative.getRegistryErrorList();
+        if (regErrList == null) {
+            regErrList = new RegistryErrorList();
+            cumulative.setRegistryErrorList(regErrList);
+        }
+        regErrList.getRegistryError().add(regErr);
+
+        if (NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR.equals(regErr.getSeverity())
+                || regErrList.getHighestSeverity() == null) {
+            regErrList.setHighestSeverity(regErr.getSeverity());
+        }
+    }
+
+    private String determineStatus(SlotListType targetStatuses) {
+        boolean allSucceeded = true;
+        boolean anySucceeded = false;
+        for (SlotType1 slot : targetStatuses.getSlot()) {
+            String status = slot.getValueList().getValue().get(0);
+            if (DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_SUCCESS.equals(status)) {
+                anySucceeded = true;
+            } else if (DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_PARTIALSUCCESS.equals(status)) {
+                anySucceeded = true;
+                allSucceeded = false;
+            } else {
+                allSucceeded = false;
+            }
+        }
+
+        if (allSucceeded) {
+            return DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_SUCCESS;
+        } else if (anySucceeded) {
+            return DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_PARTIALSUCCESS;
+        }
+        return DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE;
+    }
+}
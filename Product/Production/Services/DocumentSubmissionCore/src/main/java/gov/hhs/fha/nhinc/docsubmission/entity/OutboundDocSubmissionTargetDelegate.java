@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission.entity;
+
+import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetCommunityType;
+import gov.hhs.fha.nhinc.orchestration.Orchestratable;
+import gov.hhs.fha.nhinc.orchestration.OutboundDelegate;
+import gov.hhs.fha.nhinc.orchestration.OutboundOrchestratable;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sends one OutboundDocSubmissionTargetOrchestratable through the entity orchestration, so each target of a multi
+ * target submission gets its own Nhin audit. Its policy check has already passed.
+ *
+ * @author dharley
+ */
+public class OutboundDocSubmissionTargetDelegate implements OutboundDelegate {
+
+    private static Log log = LogFactory.getLog(OutboundDocSubmissionTargetDelegate.class);
+
+    private final EntityDocSubmissionOrchImpl orchestrator;
+
+    public OutboundDocSubmissionTargetDelegate(EntityDocSubmissionOrchImpl orchestrator) {
+        this.orchestrator = orchestrator;
+    }
+
+    @Override
+    public Orchestratable process(Orchestratable message) {
+        if (message instanceof OutboundOrchestratable) {
+            return process((OutboundOrchestratable) message);
+        }
+        return null;
+    }
+
+    @Override
+    public OutboundOrchestratable process(OutboundOrchestratable message) {
+        if (message instanceof OutboundDocSubmissionTargetOrchestratable) {
+            OutboundDocSubmissionTargetOrchestratable dsMessage = (OutboundDocSubmissionTargetOrchestratable) message;
+
+            NhinTargetCommunityType target = new NhinTargetCommunityType();
+            target.setHomeCommunity(dsMessage.getTarget().getHomeCommunity());
+
+            RegistryResponseType response = orchestrator.provideAndRegisterDocumentSetBToTarget(
+                    dsMessage.getRequest(), dsMessage.getAssertion(), target);
+
+            OutboundDocSubmissionTargetOrchestratable result = new OutboundDocSubmissionTargetOrchestratable(null,
+                    dsMessage.getResponseProcessor(), dsMessage.getRequest(), dsMessage.getTarget(),
+                    dsMessage.getAssertion());
+            result.setResponse(response);
+            return result;
+        }
+        log.error("message is not an instance of OutboundDocSubmissionTargetOrchestratable!");
+        return null;
+    }
+
+    @Override
+    public void createErrorResponse(OutboundOrchestratable message, String error) {
+        if (message instanceof OutboundDocSubmissionTargetOrchestratable) {
+            OutboundDocSubmissionTargetOrchestratable dsMessage = (OutboundDocSubmissionTargetOrchestratable) message;
+            dsMessage.setResponse(new OutboundDocSubmissionProcessor().createErrorResponse(
+                    dsMessage.getTargetHomeCommunityId(), error));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission;
+
+import static org.junit.Assert.*;
+import gov.hhs.fha.nhinc.largefile.LargeFileUtils;
+import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType;
+import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType.Document;
+
+import java.io.File;
+
+import oasis.names.tc.ebxml_regrep.xsd.lcm._3.SubmitObjectsRequest;
+
+import org.junit.Test;
+
+public class DocSubmissionAttachmentSpoolTest {
+
+    private static final String DOCUMENT_DATA = "<ClinicalDocument/>";
+
+    @Test
+    public void testCreateRequestStreamsFromSpool() throws Exception {
+        LargeFileUtils fileUtils = LargeFileUtils.getInstance();
+        ProvideAndRegisterDocumentSetRequestType request = createRequest();
+
+        DocSubmissionAttachmentSpool spool = new DocSubmissionAttachmentSpool(request);
+        spool.spool();
+
+        ProvideAndRegisterDocumentSetRequestType first = spool.createRequest();
+        ProvideAndRegisterDocumentSetRequestType second = spool.createRequest();
+
+        // each request has its own copy of the metadata
+        assertNotSame(request.getSubmitObjectsRequest(), first.getSubmitObjectsRequest());
+        assertNotSame(first.getSubmitObjectsRequest(), second.getSubmitObjectsRequest());
+        assertEquals("urn:uuid:submission01", first.getSubmitObjectsRequest().getId());
+        assertEquals("urn:uuid:submission01", second.getSubmitObjectsRequest().getId());
+        assertEquals("Document01", first.getDocument().get(0).getId());
+
+        File spooledFile = fileUtils.getFile(first.getDocument().get(0).getValue());
+        assertNotNull(spooledFile);
+        assertEquals(spooledFile, fileUtils.getFile(second.getDocument().get(0).getValue()));
+
+        assertEquals(DOCUMENT_DATA, new String(fileUtils.convertToBytes(first.getDocument().get(0).getValue())));
+        assertEquals(DOCUMENT_DATA, new String(fileUtils.convertToBytes(second.getDocument().get(0).getValue())));
+
+        spool.release();
+        assertFalse(spooledFile.exists());
+    }
+
+    @Test
+    public void testFileBackedDocumentIsNotCopied() throws Exception {
+        LargeFileUtils fileUtils = LargeFileUtils.getInstance();
+        File sourceFile = File.createTempFile("spool", ".tmp");
+        sourceFile.deleteOnExit();
+
+        ProvideAndRegisterDocumentSetRequestType request = createRequest();
+        request.getDocument().get(0).setValue(fileUtils.convertToDataHandler(sourceFile));
+
+        DocSubmissionAttachmentSpool spool = new DocSubmissionAttachmentSpool(request);
+        spool.spool();
+
+        assertEquals(sourceFile, fileUtils.getFile(spool.createRequest().getDocument().get(0).getValue()));
+
+        spool.release();
+        assertTrue(sourceFile.exists());
+        sourceFile.delete();
+    }
+
+    private ProvideAndRegisterDocumentSetRequestType createRequest() {
+        Document doc = new Document();
+        doc.setId("Document01");
+        doc.setValue(LargeFileUtils.getInstance().convertToDataHandler(DOCUMENT_DATA));
+
+        ProvideAndRegisterDocumentSetRequestType request = new ProvideAndRegisterDocumentSetRequestType();
+        SubmitObjectsRequest metadata = new SubmitObjectsRequest();
+        metadata.setId("urn:uuid:submission01");
+        request.setSubmitObjectsRequest(metadata);
+        request.getDocument().add(doc);
+        return request;
+    }
+}
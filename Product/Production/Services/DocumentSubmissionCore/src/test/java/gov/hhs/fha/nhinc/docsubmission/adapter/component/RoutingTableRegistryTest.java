@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission.adapter.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class RoutingTableRegistryTest {
+
+    private File configFile;
+
+    @Before
+    public void setUp() throws IOException {
+        configFile = File.createTempFile("XDRConfiguration", ".xml");
+    }
+
+    @After
+    public void tearDown() {
+        configFile.delete();
+    }
+
+    @Test
+    public void testLookupIgnoresCaseAndKeepsFirstEntry() throws IOException {
+        writeConfig("<RoutingConfig><Recipient>C-HIEP</Recipient><Bean>chiep</Bean></RoutingConfig>"
+                + "<RoutingConfig><Recipient>c-hiep</Recipient><Bean>other</Bean></RoutingConfig>");
+        RoutingTableRegistry registry = new RoutingTableRegistry(configFile);
+        assertTrue(registry.reload());
+
+        RoutingTable table = registry.getRoutingTable();
+        assertEquals(1, table.size());
+        assertEquals("chiep", table.getBean("c-hiep"));
+        assertNull(table.getBean("unknown"));
+    }
+
+    @Test
+    public void testBadFileKeepsPreviousTable() throws IOException {
+        writeConfig("<RoutingConfig><Recipient>c-hiep</Recipient><Bean>chiep</Bean></RoutingConfig>");
+        RoutingTableRegistry registry = new RoutingTableRegistry(configFile);
+        assertTrue(registry.reload());
+        RoutingTable table = registry.getRoutingTable();
+
+        writeFile("<Configuration><RoutingInformation>");
+        assertFalse(registry.reload());
+        writeConfig("<RoutingConfig><Recipient>c-hiep</Recipient></RoutingConfig>");
+        assertFalse(registry.reload());
+        writeFile("<Configuration/>");
+        assertFalse(registry.reload());
+
+        assertTrue(table == registry.getRoutingTable());
+    }
+
+    @Test
+    public void testReloadDuringSubmissionStorm() throws Exception {
+        writeConfig("<RoutingConfig><Recipient>c-hiep</Recipient><Bean>chiep</Bean></RoutingConfig>");
+        final RoutingTableRegistry registry = new RoutingTableRegistry(configFile);
+        assertTrue(registry.reload());
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CountDownLatch started = new CountDownLatch(8);
+        List<Thread> submitters = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread submitter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    while (running.get()) {
+                        String bean = registry.getRoutingTable().getBean("C-HIEP");
+                        if (!"chiep".equals(bean) && !"chiep2".equals(bean)) {
+                            failure.compareAndSet(null, "c-hiep routed to " + bean);
+                        }
+                    }
+                }
+            });
+            submitter.start();
+            submitters.add(submitter);
+        }
+        started.await();
+
+        for (int i = 0; i < 50; i++) {
+            String bean = i % 2 == 0 ? "chiep2" : "chiep";
+            writeConfig("<RoutingConfig><Recipient>c-hiep</Recipient><Bean>" + bean + "</Bean></RoutingConfig>");
+            assertTrue(registry.reload());
+            writeFile("<Configuration><RoutingInformation><RoutingConfig>");
+            assertFalse(registry.reload());
+        }
+        running.set(false);
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals("chiep", registry.getRoutingTable().getBean("c-hiep"));
+    }
+
+    @Test
+    public void testWatchingResumesAfterStop() throws IOException {
+        writeConfig("<RoutingConfig><Recipient>c-hiep</Recipient><Bean>chiep</Bean></RoutingConfig>");
+        RoutingTableRegistry registry = new RoutingTableRegistry(configFile);
+        assertTrue(registry.reload());
+
+        registry.stop();
+        assertFalse(registry.isWatching());
+        writeConfig("<RoutingConfig><Recipient>c-hiep</Recipient><Bean>chiep2</Bean></RoutingConfig>");
+
+        try {
+            registry.resumeWatching();
+            assertTrue(registry.isWatching());
+            assertEquals("chiep2", registry.getRoutingTable().getBean("c-hiep"));
+        } finally {
+            registry.stop();
+        }
+    }
+
+    private void writeConfig(String routingConfigs) throws IOException {
+        writeFile("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Configuration><RoutingInformation>" + routingConfigs
+                + "</RoutingInformation></Configuration>");
+    }
+
+    private void writeFile(String content) throws IOException {
+        FileWriter writer = new FileWriter(configFile);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -40,6 +40,9 @@ import gov.hhs.fha.nhinc.gateway.aggregator.document.DocumentConstants;
 import gov.hhs.fha.nhinc.transform.policy.SubjectHelper;
 import ihe.iti.xds_b._2007.ProvideAndRegisterDocumentSetRequestType;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
 
 import org.apache.commons.logging.Log;
@@ -121,6 +124,136 @@ public class EntityDocSubmissionOrchImplTest {
         assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE, response.getStatus());
     }
 
+    @Test
+    public void testProvideAndRegisterDocumentSetB_multipleTargets() {
+        expect2MockAudits();
+        allowAnyMockLogging();
+        context.checking(new Expectations() {
+            {
+                exactly(2).of(mockSubjectHelper).determineSendingHomeCommunityId(with(any(HomeCommunityType.class)),
+                        with(any(AssertionType.class)));
+                will(returnValue("2.2"));
+
+                oneOf(mockPolicyCheck).checkXDRRequestPolicy(with(any(ProvideAndRegisterDocumentSetRequestType.class)),
+                        with(any(AssertionType.class)), with(any(String.class)), with(equal("1.1")),
+                        with(any(String.class)));
+                will(returnValue(true));
+                oneOf(mockPolicyCheck).checkXDRRequestPolicy(with(any(ProvideAndRegisterDocumentSetRequestType.class)),
+                        with(any(AssertionType.class)), with(any(String.class)), with(equal("3.3")),
+                        with(any(String.class)));
+                will(returnValue(false));
+
+                oneOf(mockXDRLog)
+                        .auditXDR(
+                                with(any(gov.hhs.fha.nhinc.common.nhinccommonproxy.RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType.class)),
+                                with(any(AssertionType.class)), with(any(String.class)));
+                oneOf(mockXDRLog).auditNhinXDRResponse(with(any(RegistryResponseType.class)),
+                        with(any(AssertionType.class)), with(any(String.class)));
+            }
+        });
+        setMockDelegateToReturnValidResponse();
+
+        NhinTargetCommunitiesType targets = createNhinTargetCommunitiesType();
+        NhinTargetCommunityType secondTarget = new NhinTargetCommunityType();
+        secondTarget.setHomeCommunity(new HomeCommunityType());
+        secondTarget.getHomeCommunity().setHomeCommunityId("3.3");
+        targets.getNhinTargetCommunity().add(secondTarget);
+
+        // a single thread keeps the mock invocations sequential
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EntityDocSubmissionOrchImpl entityOrch = createEntityDocSubmissionOrchImpl(executor);
+            RegistryResponseType response = entityOrch.provideAndRegisterDocumentSetB(
+                    new ProvideAndRegisterDocumentSetRequestType(), new AssertionType(), targets, new UrlInfoType());
+
+            context.assertIsSatisfied();
+            assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_PARTIALSUCCESS, response.getStatus());
+            assertEquals(2, response.getResponseSlotList().getSlot().size());
+            assertEquals("3.3", response.getRegistryErrorList().getRegistryError().get(0).getLocation());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testProvideAndRegisterDocumentSetB_multipleTargetsDenied() {
+        expect2MockAudits();
+        allowAnyMockLogging();
+        context.checking(new Expectations() {
+            {
+                exactly(2).of(mockSubjectHelper).determineSendingHomeCommunityId(with(any(HomeCommunityType.class)),
+                        with(any(AssertionType.class)));
+                will(returnValue("2.2"));
+
+                exactly(2).of(mockPolicyCheck).checkXDRRequestPolicy(
+                        with(any(ProvideAndRegisterDocumentSetRequestType.class)), with(any(AssertionType.class)),
+                        with(any(String.class)), with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
+                never(mockDelegate);
+            }
+        });
+
+        NhinTargetCommunitiesType targets = createNhinTargetCommunitiesType();
+        NhinTargetCommunityType secondTarget = new NhinTargetCommunityType();
+        secondTarget.setHomeCommunity(new HomeCommunityType());
+        secondTarget.getHomeCommunity().setHomeCommunityId("3.3");
+        targets.getNhinTargetCommunity().add(secondTarget);
+
+        // denied targets are never sent to, so no executor is needed
+        EntityDocSubmissionOrchImpl entityOrch = createEntityDocSubmissionOrchImpl();
+        RegistryResponseType response = entityOrch.provideAndRegisterDocumentSetB(
+                new ProvideAndRegisterDocumentSetRequestType(), new AssertionType(), targets, new UrlInfoType());
+
+        context.assertIsSatisfied();
+        assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE, response.getStatus());
+        assertEquals(2, response.getResponseSlotList().getSlot().size());
+        assertEquals(2, response.getRegistryErrorList().getRegistryError().size());
+    }
+
+    @Test
+    public void testProvideAndRegisterDocumentSetB_multipleTargetsWithoutExecutor() {
+        expect2MockAudits();
+        allowAnyMockLogging();
+        context.checking(new Expectations() {
+            {
+                exactly(2).of(mockSubjectHelper).determineSendingHomeCommunityId(with(any(HomeCommunityType.class)),
+                        with(any(AssertionType.class)));
+                will(returnValue("2.2"));
+
+                exactly(2).of(mockPolicyCheck).checkXDRRequestPolicy(
+                        with(any(ProvideAndRegisterDocumentSetRequestType.class)), with(any(AssertionType.class)),
+                        with(any(String.class)), with(any(String.class)), with(any(String.class)));
+                will(returnValue(true));
+
+                exactly(2).of(mockXDRLog)
+                        .auditXDR(
+                                with(any(gov.hhs.fha.nhinc.common.nhinccommonproxy.RespondingGatewayProvideAndRegisterDocumentSetSecuredRequestType.class)),
+                                with(any(AssertionType.class)), with(any(String.class)));
+                exactly(2).of(mockXDRLog).auditNhinXDRResponse(with(any(RegistryResponseType.class)),
+                        with(any(AssertionType.class)), with(any(String.class)));
+
+                exactly(2).of(mockDelegate).process(with(any(OutboundDocSubmissionOrchestratable.class)));
+                will(returnValue(createOutboundDocSubmissionOrchestratable()));
+            }
+        });
+
+        NhinTargetCommunitiesType targets = createNhinTargetCommunitiesType();
+        NhinTargetCommunityType secondTarget = new NhinTargetCommunityType();
+        secondTarget.setHomeCommunity(new HomeCommunityType());
+        secondTarget.getHomeCommunity().setHomeCommunityId("3.3");
+        targets.getNhinTargetCommunity().add(secondTarget);
+
+        // without an injected executor the targets are sent to on the calling thread
+        EntityDocSubmissionOrchImpl entityOrch = createEntityDocSubmissionOrchImpl();
+        RegistryResponseType response = entityOrch.provideAndRegisterDocumentSetB(
+                new ProvideAndRegisterDocumentSetRequestType(), new AssertionType(), targets, new UrlInfoType());
+
+        context.assertIsSatisfied();
+        assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_SUCCESS, response.getStatus());
+        assertEquals(2, response.getResponseSlotList().getSlot().size());
+    }
+
     @Test
     public void testHasNhinTargetHomeCommunityId() {
         EntityDocSubmissionOrchImpl entityOrch = createEntityDocSubmissionOrchImpl();
@@ -308,6 +441,30 @@ public class EntityDocSubmissionOrchImplTest {
         });
     }
 
+    private EntityDocSubmissionOrchImpl createEntityDocSubmissionOrchImpl(ExecutorService executor) {
+        return new EntityDocSubmissionOrchImpl(executor, executor) {
+            protected Log getLogger() {
+                return mockLog;
+            }
+
+            protected XDRAuditLogger getXDRAuditLogger() {
+                return mockXDRLog;
+            }
+
+            protected XDRPolicyChecker getXDRPolicyChecker() {
+                return mockPolicyCheck;
+            }
+
+            protected SubjectHelper getSubjectHelper() {
+                return mockSubjectHelper;
+            }
+
+            protected OutboundDocSubmissionDelegate getOutboundDocSubmissionDelegate() {
+                return mockDelegate;
+            }
+        };
+    }
+
     private EntityDocSubmissionOrchImpl createEntityDocSubmissionOrchImpl() {
         return new EntityDocSubmissionOrchImpl() {
             protected Log getLogger() {
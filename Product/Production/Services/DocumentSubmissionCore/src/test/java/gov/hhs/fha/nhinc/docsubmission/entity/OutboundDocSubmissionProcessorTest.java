@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.docsubmission.entity;
+
+import static org.junit.Assert.*;
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
+import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetSystemType;
+import gov.hhs.fha.nhinc.gateway.aggregator.document.DocumentConstants;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import oasis.names.tc.ebxml_regrep.xsd.rim._3.SlotType1;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryError;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryErrorList;
+import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
+
+import org.junit.Test;
+
+public class OutboundDocSubmissionProcessorTest {
+
+    @Test
+    public void testAllTargetsSucceed() {
+        OutboundDocSubmissionProcessor processor = new OutboundDocSubmissionProcessor();
+
+        OutboundDocSubmissionTargetOrchestratable cumulative = (OutboundDocSubmissionTargetOrchestratable) processor
+                .processNhinResponse(createSuccessResponse(processor, "1.1"), null);
+        cumulative = (OutboundDocSubmissionTargetOrchestratable) processor.processNhinResponse(
+                createSuccessResponse(processor, "2.2"), cumulative);
+
+        RegistryResponseType response = cumulative.getResponse();
+        assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_SUCCESS, response.getStatus());
+        assertEquals(2, response.getResponseSlotList().getSlot().size());
+        assertNull(response.getRegistryErrorList());
+    }
+
+    @Test
+    public void testOneTargetFails() {
+        OutboundDocSubmissionProcessor processor = new OutboundDocSubmissionProcessor();
+
+        OutboundDocSubmissionTargetOrchestratable cumulative = (OutboundDocSubmissionTargetOrchestratable) processor
+                .processNhinResponse(createSuccessResponse(processor, "1.1"), null);
+        cumulative = (OutboundDocSubmissionTargetOrchestratable) processor.processNhinResponse(
+                processor.processErrorResponse(createTarget(processor, "2.2"), "Connection refused"), cumulative);
+
+        RegistryResponseType response = cumulative.getResponse();
+        assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_PARTIALSUCCESS, response.getStatus());
+
+        SlotType1 failedSlot = response.getResponseSlotList().getSlot().get(1);
+        assertEquals("2.2", failedSlot.getName());
+        assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE, failedSlot.getValueList().getValue()
+                .get(0));
+
+        assertEquals(1, response.getRegistryErrorList().getRegistryError().size());
+        assertEquals("2.2", response.getRegistryErrorList().getRegistryError().get(0).getLocation());
+        assertEquals(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR, response.getRegistryErrorList()
+                .getHighestSeverity());
+    }
+
+    @Test
+    public void testAllTargetsFail() {
+        OutboundDocSubmissionProcessor processor = new OutboundDocSubmissionProcessor();
+
+        OutboundDocSubmissionTargetOrchestratable cumulative = (OutboundDocSubmissionTargetOrchestratable) processor
+                .processNhinResponse(processor.processErrorResponse(createTarget(processor, "1.1"), "Timed out"), null);
+        cumulative = (OutboundDocSubmissionTargetOrchestratable) processor.processNhinResponse(
+                processor.processErrorResponse(createTarget(processor, "2.2"), "Timed out"), cumulative);
+
+        RegistryResponseType response = cumulative.getResponse();
+        assertEquals(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE, response.getStatus());
+        assertEquals(2, response.getRegistryErrorList().getRegistryError().size());
+    }
+
+    @Test
+    public void testTargetErrorsAreNotModified() {
+        OutboundDocSubmissionProcessor processor = new OutboundDocSubmissionProcessor();
+
+        RegistryError targetError = new RegistryError();
+        targetError.setErrorCode("XDSRepositoryError");
+        targetError.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        targetError.setValue("Document rejected");
+        RegistryErrorList targetErrors = new RegistryErrorList();
+        targetErrors.getRegistryError().add(targetError);
+        RegistryResponseType targetResponse = new RegistryResponseType();
+        targetResponse.setStatus(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_FAILURE);
+        targetResponse.setRegistryErrorList(targetErrors);
+        OutboundDocSubmissionTargetOrchestratable target = createTarget(processor, "1.1");
+        target.setResponse(targetResponse);
+
+        OutboundDocSubmissionTargetOrchestratable cumulative = (OutboundDocSubmissionTargetOrchestratable) processor
+                .processNhinResponse(target, null);
+
+        RegistryError aggregatedError = cumulative.getResponse().getRegistryErrorList().getRegistryError().get(0);
+        assertNotSame(targetError, aggregatedError);
+        assertEquals("1.1", aggregatedError.getLocation());
+        assertEquals("XDSRepositoryError", aggregatedError.getErrorCode());
+        assertEquals("Document rejected", aggregatedError.getValue());
+        assertNull(targetError.getLocation());
+    }
+
+    @Test
+    public void testIsErrorResponse() {
+        OutboundDocSubmissionProcessor processor = new OutboundDocSubmissionProcessor();
+        assertFalse(processor.isErrorResponse(createSuccessResponse(processor, "1.1")));
+        assertTrue(processor.isErrorResponse(processor.processErrorResponse(createTarget(processor, "1.1"),
+                "Timed out")));
+        assertTrue(processor.isErrorResponse(createTarget(processor, "1.1")));
+
+        RegistryError warning = new RegistryError();
+        warning.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_WARNING);
+        OutboundDocSubmissionTargetOrchestratable target = createSuccessResponse(processor, "1.1");
+        target.getResponse().setRegistryErrorList(new RegistryErrorList());
+        target.getResponse().getRegistryErrorList().getRegistryError().add(warning);
+        assertFalse(processor.isErrorResponse(target));
+
+        RegistryError error = new RegistryError();
+        error.setSeverity(NhincConstants.XDS_REGISTRY_ERROR_SEVERITY_ERROR);
+        target.getResponse().getRegistryErrorList().getRegistryError().add(error);
+        assertTrue(processor.isErrorResponse(target));
+    }
+
+    private OutboundDocSubmissionTargetOrchestratable createSuccessResponse(OutboundDocSubmissionProcessor processor,
+            String hcid) {
+        RegistryResponseType response = new RegistryResponseType();
+        response.setStatus(DocumentConstants.XDS_SUBMISSION_RESPONSE_STATUS_SUCCESS);
+
+        OutboundDocSubmissionTargetOrchestratable orchestratable = createTarget(processor, hcid);
+        orchestratable.setResponse(response);
+        return orchestratable;
+    }
+
+    private OutboundDocSubmissionTargetOrchestratable createTarget(OutboundDocSubmissionProcessor processor,
+            String hcid) {
+        HomeCommunityType homeCommunity = new HomeCommunityType();
+        homeCommunity.setHomeCommunityId(hcid);
+        NhinTargetSystemType target = new NhinTargetSystemType();
+        target.setHomeCommunity(homeCommunity);
+
+        return new OutboundDocSubmissionTargetOrchestratable(null, processor, null, target, new AssertionType());
+    }
+}
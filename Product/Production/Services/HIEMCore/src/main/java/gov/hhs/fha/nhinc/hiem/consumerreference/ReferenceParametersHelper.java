@@ -26,6 +26,8 @@
  */
 package gov.hhs.fha.nhinc.hiem.consumerreference;
 
+import gov.hhs.fha.nhinc.nhinclib.NullChecker;
+import gov.hhs.fha.nhinc.xmlCommon.XmlUtility;
 import gov.hhs.fha.nhinc.xmlCommon.XpathHelper;
 
 import javax.xml.xpath.XPathExpressionException;
@@ -57,6 +59,49 @@ public class ReferenceParametersHelper {
         return createReferenceParameterElementsFromEndpointReference(subscribeXml, xpathQuery);
     }
     
+    /**
+     * Extracts the consumer reference parameters from a subscribe message so they can be stored with the subscription.
+     * 
+     * @param subscribeXml the subscribe message
+     * @return the serialized ReferenceParameters element, or null if the consumer reference has none
+     * @throws XPathExpressionException
+     */
+    public String extractReferenceParametersXmlFromConsumerReference(String subscribeXml)
+            throws XPathExpressionException {
+        String xpathQuery = "//*[local-name()='ReferenceParameters']";
+        Element referenceParameters = (Element) XpathHelper.performXpathQuery(subscribeXml, xpathQuery);
+        if (referenceParameters == null) {
+            return null;
+        }
+        try {
+            return XmlUtility.serializeElement(referenceParameters);
+        } catch (Exception ex) {
+            log.error("Failed to serialize consumer reference parameters: " + ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the reference parameter elements from a ReferenceParameters element stored with a subscription.
+     * 
+     * @param referenceParametersXml the serialized ReferenceParameters element
+     * @return the reference parameter elements, empty if referenceParametersXml is null
+     * @throws XPathExpressionException if the stored XML cannot be parsed
+     */
+    public SoapMessageElements createReferenceParameterElementsFromReferenceParametersXml(
+            String referenceParametersXml) throws XPathExpressionException {
+        if (NullChecker.isNullish(referenceParametersXml)) {
+            return new SoapMessageElements();
+        }
+        Element referenceParameters;
+        try {
+            referenceParameters = XmlUtility.convertXmlToElement(referenceParametersXml);
+        } catch (Exception ex) {
+            throw new XPathExpressionException(ex);
+        }
+        return createReferenceParameterElementsFromEndpointReference(referenceParameters);
+    }
+
     public static String getWsAddressingTo(SoapMessageElements referenceParametersElements) {
         
         String wsAddressingTo = null;
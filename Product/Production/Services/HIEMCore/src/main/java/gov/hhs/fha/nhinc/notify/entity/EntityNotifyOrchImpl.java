@@ -39,19 +39,25 @@ import gov.hhs.fha.nhinc.common.nhinccommonadapter.CheckPolicyResponseType;
 import gov.hhs.fha.nhinc.common.nhinccommoninternalorch.NotifyRequestType;
 import gov.hhs.fha.nhinc.hiem.consumerreference.SoapMessageElements;
 import gov.hhs.fha.nhinc.hiem.consumerreference.ReferenceParametersHelper;
+import gov.hhs.fha.nhinc.gateway.executorservice.ExecutorServiceHelper;
 import gov.hhs.fha.nhinc.hiem.dte.NotifyBuilder;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.nhinclib.NullChecker;
 import gov.hhs.fha.nhinc.policyengine.PolicyEngineChecker;
 import gov.hhs.fha.nhinc.policyengine.adapter.proxy.PolicyEngineProxy;
 import gov.hhs.fha.nhinc.policyengine.adapter.proxy.PolicyEngineProxyObjectFactory;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
 import gov.hhs.fha.nhinc.subscription.repository.data.HiemSubscriptionItem;
 import gov.hhs.fha.nhinc.subscription.repository.service.HiemSubscriptionRepositoryService;
 import gov.hhs.fha.nhinc.subscription.repository.service.SubscriptionRepositoryException;
 import gov.hhs.fha.nhinc.xmlCommon.XmlUtility;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -72,6 +78,13 @@ public class EntityNotifyOrchImpl {
 
     private static Log log = LogFactory.getLog(EntityNotifyOrchImpl.class);
 
+    static final long DEFAULT_NOTIFY_TIMEOUT = 120000;
+    static final long DEFAULT_NOTIFY_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_NOTIFY_RETRY_DELAY = 1000;
+
+    private ExecutorService regularExecutor = null;
+    private ExecutorService largejobExecutor = null;
+
     /**
      * Generic constructor.
      */
@@ -79,6 +92,19 @@ public class EntityNotifyOrchImpl {
         log = getLogger();
     }
 
+    /**
+     * Constructs the orch impl with the executor services used to send a notification to its subscribers. Which one
+     * is used is decided by ExecutorServiceHelper.checkExecutorTaskIsLarge on the number of subscribers.
+     * 
+     * @param e the regular executor service
+     * @param le the large job executor service
+     */
+    public EntityNotifyOrchImpl(ExecutorService e, ExecutorService le) {
+        this();
+        regularExecutor = e;
+        largejobExecutor = le;
+    }
+
     /**
      * Return the logger.
      * 
@@ -137,42 +163,17 @@ public class EntityNotifyOrchImpl {
                     if (subscriptions != null) {
                         log.info("found " + subscriptions.size() + " matching subscriptions");
 
+                        Map<String, HiemSubscriptionItem> parents = new HashMap<String, HiemSubscriptionItem>();
+                        List<OutboundNotifyDispatcher.Delivery> deliveries =
+                                new ArrayList<OutboundNotifyDispatcher.Delivery>();
                         for (HiemSubscriptionItem subscription : subscriptions) {
-                            String subscriptionRef = subscription.getSubscriptionReferenceXML();
-                            String parentSubscriptionRef = subscription.getParentSubscriptionReferenceXML();
-                            
-                            log.info("processing subscription.  SubscriptionReference=[" + subscriptionRef + "]");
-                            if (parentSubscriptionRef != null) {
-                                log.info("has parent - retrieving [" + parentSubscriptionRef + "]");
-                                subscription = serviceDAO.retrieveByLocalSubscriptionReference(parentSubscriptionRef);
-                            }
-                            String endpoint = findNotifyEndpoint(subscription);
-                            log.info("endpoint=" + endpoint);
-
-                            log.debug("extracting reference parameters from consumer reference");
-                            ReferenceParametersHelper referenceParametersHelper = new ReferenceParametersHelper();
-                            SoapMessageElements referenceParametersElements = referenceParametersHelper
-                                    .createReferenceParameterElementsFromConsumerReference(subscription
-                                            .getSubscribeXML());
-                            log.debug("extracted reference parameters from consumer reference");
-
-                            NhinTargetSystemType targetSystem = new NhinTargetSystemType();
-                            targetSystem.setUrl(endpoint);
-
-                            log.debug("building notify");
-                            Element subscriptionReferenceElement = null;
-                            try {
-                                subscriptionReferenceElement = XmlUtility.convertXmlToElement(subscription
-                                        .getSubscriptionReferenceXML());
-                            } catch (Exception ex) {
-                                Logger.getLogger(EntityNotifyOrchImpl.class.getName()).log(Level.SEVERE, null, ex);
+                            OutboundNotifyDispatcher.Delivery delivery = createDelivery(subscription,
+                                    notificationMessageElement, assertion, serviceDAO, parents);
+                            if (delivery != null) {
+                                deliveries.add(delivery);
                             }
-                            NotifyBuilder builder = new NotifyBuilder();
-                            Notify notifyElement = builder.buildNotifyFromSubscribe(notificationMessageElement,
-                                    subscriptionReferenceElement);
-
-                            sendRequestToTarget(notifyElement, referenceParametersElements, assertion, targetSystem);
                         }
+                        sendRequestsToTargets(deliveries);
                     }
                 } catch (SubscriptionRepositoryException ex) {
                     log.error("Error collecting subscription records: " + ex.getMessage(), ex);
@@ -181,6 +182,127 @@ public class EntityNotifyOrchImpl {
         }
     }
 
+    /**
+     * Builds the notify for a subscription. The notify is sent to the consumer of the parent subscription when there is
+     * one; parents are looked up by subscription id once per notification message.
+     * 
+     * @return the delivery, or null if the parent subscription could not be found
+     */
+    private OutboundNotifyDispatcher.Delivery createDelivery(HiemSubscriptionItem subscription,
+            Element notificationMessageElement, final AssertionType assertion,
+            HiemSubscriptionRepositoryService serviceDAO, Map<String, HiemSubscriptionItem> parents)
+            throws XPathExpressionException {
+
+        String subscriptionRef = subscription.getSubscriptionReferenceXML();
+        String parentSubscriptionRef = subscription.getParentSubscriptionReferenceXML();
+
+        log.info("processing subscription.  SubscriptionReference=[" + subscriptionRef + "]");
+        if (parentSubscriptionRef != null) {
+            String parentSubscriptionId = subscription.getStorageObject() != null ? subscription.getStorageObject()
+                    .getParentSubscriptionId() : null;
+            String parentKey = parentSubscriptionId != null ? parentSubscriptionId : parentSubscriptionRef;
+            HiemSubscriptionItem parent = parents.get(parentKey);
+            if (parent == null) {
+                log.info("has parent - retrieving [" + parentKey + "]");
+                try {
+                    if (parentSubscriptionId != null) {
+                        parent = serviceDAO.retrieveBySubscriptionId(parentSubscriptionId);
+                    } else {
+                        parent = serviceDAO.retrieveByLocalSubscriptionReference(parentSubscriptionRef);
+                    }
+                } catch (SubscriptionRepositoryException ex) {
+                    log.error("Error retrieving parent subscription " + parentKey + ": " + ex.getMessage(), ex);
+                    return null;
+                }
+                if (parent == null) {
+                    log.error("Parent subscription " + parentKey + " was not found");
+                    return null;
+                }
+                parents.put(parentKey, parent);
+            }
+            subscription = parent;
+        }
+
+        final String endpoint = subscription.getConsumerEndpoint() != null ? subscription.getConsumerEndpoint()
+                : findNotifyEndpoint(subscription);
+        log.info("endpoint=" + endpoint);
+
+        log.debug("extracting reference parameters from consumer reference");
+        ReferenceParametersHelper referenceParametersHelper = new ReferenceParametersHelper();
+        final SoapMessageElements referenceParametersElements;
+        if (subscription.getConsumerReferenceParametersXML() != null) {
+            referenceParametersElements = referenceParametersHelper
+                    .createReferenceParameterElementsFromReferenceParametersXml(subscription
+                            .getConsumerReferenceParametersXML());
+        } else {
+            referenceParametersElements = referenceParametersHelper
+                    .createReferenceParameterElementsFromConsumerReference(subscription.getSubscribeXML());
+        }
+        log.debug("extracted reference parameters from consumer reference");
+
+        final NhinTargetSystemType targetSystem = new NhinTargetSystemType();
+        targetSystem.setUrl(endpoint);
+
+        log.debug("building notify");
+        Element subscriptionReferenceElement = null;
+        try {
+            subscriptionReferenceElement = XmlUtility.convertXmlToElement(subscription.getSubscriptionReferenceXML());
+        } catch (Exception ex) {
+            Logger.getLogger(EntityNotifyOrchImpl.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        NotifyBuilder builder = new NotifyBuilder();
+        final Notify notifyElement = builder.buildNotifyFromSubscribe(notificationMessageElement,
+                subscriptionReferenceElement);
+
+        return new OutboundNotifyDispatcher.Delivery() {
+            @Override
+            public boolean deliver() {
+                return sendRequestToTarget(notifyElement, referenceParametersElements, assertion, targetSystem);
+            }
+
+            @Override
+            public String toString() {
+                return endpoint;
+            }
+        };
+    }
+
+    /**
+     * Sends the notifies through the executor service that matches the number of subscribers. If the orch impl was
+     * constructed without executor services the notifies are sent one at a time on the calling thread.
+     * 
+     * @param deliveries the notifies to send
+     */
+    private void sendRequestsToTargets(List<OutboundNotifyDispatcher.Delivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor;
+        if (ExecutorServiceHelper.getInstance().checkExecutorTaskIsLarge(deliveries.size())) {
+            executor = largejobExecutor;
+        } else {
+            executor = regularExecutor;
+        }
+        int delivered = createNotifyDispatcher(executor).dispatch(deliveries);
+        log.info("sent notify to " + delivered + " of " + deliveries.size() + " subscribers");
+    }
+
+    /**
+     * Creates the dispatcher that sends the notifies, configured from gateway.properties.
+     * 
+     * @param executor the executor service that runs the notifies, or null to send them on the calling thread
+     * @return the dispatcher
+     */
+    protected OutboundNotifyDispatcher createNotifyDispatcher(ExecutorService executor) {
+        PropertyAccessor props = PropertyAccessor.getInstance();
+        return new OutboundNotifyDispatcher(executor, props.getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                NhincConstants.HIEM_NOTIFY_TIMEOUT, DEFAULT_NOTIFY_TIMEOUT), (int) props.getPropertyLong(
+                NhincConstants.GATEWAY_PROPERTY_FILE, NhincConstants.HIEM_NOTIFY_MAX_ATTEMPTS,
+                DEFAULT_NOTIFY_MAX_ATTEMPTS), props.getPropertyLong(NhincConstants.GATEWAY_PROPERTY_FILE,
+                NhincConstants.HIEM_NOTIFY_RETRY_DELAY, DEFAULT_NOTIFY_RETRY_DELAY));
+    }
+
     private String findNotifyEndpoint(HiemSubscriptionItem subscription) {
         log.debug("Begin findNotifyEndpoint");
         String endpoint = "";
@@ -264,28 +386,28 @@ public class EntityNotifyOrchImpl {
     }
 
     /**
-     * Send subscription response to target.
+     * Send notify to target.
      * 
-     * @param request The subscribe to send.
+     * @param request The notify to send.
      * @param assertion The assertion to send
-     * @param targetCommunitites The targets to be sent to
-     * @return the response from the foreign entity
+     * @param targetSystem The target to be sent to
+     * @return false if sending the notify failed and may be retried
      */
-    private void sendRequestToTarget(Notify request, SoapMessageElements referenceParameters,
+    protected boolean sendRequestToTarget(Notify request, SoapMessageElements referenceParameters,
             AssertionType assertion, NhinTargetSystemType targetSystem) {
         if (isPolicyValid(request, assertion)) {
             log.info("Policy check successful");
             // send request to nhin proxy
             try {
-                sendToNhinProxy(request, referenceParameters, assertion, targetSystem);
+                return sendToNhinProxy(request, referenceParameters, assertion, targetSystem);
             } catch (Exception e) {
-                // TODO nhinResponse = createFailedNhinSendResponse(hcid);
-                String hcid = targetSystem.getHomeCommunity().getHomeCommunityId();
-                log.error("Fault encountered while trying to send message to the nhin " + hcid, e);
+                log.error("Fault encountered while trying to send message to the nhin " + targetSystem.getUrl(), e);
+                return false;
             }
         } else {
             log.error("Failed policy check.  Sending error response.");
         }
+        return true;
     }
 
     /**
@@ -295,14 +417,16 @@ public class EntityNotifyOrchImpl {
      * @param referenceParameters the reference parameters to be used
      * @param assertion the assertion to be used
      * @param nhinTargetSystem the nhin target system to be used
+     * @return true if the notify was sent
      */
-    private void sendToNhinProxy(Notify request, SoapMessageElements referenceParameters,
+    private boolean sendToNhinProxy(Notify request, SoapMessageElements referenceParameters,
             AssertionType assertion, NhinTargetSystemType nhinTargetSystem) {
 
         OutboundNotifyDelegate dsDelegate = getOutboundNotifyDelegate();
         OutboundNotifyOrchestratable dsOrchestratable = createOrchestratable(dsDelegate, request, referenceParameters,
                 assertion, nhinTargetSystem);
         dsDelegate.process(dsOrchestratable);
+        return dsOrchestratable.getFault() == null;
     }
 
     /**
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.notify.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sends the notifies for the subscribers of a notification concurrently. A notify that fails is retried, doubling the
+ * delay before each new attempt. Notifies that have not completed when the timeout expires are cancelled. Without an
+ * executor the notifies are sent one at a time on the calling thread, with retries but without the timeout.
+ *
+ * @author dharley
+ */
+public class OutboundNotifyDispatcher {
+
+    /**
+     * A notify to a single subscriber.
+     */
+    public interface Delivery {
+        /**
+         * @return true if the notify was handled, false if it failed and may be retried
+         */
+        boolean deliver();
+    }
+
+    private static Log log = LogFactory.getLog(OutboundNotifyDispatcher.class);
+
+    private final ExecutorService executor;
+    private final long timeout;
+    private final int maxAttempts;
+    private final long retryDelay;
+
+    /**
+     * @param executor runs the notifies; null sends them on the calling thread
+     * @param timeout the number of milliseconds allowed for all notifies to complete; 0 waits indefinitely
+     * @param maxAttempts the number of times a notify is attempted
+     * @param retryDelay the number of milliseconds before the first retry
+     */
+    public OutboundNotifyDispatcher(ExecutorService executor, long timeout, int maxAttempts, long retryDelay) {
+        this.executor = executor;
+        this.timeout = timeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Sends the notifies and waits for them to complete or for the timeout to expire.
+     *
+     * @param deliveries the notifies to send
+     * @return the number of notifies that were handled
+     */
+    public int dispatch(List<? extends Delivery> deliveries) {
+        if (executor == null) {
+            return dispatchOnCallingThread(deliveries);
+        }
+
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(deliveries.size());
+        for (final Delivery delivery : deliveries) {
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws InterruptedException {
+                    return deliverWithRetry(delivery);
+                }
+            });
+        }
+
+        int delivered = 0;
+        try {
+            List<Future<Boolean>> futures;
+            if (timeout > 0) {
+                futures = executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS);
+            } else {
+                futures = executor.invokeAll(tasks);
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Boolean> future = futures.get(i);
+                if (future.isCancelled()) {
+                    log.warn("Notify to " + deliveries.get(i) + " did not complete within " + timeout + " ms");
+                    continue;
+                }
+                try {
+                    if (future.get()) {
+                        delivered++;
+                    }
+                } catch (ExecutionException ee) {
+                    log.error("Notify to " + deliveries.get(i) + " failed: " + ee.getCause(), ee.getCause());
+                }
+            }
+        } catch (InterruptedException ie) {
+            log.warn("Interrupted while sending notifies");
+            Thread.currentThread().interrupt();
+        }
+
+        log.debug("Sent " + delivered + " of " + deliveries.size() + " notifies");
+        return delivered;
+    }
+
+    private int dispatchOnCallingThread(List<? extends Delivery> deliveries) {
+        int delivered = 0;
+        try {
+            for (Delivery delivery : deliveries) {
+                if (deliverWithRetry(delivery)) {
+                    delivered++;
+                }
+            }
+        } catch (InterruptedException ie) {
+            log.warn("Interrupted while sending notifies");
+            Thread.currentThread().interrupt();
+        }
+
+        log.debug("Sent " + delivered + " of " + deliveries.size() + " notifies");
+        return delivered;
+    }
+
+    boolean deliverWithRetry(Delivery delivery) throws InterruptedException {
+        long delay = retryDelay;
+        for (int attempt = 1;; attempt++) {
+            boolean handled;
+            try {
+                handled = delivery.deliver();
+            } catch (RuntimeException e) {
+                log.warn("Notify to " + delivery + " failed: " + e.getMessage(), e);
+                handled = false;
+            }
+            if (handled) {
+                return true;
+            }
+            if (attempt >= maxAttempts) {
+                log.error("Giving up on notify to " + delivery + " after " + attempt + " attempt(s)");
+                return false;
+            }
+            log.info("Notify to " + delivery + " failed, retrying in " + delay + " ms");
+            sleep(delay);
+            delay *= 2;
+        }
+    }
+
+    protected void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}
@@ -45,6 +45,7 @@ public class OutboundNotifyOrchestratable implements OutboundOrchestratable {
     private OutboundDelegate nhinDelegate = null;
     private SoapMessageElements referenceParameters = null;
     private Notify request = null;
+    private Exception fault = null;
 
     /**
      * A basic constructor.
@@ -162,6 +163,22 @@ public class OutboundNotifyOrchestratable implements OutboundOrchestratable {
 		this.referenceParameters = referenceParameters;
 	}
 
+    /**
+     * Getter for the exception raised while sending the notify, if any.
+     * @return the exception, or null if the notify was sent
+     */
+    public Exception getFault() {
+        return fault;
+    }
+
+    /**
+     * Setter for the exception raised while sending the notify.
+     * @param fault the exception
+     */
+    public void setFault(Exception fault) {
+        this.fault = fault;
+    }
+
 	/**
 	 * Return this service name.
 	 * @return the name
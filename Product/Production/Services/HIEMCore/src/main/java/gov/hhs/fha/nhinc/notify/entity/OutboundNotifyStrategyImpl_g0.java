@@ -67,6 +67,7 @@ class OutboundNotifyStrategyImpl_g0 implements OrchestrationStrategy {
         			message.getAssertion(), message.getTarget());
 		} catch (Exception e) {
 			log.error("Failure to process nhin Subscribe message.", e);
+			message.setFault(e);
 		}
 
         getLogger().debug("End OutboundDocSubmissionOrchestratableImpl_g0.process");
@@ -39,6 +39,8 @@ public class HiemSubscriptionItem {
     private String rootTopic;
     private String parentSubscriptionReferenceXML;
     private String consumer;
+    private String consumerEndpoint;
+    private String consumerReferenceParametersXML;
     private String producer;
     private String targets;
     private Date creationDate;
@@ -85,6 +87,22 @@ public class HiemSubscriptionItem {
         this.consumer = consumer;
     }
 
+    public String getConsumerEndpoint() {
+        return consumerEndpoint;
+    }
+
+    public void setConsumerEndpoint(String consumerEndpoint) {
+        this.consumerEndpoint = consumerEndpoint;
+    }
+
+    public String getConsumerReferenceParametersXML() {
+        return consumerReferenceParametersXML;
+    }
+
+    public void setConsumerReferenceParametersXML(String consumerReferenceParametersXML) {
+        this.consumerReferenceParametersXML = consumerReferenceParametersXML;
+    }
+
     public String getProducer() {
         return producer;
     }
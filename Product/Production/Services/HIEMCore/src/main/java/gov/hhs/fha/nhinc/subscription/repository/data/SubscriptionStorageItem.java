@@ -42,6 +42,8 @@ public class SubscriptionStorageItem {
     private String parentSubscriptionId;
     private String parentSubscriptionReferenceXML;
     private String consumer;
+    private String consumerEndpoint;
+    private String consumerReferenceParametersXML;
     private String producer;
     private String patientId;
     private String patientAssigningAuthority;
@@ -112,6 +114,22 @@ public class SubscriptionStorageItem {
         this.consumer = consumer;
     }
 
+    public String getConsumerEndpoint() {
+        return consumerEndpoint;
+    }
+
+    public void setConsumerEndpoint(String consumerEndpoint) {
+        this.consumerEndpoint = consumerEndpoint;
+    }
+
+    public String getConsumerReferenceParametersXML() {
+        return consumerReferenceParametersXML;
+    }
+
+    public void setConsumerReferenceParametersXML(String consumerReferenceParametersXML) {
+        this.consumerReferenceParametersXML = consumerReferenceParametersXML;
+    }
+
     public String getProducer() {
         return producer;
     }
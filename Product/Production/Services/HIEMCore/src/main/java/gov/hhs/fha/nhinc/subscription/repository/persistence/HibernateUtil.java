@@ -26,13 +26,11 @@
  */
 package gov.hhs.fha.nhinc.subscription.repository.persistence;
 
-import gov.hhs.fha.nhinc.properties.HibernateAccessor;
+import gov.hhs.fha.nhinc.persistence.HibernateSessionFactoryRegistry;
 import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
-import java.io.File;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
 
 /**
  * Utility to create hibernate connections
@@ -45,8 +43,9 @@ public class HibernateUtil {
 
     static {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            sessionFactory = new Configuration().configure(getConfigFile()).buildSessionFactory();
+            // Share the SessionFactory of the databases on the same data source
+            sessionFactory = HibernateSessionFactoryRegistry.getInstance().getSessionFactory(
+                    NhincConstants.HIBERNATE_HIEMSUBREP_REPOSITORY);
         } catch (Throwable ex) {
             // Make sure you log the exception, as it might be swallowed
             log.error("Initial SessionFactory creation failed: " + ex.getMessage());
@@ -58,16 +57,4 @@ public class HibernateUtil {
         return sessionFactory;
     }
 
-    private static File getConfigFile() {
-        File result = null;
-
-        try {
-            result = HibernateAccessor.getInstance().getHibernateFile(NhincConstants.HIBERNATE_HIEMSUBREP_REPOSITORY);
-        } catch (Exception ex) {
-            log.error("Unable to load " + NhincConstants.HIBERNATE_HIEMSUBREP_REPOSITORY + " " + ex.getMessage(), ex);
-        }
-
-        return result;
-    }
-
 }
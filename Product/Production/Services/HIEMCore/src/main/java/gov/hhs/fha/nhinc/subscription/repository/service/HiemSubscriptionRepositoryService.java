@@ -31,6 +31,7 @@ import gov.hhs.fha.nhinc.common.subscription.SubscriptionItemsType;
 import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerCache;
 import gov.hhs.fha.nhinc.connectmgr.ConnectionManagerException;
 //import gov.hhs.fha.nhinc.hiem.dte.EndpointReferenceMarshaller;
+import gov.hhs.fha.nhinc.hiem.consumerreference.ReferenceParametersHelper;
 import gov.hhs.fha.nhinc.hiem.consumerreference.SoapMessageElements;
 import gov.hhs.fha.nhinc.hiem.dte.marshallers.EndpointReferenceMarshaller;
 import gov.hhs.fha.nhinc.hiem.dte.marshallers.NotificationMessageMarshaller;
@@ -267,6 +268,7 @@ public class HiemSubscriptionRepositoryService {
             storageItem.setParentSubscriptionId(parentubscriptionId);
             storageItem.setParentSubscriptionReferenceXML(subscriptionItem.getParentSubscriptionReferenceXML());
             storageItem.setConsumer(subscriptionItem.getConsumer());
+            loadConsumerReference(subscriptionItem, storageItem);
             storageItem.setProducer(subscriptionItem.getProducer());
             // storageItem.setPatientId(subscriptionItem.getPatientId());
             // storageItem.setPatientAssigningAuthority(subscriptionItem.getPatientAssigningAuthority());
@@ -276,6 +278,40 @@ public class HiemSubscriptionRepositoryService {
         return storageItem;
     }
 
+    /**
+     * Stores the consumer endpoint and reference parameters from the subscribe message in their own columns, so they
+     * do not have to be extracted from the subscribe message for every notification.
+     */
+    private void loadConsumerReference(HiemSubscriptionItem subscriptionItem, SubscriptionStorageItem storageItem) {
+        String consumerEndpoint = subscriptionItem.getConsumerEndpoint();
+        String referenceParametersXml = subscriptionItem.getConsumerReferenceParametersXML();
+        String subscribeXml = subscriptionItem.getSubscribeXML();
+        if (subscribeXml != null) {
+            try {
+                if (consumerEndpoint == null) {
+                    Node addressNode = XmlUtility.performXpathQuery(subscribeXml,
+                            "//*[local-name()='Subscribe']/*[local-name()='ConsumerReference']"
+                                    + "/*[local-name()='Address']");
+                    if (addressNode != null) {
+                        consumerEndpoint = XmlUtility.getNodeValue(addressNode);
+                    }
+                }
+                if (referenceParametersXml == null) {
+                    referenceParametersXml = new ReferenceParametersHelper()
+                            .extractReferenceParametersXmlFromConsumerReference(subscribeXml);
+                    if (referenceParametersXml == null) {
+                        // Records that the consumer reference has no reference parameters.
+                        referenceParametersXml = "";
+                    }
+                }
+            } catch (XPathExpressionException ex) {
+                log.warn("Failed to extract the consumer reference from a subscribe message: " + ex.getMessage(), ex);
+            }
+        }
+        storageItem.setConsumerEndpoint(consumerEndpoint);
+        storageItem.setConsumerReferenceParametersXML(referenceParametersXml);
+    }
+
     private List<HiemSubscriptionItem> loadDataObjects(List<SubscriptionStorageItem> storageItems) {
         List<HiemSubscriptionItem> subscriptionItems = new ArrayList<HiemSubscriptionItem>();
         for (SubscriptionStorageItem storageItem : storageItems) {
@@ -294,6 +330,8 @@ public class HiemSubscriptionRepositoryService {
             subscriptionItem.setRootTopic(storageItem.getRootTopic());
             subscriptionItem.setParentSubscriptionReferenceXML(storageItem.getParentSubscriptionReferenceXML());
             subscriptionItem.setConsumer(storageItem.getConsumer());
+            subscriptionItem.setConsumerEndpoint(storageItem.getConsumerEndpoint());
+            subscriptionItem.setConsumerReferenceParametersXML(storageItem.getConsumerReferenceParametersXML());
             subscriptionItem.setProducer(storageItem.getProducer());
             subscriptionItem.setTargets(storageItem.getTargets());
             subscriptionItem.setCreationDate(storageItem.getCreationDate());
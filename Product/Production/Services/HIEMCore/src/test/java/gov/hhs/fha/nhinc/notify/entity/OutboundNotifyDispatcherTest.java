@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.notify.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class OutboundNotifyDispatcherTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(100);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDeliveriesRunConcurrently() {
+        final int count = 100;
+        final CountDownLatch allStarted = new CountDownLatch(count);
+        List<OutboundNotifyDispatcher.Delivery> deliveries = new ArrayList<OutboundNotifyDispatcher.Delivery>();
+        for (int i = 0; i < count; i++) {
+            deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+                @Override
+                public boolean deliver() {
+                    allStarted.countDown();
+                    try {
+                        // Only completes if every delivery is in flight at the same time.
+                        return allStarted.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        return false;
+                    }
+                }
+            });
+        }
+
+        OutboundNotifyDispatcher dispatcher = new OutboundNotifyDispatcher(executor, 0, 1, 0);
+        assertEquals(count, dispatcher.dispatch(deliveries));
+    }
+
+    @Test
+    public void testFailedDeliveryIsRetriedWithBackoff() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final List<Long> delays = new ArrayList<Long>();
+        OutboundNotifyDispatcher dispatcher = new OutboundNotifyDispatcher(executor, 0, 4, 100) {
+            @Override
+            protected void sleep(long millis) {
+                delays.add(millis);
+            }
+        };
+
+        List<OutboundNotifyDispatcher.Delivery> deliveries = new ArrayList<OutboundNotifyDispatcher.Delivery>();
+        deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+            @Override
+            public boolean deliver() {
+                return attempts.incrementAndGet() == 3;
+            }
+        });
+
+        assertEquals(1, dispatcher.dispatch(deliveries));
+        assertEquals(3, attempts.get());
+        assertEquals(2, delays.size());
+        assertEquals(100L, delays.get(0).longValue());
+        assertEquals(200L, delays.get(1).longValue());
+    }
+
+    @Test
+    public void testWithoutExecutorDeliveriesRunOnCallingThread() {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger attempts = new AtomicInteger();
+        OutboundNotifyDispatcher dispatcher = new OutboundNotifyDispatcher(null, 200, 2, 0);
+
+        List<OutboundNotifyDispatcher.Delivery> deliveries = new ArrayList<OutboundNotifyDispatcher.Delivery>();
+        for (int i = 0; i < 3; i++) {
+            deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+                @Override
+                public boolean deliver() {
+                    assertTrue(Thread.currentThread() == caller);
+                    return attempts.incrementAndGet() != 1;
+                }
+            });
+        }
+
+        assertEquals(3, dispatcher.dispatch(deliveries));
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    public void testDeliveryGivesUpAfterMaxAttempts() {
+        final AtomicInteger attempts = new AtomicInteger();
+        OutboundNotifyDispatcher dispatcher = new OutboundNotifyDispatcher(executor, 0, 3, 0);
+
+        List<OutboundNotifyDispatcher.Delivery> deliveries = new ArrayList<OutboundNotifyDispatcher.Delivery>();
+        deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+            @Override
+            public boolean deliver() {
+                attempts.incrementAndGet();
+                throw new RuntimeException("connection refused");
+            }
+        });
+        deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+            @Override
+            public boolean deliver() {
+                return true;
+            }
+        });
+
+        assertEquals(1, dispatcher.dispatch(deliveries));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testSlowDeliveryIsCancelledAtTimeout() {
+        OutboundNotifyDispatcher dispatcher = new OutboundNotifyDispatcher(executor, 200, 1, 0);
+
+        List<OutboundNotifyDispatcher.Delivery> deliveries = new ArrayList<OutboundNotifyDispatcher.Delivery>();
+        deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+            @Override
+            public boolean deliver() {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        });
+        deliveries.add(new OutboundNotifyDispatcher.Delivery() {
+            @Override
+            public boolean deliver() {
+                return true;
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        assertEquals(1, dispatcher.dispatch(deliveries));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+}
@@ -27,6 +27,9 @@
 package gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy;
 
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+
+import java.util.List;
+
 import org.hl7.v3.AddPatientCorrelationResponseType;
 import org.hl7.v3.PRPAIN201301UV02;
 import org.hl7.v3.PRPAIN201309UV02;
@@ -43,4 +46,6 @@ public interface PatientCorrelationProxy {
 
     public AddPatientCorrelationResponseType addPatientCorrelation(PRPAIN201301UV02 request, AssertionType assertion);
 
+    public void addPatientCorrelations(List<PRPAIN201301UV02> requests, AssertionType assertion);
+
 }
@@ -31,6 +31,8 @@ import gov.hhs.fha.nhinc.patientcorrelation.nhinc.PatientCorrelationOrch;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.PatientCorrelationOrchImpl;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao.CorrelatedIdentifiersDaoImpl;
 
+import java.util.List;
+
 import org.hl7.v3.AddPatientCorrelationResponseType;
 import org.hl7.v3.PRPAIN201301UV02;
 import org.hl7.v3.PRPAIN201309UV02;
@@ -53,4 +55,8 @@ public class PatientCorrelationProxyJavaImpl implements PatientCorrelationProxy
         return orchestration.addPatientCorrelation(request, assertion);
     }
 
+    public void addPatientCorrelations(List<PRPAIN201301UV02> requests, AssertionType assertion) {
+        orchestration.addPatientCorrelations(requests, assertion);
+    }
+
 }
@@ -27,6 +27,9 @@
 package gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy;
 
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+
+import java.util.List;
+
 import org.hl7.v3.AddPatientCorrelationResponseType;
 import org.hl7.v3.PRPAIN201301UV02;
 import org.hl7.v3.PRPAIN201309UV02;
@@ -51,4 +54,7 @@ public class PatientCorrelationProxyNoOpImpl implements PatientCorrelationProxy
         return resp;
     }
 
+    public void addPatientCorrelations(List<PRPAIN201301UV02> requests, AssertionType assertion) {
+    }
+
 }
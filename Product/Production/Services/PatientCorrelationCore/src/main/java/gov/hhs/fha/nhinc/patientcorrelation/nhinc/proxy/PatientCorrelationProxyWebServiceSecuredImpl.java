@@ -36,6 +36,8 @@ import gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy.description.PatientCorre
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy.description.PatientCorrelationSecuredRetrieveServicePortDescriptor;
 import gov.hhs.fha.nhinc.webserviceproxy.WebServiceProxyHelper;
 
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hl7.v3.AddPatientCorrelationResponseType;
@@ -156,4 +158,15 @@ public class PatientCorrelationProxyWebServiceSecuredImpl implements PatientCorr
         log.debug("End addPatientCorrelation");
         return response;
     }
+
+    /**
+     * The patient correlation web service accepts one correlation per call, so each request is sent in turn.
+     */
+    public void addPatientCorrelations(List<PRPAIN201301UV02> requests, AssertionType assertion) {
+        if (requests != null) {
+            for (PRPAIN201301UV02 request : requests) {
+                addPatientCorrelation(request, assertion);
+            }
+        }
+    }
 }
@@ -35,6 +35,9 @@ import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy.description.PatientCorrelationAddServicePortDescriptor;
 import gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy.description.PatientCorrelationRetrieveServicePortDescriptor;
 import gov.hhs.fha.nhinc.webserviceproxy.WebServiceProxyHelper;
+
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hl7.v3.AddPatientCorrelationRequestType;
@@ -148,4 +151,15 @@ public class PatientCorrelationProxyWebServiceUnsecuredImpl implements PatientCo
         log.debug("End addPatientCorrelation");
         return response;
     }
+
+    /**
+     * Sends each request to the unsecured patient correlation service in turn.
+     */
+    public void addPatientCorrelations(List<PRPAIN201301UV02> requests, AssertionType assertion) {
+        if (requests != null) {
+            for (PRPAIN201301UV02 request : requests) {
+                addPatientCorrelation(request, assertion);
+            }
+        }
+    }
 }
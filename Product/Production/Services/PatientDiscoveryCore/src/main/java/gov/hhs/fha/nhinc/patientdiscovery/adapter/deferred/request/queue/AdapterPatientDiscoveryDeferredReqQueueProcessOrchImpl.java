@@ -28,6 +28,7 @@ package gov.hhs.fha.nhinc.patientdiscovery.adapter.deferred.request.queue;
 
 import gov.hhs.fha.nhinc.async.AsyncMessageProcessHelper;
 import gov.hhs.fha.nhinc.asyncmsgs.dao.AsyncMsgRecordDao;
+import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgDataCodec;
 import gov.hhs.fha.nhinc.asyncmsgs.model.AsyncMsgRecord;
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
 import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
@@ -151,7 +152,7 @@ public class AdapterPatientDiscoveryDeferredReqQueueProcessOrchImpl {
         try {
             byte[] msgBytes = null;
             if (msgData != null) {
-                msgBytes = msgData.getBytes(1, (int) msgData.length());
+                msgBytes = AsyncMsgDataCodec.decode(msgData);
                 ByteArrayInputStream xmlContentBytes = new ByteArrayInputStream(msgBytes);
                 JAXBContext context = JAXBContext.newInstance("org.hl7.v3");
                 Unmarshaller u = context.createUnmarshaller();
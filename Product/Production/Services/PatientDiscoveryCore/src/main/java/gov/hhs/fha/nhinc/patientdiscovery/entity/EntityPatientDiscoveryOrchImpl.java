@@ -174,7 +174,8 @@ public class EntityPatientDiscoveryOrchImpl {
 
                         OutboundPatientDiscoveryOrchestratable message =
                             createOrchestratable(newRequest.getPRPAIN201305UV02(), assertion, target, gatewayLevel);
-                        callableList.add(new NhinCallableRequest<OutboundPatientDiscoveryOrchestratable>(message));
+                        callableList.add(new NhinCallableRequest<OutboundPatientDiscoveryOrchestratable>(message,
+                                urlInfo.getHcid()));
 
                         log.debug("Added NhinCallableRequest" + " for hcid=" + target.getHomeCommunity().getHomeCommunityId());
                     } else {
@@ -241,7 +242,7 @@ public class EntityPatientDiscoveryOrchImpl {
 
     protected OutboundPatientDiscoveryOrchestratable createOrchestratable(PRPAIN201305UV02 message,
             AssertionType assertion, NhinTargetSystemType target, NhincConstants.GATEWAY_API_LEVEL gatewayLevel) {
-        OutboundDelegate nd = new OutboundPatientDiscoveryDelegate();
+        OutboundDelegate nd = getDelegate();
         OutboundResponseProcessor np = new OutboundPatientDiscoveryProcessor(gatewayLevel);
         OutboundPatientDiscoveryOrchestratable orchestratable = new OutboundPatientDiscoveryOrchestratable(nd, np,
                 null, null, assertion, NhincConstants.PATIENT_DISCOVERY_SERVICE_NAME, target, message);
@@ -249,6 +250,17 @@ public class EntityPatientDiscoveryOrchImpl {
         return orchestratable;
     }
 
+    /**
+     * @return the caching delegate if the Patient Discovery result cache is enabled, else the plain delegate
+     */
+    protected OutboundPatientDiscoveryDelegate getDelegate() {
+        PatientDiscoveryResultCache cache = PatientDiscoveryResultCache.getInstance();
+        if (cache.isEnabled()) {
+            return new OutboundPatientDiscoveryCachingDelegate(cache);
+        }
+        return new OutboundPatientDiscoveryDelegate();
+    }
+
     protected CommunityPRPAIN201306UV02ResponseType createFailedPolicyCommunityResponseFromRequest(PRPAIN201305UV02 message, String hcid) {
         CommunityPRPAIN201306UV02ResponseType communityResponse = new CommunityPRPAIN201306UV02ResponseType();
         NhinTargetCommunityType tc = new NhinTargetCommunityType();
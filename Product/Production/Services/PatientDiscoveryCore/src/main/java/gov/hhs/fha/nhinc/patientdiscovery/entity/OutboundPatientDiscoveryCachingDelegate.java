@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.patientdiscovery.entity;
+
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.patientdiscovery.PatientDiscoveryAuditLogger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.v3.PRPAIN201306UV02;
+
+/**
+ * Patient Discovery delegate that answers from the {@link PatientDiscoveryResultCache} when it holds an unexpired
+ * result of the target community, and otherwise calls the community and caches its result. A cached result is audited
+ * as received from the community, as the call would have been, and goes through the response processor like any other
+ * so the correlations it names are stored again.
+ *
+ * @author dharley
+ */
+public class OutboundPatientDiscoveryCachingDelegate extends OutboundPatientDiscoveryDelegate {
+
+    private static Log log = LogFactory.getLog(OutboundPatientDiscoveryCachingDelegate.class);
+
+    private final PatientDiscoveryResultCache cache;
+
+    public OutboundPatientDiscoveryCachingDelegate(PatientDiscoveryResultCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public OutboundPatientDiscoveryOrchestratable process(OutboundPatientDiscoveryOrchestratable message) {
+        String hcid = message.getTarget().getHomeCommunity().getHomeCommunityId();
+        String key = cache.getKey(message.getRequest(), hcid, message.getAssertion());
+
+        PRPAIN201306UV02 cached = cache.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            log.info("Patient discovery result of " + hcid + " served from cache");
+            OutboundPatientDiscoveryOrchestratable response = new OutboundPatientDiscoveryOrchestratable(null,
+                    message.getResponseProcessor(), message.getAuditTransformer(), message.getPolicyTransformer(),
+                    message.getAssertion(), message.getServiceName(), message.getTarget(), message.getRequest());
+            response.setResponse(cached);
+            auditCacheHit(response);
+            return response;
+        }
+
+        OutboundPatientDiscoveryOrchestratable response = callTarget(message);
+        if (response != null) {
+            cache.put(key, hcid, message.getRequest(), response.getResponse(), System.currentTimeMillis());
+        }
+        return response;
+    }
+
+    protected OutboundPatientDiscoveryOrchestratable callTarget(OutboundPatientDiscoveryOrchestratable message) {
+        return super.process(message);
+    }
+
+    protected void auditCacheHit(OutboundPatientDiscoveryOrchestratable response) {
+        new PatientDiscoveryAuditLogger().auditNhin201306(response.getResponse(), response.getAssertion(),
+                NhincConstants.AUDIT_LOG_INBOUND_DIRECTION);
+    }
+}
@@ -276,6 +276,15 @@ public class OutboundPatientDiscoveryProcessor implements OutboundResponseProces
         return response;
     }
 
+    /**
+     * @param individualResponse the OutboundPatientDiscoveryOrchestratable of a single target
+     * @return true if its PD response reports an error
+     */
+    public boolean isErrorResponse(OutboundOrchestratableMessage individualResponse) {
+        return OutboundPatientDiscoveryProcessorHelper
+                .isErrorResponse(((OutboundPatientDiscoveryOrchestratable) individualResponse).getResponse());
+    }
+
     /**
      * aggregates the individualResponse into the cumulativeResponse
      */
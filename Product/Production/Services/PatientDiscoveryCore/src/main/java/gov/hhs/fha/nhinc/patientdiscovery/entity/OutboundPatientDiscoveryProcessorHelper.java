@@ -26,8 +26,12 @@
  */
 package gov.hhs.fha.nhinc.patientdiscovery.entity;
 
+import gov.hhs.fha.nhinc.transform.subdisc.HL7Constants;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hl7.v3.MCCIMT000300UV01Acknowledgement;
+import org.hl7.v3.PRPAIN201306UV02;
 import org.hl7.v3.RespondingGatewayPRPAIN201306UV02ResponseType;
 
 /**
@@ -59,4 +63,30 @@ public class OutboundPatientDiscoveryProcessorHelper {
         log.debug("EntityPatientDiscoveryProcessorHelper constructed initial cumulativeResponse");
         return cumulativeResponse;
     }
+
+    /**
+     * A PD response is an error response when it is missing its query acknowledgement, when the query response code is
+     * QE or AE, or when an acknowledgement has the type code AE or AR.
+     * 
+     * @param response the PD response of a single target
+     * @return true if the response reports an error
+     */
+    public static boolean isErrorResponse(PRPAIN201306UV02 response) {
+        if (response == null || response.getControlActProcess() == null
+                || response.getControlActProcess().getQueryAck() == null
+                || response.getControlActProcess().getQueryAck().getQueryResponseCode() == null) {
+            return true;
+        }
+        String code = response.getControlActProcess().getQueryAck().getQueryResponseCode().getCode();
+        if (HL7Constants.QUERY_ACK_QE.equals(code) || "AE".equals(code)) {
+            return true;
+        }
+        for (MCCIMT000300UV01Acknowledgement ack : response.getAcknowledgement()) {
+            String typeCode = ack.getTypeCode() != null ? ack.getTypeCode().getCode() : null;
+            if ("AE".equals(typeCode) || "AR".equals(typeCode)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
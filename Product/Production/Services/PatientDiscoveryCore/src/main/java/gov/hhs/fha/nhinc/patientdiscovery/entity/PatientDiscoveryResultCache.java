@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.patientdiscovery.entity;
+
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.mpi.adapter.component.hl7parsers.HL7Parser201305;
+import gov.hhs.fha.nhinc.mpilib.Address;
+import gov.hhs.fha.nhinc.mpilib.PersonName;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao.CorrelationRemovalListener;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.dao.Storer;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.CorrelatedIdentifiers;
+import gov.hhs.fha.nhinc.properties.PropertyAccessException;
+import gov.hhs.fha.nhinc.properties.PropertyAccessor;
+import gov.hhs.fha.nhinc.util.hash.SHA1HashCode;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hl7.v3.II;
+import org.hl7.v3.PRPAIN201305UV02;
+import org.hl7.v3.PRPAIN201306UV02;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01Subject1;
+import org.hl7.v3.PRPAMT201306UV02LivingSubjectId;
+import org.hl7.v3.PRPAMT201306UV02ParameterList;
+
+/**
+ * Holds the Patient Discovery result of each community for a short time, so a repeated request for the same
+ * demographics only goes out to the communities whose results have expired or were errors.
+ * <p>
+ * A result is stored per community, under a digest of the normalized name, birth time, gender, address and identifiers
+ * of the request, the home community id of the community and the role and purpose of use of the assertion. Each
+ * community keeps its own time to live. A result is dropped as soon as a correlation of one of the patients it names is
+ * removed, or a local update of one of them is saved. The cache is off unless PatientDiscoveryCacheEnabled is true; its
+ * hit ratio is published over JMX.
+ *
+ * @author dharley
+ */
+public class PatientDiscoveryResultCache implements PatientDiscoveryResultCacheMBean, CorrelationRemovalListener {
+
+    public static final String OBJECT_NAME = "gov.hhs.fha.nhinc:type=PatientDiscoveryCache";
+
+    private static final long DEFAULT_TIME_TO_LIVE = 300000;
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static Log log = LogFactory.getLog(PatientDiscoveryResultCache.class);
+
+    private static PatientDiscoveryResultCache instance = null;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A cached result, with the patients it names.
+     */
+    static class Entry {
+        private final PRPAIN201306UV02 response;
+        private final Set<String> patientIds;
+        private final long expiresAt;
+
+        Entry(PRPAIN201306UV02 response, Set<String> patientIds, long expiresAt) {
+            this.response = response;
+            this.patientIds = patientIds;
+            this.expiresAt = expiresAt;
+        }
+
+        PRPAIN201306UV02 getResponse() {
+            return response;
+        }
+
+        boolean names(String patientId) {
+            return patientIds.contains(patientId);
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    protected PatientDiscoveryResultCache() {
+    }
+
+    public static synchronized PatientDiscoveryResultCache getInstance() {
+        if (instance == null) {
+            instance = new PatientDiscoveryResultCache();
+            Storer.addRemovalListener(instance);
+            instance.register();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if PatientDiscoveryCacheEnabled is set to true in gateway.properties
+     */
+    public boolean isEnabled() {
+        return "true".equalsIgnoreCase(getProperty(NhincConstants.PATIENT_DISCOVERY_CACHE_ENABLED));
+    }
+
+    /**
+     * Computes the key of a request sent to one community from its normalized demographics.
+     *
+     * @param request the request
+     * @param targetHomeCommunityId the home community id of the community
+     * @param assertion the assertion the request is sent with
+     * @return the key, or null if the request has no query parameters or the key cannot be computed
+     */
+    public String getKey(PRPAIN201305UV02 request, String targetHomeCommunityId, AssertionType assertion) {
+        PRPAMT201306UV02ParameterList params = HL7Parser201305.extractHL7QueryParamsFromMessage(request);
+        if (params == null || targetHomeCommunityId == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(targetHomeCommunityId);
+        PersonName name = HL7Parser201305.extractPersonName(params);
+        append(text, "name", name.getLastName(), name.getFirstName(), name.getMiddleName());
+        append(text, "birth", HL7Parser201305.extractBirthdate(params));
+        append(text, "gender", HL7Parser201305.extractGender(params));
+        Address address = HL7Parser201305.extractPersonAddress(params);
+        if (address != null) {
+            append(text, "address", address.getStreet1(), address.getStreet2(), address.getCity(),
+                    address.getState(), address.getZip());
+        }
+        List<String> ids = new ArrayList<String>(getRequestPatientIds(params));
+        Collections.sort(ids);
+        text.append("|ids=").append(ids);
+        if (assertion != null) {
+            if (assertion.getUserInfo() != null && assertion.getUserInfo().getRoleCoded() != null) {
+                append(text, "role", assertion.getUserInfo().getRoleCoded().getCode());
+            }
+            if (assertion.getPurposeOfDisclosureCoded() != null) {
+                append(text, "purpose", assertion.getPurposeOfDisclosureCoded().getCode());
+            }
+        }
+        try {
+            return SHA1HashCode.calculateSHA1(text.toString());
+        } catch (NoSuchAlgorithmException ex) {
+            log.warn("Unable to compute the patient discovery cache key: " + ex.getMessage());
+        } catch (UnsupportedEncodingException ex) {
+            log.warn("Unable to compute the patient discovery cache key: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key of the request
+     * @param now the current time in milliseconds
+     * @return the cached result of the community, or null if there is none or it has expired
+     */
+    PRPAIN201306UV02 get(String key, long now) {
+        Entry entry = key == null ? null : entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.getResponse();
+    }
+
+    /**
+     * Stores the result of a community, unless it is an error or the community's time to live is zero.
+     *
+     * @param key the key of the request
+     * @param targetHomeCommunityId the home community id of the community
+     * @param request the request
+     * @param response the result of the community
+     * @param now the current time in milliseconds
+     */
+    void put(String key, String targetHomeCommunityId, PRPAIN201305UV02 request, PRPAIN201306UV02 response,
+            long now) {
+        if (key == null || OutboundPatientDiscoveryProcessorHelper.isErrorResponse(response)) {
+            return;
+        }
+        long timeToLive = getTimeToLive(targetHomeCommunityId);
+        if (timeToLive <= 0) {
+            return;
+        }
+        if (entries.size() >= getMaxEntries()) {
+            removeExpired(now);
+            if (entries.size() >= getMaxEntries()) {
+                log.debug("Patient discovery cache is full, result of " + targetHomeCommunityId + " not cached");
+                return;
+            }
+        }
+        Set<String> patientIds = getRequestPatientIds(HL7Parser201305.extractHL7QueryParamsFromMessage(request));
+        patientIds.addAll(getResponsePatientIds(response));
+        entries.put(key, new Entry(response, patientIds, now + timeToLive));
+    }
+
+    /**
+     * Drops every result that names one of the patients.
+     *
+     * @param patientIds the identifiers of the patients
+     */
+    public void removePatients(Collection<II> patientIds) {
+        if (patientIds == null) {
+            return;
+        }
+        for (II id : patientIds) {
+            if (id != null) {
+                removePatient(id.getRoot(), id.getExtension());
+            }
+        }
+    }
+
+    @Override
+    public void correlationRemoved(CorrelatedIdentifiers correlatedIdentifiers) {
+        removePatient(correlatedIdentifiers.getPatientAssigningAuthorityId(), correlatedIdentifiers.getPatientId());
+        removePatient(correlatedIdentifiers.getCorrelatedPatientAssigningAuthorityId(),
+                correlatedIdentifiers.getCorrelatedPatientId());
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @param targetHomeCommunityId the home community id of the community
+     * @return PatientDiscoveryCacheTTL.&lt;hcid&gt; if set, else PatientDiscoveryCacheTTL, in milliseconds
+     */
+    protected long getTimeToLive(String targetHomeCommunityId) {
+        String value = getProperty(NhincConstants.PATIENT_DISCOVERY_CACHE_TTL + "." + targetHomeCommunityId);
+        if (value == null || value.trim().length() == 0) {
+            value = getProperty(NhincConstants.PATIENT_DISCOVERY_CACHE_TTL);
+        }
+        return parse(NhincConstants.PATIENT_DISCOVERY_CACHE_TTL, value, DEFAULT_TIME_TO_LIVE);
+    }
+
+    protected int getMaxEntries() {
+        return (int) parse(NhincConstants.PATIENT_DISCOVERY_CACHE_MAX_ENTRIES,
+                getProperty(NhincConstants.PATIENT_DISCOVERY_CACHE_MAX_ENTRIES), DEFAULT_MAX_ENTRIES);
+    }
+
+    protected String getProperty(String propertyName) {
+        try {
+            return PropertyAccessor.getInstance().getProperty(NhincConstants.GATEWAY_PROPERTY_FILE, propertyName);
+        } catch (PropertyAccessException ex) {
+            log.warn("Unable to read " + propertyName + " from gateway.properties: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private void removePatient(String assigningAuthority, String patientId) {
+        if (patientId == null) {
+            return;
+        }
+        String id = assigningAuthority + "^" + patientId;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().names(id) && entries.remove(entry.getKey(), entry.getValue())) {
+                log.debug("Patient discovery result dropped from cache for patient " + id);
+            }
+        }
+    }
+
+    private void removeExpired(long now) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().isExpired(now)) {
+                entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static Set<String> getRequestPatientIds(PRPAMT201306UV02ParameterList params) {
+        Set<String> ids = new HashSet<String>();
+        if (params != null) {
+            for (PRPAMT201306UV02LivingSubjectId subjectId : params.getLivingSubjectId()) {
+                for (II id : subjectId.getValue()) {
+                    ids.add(id.getRoot() + "^" + id.getExtension());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> getResponsePatientIds(PRPAIN201306UV02 response) {
+        Set<String> ids = new HashSet<String>();
+        for (PRPAIN201306UV02MFMIMT700711UV01Subject1 subject : response.getControlActProcess().getSubject()) {
+            if (subject.getRegistrationEvent() != null && subject.getRegistrationEvent().getSubject1() != null
+                    && subject.getRegistrationEvent().getSubject1().getPatient() != null) {
+                for (II id : subject.getRegistrationEvent().getSubject1().getPatient().getId()) {
+                    ids.add(id.getRoot() + "^" + id.getExtension());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void append(StringBuilder text, String name, String... values) {
+        text.append('|').append(name).append('=');
+        for (String value : values) {
+            text.append(value == null ? "" : value.trim().toLowerCase()).append('^');
+        }
+    }
+
+    private long parse(String propertyName, String value, long defaultValue) {
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                log.warn(propertyName + " in gateway.properties is not a number: " + ex.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+
+    private void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException ex) {
+            log.warn("Unable to publish the patient discovery cache: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -87,6 +87,7 @@ public class TrustMode implements ResponseMode {
             II localPatId = getPatientId(requestMsg);
 
             if (requestHasLivingSubjectId(requestMsg) && localPatId != null) {
+                List<PRPAIN201301UV02> correlations = new ArrayList<PRPAIN201301UV02>();
                 for (PRPAIN201306UV02MFMIMT700711UV01Subject1 pRPAINSubject : pRPAINSubjects) {
                     int pRPAINSubjectInd = response.getControlActProcess().getSubject().indexOf(pRPAINSubject);
                     log.debug("processResponse - SubjectIndex: " + pRPAINSubjectInd);
@@ -98,7 +99,11 @@ public class TrustMode implements ResponseMode {
                     try {
                         remotePatId = getPatientId(response);
                         if (remotePatId != null) {
-                            sendToPatientCorrelationComponent(localPatId, remotePatId, assertion, response);
+                            PRPAIN201301UV02 correlation = createPatientCorrelationRequest(localPatId, remotePatId,
+                                    response);
+                            if (correlation != null) {
+                                correlations.add(correlation);
+                            }
                         } else {
                             log.error("One or more of the Patient Id values are null");
                         }
@@ -108,6 +113,7 @@ public class TrustMode implements ResponseMode {
                     response.getControlActProcess().getSubject().set(pRPAINSubjectInd, pRPAINSubject);
                     response.getControlActProcess().getSubject().set(0, subjReplaced);
                 }
+                sendToPatientCorrelationComponent(correlations, assertion);
             } else {
                 log.debug("Local Patient Id was not provided, no correlation will be attempted");
             }
@@ -140,6 +146,7 @@ public class TrustMode implements ResponseMode {
                 }
 
                 II remotePatId = null;
+                List<PRPAIN201301UV02> correlations = new ArrayList<PRPAIN201301UV02>();
                 for (PRPAIN201306UV02MFMIMT700711UV01Subject1 pRPAINSubject : pRPAINSubjects) {
                     int pRPAINSubjectInd = response.getControlActProcess().getSubject().indexOf(pRPAINSubject);
                     log.debug("processResponse - SubjectIndex: " + pRPAINSubjectInd);
@@ -151,7 +158,11 @@ public class TrustMode implements ResponseMode {
                     try {
                         remotePatId = getPatientId(response);
                         if (remotePatId != null) {
-                            sendToPatientCorrelationComponent(localPatId, remotePatId, assertion, response);
+                            PRPAIN201301UV02 correlation = createPatientCorrelationRequest(localPatId, remotePatId,
+                                    response);
+                            if (correlation != null) {
+                                correlations.add(correlation);
+                            }
                         } else {
                             log.error("One or more of the Patient Id values are null");
                         }
@@ -162,6 +173,7 @@ public class TrustMode implements ResponseMode {
                     response.getControlActProcess().getSubject().set(pRPAINSubjectInd, pRPAINSubject);
                     response.getControlActProcess().getSubject().set(0, subjReplaced);
                 }
+                sendToPatientCorrelationComponent(correlations, assertion);
             } else {
                 log.debug("Local Patient Id was not provided, no correlation will be attempted");
             }
@@ -172,9 +184,37 @@ public class TrustMode implements ResponseMode {
         return response;
     }
 
-    protected void sendToPatientCorrelationComponent(II localPatId, II remotePatId, AssertionType assertion,
+    /**
+     * Stores the correlations made for the subjects of a response in one call to the patient correlation component.
+     * With the Java implementation they are stored in a single transaction, so either all or none of them are stored.
+     * 
+     * @param correlations the correlation requests
+     * @param assertion the assertion
+     * @return true if the correlations were stored
+     */
+    protected boolean sendToPatientCorrelationComponent(List<PRPAIN201301UV02> correlations,
+            AssertionType assertion) {
+        if (correlations.isEmpty()) {
+            return true;
+        }
+        try {
+            getPatientCorrelationProxy().addPatientCorrelations(correlations, assertion);
+            return true;
+        } catch (Exception ex) {
+            log.error("Failed to store the " + correlations.size() + " patient correlation(s) of the response: "
+                    + ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Builds the PRPA_IN201301UV02 message that correlates the first subject of the response with the local patient.
+     * 
+     * @return the message, or null if either patient id is incomplete
+     */
+    protected PRPAIN201301UV02 createPatientCorrelationRequest(II localPatId, II remotePatId,
             PRPAIN201306UV02 response) {
-        PRPAIN201301UV02 request = new PRPAIN201301UV02();
+        PRPAIN201301UV02 request = null;
 
         if (localPatId != null && NullChecker.isNotNullish(localPatId.getRoot())
                 && NullChecker.isNotNullish(localPatId.getExtension()) && remotePatId != null
@@ -195,12 +235,14 @@ public class TrustMode implements ResponseMode {
 
                 request.getControlActProcess().getSubject().get(0).getRegistrationEvent().getSubject1().getPatient()
                         .getId().add(localPatId);
-
-                PatientCorrelationProxyObjectFactory patCorrelationFactory = new PatientCorrelationProxyObjectFactory();
-                PatientCorrelationProxy patCorrelationProxy = patCorrelationFactory.getPatientCorrelationProxy();
-                patCorrelationProxy.addPatientCorrelation(request, assertion);
+                return request;
             }
         }
+        return null;
+    }
+
+    protected PatientCorrelationProxy getPatientCorrelationProxy() {
+        return new PatientCorrelationProxyObjectFactory().getPatientCorrelationProxy();
     }
 
     protected boolean requestHasLivingSubjectId(PRPAIN201305UV02 request) {
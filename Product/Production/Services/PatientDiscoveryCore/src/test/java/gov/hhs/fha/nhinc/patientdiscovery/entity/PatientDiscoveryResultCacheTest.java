@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2012, United States Government, as represented by the Secretary of Health and Human Services. 
+ * All rights reserved. 
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ *     * Redistributions of source code must retain the above 
+ *       copyright notice, this list of conditions and the following disclaimer. 
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the documentation 
+ *       and/or other materials provided with the distribution. 
+ *     * Neither the name of the United States Government nor the 
+ *       names of its contributors may be used to endorse or promote products 
+ *       derived from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE UNITED STATES GOVERNMENT BE LIABLE FOR ANY 
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package gov.hhs.fha.nhinc.patientdiscovery.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.common.nhinccommon.CeType;
+import gov.hhs.fha.nhinc.common.nhinccommon.HomeCommunityType;
+import gov.hhs.fha.nhinc.common.nhinccommon.NhinTargetSystemType;
+import gov.hhs.fha.nhinc.common.nhinccommon.UserType;
+import gov.hhs.fha.nhinc.nhinclib.NhincConstants;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.model.CorrelatedIdentifiers;
+import gov.hhs.fha.nhinc.transform.subdisc.HL7Constants;
+import gov.hhs.fha.nhinc.transform.subdisc.HL7PRPA201305Transforms;
+import gov.hhs.fha.nhinc.transform.subdisc.HL7PRPA201306Transforms;
+import gov.hhs.fha.nhinc.transform.subdisc.HL7PatientTransforms;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+
+import org.hl7.v3.PRPAIN201305UV02;
+import org.hl7.v3.PRPAIN201306UV02;
+import org.hl7.v3.PRPAMT201301UV02Patient;
+import org.hl7.v3.PRPAMT201301UV02Person;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author dharley
+ */
+public class PatientDiscoveryResultCacheTest {
+
+    private static final String HCID = "2.2";
+    private static final String OTHER_HCID = "3.3";
+
+    private final Map<String, String> properties = new HashMap<String, String>();
+    private PatientDiscoveryResultCache cache;
+
+    @Before
+    public void setUp() {
+        properties.clear();
+        properties.put(NhincConstants.PATIENT_DISCOVERY_CACHE_ENABLED, "true");
+        properties.put(NhincConstants.PATIENT_DISCOVERY_CACHE_TTL, "1000");
+        cache = new PatientDiscoveryResultCache() {
+            @Override
+            protected String getProperty(String propertyName) {
+                return properties.get(propertyName);
+            }
+        };
+    }
+
+    @Test
+    public void testKeyIgnoresCaseAndWhitespace() {
+        AssertionType assertion = createAssertion("doctor", "TREATMENT");
+        String key = cache.getKey(createRequest("Joe", "Smith", "1234"), HCID, assertion);
+        assertNotNull(key);
+        assertEquals(key, cache.getKey(createRequest(" JOE", "smith ", "1234"), HCID, assertion));
+    }
+
+    @Test
+    public void testKeyDependsOnDemographicsTargetAndAssertion() {
+        PRPAIN201305UV02 request = createRequest("Joe", "Smith", "1234");
+        String key = cache.getKey(request, HCID, createAssertion("doctor", "TREATMENT"));
+        assertFalse(key.equals(cache.getKey(createRequest("Jim", "Smith", "1234"), HCID,
+                createAssertion("doctor", "TREATMENT"))));
+        assertFalse(key.equals(cache.getKey(createRequest("Joe", "Smith", "5678"), HCID,
+                createAssertion("doctor", "TREATMENT"))));
+        assertFalse(key.equals(cache.getKey(request, OTHER_HCID, createAssertion("doctor", "TREATMENT"))));
+        assertFalse(key.equals(cache.getKey(request, HCID, createAssertion("nurse", "TREATMENT"))));
+    }
+
+    @Test
+    public void testResultsExpireWithTheirTarget() {
+        properties.put(NhincConstants.PATIENT_DISCOVERY_CACHE_TTL + "." + OTHER_HCID, "5000");
+        PRPAIN201305UV02 request = createRequest("Joe", "Smith", "1234");
+        cache.put("a", HCID, request, createResponse(request), 0);
+        cache.put("b", OTHER_HCID, request, createResponse(request), 0);
+
+        assertNotNull(cache.get("a", 999));
+        assertNull(cache.get("a", 1000));
+        assertNotNull(cache.get("b", 1000));
+        assertNull(cache.get("b", 5000));
+        assertEquals(0, cache.getSize());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void testErrorsAreNotCached() {
+        PRPAIN201305UV02 request = createRequest("Joe", "Smith", "1234");
+        PRPAIN201306UV02 response = createResponse(request);
+        response.getControlActProcess().getQueryAck().getQueryResponseCode().setCode(HL7Constants.QUERY_ACK_QE);
+        cache.put("a", HCID, request, response, 0);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testCorrelationRemovalDropsResults() {
+        PRPAIN201305UV02 request = createRequest("Joe", "Smith", "1234");
+        cache.put("a", HCID, request, createResponse(request), 0);
+        cache.put("b", OTHER_HCID, createRequest("Jim", "Jones", "9999"),
+                createResponse(createRequest("Jim", "Jones", "9999")), 0);
+
+        CorrelatedIdentifiers correlation = new CorrelatedIdentifiers();
+        correlation.setPatientAssigningAuthorityId("1.1.1");
+        correlation.setPatientId("1234");
+        correlation.setCorrelatedPatientAssigningAuthorityId("3.3.3");
+        correlation.setCorrelatedPatientId("4321");
+        cache.correlationRemoved(correlation);
+
+        assertNull(cache.get("a", 0));
+        assertNotNull(cache.get("b", 0));
+    }
+
+    @Test
+    public void testSavedPatientDropsResults() {
+        PRPAIN201305UV02 request = createRequest("Joe", "Smith", "1234");
+        cache.put("a", HCID, request, createResponse(request), 0);
+
+        cache.removePatients(createPatient("Joe", "Smith", "5678", "2.2.2").getId());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testCachingDelegateCallsTargetOnce() {
+        final int[] calls = new int[1];
+        final int[] hits = new int[1];
+        OutboundPatientDiscoveryCachingDelegate delegate = new OutboundPatientDiscoveryCachingDelegate(cache) {
+            @Override
+            protected OutboundPatientDiscoveryOrchestratable callTarget(
+                    OutboundPatientDiscoveryOrchestratable message) {
+                calls[0]++;
+                message.setResponse(createResponse(message.getRequest()));
+                return message;
+            }
+
+            @Override
+            protected void auditCacheHit(OutboundPatientDiscoveryOrchestratable response) {
+                hits[0]++;
+            }
+        };
+        PRPAIN201305UV02 request = createRequest("Joe", "Smith", "1234");
+
+        OutboundPatientDiscoveryOrchestratable first = delegate.process(createMessage(request));
+        OutboundPatientDiscoveryOrchestratable second = delegate.process(createMessage(request));
+
+        assertEquals(1, calls[0]);
+        assertEquals(1, hits[0]);
+        assertSame(first.getResponse(), second.getResponse());
+        assertEquals(1, cache.getHits());
+    }
+
+    private OutboundPatientDiscoveryOrchestratable createMessage(PRPAIN201305UV02 request) {
+        HomeCommunityType community = new HomeCommunityType();
+        community.setHomeCommunityId(HCID);
+        NhinTargetSystemType target = new NhinTargetSystemType();
+        target.setHomeCommunity(community);
+        return new OutboundPatientDiscoveryOrchestratable(null, null, null, null, createAssertion("doctor",
+                "TREATMENT"), NhincConstants.PATIENT_DISCOVERY_SERVICE_NAME, target, request);
+    }
+
+    private PRPAMT201301UV02Patient createPatient(String firstName, String lastName, String patientId,
+            String assigningAuthority) {
+        JAXBElement<PRPAMT201301UV02Person> person = HL7PatientTransforms.create201301PatientPerson(firstName,
+                lastName, "M", "19630804", null);
+        return HL7PatientTransforms.create201301Patient(person, patientId, assigningAuthority);
+    }
+
+    private PRPAIN201305UV02 createRequest(String firstName, String lastName, String patientId) {
+        return HL7PRPA201305Transforms.createPRPA201305(createPatient(firstName, lastName, patientId, "1.1.1"),
+                "1.1", HCID, "1.1.1");
+    }
+
+    private PRPAIN201306UV02 createResponse(PRPAIN201305UV02 request) {
+        return HL7PRPA201306Transforms.createPRPA201306(createPatient("Joe", "Smith", "5678", "2.2.2"), HCID,
+                "2.2.2", "1.1", "1.1.1", request);
+    }
+
+    private AssertionType createAssertion(String role, String purpose) {
+        CeType roleCoded = new CeType();
+        roleCoded.setCode(role);
+        UserType user = new UserType();
+        user.setRoleCoded(roleCoded);
+        CeType purposeCoded = new CeType();
+        purposeCoded.setCode(purpose);
+        AssertionType assertion = new AssertionType();
+        assertion.setUserInfo(user);
+        assertion.setPurposeOfDisclosureCoded(purposeCoded);
+        return assertion;
+    }
+}
@@ -28,11 +28,18 @@ package gov.hhs.fha.nhinc.patientdiscovery.response;
 
 import static org.junit.Assert.*;
 import gov.hhs.fha.nhinc.common.nhinccommon.AssertionType;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy.PatientCorrelationProxy;
+import gov.hhs.fha.nhinc.patientcorrelation.nhinc.proxy.PatientCorrelationProxyNoOpImpl;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.hl7.v3.II;
 import org.hl7.v3.PRPAIN201301UV02;
 import org.hl7.v3.PRPAIN201305UV02;
 import org.hl7.v3.PRPAIN201306UV02;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01ControlActProcess;
+import org.hl7.v3.PRPAIN201306UV02MFMIMT700711UV01Subject1;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -93,17 +100,16 @@ public class TrustModeTest {
     }
 
     /**
-     * Test of sendToPatientCorrelationComponent method, of class TrustMode.
+     * Test of createPatientCorrelationRequest method, of class TrustMode.
      */
     @Test
-    public void testSendToPatientCorrelationComponent() {
-        System.out.println("sendToPatientCorrelationComponent");
+    public void testCreatePatientCorrelationRequest() {
+        System.out.println("createPatientCorrelationRequest");
         II localPatId = null;
         II remotePatId = null;
-        AssertionType assertion = null;
         PRPAIN201306UV02 response = null;
         TrustMode instance = new TrustMode();
-        instance.sendToPatientCorrelationComponent(localPatId, remotePatId, assertion, response);
+        assertNull(instance.createPatientCorrelationRequest(localPatId, remotePatId, response));
     }
 
     /**
@@ -158,4 +164,102 @@ public class TrustModeTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * The correlations of all of the subjects of a response are stored in one call.
+     */
+    @Test
+    public void testProcessResponseStoresCorrelationsInOneCall() {
+        CapturingProxy proxy = new CapturingProxy(false);
+        PRPAIN201306UV02 response = createResponse(3);
+
+        PRPAIN201306UV02 result = new TestTrustMode(proxy).processResponse(response, new AssertionType(),
+                createLocalPatientId());
+
+        assertSame(response, result);
+        assertEquals(1, proxy.batches.size());
+        assertEquals(3, proxy.batches.get(0).size());
+        assertEquals(3, response.getControlActProcess().getSubject().size());
+    }
+
+    /**
+     * A failure to store the correlations is reported and does not fail the response.
+     */
+    @Test
+    public void testProcessResponseReportsCorrelationFailure() {
+        CapturingProxy proxy = new CapturingProxy(true);
+        TestTrustMode instance = new TestTrustMode(proxy);
+        PRPAIN201306UV02 response = createResponse(2);
+
+        assertSame(response, instance.processResponse(response, new AssertionType(), createLocalPatientId()));
+        assertEquals(1, proxy.batches.size());
+
+        List<PRPAIN201301UV02> correlations = new ArrayList<PRPAIN201301UV02>();
+        correlations.add(new PRPAIN201301UV02());
+        assertFalse(instance.sendToPatientCorrelationComponent(correlations, new AssertionType()));
+        assertTrue(new TestTrustMode(new CapturingProxy(false)).sendToPatientCorrelationComponent(correlations,
+                new AssertionType()));
+    }
+
+    private PRPAIN201306UV02 createResponse(int subjectCount) {
+        PRPAIN201306UV02MFMIMT700711UV01ControlActProcess controlActProcess =
+                new PRPAIN201306UV02MFMIMT700711UV01ControlActProcess();
+        for (int i = 0; i < subjectCount; i++) {
+            controlActProcess.getSubject().add(new PRPAIN201306UV02MFMIMT700711UV01Subject1());
+        }
+        PRPAIN201306UV02 response = new PRPAIN201306UV02();
+        response.setControlActProcess(controlActProcess);
+        return response;
+    }
+
+    private II createLocalPatientId() {
+        II localPatId = new II();
+        localPatId.setRoot("1.1");
+        localPatId.setExtension("LOCAL1");
+        return localPatId;
+    }
+
+    private static class TestTrustMode extends TrustMode {
+        private final PatientCorrelationProxy proxy;
+
+        TestTrustMode(PatientCorrelationProxy proxy) {
+            this.proxy = proxy;
+        }
+
+        @Override
+        protected PatientCorrelationProxy getPatientCorrelationProxy() {
+            return proxy;
+        }
+
+        @Override
+        protected II getPatientId(PRPAIN201306UV02 response) {
+            II remotePatId = new II();
+            remotePatId.setRoot("2.2");
+            remotePatId.setExtension("REMOTE" + response.getControlActProcess().getSubject().get(0).hashCode());
+            return remotePatId;
+        }
+
+        @Override
+        protected PRPAIN201301UV02 createPatientCorrelationRequest(II localPatId, II remotePatId,
+                PRPAIN201306UV02 response) {
+            return new PRPAIN201301UV02();
+        }
+    }
+
+    private static class CapturingProxy extends PatientCorrelationProxyNoOpImpl {
+        private final List<List<PRPAIN201301UV02>> batches = new ArrayList<List<PRPAIN201301UV02>>();
+        private final boolean fail;
+
+        CapturingProxy(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void addPatientCorrelations(List<PRPAIN201301UV02> requests, AssertionType assertion) {
+            batches.add(new ArrayList<PRPAIN201301UV02>(requests));
+            if (fail) {
+                throw new IllegalStateException("Correlation store unavailable");
+            }
+        }
+    }
+
 }
\ No newline at end of file